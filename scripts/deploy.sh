@@ -6,4 +6,4 @@
 # Copies the compiled classes to the target machine, then runs the app remotely.
 
 scp -r target/classes pi@botfly:chesslr/target
-scp scripts/runchesslr.sh scripts/runtester.sh pi@botfly:.
+scp scripts/runchesslr.sh scripts/runtester.sh scripts/runperft.sh scripts/importpgn.sh pi@botfly:.
@@ -0,0 +1,11 @@
+#!/bin/bash
+# $@ - all command line params
+# $ 1 - first param (no space)
+# $# - number of command line params
+
+# Reads every game in the PGN files given and shows games per second. Games with moves that can't be read are listed.
+#
+#     ssh pi@botfly ./importpgn.sh games/master.pgn
+
+cd chesslr
+java -classpath ../lib/'*':target/classes com.axorion.chess.PgnImporter "$@"
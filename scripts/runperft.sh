@@ -0,0 +1,12 @@
+#!/bin/bash
+# $@ - all command line params
+# $ 1 - first param (no space)
+# $# - number of command line params
+
+# Runs the move generator against the perft reference positions and shows nodes per second.
+# First param is the depth, defaults to 4.
+#
+#     ssh pi@botfly ./runperft.sh 5
+
+cd chesslr
+java -classpath ../lib/'*':target/classes com.axorion.chess.Perft $1
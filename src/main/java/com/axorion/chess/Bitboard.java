@@ -0,0 +1,125 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+package com.axorion.chess;
+
+/**
+ * Constants and helpers for the 64 bit boards ChessBoard keeps its position in. Bit numbers are the same as the
+ * gameBoard index, so bit 0 is a8, bit 7 is h8 and bit 63 is h1.
+ *
+ * Pieces are numbered 0-5 for the white pawn, knight, bishop, rook, queen and king, and 6-11 for the same black
+ * pieces. That number is the index into ChessBoard's piece boards.
+ */
+public class Bitboard {
+    public static final int WHITE_PAWN = 0;
+    public static final int WHITE_KNIGHT = 1;
+    public static final int WHITE_BISHOP = 2;
+    public static final int WHITE_ROOK = 3;
+    public static final int WHITE_QUEEN = 4;
+    public static final int WHITE_KING = 5;
+    public static final int BLACK_PAWN = 6;
+    public static final int BLACK_KNIGHT = 7;
+    public static final int BLACK_BISHOP = 8;
+    public static final int BLACK_ROOK = 9;
+    public static final int BLACK_QUEEN = 10;
+    public static final int BLACK_KING = 11;
+    public static final int NO_PIECE = -1;
+
+    /** Letter of each piece, indexed by piece number. */
+    public static final String PIECE_LETTERS = "PNBRQKpnbrqk";
+
+    public static final long EMPTY = 0L;
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_H = FILE_A << 7;
+    public static final long RANK_8 = 0xFFL;
+    public static final long RANK_1 = RANK_8 << 56;
+
+    private static final int[] letterToPiece = new int[128];
+
+    static {
+        for(int i=0; i<letterToPiece.length; i++) {
+            letterToPiece[i] = NO_PIECE;
+        }
+        for(int i=0; i<PIECE_LETTERS.length(); i++) {
+            letterToPiece[PIECE_LETTERS.charAt(i)] = i;
+        }
+    }
+
+    /** Returns the board with only the bit for the given square set. */
+    public static long bit(int index) {
+        return 1L << index;
+    }
+
+    /** Returns the piece number for a letter like 'N' or 'p', or NO_PIECE for a space or anything else. */
+    public static int pieceIndex(int letter) {
+        if(letter < 0 || letter >= letterToPiece.length) {
+            return NO_PIECE;
+        }
+        return letterToPiece[letter];
+    }
+
+    /** Returns the letter for a piece number, or a space for NO_PIECE. */
+    public static char pieceLetter(int piece) {
+        if(piece == NO_PIECE) {
+            return (char)ChessBoard.EMPTY_SQUARE;
+        }
+        return PIECE_LETTERS.charAt(piece);
+    }
+
+    /** Returns true if the piece number is one of the white pieces. */
+    public static boolean isWhitePiece(int piece) {
+        return piece >= WHITE_PAWN && piece <= WHITE_KING;
+    }
+
+    /** Returns true if the piece number is one of the black pieces. */
+    public static boolean isBlackPiece(int piece) {
+        return piece >= BLACK_PAWN && piece <= BLACK_KING;
+    }
+
+    /** Returns the index of the lowest set bit. Undefined if the board is empty. */
+    public static int first(long board) {
+        return Long.numberOfTrailingZeros(board);
+    }
+
+    /** Returns the number of bits set in the board. */
+    public static int count(long board) {
+        return Long.bitCount(board);
+    }
+
+    /** Column of the index, 0 is the a file. */
+    public static int file(int index) {
+        return index & 7;
+    }
+
+    /** Row of the index, 0 is the 8th rank. */
+    public static int row(int index) {
+        return index >>> 3;
+    }
+
+    /** Debug helper that shows the board as 8 rows of 1s and dots, a8 in the top left. */
+    public static String toString(long board) {
+        StringBuilder buff = new StringBuilder(72);
+        for(int i=0; i<64; i++) {
+            buff.append((board & bit(i)) != 0 ? '1' : '.');
+            if(file(i) == 7) {
+                buff.append('\n');
+            }
+        }
+        return buff.toString();
+    }
+}
@@ -18,7 +18,6 @@
 
 package com.axorion.chess;
 
-import java.security.InvalidParameterException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -36,10 +35,25 @@ public class ChessBoard
         WHITE,
         BLACK
     }
+    /** Ways the game can be over, NONE if it isn't. */
+    public enum GameEnd {
+        NONE,
+        CHECKMATE,
+        STALEMATE,
+        THREEFOLD_REPETITION,
+        FIFTY_MOVE_RULE
+    }
     public static final int WHITE = 'w';
     public static final int BLACK = 'b';
     public static final int EMPTY_SQUARE = ' ';
 
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    public static final int CASTLE_WHITE_KING_SIDE = 1;
+    public static final int CASTLE_WHITE_QUEEN_SIDE = 2;
+    public static final int CASTLE_BLACK_KING_SIDE = 4;
+    public static final int CASTLE_BLACK_QUEEN_SIDE = 8;
+
     private long gameId = 1000;
     Calendar startDate = GregorianCalendar.getInstance();
     DateFormat pgnFormatter = new SimpleDateFormat("yyyy.MM.dd");
@@ -47,12 +61,32 @@ public class ChessBoard
     String blackPieceLetters = "pnbrqk";
     String whitePieceLetters = "PNBRQK";
 
-    ArrayList<ChessMove> moveCard = new ArrayList<ChessMove>();
+    MoveList moveCard = new MoveList();     //moves of the game in the int form from Move
+    StringBuilder pgnText = new StringBuilder(1024);    //moves of the game in SAN, added to as each move is made
+    int[] pgnOffsets = new int[256];        //where each move starts in pgnText, so takeback can cut it off
+    char[] startFen = new char[FenCodec.MAX_LENGTH];    //position the game started from
+    int startFenLength = 0;
 
     int[] gameBoard = new int[64];
+    long[] pieceBoards = new long[12];  //one bitboard per piece, indexed by the Bitboard piece numbers
+    long whitePieces = 0;
+    long blackPieces = 0;
+    long occupied = 0;
     Side currentMove = Side.WHITE;
     int halfMoveCounter = 0;
     int fullMoveCounter = 0;
+    int enPassantIndex = -1;    //square behind a pawn that just moved two squares, -1 if there isn't one
+    long hashKey = 0;           //Zobrist key of the position, see Zobrist
+    char[] fenBuffer = new char[FenCodec.MAX_LENGTH];
+
+    //undo stack, one entry for each move made with makeMove() so it can be unmade without replaying the game
+    int undoCount = 0;
+    int[] undoMove = new int[256];
+    int[] undoCaptured = new int[256];
+    int[] undoCastleRights = new int[256];
+    int[] undoHalfMoves = new int[256];
+    int[] undoEnPassant = new int[256];
+    long[] undoHashKey = new long[256];     //key of the position before each move, also the repetition history
 
     boolean castleWhiteKingSide = true;
     boolean castleWhiteQueenSide = true;
@@ -90,9 +124,15 @@ public class ChessBoard
 
     String horz = "abcdefgh";
     String vert = "87654321";
+    static final String[] squareNames = new String[64];
 
-    int[] validPawnMoves = {-1,-2};
-    int[] validKnightMoves = {15,17};
+    static {
+        for(int i=0; i<64; i++) {
+            squareNames[i] = new String(new char[] {"abcdefgh".charAt(i%8),"87654321".charAt(i/8)});
+        }
+    }
+
+    int[] validateBuffer = new int[MoveGenerator.MAX_MOVES];
 
     public ChessBoard() {
         resetBoard(Side.WHITE);
@@ -116,6 +156,10 @@ public class ChessBoard
         return pgnFormatter.format(startDate.getTime());
     }
 
+    public Date getGameDate() {
+        return startDate.getTime();
+    }
+
     public void setGameDate(Date d) {
         startDate.setTime(d);
     }
@@ -135,6 +179,37 @@ public class ChessBoard
     public boolean canBlackCastleQueenSide() {
         return castleBlackQueenSide;
     }
+
+    /** Returns the castling rights as CASTLE_* bits. */
+    public int getCastleRights() {
+        int rights = 0;
+        if(castleWhiteKingSide) {
+            rights |= CASTLE_WHITE_KING_SIDE;
+        }
+        if(castleWhiteQueenSide) {
+            rights |= CASTLE_WHITE_QUEEN_SIDE;
+        }
+        if(castleBlackKingSide) {
+            rights |= CASTLE_BLACK_KING_SIDE;
+        }
+        if(castleBlackQueenSide) {
+            rights |= CASTLE_BLACK_QUEEN_SIDE;
+        }
+        return rights;
+    }
+
+    /** Set the castling rights from CASTLE_* bits. */
+    public void setCastleRights(int rights) {
+        castleWhiteKingSide = (rights & CASTLE_WHITE_KING_SIDE) != 0;
+        castleWhiteQueenSide = (rights & CASTLE_WHITE_QUEEN_SIDE) != 0;
+        castleBlackKingSide = (rights & CASTLE_BLACK_KING_SIDE) != 0;
+        castleBlackQueenSide = (rights & CASTLE_BLACK_QUEEN_SIDE) != 0;
+    }
+
+    /** Index of the en passant target square, or -1 if the last move wasn't a pawn moving two squares. */
+    public int getEnPassantIndex() {
+        return enPassantIndex;
+    }
     /**
      * A FEN "record" defines a particular game position, all in one text line and using only the
      * ASCII character set. A text file with only FEN data records should have the file
@@ -159,7 +234,7 @@ public class ChessBoard
      * - En passant target square in algebraic notation. If there's no en passant target square, this
      *   is "-". If a pawn has just made a two-square move, this is the position "behind" the pawn.
      *   This is recorded regardless of whether there is a pawn in position to make an en passant
-     *   capture.
+     *   capture. (toFen() only writes it when a pawn can take, see FenCodec.)
      *
      * - Halfmove clock: This is the number of halfmoves since the last capture or pawn advance. This
      *   is used to determine if a draw can be claimed under the fifty-move rule.
@@ -180,87 +255,10 @@ public class ChessBoard
      *
      * @param fen
      */
-    public void setFenPosition(String fen) {
-        resetBoard(Side.WHITE);
-        String[] sections = fen.split(" ");
-//        System.out.println(sections);
-        parsePieces(sections[0]);
-        parseColor(sections[1]);
-        parseCastling(sections[2]);
-        parseEnpassant(sections[3]);
-        parseHalfMoves(sections[4]);
-        parseFullMoves(sections[5]);
-    }
-
-    private void parsePieces(String fen) {
-        int boardIndex = 0;
-        for(char ch : fen.toCharArray()) {
-//            char ch = fen.charAt(fenPos);
-            if(Character.isDigit(ch)) {
-                int count = ch-'0';
-                putSpaces(count,boardIndex);
-                boardIndex += count;
-            } else if(ch == '/') {
-                continue;
-            } else {
-                gameBoard[boardIndex++] = ch;
-            }
-        }
+    public void setFenPosition(CharSequence fen) {
+        FenCodec.parse(fen,this);
     }
 
-    private void parseColor(String fen) {
-        char ch = fen.charAt(0);
-        if(ch == WHITE) {
-            currentMove = Side.WHITE;
-        } else if(ch == BLACK) {
-            currentMove = Side.BLACK;
-        } else {
-            throw new InvalidParameterException(String.format("Color [%c] is not valid",ch));
-        }
-    }
-
-    private void parseCastling(String fen) {
-        castleWhiteKingSide = false;
-        castleWhiteQueenSide = false;
-        castleBlackKingSide = false;
-        castleBlackQueenSide = false;
-
-        int fenPos = 0;
-        while(fenPos < fen.length()) {
-            char ch = fen.charAt(fenPos);
-            // Castling availability. If neither side can castle, this is "-". Otherwise, this has one or
-            // more letters: "K" (White can castle kingside), "Q" (White can castle queenside),
-            // "k" (Black can castle kingside), and/or "q" (Black can castle queenside).
-            if(ch == 'K') {
-                castleWhiteKingSide = true;
-            } else if(ch == 'Q') {
-                castleWhiteQueenSide = true;
-            } else if(ch == 'k') {
-                castleBlackKingSide = true;
-            } else if(ch == 'q') {
-                castleBlackQueenSide = true;
-            }
-            fenPos++;
-        }
-    }
-
-    private void parseEnpassant(String fen) {
-
-    }
-
-    private void parseHalfMoves(String fen) {
-        halfMoveCounter = Integer.parseInt(fen);
-    }
-
-    private void parseFullMoves(String fen) {
-        fullMoveCounter = Integer.parseInt(fen)-1;
-    }
-
-    private void putSpaces(int numSpaces,int boardIndex) {
-        for(int i =0; i<numSpaces; i++) {
-            gameBoard[boardIndex+i] = ' ';
-        }
-    }
     public int numSquares() {
         return gameBoard.length;
     }
@@ -274,19 +272,103 @@ public class ChessBoard
         for(int i=0; i<64; ++i) {
             gameBoard[i] = letters.charAt(i);
         }
-        moveCard.clear();
+        syncBitboards();
         currentMove = Side.WHITE;
+        halfMoveCounter = 0;
+        fullMoveCounter = 0;
+        enPassantIndex = -1;
+        undoCount = 0;
 
         castleWhiteQueenSide = true;
         castleWhiteKingSide = true;
         castleBlackQueenSide = true;
         castleBlackKingSide = true;
+        hashKey = Zobrist.hash(this);
+        clearMoves();
+    }
+
+    /** Clear the score card and make the current position the one the game starts from. */
+    void clearMoves() {
+        moveCard.clear();
+        pgnText.setLength(0);
+        startFenLength = FenCodec.write(this,startFen,0);
+    }
+
+    /** Returns the FEN of the position the game started from. */
+    public String getStartFen() {
+        return new String(startFen,0,startFenLength);
+    }
+
+    /** Returns true if the game started from the normal starting position. */
+    public boolean isStandardStart() {
+        if(startFenLength != START_FEN.length()) {
+            return false;
+        }
+        for(int i=0; i<startFenLength; i++) {
+            if(startFen[i] != START_FEN.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public void setPosition(String letters) {
         for(int i=0; i<64; ++i) {
             gameBoard[i] = letters.charAt(i);
         }
+        syncBitboards();
+        undoCount = 0;  //moves made before the edit can't be unmade
+        hashKey = Zobrist.hash(this);
+    }
+
+    /** Rebuild the bitboards from the letters in gameBoard. Used after gameBoard has been filled in directly. */
+    protected void syncBitboards() {
+        for(int i=0; i<pieceBoards.length; i++) {
+            pieceBoards[i] = 0;
+        }
+        whitePieces = 0;
+        blackPieces = 0;
+        occupied = 0;
+        for(int i=0; i<64; i++) {
+            addToBitboards(i,Bitboard.pieceIndex(gameBoard[i]));
+        }
+    }
+
+    private void addToBitboards(int index,int piece) {
+        if(piece == Bitboard.NO_PIECE) {
+            return;
+        }
+        long bit = Bitboard.bit(index);
+        pieceBoards[piece] |= bit;
+        hashKey ^= Zobrist.piece(piece,index);
+        if(Bitboard.isWhitePiece(piece)) {
+            whitePieces |= bit;
+        } else {
+            blackPieces |= bit;
+        }
+        occupied |= bit;
+    }
+
+    /** Put the piece letter on the square, updating both gameBoard and the bitboards. The square must be empty. */
+    protected void putPiece(int index,int letter) {
+        gameBoard[index] = letter;
+        addToBitboards(index,Bitboard.pieceIndex(letter));
+    }
+
+    /** Remove whatever is on the square, updating both gameBoard and the bitboards. Returns the letter removed. */
+    protected int clearSquare(int index) {
+        int letter = gameBoard[index];
+        int piece = Bitboard.pieceIndex(letter);
+        if(piece != Bitboard.NO_PIECE) {
+            long mask = ~Bitboard.bit(index);
+            pieceBoards[piece] &= mask;
+            hashKey ^= Zobrist.piece(piece,index);
+            whitePieces &= mask;
+            blackPieces &= mask;
+            occupied &= mask;
+        }
+        gameBoard[index] = EMPTY_SQUARE;
+        return letter;
     }
 
     public void setWhoMoves(Side color) {
@@ -320,120 +402,111 @@ public class ChessBoard
      * @return index into the gameBoard array.
      */
     public int boardToIndex(String coord) {
-        int x=0,y=0,c=0;
-
-        c = coord.charAt(0);
-        for(int i=0; i<8; i++) {
-            if(horz.charAt(i) == c) {
-                x = i;
-                break;
-            }
+        int x = coord.charAt(0)-'a';
+        int y = '8'-coord.charAt(1);
+        if(x < 0 || x > 7) {
+            x = 0;
         }
-
-        c = coord.charAt(1);
-        for(int i=0; i<8; i++) {
-            if(vert.charAt(i) == c) {
-                y = i;
-                break;
-            }
+        if(y < 0 || y > 7) {
+            y = 0;
         }
-
-        int index= y*8+x;
-        return index;
+        return y*8+x;
     }
 
     /** Convert a board index number to a board position like "a1". */
     public String indexToBoard(int index) {
-        int y = index/8;
-        int x = index-y*8;
-        try {
-            return String.format("%s%s",horz.charAt(x),vert.charAt(y));
-        } catch(StringIndexOutOfBoundsException e) {
-            System.out.println("coords x=["+x+"] y=["+y+"] horz=["+horz+"] vert=["+vert+"]");
-            e.printStackTrace();
+        if(index < 0 || index >= squareNames.length) {
+            System.out.println("index ["+index+"] is not on the board");
+            return "";
         }
-        return "";
+        return squareNames[index];
     }
 
-    /** A list of all the moves in chess coordinates like "e2e3". Always has from and to coordinates. */
+    /**
+     * A list of all the moves as ChessMove objects. They are built from the score card each time this is called, so
+     * the captured piece isn't known. Use getMoveList() to look at the moves without creating objects.
+     */
     public List<ChessMove> getScoreCard() {
+        List<ChessMove> list = new ArrayList<ChessMove>(moveCard.size());
+        for(int i=0; i<moveCard.size(); i++) {
+            list.add(new ChessMove(this,moveCard.get(i)));
+        }
+        return list;
+    }
+
+    /** The moves of the game in the int form from Move. Don't change the list, use move() and takeback(). */
+    public MoveList getMoveList() {
         return moveCard;
     }
 
+    /** Returns the number of half moves played in the game. */
+    public int getMoveCount() {
+        return moveCard.size();
+    }
+
+    /** Returns the last move played, or Move.NONE if no moves have been made. */
+    public int getLastMove() {
+        return moveCard.last();
+    }
+
     /** Returns all the moves in a single string in chess board "e1e3" format. For example "g1f3 b8c6 b1c3". */
     public String getMoveString() {
-        StringBuilder moves = new StringBuilder();
-        int fullMove = 0;
+        StringBuilder moves = new StringBuilder(moveCard.size()*6);
         for(int i=0; i<moveCard.size(); i++) {
+            int move = moveCard.get(i);
             if(i>0) {
                 moves.append(" ");
             }
-            moves.append(moveCard.get(i));
+            moves.append(squareNames[Move.from(move)]);
+            if(Move.isCapture(move)) {
+                moves.append('x');
+            }
+            moves.append(squareNames[Move.to(move)]);
+            if(Move.isPromotion(move)) {
+                moves.append(Character.toLowerCase(Bitboard.pieceLetter(Move.promotion(move))));
+            }
         }
         return moves.toString();
     }
 
+    /**
+     * Returns the moves in PGN notation, like "1.d4 e5 2.dxe5". The text is built up as each move is made, so this
+     * doesn't replay the game. A game set up from a FEN starts with its own move number, "8...Nf6" if black moves first.
+     */
     public String getMovesPgn() {
-        ChessBoard board = new ChessBoard();
-        StringBuilder buff = new StringBuilder();
-        StringBuilder temp = new StringBuilder();
-        int moveNumber = 0;
-        for(ChessMove move : moveCard) {
-            moveNumber = board.fullMoveCounter+1;
-            Side currentMove = board.currentMove;
-            if(currentMove == Side.WHITE) {
-                temp.append(moveNumber+".");
-            } else {
-                temp.append(' ');
-            }
-
-            if(move.isCastleKingSide()) {
-                temp.append("O-O");
-            } else if(move.isCastleQueenSide()) {
-                temp.append("O-O-O");
-            } else {
-                String from = move.getFrom();
-                String to = move.getTo();
-                char pieceFrom = move.getMovedPiece();
-                char pieceTo = (char)board.pieceAt(to);
-                if(pieceFrom >= 'a') {
-                    pieceFrom = (char)(pieceFrom-'a'+'A');
-                }
-                boolean take = pieceTo != EMPTY_SQUARE;
-                if(pieceFrom == 'P') {
-                    if(take) {
-                        temp.append(from.charAt(0)+"x");
-                    }
-                    temp.append(to);
-                } else {
-                    temp.append(pieceFrom);
-                    if(pieceFrom == 'n' || pieceFrom == 'N' || pieceFrom == 'r' || pieceFrom == 'R')
-                        temp.append(from.charAt(0));
-                    if(take) {
-                        temp.append('x');
-                    }
-                    temp.append(to);
-                }
-            }
-
-            if(currentMove == Side.BLACK) {
-                if(moveNumber > 1) {
-                    buff.append(' ');
-                }
-                buff.append(temp.toString());
-                temp.delete(0,buff.length());
-            }
+        return pgnText.toString();
+    }
 
-            board.move(move);
+    /**
+     * Returns the PGN move text starting at the given half move, with the space in front of it, for adding just the
+     * new moves to a display.
+     */
+    public String getMovesPgn(int fromMove) {
+        if(fromMove <= 0) {
+            return getMovesPgn();
         }
-        //check if we have a half move
-        if(temp.length()>0)
-            if(moveNumber > 1) {
-                buff.append(' ');
-            }
-        buff.append(temp.toString());
+        if(fromMove >= moveCard.size()) {
+            return "";
+        }
+        return pgnText.substring(pgnOffsets[fromMove]);
+    }
 
-        return buff.toString();
+    /** Add the move to the PGN text. Called before the move is made, since SAN depends on the position. */
+    private void addPgn(int move) {
+        int ply = moveCard.size();
+        if(ply == pgnOffsets.length) {
+            pgnOffsets = Arrays.copyOf(pgnOffsets,ply*2);
+        }
+        pgnOffsets[ply] = pgnText.length();
+        if(ply > 0) {
+            pgnText.append(' ');
+        }
+        if(currentMove == Side.WHITE) {
+            pgnText.append(fullMoveCounter+1).append('.');
+        } else if(ply == 0) {
+            pgnText.append(fullMoveCounter+1).append("...");
+        }
+        PgnWriter.appendSan(this,move,pgnText);
     }
 
     /**
@@ -469,58 +542,234 @@ public class ChessBoard
     /** Return what piece is at the chess coordinate specified, like "a1" would return 'R' on a new board. */
     public int pieceAt(String s) {
         if(s.length() == 2) {
-            int index = boardToIndex(s.substring(0,2));
-            return gameBoard[index];
+            return gameBoard[boardToIndex(s)];
         }
         return 0;
     }
 
+    /** Returns true if there is a piece of either color on the square. */
+    public boolean isOccupied(int index) {
+        return (occupied & Bitboard.bit(index)) != 0;
+    }
+
+    /** Returns true if there is a white piece on the square. */
+    public boolean isWhiteAt(int index) {
+        return (whitePieces & Bitboard.bit(index)) != 0;
+    }
+
+    /** Returns true if there is a black piece on the square. */
+    public boolean isBlackAt(int index) {
+        return (blackPieces & Bitboard.bit(index)) != 0;
+    }
+
+    /** Returns the bitboard for one piece, using the piece numbers in Bitboard. */
+    public long getPieces(int piece) {
+        return pieceBoards[piece];
+    }
+
+    public long getWhitePieces() {
+        return whitePieces;
+    }
+
+    public long getBlackPieces() {
+        return blackPieces;
+    }
+
+    public long getOccupied() {
+        return occupied;
+    }
+
     public ChessMove move(ChessMove m) {
-        gameBoard[m.getToIndex()] = gameBoard[m.getFromIndex()];
-        gameBoard[m.getFromIndex()] = EMPTY_SQUARE;
-        checkForCastle(m);
-        moveCard.add(m);
+        move(encodeMove(m));
+        return m;
+    }
+
+    /** Play a move in the int form from Move as part of the game, adding it to the score card. */
+    public void move(int move) {
+        addPgn(move);
+        makeMove(move);
+        moveCard.add(move);
+    }
+
+    /**
+     * Pack the move into the int form MoveGenerator uses, working out the flags from the current position. A pawn
+     * reaching the last rank without a promotion letter is promoted to a queen, since the physical board can't tell us
+     * what piece was swapped in.
+     */
+    public int encodeMove(ChessMove m) {
+        int from = m.getFromIndex();
+        int to = m.getToIndex();
+        int piece = Bitboard.pieceIndex(gameBoard[from]);
+        int promotion = 0;
+        int flags = isOccupied(to) ? Move.FLAG_CAPTURE : 0;
+        if(piece == Bitboard.WHITE_PAWN || piece == Bitboard.BLACK_PAWN) {
+            if(to == enPassantIndex) {
+                flags |= Move.FLAG_CAPTURE | Move.FLAG_EN_PASSANT;
+            } else if(Math.abs(to-from) == 16) {
+                flags |= Move.FLAG_DOUBLE_PUSH;
+            }
+            if(to < 8 || to >= 56) {
+                char letter = m.isPromoted() ? m.getPromotedTo() : 'q';
+                letter = piece == Bitboard.WHITE_PAWN ? Character.toUpperCase(letter) : Character.toLowerCase(letter);
+                promotion = Bitboard.pieceIndex(letter);
+            }
+        } else if((piece == Bitboard.WHITE_KING && from == 60 || piece == Bitboard.BLACK_KING && from == 4) && Math.abs(to-from) == 2) {
+            flags |= Move.FLAG_CASTLE;
+        }
+        return Move.encode(from,to,piece,promotion,flags);
+    }
+
+    /**
+     * Make a move in the packed int form on the position. Only the position is changed, the move isn't added to the
+     * score card. Used when searching or counting moves, use move() for moves that are part of the game.
+     */
+    public void makeMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        boolean white = currentMove == Side.WHITE;
+
+        if(undoCount == undoMove.length) {
+            growUndo();
+        }
+        undoMove[undoCount] = move;
+        undoCastleRights[undoCount] = getCastleRights();
+        undoHalfMoves[undoCount] = halfMoveCounter;
+        undoEnPassant[undoCount] = enPassantIndex;
+        undoCaptured[undoCount] = EMPTY_SQUARE;
+        undoHashKey[undoCount] = hashKey;
+        hashKey ^= Zobrist.CASTLING[undoCastleRights[undoCount]] ^ Zobrist.enPassant(this);
+
         halfMoveCounter++;
-        if(gameBoard[m.getToIndex()] == 'p' || gameBoard[m.getToIndex()] == 'P' || m.isCapture()) {
+        if((move & Move.FLAG_EN_PASSANT) != 0) {
+            undoCaptured[undoCount] = clearSquare(white ? to+8 : to-8);
+            halfMoveCounter = 0;
+        } else if(isOccupied(to)) {
+            undoCaptured[undoCount] = clearSquare(to);
             halfMoveCounter = 0;
         }
-        if(currentMove == Side.WHITE) {
+        undoCount++;
+        int letter = clearSquare(from);
+        if(letter == 'P' || letter == 'p') {
+            halfMoveCounter = 0;
+        }
+        int promotion = Move.promotion(move);
+        if(promotion != 0) {
+            letter = Bitboard.pieceLetter(promotion);
+        }
+        putPiece(to,letter);
+
+        if((move & Move.FLAG_CASTLE) != 0) {
+            switch(to) {
+                case 62: putPiece(61,clearSquare(63)); break;
+                case 58: putPiece(59,clearSquare(56)); break;
+                case 6:  putPiece(5,clearSquare(7)); break;
+                case 2:  putPiece(3,clearSquare(0)); break;
+            }
+        }
+        updateCastleRights(from);
+        updateCastleRights(to);
+        enPassantIndex = (move & Move.FLAG_DOUBLE_PUSH) != 0 ? (from+to)/2 : -1;
+
+        if(white) {
             currentMove = Side.BLACK;
         } else {
             currentMove = Side.WHITE;
             fullMoveCounter++;
         }
-        return m;
+        hashKey ^= Zobrist.CASTLING[getCastleRights()] ^ Zobrist.enPassant(this) ^ Zobrist.BLACK_TO_MOVE;
     }
 
-    protected void checkForCastle(ChessMove m) {
+    /**
+     * Take back the last move made with makeMove(), restoring the captured piece, castling rights, half move clock and
+     * en passant square from the undo stack. The score card isn't changed, use takeback() for game moves.
+     */
+    public void unmakeMove() {
+        undoCount--;
+        int move = undoMove[undoCount];
+        int from = Move.from(move);
+        int to = Move.to(move);
+
         if(currentMove == Side.WHITE) {
-            if(m.isCastleKingSide()) {
-                castleWhiteKingSide = false;
-                castleWhiteQueenSide = false;
-                gameBoard[63] = EMPTY_SQUARE;
-                gameBoard[61] = 'R';
-            } else if(m.isCastleQueenSide()) {
+            currentMove = Side.BLACK;
+            fullMoveCounter--;
+        } else {
+            currentMove = Side.WHITE;
+        }
+        boolean white = currentMove == Side.WHITE;
+
+        int letter = clearSquare(to);
+        if(Move.promotion(move) != 0) {
+            letter = white ? 'P' : 'p';
+        }
+        putPiece(from,letter);
+        int captured = undoCaptured[undoCount];
+        if(captured != EMPTY_SQUARE) {
+            putPiece((move & Move.FLAG_EN_PASSANT) != 0 ? (white ? to+8 : to-8) : to,captured);
+        }
+        if((move & Move.FLAG_CASTLE) != 0) {
+            switch(to) {
+                case 62: putPiece(63,clearSquare(61)); break;
+                case 58: putPiece(56,clearSquare(59)); break;
+                case 6:  putPiece(7,clearSquare(5)); break;
+                case 2:  putPiece(0,clearSquare(3)); break;
+            }
+        }
+        setCastleRights(undoCastleRights[undoCount]);
+        halfMoveCounter = undoHalfMoves[undoCount];
+        enPassantIndex = undoEnPassant[undoCount];
+        hashKey = undoHashKey[undoCount];
+    }
+
+    private void growUndo() {
+        int size = undoMove.length*2;
+        undoMove = Arrays.copyOf(undoMove,size);
+        undoCaptured = Arrays.copyOf(undoCaptured,size);
+        undoCastleRights = Arrays.copyOf(undoCastleRights,size);
+        undoHalfMoves = Arrays.copyOf(undoHalfMoves,size);
+        undoEnPassant = Arrays.copyOf(undoEnPassant,size);
+        undoHashKey = Arrays.copyOf(undoHashKey,size);
+    }
+
+    /** A king or rook moving from, or a rook being captured on, its starting square loses that castling right. */
+    private void updateCastleRights(int index) {
+        switch(index) {
+            case 60:
                 castleWhiteKingSide = false;
                 castleWhiteQueenSide = false;
-                gameBoard[56] = EMPTY_SQUARE;
-                gameBoard[59] = 'R';
-            }
-        } else {
-            if(m.isCastleKingSide()) {
-                castleBlackKingSide = false;
-                castleBlackQueenSide = false;
-                gameBoard[7] = EMPTY_SQUARE;
-                gameBoard[5] = 'r';
-            } else if(m.isCastleQueenSide()) {
+                break;
+            case 63: castleWhiteKingSide = false; break;
+            case 56: castleWhiteQueenSide = false; break;
+            case 4:
                 castleBlackKingSide = false;
                 castleBlackQueenSide = false;
-                gameBoard[0] = EMPTY_SQUARE;
-                gameBoard[3] = 'r';
-            }
+                break;
+            case 7: castleBlackKingSide = false; break;
+            case 0: castleBlackQueenSide = false; break;
         }
     }
 
+    /**
+     * Copy the position, but not the score card, undo stack or game details, from another board. Moves made on the
+     * copy can only be unmade back to the copied position.
+     */
+    public void copyPosition(ChessBoard other) {
+        undoCount = 0;
+        System.arraycopy(other.gameBoard,0,gameBoard,0,gameBoard.length);
+        System.arraycopy(other.pieceBoards,0,pieceBoards,0,pieceBoards.length);
+        whitePieces = other.whitePieces;
+        blackPieces = other.blackPieces;
+        occupied = other.occupied;
+        currentMove = other.currentMove;
+        halfMoveCounter = other.halfMoveCounter;
+        fullMoveCounter = other.fullMoveCounter;
+        enPassantIndex = other.enPassantIndex;
+        hashKey = other.hashKey;
+        castleWhiteKingSide = other.castleWhiteKingSide;
+        castleWhiteQueenSide = other.castleWhiteQueenSide;
+        castleBlackKingSide = other.castleBlackKingSide;
+        castleBlackQueenSide = other.castleBlackQueenSide;
+    }
+
     /** Enter a move in the form of "e2e4". Returns a move object, or null if move was not valid. */
     public ChessMove move(String s) {
         if(s.length() >= 4) {
@@ -542,36 +791,106 @@ public class ChessBoard
     }
 
     public boolean isValid(ChessMove m) {
-        return true;
+        int promotion = 0;
+        if(m.isPromoted()) {
+            char letter = m.getPromotedTo();
+            promotion = Bitboard.pieceIndex(currentMove == Side.WHITE ? Character.toUpperCase(letter) : Character.toLowerCase(letter));
+        }
+        return MoveGenerator.isLegal(this,m.getFromIndex(),m.getToIndex(),promotion,validateBuffer);
+    }
+
+    /** Returns the legal moves for the side to move in "e2e4" form. */
+    public List<String> getLegalMoves() {
+        int count = MoveGenerator.generateLegal(this,validateBuffer,0);
+        List<String> moves = new ArrayList<String>(count);
+        for(int i=0; i<count; i++) {
+            moves.add(Move.toEan(validateBuffer[i]));
+        }
+        return moves;
+    }
+
+    /** Returns true if there is an en passant square and the side to move has a pawn that can take on it. */
+    public boolean canCaptureEnPassant() {
+        if(enPassantIndex < 0) {
+            return false;
+        }
+        boolean white = currentMove == Side.WHITE;
+        long pawns = pieceBoards[white ? Bitboard.WHITE_PAWN : Bitboard.BLACK_PAWN];
+        return (MoveGenerator.pawnAttacks(!white,enPassantIndex) & pawns) != 0;
+    }
+
+    /** Returns true if the side to move is in check. */
+    public boolean isInCheck() {
+        return MoveGenerator.isInCheck(this);
+    }
+
+    /** Zobrist key of the position. Equal positions, with the same side to move and rights, have equal keys. */
+    public long getHashKey() {
+        return hashKey;
+    }
+
+    /**
+     * Returns how many times the current position came up earlier, counting back to the last capture or pawn move since
+     * nothing before that can repeat. Only moves made since the board was set up are known.
+     */
+    public int getRepetitionCount() {
+        int count = 0;
+        int oldest = Math.max(0,undoCount-halfMoveCounter);
+        for(int i=undoCount-2; i>=oldest; i-=2) {
+            if(undoHashKey[i] == hashKey) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Returns true if the current position has now come up three times. */
+    public boolean isThreefoldRepetition() {
+        return getRepetitionCount() >= 2;
+    }
+
+    /** Returns true if there have been 50 moves each without a capture or pawn move. */
+    public boolean isFiftyMoveRule() {
+        return halfMoveCounter >= 100;
     }
 
+    /** Returns how the game is over, or GameEnd.NONE if it isn't. */
+    public GameEnd getGameEnd() {
+        if(MoveGenerator.generateLegal(this,validateBuffer,0) == 0) {
+            return isInCheck() ? GameEnd.CHECKMATE : GameEnd.STALEMATE;
+        }
+        if(isThreefoldRepetition()) {
+            return GameEnd.THREEFOLD_REPETITION;
+        }
+        if(isFiftyMoveRule()) {
+            return GameEnd.FIFTY_MOVE_RULE;
+        }
+        return GameEnd.NONE;
+    }
+
+    /** Returns true if the game is over by mate, stalemate, repetition or the fifty move rule. */
+    public boolean isGameOver() {
+        return getGameEnd() != GameEnd.NONE;
+    }
+
+    /**
+     * Take back the last move of the game. The board is restored from the undo stack, so it costs the same no matter
+     * how long the game is. Returns the move with from and to swapped so the player can be shown how to put the pieces
+     * back, or null if there are no moves.
+     */
     public ChessMove takeback() {
         if(moveCard.size() == 0)
             return null;
-        int index = moveCard.size()-1;
-        ChessMove move = moveCard.get(index);
+        int last = moveCard.removeLast();
+        pgnText.setLength(pgnOffsets[moveCard.size()]);
+        if(undoCount > 0) {
+            unmakeMove();
+        }
+        ChessMove move = new ChessMove(this,last);
         move.takeback();
-        moveCard.remove(index);
-        replayMoves();
         return move;
     }
 
-    /** Replay all moves so board state is restored. */
-    private void replayMoves() {
-        ChessBoard replay = new ChessBoard();
-        for(ChessMove move : moveCard) {
-            replay.move(move);
-        }
-        this.gameBoard = replay.gameBoard;
-        this.currentMove = replay.currentMove;
-        this.halfMoveCounter = replay.halfMoveCounter;
-        this.fullMoveCounter = replay.fullMoveCounter;
-        this.castleWhiteKingSide = replay.castleWhiteKingSide;
-        this.castleWhiteQueenSide = replay.castleWhiteQueenSide;
-        this.castleBlackKingSide = replay.castleBlackKingSide;
-        this.castleBlackQueenSide = replay.castleBlackQueenSide;
-    }
-
     public String toLetters() {
         StringBuilder letters = new StringBuilder();
         for(int value : gameBoard) {
@@ -581,61 +900,25 @@ public class ChessBoard
     }
 
     public String toFen() {
-        StringBuilder fen = new StringBuilder();
-        int emptyCount = 0;
-
-        for(int i=0; i<gameBoard.length; ++i) {
-            if(i>0 && i%8==0) {
-                if(emptyCount > 0) {
-                    fen.append(emptyCount);
-                }
-                emptyCount = 0;
-                fen.append('/');
-            }
-
-            if(gameBoard[i] == EMPTY_SQUARE) {
-                emptyCount++;
-            } else {
-                if(emptyCount > 0) {
-                    fen.append(emptyCount);
-                    emptyCount = 0;
-                }
-                fen.append((char)gameBoard[i]);
-            }
-        }
-        if(emptyCount>0) {
-            fen.append(emptyCount);
-        }
-
-        //what side plays
-        fen.append(" ");
-        if(currentMove == Side.WHITE)
-            fen.append('w');
-        else
-            fen.append('b');
-        fen.append(" ");
-
-        fen.append((castleWhiteKingSide ?"K":""));
-        fen.append((castleWhiteQueenSide?"Q":""));
-        fen.append((castleBlackKingSide ?"k":""));
-        fen.append((castleBlackQueenSide?"q":""));
-
-        fen.append(" "+"-");  //todo En passant target square not implemented
-
-        fen.append(" "+halfMoveCounter);
-        fen.append(" "+(fullMoveCounter+1));
+        return new String(fenBuffer,0,FenCodec.write(this,fenBuffer,0));
+    }
 
-        return fen.toString();
+    /**
+     * Write the FEN of the position into buffer, which needs room for FenCodec.MAX_LENGTH chars. Returns the number
+     * of chars written. Unlike toFen() nothing is allocated.
+     */
+    public int toFen(char[] buffer) {
+        return FenCodec.write(this,buffer,0);
     }
 
     /** Returns if the given piece is white. */
     public boolean isWhite(char piece) {
-        return Character.isUpperCase(piece);
+        return piece >= 'A' && piece <= 'Z';
     }
 
     /** Returns if the given piece is black. */
     public boolean isBlack(char piece) {
-        return Character.isLowerCase(piece);
+        return piece >= 'a' && piece <= 'z';
     }
 
     public String toString() {
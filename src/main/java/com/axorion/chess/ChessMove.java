@@ -52,14 +52,14 @@ public class ChessMove {
         this.to = board.to(ean);
         this.fromIndex = board.boardToIndex(from);
         this.toIndex = board.boardToIndex(to);
-        this.movedPiece = (char)board.pieceAt(from);
+        this.movedPiece = board.pieceAt(fromIndex);
         this.takebackMove = false;
 
         checkForCastle();
 
-        if(board.pieceAt(to) != ChessBoard.EMPTY_SQUARE) {
+        if(board.isOccupied(toIndex)) {
             capture = true;
-            capturedPiece = (char)board.pieceAt(to);
+            capturedPiece = board.pieceAt(toIndex);
         }
 
         if(ean.length() == 5) {
@@ -67,6 +67,37 @@ public class ChessMove {
         }
     }
 
+    /**
+     * Make a ChessMove from a move in the int form from Move, without parsing any strings. Like the other constructor
+     * the captured piece is read from the board, so build it before the move is made to know what was captured.
+     *
+     * @param board Source board.
+     * @param move move packed into an int.
+     */
+    public ChessMove(ChessBoard board,int move) {
+        this.board = board;
+        this.fromIndex = Move.from(move);
+        this.toIndex = Move.to(move);
+        this.from = ChessBoard.squareNames[fromIndex];
+        this.to = ChessBoard.squareNames[toIndex];
+        this.movedPiece = Bitboard.pieceLetter(Move.piece(move));
+        this.takebackMove = false;
+        this.isCastleKingSide = Move.isCastleKingSide(move);
+        this.isCastleQueenSide = Move.isCastleQueenSide(move);
+
+        //same as the other constructor, en passant isn't a capture since nothing is lifted from the to square
+        if(Move.isCapture(move) && !Move.isEnPassant(move)) {
+            capture = true;
+            if(board.isOccupied(toIndex)) {
+                capturedPiece = board.pieceAt(toIndex);
+            }
+        }
+
+        if(Move.isPromotion(move)) {
+            promotedTo = Character.toLowerCase(Bitboard.pieceLetter(Move.promotion(move)));
+        }
+    }
+
     protected void checkForCastle() {
         if(movedPiece == 'K') {
             if(fromIndex == 60 && toIndex == 62 && board.castleWhiteKingSide) {
@@ -0,0 +1,299 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+package com.axorion.chess;
+
+import java.security.InvalidParameterException;
+
+/**
+ * Reads and writes FEN without building any intermediate strings. parse() walks any CharSequence a character at a
+ * time, and write() fills in a char[] the caller keeps around, so saving the position after every move or handing it
+ * to Stockfish doesn't make garbage.
+ *
+ * <pre>
+ *     rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1
+ * </pre>
+ *
+ * The en passant square is read as given, but only written when the side to move has a pawn that can take on it,
+ * the same way Stockfish writes it. That way a position has one FEN however it was reached.
+ */
+public class FenCodec {
+    /** Longest FEN write() can produce: 64 squares, 7 slashes, the other fields and two 10 digit counters. */
+    public static final int MAX_LENGTH = 104;
+
+    /**
+     * Set up the board from the FEN. The score card and undo stack are cleared. The half move and full move fields
+     * can be left off, they default to 0 and 1. The whole FEN is read before the board is touched, so a bad one leaves
+     * the board as it was.
+     *
+     * @throws InvalidParameterException if the FEN can't be read.
+     */
+    public static void parse(CharSequence fen,ChessBoard board) {
+        int length = fen.length();
+        int piecesStart = skipSpaces(fen,0);
+
+        //pieces, starting from a8, only checked for now
+        int pos = readPieces(fen,piecesStart,null);
+
+        //side to move
+        pos = skipSpaces(fen,pos);
+        char ch = pos < length ? fen.charAt(pos++) : ' ';
+        ChessBoard.Side side;
+        if(ch == ChessBoard.WHITE) {
+            side = ChessBoard.Side.WHITE;
+        } else if(ch == ChessBoard.BLACK) {
+            side = ChessBoard.Side.BLACK;
+        } else {
+            throw new InvalidParameterException(String.format("Color [%c] is not valid",ch));
+        }
+
+        //castling, "-" or some of KQkq
+        pos = skipSpaces(fen,pos);
+        int rights = 0;
+        while(pos < length && fen.charAt(pos) != ' ') {
+            ch = fen.charAt(pos++);
+            switch(ch) {
+                case 'K': rights |= ChessBoard.CASTLE_WHITE_KING_SIDE; break;
+                case 'Q': rights |= ChessBoard.CASTLE_WHITE_QUEEN_SIDE; break;
+                case 'k': rights |= ChessBoard.CASTLE_BLACK_KING_SIDE; break;
+                case 'q': rights |= ChessBoard.CASTLE_BLACK_QUEEN_SIDE; break;
+                case '-': break;
+                default:
+                    throw error(fen,String.format("castling [%c] is not valid",ch));
+            }
+        }
+
+        //en passant, "-" or the square behind the pawn that just moved two squares
+        pos = skipSpaces(fen,pos);
+        int enPassant = -1;
+        if(pos < length && fen.charAt(pos) == '-') {
+            pos++;
+        } else if(pos+1 < length) {
+            boolean white = side == ChessBoard.Side.WHITE;
+            char file = fen.charAt(pos);
+            char rank = fen.charAt(pos+1);
+            if(file < 'a' || file > 'h' || rank != (white ? '6' : '3')) {
+                throw error(fen,"en passant square is not valid");
+            }
+            enPassant = ('8'-rank)*8+file-'a';
+            //the pawn is in front of the square, and the square and the one it came from are empty
+            int pawn = enPassant+(white ? 8 : -8);
+            int from = enPassant-(white ? 8 : -8);
+            if(pieceAt(fen,piecesStart,pawn) != (white ? 'p' : 'P')
+                    || pieceAt(fen,piecesStart,enPassant) != ChessBoard.EMPTY_SQUARE
+                    || pieceAt(fen,piecesStart,from) != ChessBoard.EMPTY_SQUARE) {
+                throw error(fen,"en passant square is not behind a pawn that just moved two squares");
+            }
+            pos += 2;
+        }
+
+        //half move clock and full move number, both optional
+        pos = skipSpaces(fen,pos);
+        int halfMoves = 0;
+        int fullMoves = 0;
+        if(pos < length) {
+            halfMoves = parseNumber(fen,pos);
+            pos = skipSpaces(fen,skipNumber(fen,pos));
+            if(pos < length) {
+                fullMoves = Math.max(1,parseNumber(fen,pos))-1;
+            }
+        }
+
+        //all of it is good, set up the board
+        readPieces(fen,piecesStart,board.gameBoard);
+        board.currentMove = side;
+        board.setCastleRights(rights);
+        board.enPassantIndex = enPassant;
+        board.halfMoveCounter = halfMoves;
+        board.fullMoveCounter = fullMoves;
+        board.undoCount = 0;
+        board.syncBitboards();
+        board.hashKey = Zobrist.hash(board);
+        board.clearMoves();
+    }
+
+    /**
+     * Read the piece placement starting at pos into squares, or only check it if squares is null. Returns the position
+     * after it.
+     */
+    private static int readPieces(CharSequence fen,int pos,int[] squares) {
+        int length = fen.length();
+        int index = 0;
+        int rankEnd = 8;    //squares up to the end of the rank being read, each rank is ended by exactly one '/'
+        while(pos < length && fen.charAt(pos) != ' ') {
+            char ch = fen.charAt(pos++);
+            if(ch >= '1' && ch <= '8') {
+                int count = ch-'0';
+                if(index+count > 64) {
+                    throw error(fen,"too many squares");
+                }
+                if(index+count > rankEnd) {
+                    throw error(fen,"rank is not 8 squares");
+                }
+                for(int i=0; i<count; i++) {
+                    if(squares != null) {
+                        squares[index] = ChessBoard.EMPTY_SQUARE;
+                    }
+                    index++;
+                }
+            } else if(ch == '/') {
+                if(index != rankEnd || rankEnd == 64) {
+                    throw error(fen,"rank is not 8 squares");
+                }
+                rankEnd += 8;
+            } else if(Bitboard.pieceIndex(ch) != Bitboard.NO_PIECE && index < 64) {
+                if(index == rankEnd) {
+                    throw error(fen,"rank is not 8 squares");
+                }
+                if(squares != null) {
+                    squares[index] = ch;
+                }
+                index++;
+            } else {
+                throw error(fen,String.format("piece [%c] is not valid",ch));
+            }
+        }
+        if(index != 64 || rankEnd != 64) {
+            throw error(fen,"not enough squares");
+        }
+        return pos;
+    }
+
+    /** The piece on the square in the piece placement starting at pos, which readPieces() has checked. */
+    private static int pieceAt(CharSequence fen,int pos,int square) {
+        int index = 0;
+        while(index <= square) {
+            char ch = fen.charAt(pos++);
+            if(ch >= '1' && ch <= '8') {
+                index += ch-'0';
+            } else if(ch != '/') {
+                if(index == square) {
+                    return ch;
+                }
+                index++;
+            }
+        }
+        return ChessBoard.EMPTY_SQUARE;
+    }
+
+    /**
+     * Write the board's position as FEN into buffer starting at offset. The buffer needs room for MAX_LENGTH chars.
+     * Returns the number of chars written.
+     */
+    public static int write(ChessBoard board,char[] buffer,int offset) {
+        int pos = offset;
+        for(int row=0; row<8; ++row) {
+            if(row > 0) {
+                buffer[pos++] = '/';
+            }
+            //walk the occupied bits of the row, the gaps between them are the empty counts
+            int rank = (int)(board.occupied >>> (row*8)) & 0xFF;
+            int x = 0;
+            while(rank != 0) {
+                int next = Integer.numberOfTrailingZeros(rank);
+                if(next > x) {
+                    buffer[pos++] = (char)('0'+next-x);
+                }
+                buffer[pos++] = (char)board.gameBoard[row*8+next];
+                rank &= rank-1;
+                x = next+1;
+            }
+            if(x < 8) {
+                buffer[pos++] = (char)('0'+8-x);
+            }
+        }
+
+        buffer[pos++] = ' ';
+        buffer[pos++] = board.currentMove == ChessBoard.Side.WHITE ? 'w' : 'b';
+
+        buffer[pos++] = ' ';
+        int start = pos;
+        if(board.castleWhiteKingSide) {
+            buffer[pos++] = 'K';
+        }
+        if(board.castleWhiteQueenSide) {
+            buffer[pos++] = 'Q';
+        }
+        if(board.castleBlackKingSide) {
+            buffer[pos++] = 'k';
+        }
+        if(board.castleBlackQueenSide) {
+            buffer[pos++] = 'q';
+        }
+        if(pos == start) {
+            buffer[pos++] = '-';
+        }
+
+        buffer[pos++] = ' ';
+        if(board.canCaptureEnPassant()) {
+            buffer[pos++] = (char)('a'+Bitboard.file(board.enPassantIndex));
+            buffer[pos++] = (char)('8'-Bitboard.row(board.enPassantIndex));
+        } else {
+            buffer[pos++] = '-';
+        }
+
+        buffer[pos++] = ' ';
+        pos = writeNumber(board.halfMoveCounter,buffer,pos);
+        buffer[pos++] = ' ';
+        pos = writeNumber(board.fullMoveCounter+1,buffer,pos);
+        return pos-offset;
+    }
+
+    private static int skipSpaces(CharSequence fen,int pos) {
+        while(pos < fen.length() && fen.charAt(pos) == ' ') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int skipNumber(CharSequence fen,int pos) {
+        while(pos < fen.length() && fen.charAt(pos) != ' ') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int parseNumber(CharSequence fen,int pos) {
+        int value = 0;
+        int start = pos;
+        while(pos < fen.length() && fen.charAt(pos) != ' ') {
+            char ch = fen.charAt(pos++);
+            if(ch < '0' || ch > '9' || pos-start > 9) {
+                throw error(fen,"move number is not valid");
+            }
+            value = value*10+ch-'0';
+        }
+        return value;
+    }
+
+    private static int writeNumber(int value,char[] buffer,int pos) {
+        int digits = 1;
+        for(int n=value/10; n>0; n/=10) {
+            digits++;
+        }
+        for(int i=pos+digits-1; i>=pos; i--) {
+            buffer[i] = (char)('0'+value%10);
+            value /= 10;
+        }
+        return pos+digits;
+    }
+
+    private static InvalidParameterException error(CharSequence fen,String reason) {
+        return new InvalidParameterException(String.format("FEN [%s] %s",fen,reason));
+    }
+}
@@ -0,0 +1,363 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+package com.axorion.chess;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Append only store for all the games played on the board. Recording a move adds 4 bytes to the end of the file,
+ * instead of rewriting a text and PGN file for the game, which is a lot easier on the Pi's SD card.
+ *
+ * The data file starts with an 8 byte header, followed by records:
+ * <pre>
+ *   'S' game id (8) start time millis (8) FEN length (1) FEN    start of a game, FEN length 0 for the normal start
+ *   'M' move (3)                                               a move, the 24 bits of the int from Move
+ *   'T'                                                        the last move was taken back
+ *   'E' result (1)                                             game over, 0 "*" 1 "1-0" 2 "0-1" 3 "1/2-1/2"
+ * </pre>
+ *
+ * A second file, with ".idx" added to the name, has 16 bytes for each game, its id and where its 'S' record is, so a
+ * game can be found without reading the whole store. Games are read through a memory map of the data file.
+ *
+ * If the Pi loses power while writing, the end of either file can be cut short. When the store is opened the index is
+ * checked, and the data after the last indexed game is scanned to add any games missing from the index and cut off
+ * any partly written record.
+ */
+public class GameArchive implements Closeable {
+    static final byte[] MAGIC = {'C','L','R','G','A','M','E','1'};
+    static final byte START = 'S';
+    static final byte MOVE = 'M';
+    static final byte TAKEBACK = 'T';
+    static final byte END = 'E';
+    static final int INDEX_ENTRY = 16;
+    static final String[] RESULTS = {"*","1-0","0-1","1/2-1/2"};
+
+    final File dataFile;
+    final File indexFile;
+    FileChannel data;
+    FileChannel index;
+    long size;                  //end of the last complete record
+    MappedByteBuffer map;       //read only map of the data, remapped when the file has grown past it
+    ByteBuffer out = ByteBuffer.allocate(256);
+
+    int gameCount = 0;
+    long[] gameIds = new long[64];
+    long[] gameOffsets = new long[64];
+
+    //game being recorded, so record() only has to write what changed
+    int currentGame = -1;
+    String currentStart = null;
+    boolean currentEnded = false;
+    MoveList currentMoves = new MoveList();
+
+    /** Open the store, creating it if it doesn't exist, and recover from any write that didn't finish. */
+    public GameArchive(File dataFile) throws IOException {
+        this.dataFile = dataFile;
+        this.indexFile = new File(dataFile.getPath()+".idx");
+        File dir = dataFile.getAbsoluteFile().getParentFile();
+        if(dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Unable to create "+dir);
+        }
+        data = new RandomAccessFile(dataFile,"rw").getChannel();
+        index = new RandomAccessFile(indexFile,"rw").getChannel();
+        try {
+            recover();
+        } catch(IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private void recover() throws IOException {
+        size = data.size();
+        if(size == 0) {
+            data.write(ByteBuffer.wrap(MAGIC),0);
+            size = MAGIC.length;
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(MAGIC.length);
+            data.read(header,0);
+            if(size < MAGIC.length || !Arrays.equals(header.array(),MAGIC)) {
+                throw new IOException(dataFile+" is not a game archive");
+            }
+        }
+        MappedByteBuffer buffer = data.map(FileChannel.MapMode.READ_ONLY,0,size);
+
+        //keep index entries up to the first one that doesn't point at a game start
+        ByteBuffer entries = ByteBuffer.allocate((int)Math.min(index.size(),Integer.MAX_VALUE)/INDEX_ENTRY*INDEX_ENTRY);
+        index.read(entries,0);
+        entries.flip();
+        long lastOffset = 0;
+        while(entries.remaining() >= INDEX_ENTRY) {
+            long id = entries.getLong();
+            long offset = entries.getLong();
+            if(offset <= lastOffset || offset >= size || buffer.get((int)offset) != START) {
+                break;
+            }
+            addGame(id,offset);
+            lastOffset = offset;
+        }
+        index.truncate((long)gameCount*INDEX_ENTRY);
+
+        //scan from the last indexed game, indexing new games and stopping at anything that isn't a whole record
+        long pos = gameCount > 0 ? gameOffsets[gameCount-1] : MAGIC.length;
+        while(pos < size) {
+            int length = recordLength(buffer,(int)pos);
+            if(length < 0) {
+                break;
+            }
+            if(buffer.get((int)pos) == START && pos > lastOffset) {
+                addGame(buffer.getLong((int)pos+1),pos);
+                writeIndex(gameCount-1);
+            }
+            pos += length;
+        }
+        if(pos < size) {
+            System.out.println("Game archive "+dataFile+" cut short at "+pos+", dropping "+(size-pos)+" bytes");
+            size = pos;
+            data.truncate(size);
+        }
+    }
+
+    /** Returns the length of the record at pos, or -1 if it isn't a whole record. */
+    private int recordLength(ByteBuffer buffer,int pos) {
+        int available = (int)size-pos;
+        int length;
+        switch(buffer.get(pos)) {
+            case START:
+                if(available < 18) {
+                    return -1;
+                }
+                length = 18+(buffer.get(pos+17) & 0xFF);
+                break;
+            case MOVE: length = 4; break;
+            case TAKEBACK: length = 1; break;
+            case END: length = 2; break;
+            default:
+                return -1;
+        }
+        return length <= available ? length : -1;
+    }
+
+    private void addGame(long id,long offset) {
+        if(gameCount == gameIds.length) {
+            gameIds = Arrays.copyOf(gameIds,gameCount*2);
+            gameOffsets = Arrays.copyOf(gameOffsets,gameCount*2);
+        }
+        gameIds[gameCount] = id;
+        gameOffsets[gameCount] = offset;
+        gameCount++;
+    }
+
+    private void writeIndex(int game) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY);
+        entry.putLong(gameIds[game]).putLong(gameOffsets[game]).flip();
+        index.write(entry,(long)game*INDEX_ENTRY);
+    }
+
+    public int getGameCount() {
+        return gameCount;
+    }
+
+    public long getGameId(int game) {
+        return gameIds[game];
+    }
+
+    /**
+     * Bring the store up to date with the game on the board. A new game is started if the board's game id or start
+     * position changed, then only the moves made or taken back since the last call are written. When the game is
+     * over the result is written too.
+     */
+    public void record(ChessBoard board) throws IOException {
+        String start = board.isStandardStart() ? "" : board.getStartFen();
+        if(currentGame < 0 || gameIds[currentGame] != board.getGameId() || !start.equals(currentStart)) {
+            startGame(board.getGameId(),board.getGameDate().getTime(),start);
+        }
+
+        MoveList moves = board.getMoveList();
+        int same = 0;
+        while(same < currentMoves.size() && same < moves.size() && currentMoves.get(same) == moves.get(same)) {
+            same++;
+        }
+        while(currentMoves.size() > same) {
+            put(1).put(TAKEBACK);
+            currentMoves.removeLast();
+            currentEnded = false;
+        }
+        for(int i=same; i<moves.size(); i++) {
+            int move = moves.get(i);
+            put(4).put(MOVE).put((byte)(move >>> 16)).put((byte)(move >>> 8)).put((byte)move);
+            currentMoves.add(move);
+            currentEnded = false;
+        }
+        if(!currentEnded && board.isGameOver()) {
+            endGame(PgnWriter.result(board));
+        }
+        flush();
+    }
+
+    /** Write the result of the game being recorded, like "1-0" when black resigns. */
+    public void endGame(String result) throws IOException {
+        int code = Arrays.asList(RESULTS).indexOf(result);
+        put(2).put(END).put((byte)Math.max(0,code));
+        currentEnded = true;
+        flush();
+    }
+
+    private void startGame(long id,long millis,String fen) throws IOException {
+        byte[] fenBytes = fen.getBytes(StandardCharsets.US_ASCII);
+        put(18+fenBytes.length).put(START).putLong(id).putLong(millis).put((byte)fenBytes.length).put(fenBytes);
+        addGame(id,size+out.position()-18-fenBytes.length);
+        flush();
+        writeIndex(gameCount-1);
+        currentGame = gameCount-1;
+        currentStart = fen;
+        currentEnded = false;
+        currentMoves.clear();
+    }
+
+    /** Make room in the write buffer, writing out what's there if needed. */
+    private ByteBuffer put(int length) throws IOException {
+        if(out.remaining() < length) {
+            flush();
+            if(out.capacity() < length) {
+                out = ByteBuffer.allocate(length);
+            }
+        }
+        return out;
+    }
+
+    private void flush() throws IOException {
+        out.flip();
+        while(out.hasRemaining()) {
+            size += data.write(out,size);
+        }
+        out.clear();
+    }
+
+    /** Force everything written out to the card. Not needed after each move, the OS writes it out soon enough. */
+    public void sync() throws IOException {
+        data.force(false);
+        index.force(false);
+    }
+
+    /**
+     * Set the board up with the game, playing its moves and takebacks onto the score card, and return its result. The
+     * game is read through a memory map of the store.
+     */
+    public String readGame(int game,ChessBoard board) throws IOException {
+        if(game < 0 || game >= gameCount) {
+            throw new IndexOutOfBoundsException("Game: "+game+", Games: "+gameCount);
+        }
+        if(map == null || map.capacity() < size) {
+            map = data.map(FileChannel.MapMode.READ_ONLY,0,size);
+        }
+        int pos = (int)gameOffsets[game];
+        int end = game+1 < gameCount ? (int)gameOffsets[game+1] : (int)size;
+
+        board.setGameId(map.getLong(pos+1));
+        board.setGameDate(new Date(map.getLong(pos+9)));
+        int fenLength = map.get(pos+17) & 0xFF;
+        if(fenLength == 0) {
+            board.setFenPosition(ChessBoard.START_FEN);
+        } else {
+            char[] fen = new char[fenLength];
+            for(int i=0; i<fenLength; i++) {
+                fen[i] = (char)map.get(pos+18+i);
+            }
+            board.setFenPosition(new String(fen));
+        }
+        pos += 18+fenLength;
+
+        String result = "*";
+        while(pos < end) {
+            byte type = map.get(pos);
+            if(type == MOVE) {
+                board.move(((map.get(pos+1) & 0xFF) << 16) | ((map.get(pos+2) & 0xFF) << 8) | (map.get(pos+3) & 0xFF));
+                result = "*";
+                pos += 4;
+            } else if(type == TAKEBACK) {
+                board.takeback();
+                result = "*";
+                pos += 1;
+            } else if(type == END) {
+                result = RESULTS[map.get(pos+1) & 3];
+                pos += 2;
+            } else {
+                throw new IOException("Bad record "+type+" at "+pos+" in "+dataFile);
+            }
+        }
+        return result;
+    }
+
+    /** Write one game as PGN. */
+    public void exportPgn(int game,Writer out) throws IOException {
+        ChessBoard board = new ChessBoard();
+        String result = readGame(game,board);
+        PgnWriter.write(board,result,out);
+    }
+
+    /** Write all the games as PGN, with a blank line between them. */
+    public void exportPgn(Writer out) throws IOException {
+        ChessBoard board = new ChessBoard();
+        for(int i=0; i<gameCount; i++) {
+            if(i > 0) {
+                out.write('\n');
+            }
+            String result = readGame(i,board);
+            PgnWriter.write(board,result,out);
+        }
+    }
+
+    public void close() throws IOException {
+        map = null;
+        if(data != null) {
+            data.close();
+        }
+        if(index != null) {
+            index.close();
+        }
+    }
+
+    /**
+     * Export the store as PGN.
+     * <pre>
+     *     java -classpath target/classes com.axorion.chess.GameArchive games/chesslr.games [games.pgn]
+     * </pre>
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length == 0) {
+            System.out.println("Usage: GameArchive archive [out.pgn]");
+            System.exit(1);
+        }
+        try(GameArchive archive = new GameArchive(new File(args[0]))) {
+            Writer out = args.length > 1 ? new FileWriter(args[1]) : new OutputStreamWriter(System.out);
+            archive.exportPgn(out);
+            out.flush();
+            if(args.length > 1) {
+                out.close();
+            }
+        }
+    }
+}
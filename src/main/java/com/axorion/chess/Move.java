@@ -0,0 +1,107 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+package com.axorion.chess;
+
+/**
+ * Helpers for a move packed into an int, so move generation, search and the score card can pass moves around without
+ * creating objects. ChessMove is still used where the physical board needs to track pieces being lifted and put down.
+ *
+ * <pre>
+ *   bits  0-5   from index
+ *   bits  6-11  to index
+ *   bits 12-15  piece number the pawn promotes to, 0 if not a promotion
+ *   bits 16-19  flags, capture, en passant, castle and double pawn push
+ *   bits 20-23  piece number of the piece that is moving
+ * </pre>
+ *
+ * Piece numbers are the ones in Bitboard. A white pawn can't be promoted to, so 0 works as "no promotion", and since no
+ * move goes from a8 to a8, NONE is 0 too.
+ */
+public class Move {
+    /** Not a move, returned when there isn't one. */
+    public static final int NONE = 0;
+
+    public static final int FLAG_CAPTURE = 1 << 16;
+    public static final int FLAG_EN_PASSANT = 1 << 17;
+    public static final int FLAG_CASTLE = 1 << 18;
+    public static final int FLAG_DOUBLE_PUSH = 1 << 19;
+
+    public static int encode(int from,int to,int piece,int promotion,int flags) {
+        return from | (to << 6) | (promotion << 12) | flags | ((piece & 0xF) << 20);
+    }
+
+    public static int from(int move) {
+        return move & 0x3F;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    /** Piece number the pawn promotes to, or 0 if the move isn't a promotion. */
+    public static int promotion(int move) {
+        return (move >>> 12) & 0xF;
+    }
+
+    /** Piece number of the piece that moved. */
+    public static int piece(int move) {
+        return (move >>> 20) & 0xF;
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & FLAG_CAPTURE) != 0;
+    }
+
+    public static boolean isEnPassant(int move) {
+        return (move & FLAG_EN_PASSANT) != 0;
+    }
+
+    public static boolean isCastle(int move) {
+        return (move & FLAG_CASTLE) != 0;
+    }
+
+    /** Castle short, the king lands on the g file. */
+    public static boolean isCastleKingSide(int move) {
+        return isCastle(move) && Bitboard.file(to(move)) == 6;
+    }
+
+    /** Castle long, the king lands on the c file. */
+    public static boolean isCastleQueenSide(int move) {
+        return isCastle(move) && Bitboard.file(to(move)) == 2;
+    }
+
+    public static boolean isDoublePush(int move) {
+        return (move & FLAG_DOUBLE_PUSH) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return promotion(move) != 0;
+    }
+
+    /** Returns the move in "e2e4" form, with a lower case promotion letter if there is one. */
+    public static String toEan(int move) {
+        StringBuilder buff = new StringBuilder(5);
+        buff.append(ChessBoard.squareNames[from(move)]);
+        buff.append(ChessBoard.squareNames[to(move)]);
+        if(isPromotion(move)) {
+            buff.append(Character.toLowerCase(Bitboard.pieceLetter(promotion(move))));
+        }
+        return buff.toString();
+    }
+}
@@ -0,0 +1,370 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+package com.axorion.chess;
+
+/**
+ * Generates the moves for the side to move on a ChessBoard, using the board's bitboards. Nothing is allocated while
+ * generating, moves are written into an int array or MoveList the caller owns, so the same buffer can be reused for
+ * every call. Moves are packed into an int, see Move.
+ *
+ * Pseudo legal moves follow the piece movement rules. Legal moves are the pseudo legal moves that don't leave the
+ * mover's king attacked. Castling is only generated when the king isn't in check and doesn't pass through or land on an
+ * attacked square.
+ */
+public class MoveGenerator {
+    /** Largest number of pseudo legal moves a position can have, with room to spare. */
+    public static final int MAX_MOVES = 256;
+
+    //ray directions, the first four move toward higher indexes, the last four toward lower
+    static final int SOUTH = 0;
+    static final int EAST = 1;
+    static final int SOUTH_EAST = 2;
+    static final int SOUTH_WEST = 3;
+    static final int NORTH = 4;
+    static final int WEST = 5;
+    static final int NORTH_EAST = 6;
+    static final int NORTH_WEST = 7;
+
+    static final long[] KNIGHT_ATTACKS = new long[64];
+    static final long[] KING_ATTACKS = new long[64];
+    static final long[][] PAWN_ATTACKS = new long[2][64];    //[0] squares a white pawn attacks, [1] a black pawn
+    static final long[][] RAYS = new long[8][64];
+
+    private static final long RANK_3 = 0xFFL << 40;
+    private static final long RANK_6 = 0xFFL << 16;
+
+    static {
+        int[][] knight = {{1,2},{2,1},{2,-1},{1,-2},{-1,-2},{-2,-1},{-2,1},{-1,2}};
+        int[][] king = {{1,0},{1,1},{0,1},{-1,1},{-1,0},{-1,-1},{0,-1},{1,-1}};
+        int[][] rays = {{0,1},{1,0},{1,1},{-1,1},{0,-1},{-1,0},{1,-1},{-1,-1}};
+        for(int sq=0; sq<64; sq++) {
+            int x = Bitboard.file(sq);
+            int y = Bitboard.row(sq);
+            KNIGHT_ATTACKS[sq] = offsets(x,y,knight);
+            KING_ATTACKS[sq] = offsets(x,y,king);
+            PAWN_ATTACKS[0][sq] = offsets(x,y,new int[][] {{-1,-1},{1,-1}});
+            PAWN_ATTACKS[1][sq] = offsets(x,y,new int[][] {{-1,1},{1,1}});
+            for(int dir=0; dir<8; dir++) {
+                long ray = 0;
+                int rx = x+rays[dir][0];
+                int ry = y+rays[dir][1];
+                while(rx >= 0 && rx < 8 && ry >= 0 && ry < 8) {
+                    ray |= Bitboard.bit(ry*8+rx);
+                    rx += rays[dir][0];
+                    ry += rays[dir][1];
+                }
+                RAYS[dir][sq] = ray;
+            }
+        }
+    }
+
+    private static long offsets(int x,int y,int[][] deltas) {
+        long board = 0;
+        for(int[] d : deltas) {
+            int nx = x+d[0];
+            int ny = y+d[1];
+            if(nx >= 0 && nx < 8 && ny >= 0 && ny < 8) {
+                board |= Bitboard.bit(ny*8+nx);
+            }
+        }
+        return board;
+    }
+
+    public static long knightAttacks(int sq) {
+        return KNIGHT_ATTACKS[sq];
+    }
+
+    public static long kingAttacks(int sq) {
+        return KING_ATTACKS[sq];
+    }
+
+    /** Squares a pawn of the given color on sq attacks. */
+    public static long pawnAttacks(boolean white,int sq) {
+        return PAWN_ATTACKS[white ? 0 : 1][sq];
+    }
+
+    public static long bishopAttacks(int sq,long occupied) {
+        return rayUp(sq,occupied,SOUTH_EAST) | rayUp(sq,occupied,SOUTH_WEST)
+                | rayDown(sq,occupied,NORTH_EAST) | rayDown(sq,occupied,NORTH_WEST);
+    }
+
+    public static long rookAttacks(int sq,long occupied) {
+        return rayUp(sq,occupied,SOUTH) | rayUp(sq,occupied,EAST)
+                | rayDown(sq,occupied,NORTH) | rayDown(sq,occupied,WEST);
+    }
+
+    public static long queenAttacks(int sq,long occupied) {
+        return bishopAttacks(sq,occupied) | rookAttacks(sq,occupied);
+    }
+
+    /** Ray toward higher indexes, stopping at (and including) the first blocker. */
+    private static long rayUp(int sq,long occupied,int dir) {
+        long ray = RAYS[dir][sq];
+        long blockers = ray & occupied;
+        if(blockers != 0) {
+            ray ^= RAYS[dir][Long.numberOfTrailingZeros(blockers)];
+        }
+        return ray;
+    }
+
+    /** Ray toward lower indexes, stopping at (and including) the first blocker. */
+    private static long rayDown(int sq,long occupied,int dir) {
+        long ray = RAYS[dir][sq];
+        long blockers = ray & occupied;
+        if(blockers != 0) {
+            ray ^= RAYS[dir][63-Long.numberOfLeadingZeros(blockers)];
+        }
+        return ray;
+    }
+
+    /** Returns true if any piece of the given color attacks the square. */
+    public static boolean isSquareAttacked(ChessBoard board,int sq,boolean byWhite) {
+        long[] pb = board.pieceBoards;
+        int base = byWhite ? Bitboard.WHITE_PAWN : Bitboard.BLACK_PAWN;
+        long occupied = board.occupied;
+        if((PAWN_ATTACKS[byWhite ? 1 : 0][sq] & pb[base]) != 0
+                || (KNIGHT_ATTACKS[sq] & pb[base+1]) != 0
+                || (KING_ATTACKS[sq] & pb[base+5]) != 0) {
+            return true;
+        }
+        long diagonal = pb[base+2] | pb[base+4];
+        if(diagonal != 0 && (bishopAttacks(sq,occupied) & diagonal) != 0) {
+            return true;
+        }
+        long straight = pb[base+3] | pb[base+4];
+        return straight != 0 && (rookAttacks(sq,occupied) & straight) != 0;
+    }
+
+    /** Returns true if the side to move is in check. */
+    public static boolean isInCheck(ChessBoard board) {
+        boolean white = board.currentMove == ChessBoard.Side.WHITE;
+        long king = board.pieceBoards[white ? Bitboard.WHITE_KING : Bitboard.BLACK_KING];
+        return king != 0 && isSquareAttacked(board,Bitboard.first(king),!white);
+    }
+
+    /**
+     * Write the legal moves for the side to move into moves, starting at count.
+     * @return the new count, so the number of moves added is the return value minus count.
+     */
+    public static int generateLegal(ChessBoard board,int[] moves,int count) {
+        int end = generatePseudoLegal(board,moves,count);
+        int legal = count;
+        for(int i=count; i<end; i++) {
+            if(leavesKingSafe(board,moves[i])) {
+                moves[legal++] = moves[i];
+            }
+        }
+        return legal;
+    }
+
+    /** Add the legal moves for the side to move to the end of the list. */
+    public static void generateLegal(ChessBoard board,MoveList list) {
+        list.ensureSpace(MAX_MOVES);
+        list.size = generateLegal(board,list.moves,list.size);
+    }
+
+    /**
+     * Write the pseudo legal moves for the side to move into moves, starting at count. Castling moves are already
+     * checked for moving through check.
+     * @return the new count.
+     */
+    public static int generatePseudoLegal(ChessBoard board,int[] moves,int count) {
+        boolean white = board.currentMove == ChessBoard.Side.WHITE;
+        long[] pb = board.pieceBoards;
+        long us = white ? board.whitePieces : board.blackPieces;
+        long them = white ? board.blackPieces : board.whitePieces;
+        long occupied = board.occupied;
+        long empty = ~occupied;
+        int base = white ? Bitboard.WHITE_PAWN : Bitboard.BLACK_PAWN;
+
+        //pawns
+        long pawns = pb[base];
+        int pawn = base;
+        if(white) {
+            long single = (pawns >>> 8) & empty;
+            count = addPawnMoves(moves,count,single,8,pawn,0,true);
+            count = addPawnMoves(moves,count,((single & RANK_3) >>> 8) & empty,16,pawn,Move.FLAG_DOUBLE_PUSH,true);
+            count = addPawnMoves(moves,count,((pawns & ~Bitboard.FILE_A) >>> 9) & them,9,pawn,Move.FLAG_CAPTURE,true);
+            count = addPawnMoves(moves,count,((pawns & ~Bitboard.FILE_H) >>> 7) & them,7,pawn,Move.FLAG_CAPTURE,true);
+        } else {
+            long single = (pawns << 8) & empty;
+            count = addPawnMoves(moves,count,single,-8,pawn,0,false);
+            count = addPawnMoves(moves,count,((single & RANK_6) << 8) & empty,-16,pawn,Move.FLAG_DOUBLE_PUSH,false);
+            count = addPawnMoves(moves,count,((pawns & ~Bitboard.FILE_A) << 7) & them,-7,pawn,Move.FLAG_CAPTURE,false);
+            count = addPawnMoves(moves,count,((pawns & ~Bitboard.FILE_H) << 9) & them,-9,pawn,Move.FLAG_CAPTURE,false);
+        }
+        int ep = board.enPassantIndex;
+        if(ep >= 0) {
+            long attackers = PAWN_ATTACKS[white ? 1 : 0][ep] & pawns;
+            while(attackers != 0) {
+                int from = Bitboard.first(attackers);
+                attackers &= attackers-1;
+                moves[count++] = Move.encode(from,ep,pawn,0,Move.FLAG_CAPTURE | Move.FLAG_EN_PASSANT);
+            }
+        }
+
+        //pieces
+        long targets = ~us;
+        long pieces = pb[base+1];
+        while(pieces != 0) {
+            int from = Bitboard.first(pieces);
+            pieces &= pieces-1;
+            count = addMoves(moves,count,from,KNIGHT_ATTACKS[from] & targets,them,base+1);
+        }
+        pieces = pb[base+2];
+        while(pieces != 0) {
+            int from = Bitboard.first(pieces);
+            pieces &= pieces-1;
+            count = addMoves(moves,count,from,bishopAttacks(from,occupied) & targets,them,base+2);
+        }
+        pieces = pb[base+3];
+        while(pieces != 0) {
+            int from = Bitboard.first(pieces);
+            pieces &= pieces-1;
+            count = addMoves(moves,count,from,rookAttacks(from,occupied) & targets,them,base+3);
+        }
+        pieces = pb[base+4];
+        while(pieces != 0) {
+            int from = Bitboard.first(pieces);
+            pieces &= pieces-1;
+            count = addMoves(moves,count,from,queenAttacks(from,occupied) & targets,them,base+4);
+        }
+        pieces = pb[base+5];
+        if(pieces != 0) {
+            int from = Bitboard.first(pieces);
+            count = addMoves(moves,count,from,KING_ATTACKS[from] & targets,them,base+5);
+            count = addCastling(board,moves,count,white,from);
+        }
+        return count;
+    }
+
+    private static int addMoves(int[] moves,int count,int from,long targets,long them,int piece) {
+        while(targets != 0) {
+            int to = Bitboard.first(targets);
+            targets &= targets-1;
+            moves[count++] = Move.encode(from,to,piece,0,(them & Bitboard.bit(to)) != 0 ? Move.FLAG_CAPTURE : 0);
+        }
+        return count;
+    }
+
+    /** Add pawn moves to each target, the from square is offset from the target. Promotions add all four pieces. */
+    private static int addPawnMoves(int[] moves,int count,long targets,int offset,int pawn,int flags,boolean white) {
+        int queen = white ? Bitboard.WHITE_QUEEN : Bitboard.BLACK_QUEEN;
+        while(targets != 0) {
+            int to = Bitboard.first(targets);
+            targets &= targets-1;
+            int from = to+offset;
+            if(to < 8 || to >= 56) {
+                for(int promotion=queen; promotion>queen-4; promotion--) {
+                    moves[count++] = Move.encode(from,to,pawn,promotion,flags);
+                }
+            } else {
+                moves[count++] = Move.encode(from,to,pawn,0,flags);
+            }
+        }
+        return count;
+    }
+
+    private static int addCastling(ChessBoard board,int[] moves,int count,boolean white,int king) {
+        int home = white ? 60 : 4;
+        if(king != home) {
+            return count;
+        }
+        boolean kingSide = white ? board.castleWhiteKingSide : board.castleBlackKingSide;
+        boolean queenSide = white ? board.castleWhiteQueenSide : board.castleBlackQueenSide;
+        if(!kingSide && !queenSide) {
+            return count;
+        }
+        int rook = white ? Bitboard.WHITE_ROOK : Bitboard.BLACK_ROOK;
+        int kingPiece = white ? Bitboard.WHITE_KING : Bitboard.BLACK_KING;
+        long occupied = board.occupied;
+        if(isSquareAttacked(board,home,!white)) {
+            return count;
+        }
+        if(kingSide
+                && (board.pieceBoards[rook] & Bitboard.bit(home+3)) != 0
+                && (occupied & (Bitboard.bit(home+1) | Bitboard.bit(home+2))) == 0
+                && !isSquareAttacked(board,home+1,!white)
+                && !isSquareAttacked(board,home+2,!white)) {
+            moves[count++] = Move.encode(home,home+2,kingPiece,0,Move.FLAG_CASTLE);
+        }
+        if(queenSide
+                && (board.pieceBoards[rook] & Bitboard.bit(home-4)) != 0
+                && (occupied & (Bitboard.bit(home-1) | Bitboard.bit(home-2) | Bitboard.bit(home-3))) == 0
+                && !isSquareAttacked(board,home-1,!white)
+                && !isSquareAttacked(board,home-2,!white)) {
+            moves[count++] = Move.encode(home,home-2,kingPiece,0,Move.FLAG_CASTLE);
+        }
+        return count;
+    }
+
+    /**
+     * Returns true if the pseudo legal move doesn't leave the mover's king attacked. The move isn't made, the attacks
+     * on the king are worked out from the occupancy the board would have after it.
+     */
+    public static boolean leavesKingSafe(ChessBoard board,int move) {
+        long[] pb = board.pieceBoards;
+        int piece = Move.piece(move);
+        boolean white = Bitboard.isWhitePiece(piece);
+        int ourKing = white ? Bitboard.WHITE_KING : Bitboard.BLACK_KING;
+        int them = white ? Bitboard.BLACK_PAWN : Bitboard.WHITE_PAWN;
+        int to = Move.to(move);
+        long toBit = Bitboard.bit(to);
+        long captured = toBit;
+        if((move & Move.FLAG_EN_PASSANT) != 0) {
+            captured = Bitboard.bit(white ? to+8 : to-8);
+        }
+        int king;
+        if(piece == ourKing) {
+            king = to;
+        } else if(pb[ourKing] != 0) {
+            king = Bitboard.first(pb[ourKing]);
+        } else {
+            return true;    //no king to put in check
+        }
+        long occupied = (board.occupied & ~Bitboard.bit(Move.from(move)) & ~captured) | toBit;
+        long alive = ~captured;
+        if((KNIGHT_ATTACKS[king] & pb[them+1] & alive) != 0
+                || (PAWN_ATTACKS[white ? 0 : 1][king] & pb[them] & alive) != 0
+                || (KING_ATTACKS[king] & pb[them+5]) != 0) {
+            return false;
+        }
+        long diagonal = (pb[them+2] | pb[them+4]) & alive;
+        if(diagonal != 0 && (bishopAttacks(king,occupied) & diagonal) != 0) {
+            return false;
+        }
+        long straight = (pb[them+3] | pb[them+4]) & alive;
+        return straight == 0 || (rookAttacks(king,occupied) & straight) == 0;
+    }
+
+    /**
+     * Returns true if moving from one square to another is legal for the side to move. If the promotion is 0 and the
+     * move is a pawn reaching the last rank, any promotion matches.
+     */
+    public static boolean isLegal(ChessBoard board,int from,int to,int promotion,int[] buffer) {
+        int count = generateLegal(board,buffer,0);
+        for(int i=0; i<count; i++) {
+            int move = buffer[i];
+            if(Move.from(move) == from && Move.to(move) == to && (promotion == 0 || Move.promotion(move) == promotion)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,118 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+package com.axorion.chess;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of moves in the int form from Move. Like an ArrayList, but the moves aren't boxed, so adding and
+ * clearing don't create any objects once the list has grown big enough.
+ */
+public class MoveList {
+    int[] moves;
+    int size = 0;
+
+    public MoveList() {
+        this(MoveGenerator.MAX_MOVES);
+    }
+
+    public MoveList(int capacity) {
+        moves = new int[Math.max(1,capacity)];
+    }
+
+    public void add(int move) {
+        if(size == moves.length) {
+            moves = Arrays.copyOf(moves,size*2);
+        }
+        moves[size++] = move;
+    }
+
+    public int get(int index) {
+        if(index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size);
+        }
+        return moves[index];
+    }
+
+    public void set(int index,int move) {
+        if(index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size);
+        }
+        moves[index] = move;
+    }
+
+    /** Returns the last move, or Move.NONE if the list is empty. */
+    public int last() {
+        return size == 0 ? Move.NONE : moves[size-1];
+    }
+
+    /** Remove and return the last move, or Move.NONE if the list is empty. */
+    public int removeLast() {
+        return size == 0 ? Move.NONE : moves[--size];
+    }
+
+    public int indexOf(int move) {
+        for(int i=0; i<size; i++) {
+            if(moves[i] == move) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean contains(int move) {
+        return indexOf(move) >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /** Make sure there is room for count more moves without growing. */
+    public void ensureSpace(int count) {
+        if(size+count > moves.length) {
+            moves = Arrays.copyOf(moves,Math.max(size+count,moves.length*2));
+        }
+    }
+
+    /** Returns a copy of the moves. */
+    public int[] toArray() {
+        return Arrays.copyOf(moves,size);
+    }
+
+    /** The moves in "e2e4" form separated by spaces. */
+    public String toString() {
+        StringBuilder buff = new StringBuilder(size*5);
+        for(int i=0; i<size; i++) {
+            if(i > 0) {
+                buff.append(' ');
+            }
+            buff.append(Move.toEan(moves[i]));
+        }
+        return buff.toString();
+    }
+}
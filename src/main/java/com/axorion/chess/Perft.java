@@ -0,0 +1,130 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+package com.axorion.chess;
+
+/**
+ * Counts the leaf nodes of the legal move tree to a fixed depth. The counts for the standard test positions are well
+ * known, so if the generator gets them right it is generating exactly the legal moves. Running it as a program checks
+ * the reference positions and reports nodes per second, so we can track how fast the generator is on the Pi.
+ *
+ * <pre>
+ *     java -classpath target/classes com.axorion.chess.Perft [depth]
+ * </pre>
+ */
+public class Perft {
+    /** Reference positions, with the expected node counts for depth 1, 2, 3... */
+    static final String[] POSITIONS = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+    };
+    static final long[][] EXPECTED = {
+            {20,400,8902,197281,4865609,119060324L},
+            {48,2039,97862,4085603,193690690L},
+            {14,191,2812,43238,674624,11030083L},
+            {6,264,9467,422333,15833292L},
+            {44,1486,62379,2103487,89941194L},
+            {46,2079,89890,3894594,164075551L},
+    };
+
+    ChessBoard board = new ChessBoard();
+    int[][] moves;
+
+    public Perft() {
+        this(16);
+    }
+
+    public Perft(int maxDepth) {
+        moves = new int[maxDepth+1][MoveGenerator.MAX_MOVES];
+    }
+
+    /** Count the leaf nodes depth moves deep from the position on the board. The board isn't changed. */
+    public long perft(ChessBoard board,int depth) {
+        if(depth == 0) {
+            return 1;
+        }
+        this.board.copyPosition(board);
+        return count(0,depth);
+    }
+
+    /** Print the node count below each legal move. Handy for finding which move a wrong count comes from. */
+    public long divide(ChessBoard board,int depth) {
+        this.board.copyPosition(board);
+        int count = MoveGenerator.generateLegal(this.board,moves[0],0);
+        long total = 0;
+        for(int i=0; i<count; i++) {
+            this.board.makeMove(moves[0][i]);
+            long nodes = depth > 1 ? count(1,depth-1) : 1;
+            this.board.unmakeMove();
+            System.out.println(Move.toEan(moves[0][i])+": "+nodes);
+            total += nodes;
+        }
+        System.out.println("Total: "+total);
+        return total;
+    }
+
+    private long count(int ply,int depth) {
+        int[] list = moves[ply];
+        int count = MoveGenerator.generateLegal(board,list,0);
+        if(depth == 1) {
+            return count;
+        }
+        long nodes = 0;
+        for(int i=0; i<count; i++) {
+            board.makeMove(list[i]);
+            nodes += count(ply+1,depth-1);
+            board.unmakeMove();
+        }
+        return nodes;
+    }
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        Perft perft = new Perft(depth);
+        ChessBoard board = new ChessBoard();
+        long totalNodes = 0;
+        long totalTime = 0;
+        boolean allPassed = true;
+        for(int i=0; i<POSITIONS.length; i++) {
+            int d = Math.min(depth,EXPECTED[i].length);
+            board.setFenPosition(POSITIONS[i]);
+            long start = System.nanoTime();
+            long nodes = perft.perft(board,d);
+            long time = System.nanoTime()-start;
+            long expected = EXPECTED[i][d-1];
+            boolean passed = nodes == expected;
+            allPassed &= passed;
+            totalNodes += nodes;
+            totalTime += time;
+            System.out.format("%s depth %d nodes %d expected %d %s %dms %d nps%n",
+                    POSITIONS[i],d,nodes,expected,passed ? "ok" : "FAILED",time/1000000,nodesPerSecond(nodes,time));
+        }
+        System.out.format("Total nodes %d in %dms, %d nps%n",totalNodes,totalTime/1000000,nodesPerSecond(totalNodes,totalTime));
+        if(!allPassed) {
+            System.exit(1);
+        }
+    }
+
+    private static long nodesPerSecond(long nodes,long nanos) {
+        return nanos == 0 ? 0 : nodes*1000000000L/nanos;
+    }
+}
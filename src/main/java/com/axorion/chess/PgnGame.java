@@ -0,0 +1,88 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+package com.axorion.chess;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One game read by PgnReader: its tags, the position it starts from, the moves in the int form from Move and the
+ * result. PgnReader fills the same object in for each game, so reading a big database doesn't pile up garbage.
+ */
+public class PgnGame {
+    final Map<String,String> tags = new LinkedHashMap<String,String>();
+    final MoveList moves = new MoveList();
+    String startFen = ChessBoard.START_FEN;
+    String result = "*";
+    String error = null;
+
+    /** Returns the value of a tag like "White" or "Event", or null if the game doesn't have it. */
+    public String getTag(String name) {
+        return tags.get(name);
+    }
+
+    public Map<String,String> getTags() {
+        return tags;
+    }
+
+    public MoveList getMoves() {
+        return moves;
+    }
+
+    public String getStartFen() {
+        return startFen;
+    }
+
+    /** Returns "1-0", "0-1", "1/2-1/2" or "*". */
+    public String getResult() {
+        return result;
+    }
+
+    /** Returns why the moves stopped being read, or null if the whole game was read. */
+    public String getError() {
+        return error;
+    }
+
+    public boolean hasError() {
+        return error != null;
+    }
+
+    /**
+     * Set up the board at the start of the game and play the moves, so they are on its score card. If the game had an
+     * error, the moves up to it are played.
+     */
+    public void replay(ChessBoard board) {
+        board.setFenPosition(startFen);
+        for(int i=0; i<moves.size(); i++) {
+            board.move(moves.get(i));
+        }
+    }
+
+    void clear() {
+        tags.clear();
+        moves.clear();
+        startFen = ChessBoard.START_FEN;
+        result = "*";
+        error = null;
+    }
+
+    public String toString() {
+        return getTag("White")+" - "+getTag("Black")+" "+result+" ("+moves.size()+" moves)";
+    }
+}
@@ -0,0 +1,107 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+package com.axorion.chess;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads every game in PGN files, handing each one to a listener, and keeps count of the games, moves and errors.
+ * Running it as a program reads the files given and reports games per second, so we can see how long a master
+ * database will take to bring in on the Pi.
+ *
+ * <pre>
+ *     java -classpath target/classes com.axorion.chess.PgnImporter games.pgn [more.pgn...]
+ * </pre>
+ */
+public class PgnImporter {
+    /** Told about each game as it is read. The game object is reused, so copy anything that needs to be kept. */
+    public interface GameListener {
+        void gameRead(PgnGame game);
+    }
+
+    long games = 0;
+    long moves = 0;
+    long errors = 0;
+    long nanos = 0;
+
+    /** Read all the games in the file. The PGN spec says files are ISO 8859-1, so that is how they are read. */
+    public void importFile(File file,GameListener listener) throws IOException {
+        try(Reader in = new InputStreamReader(new FileInputStream(file),StandardCharsets.ISO_8859_1)) {
+            importGames(in,listener);
+        }
+    }
+
+    /** Read all the games from in. in isn't closed. */
+    public void importGames(Reader in,GameListener listener) throws IOException {
+        long start = System.nanoTime();
+        PgnReader reader = new PgnReader(in);
+        PgnGame game = new PgnGame();
+        while(reader.next(game)) {
+            games++;
+            moves += game.getMoves().size();
+            if(game.hasError()) {
+                errors++;
+            }
+            if(listener != null) {
+                listener.gameRead(game);
+            }
+        }
+        nanos += System.nanoTime()-start;
+    }
+
+    public long getGameCount() {
+        return games;
+    }
+
+    public long getMoveCount() {
+        return moves;
+    }
+
+    /** Number of games that had a move that couldn't be read. */
+    public long getErrorCount() {
+        return errors;
+    }
+
+    public long getGamesPerSecond() {
+        return nanos == 0 ? 0 : games*1000000000L/nanos;
+    }
+
+    public static void main(String[] args) {
+        if(args.length == 0) {
+            System.out.println("Usage: PgnImporter file.pgn [more.pgn...]");
+            System.exit(1);
+        }
+        PgnImporter importer = new PgnImporter();
+        for(String name : args) {
+            try {
+                importer.importFile(new File(name),game -> {
+                    if(game.hasError()) {
+                        System.out.println(game+": "+game.getError());
+                    }
+                });
+            } catch(IOException e) {
+                System.out.println("Unable to read "+name);
+                e.printStackTrace();
+            }
+        }
+        System.out.format("%d games %d moves %d errors in %dms, %d games/s%n",importer.games,importer.moves,
+                importer.errors,importer.nanos/1000000,importer.getGamesPerSecond());
+    }
+}
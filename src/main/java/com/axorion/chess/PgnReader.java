@@ -0,0 +1,384 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+package com.axorion.chess;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.security.InvalidParameterException;
+
+/**
+ * Reads games from PGN one at a time, in a single pass over the input. Only a fixed size buffer and the current game
+ * are held in memory, so a multi gigabyte database can be read as easily as a single game.
+ *
+ * <pre>
+ *     PgnReader reader = new PgnReader(new FileReader("games.pgn"));
+ *     PgnGame game = new PgnGame();
+ *     while(reader.next(game)) {
+ *         ...
+ *     }
+ * </pre>
+ *
+ * Each SAN move is checked against the legal moves on an internal ChessBoard, so the moves in a PgnGame are always
+ * legal. Comments, variations, NAGs and "%" escape lines are skipped. If a move can't be read the rest of the game's
+ * moves are skipped and PgnGame.getError() says why.
+ */
+public class PgnReader implements Closeable {
+    /** Longest token kept, anything longer can't be a move or a result. */
+    static final int MAX_TOKEN = 32;
+
+    private final Reader in;
+    private final char[] buffer;
+    private int pos = 0;
+    private int limit = 0;
+    private boolean lineStart = true;
+    private final StringBuilder text = new StringBuilder(MAX_TOKEN);
+    private final ChessBoard board = new ChessBoard();
+    private long gameCount = 0;
+    private long moveCount = 0;
+
+    public PgnReader(Reader in) {
+        this(in,64*1024);
+    }
+
+    public PgnReader(Reader in,int bufferSize) {
+        this.in = in;
+        this.buffer = new char[bufferSize];
+    }
+
+    /** Number of games read so far. */
+    public long getGameCount() {
+        return gameCount;
+    }
+
+    /** Number of moves read so far, over all games. */
+    public long getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Read the next game into game, replacing what was in it.
+     *
+     * @return false if there are no more games.
+     */
+    public boolean next(PgnGame game) throws IOException {
+        game.clear();
+        boolean found = false;
+
+        //tag pairs
+        int ch;
+        while((ch = skipSpace()) == '[') {
+            read();
+            readTag(game);
+            found = true;
+        }
+        if(ch == -1 && !found) {
+            return false;
+        }
+
+        String fen = game.getTag("FEN");
+        try {
+            board.setFenPosition(fen != null ? fen : ChessBoard.START_FEN);
+            game.startFen = fen != null ? board.getStartFen() : ChessBoard.START_FEN;
+        } catch(InvalidParameterException | StringIndexOutOfBoundsException e) {
+            game.error = "Bad FEN tag "+fen;
+        }
+
+        //move text, up to the result or the next game's tags
+        while((ch = skipSpace()) != -1 && ch != '[') {
+            if(ch == '{') {
+                skipPast('}');
+            } else if(ch == ';') {
+                skipPast('\n');
+            } else if(ch == '(') {
+                skipVariation();
+            } else if(ch == ')' || ch == '}') {
+                read();
+            } else {
+                readToken();
+                if(text.length() == 0) {
+                    read();     //a character that can't start anything, skip it
+                } else if(isResult()) {
+                    game.result = text.toString();
+                    break;
+                } else if(text.charAt(0) != '$') {
+                    addMove(game);
+                }
+            }
+        }
+        gameCount++;
+        return true;
+    }
+
+    private void addMove(PgnGame game) {
+        //move numbers like "12." or "12...", which might have the move run into them like "12.e4"
+        int start = 0;
+        while(start < text.length() && Character.isDigit(text.charAt(start))) {
+            start++;
+        }
+        if(start > 0 && (start == text.length() || text.charAt(start) == '.')) {
+            while(start < text.length() && text.charAt(start) == '.') {
+                start++;
+            }
+        } else {
+            start = 0;
+        }
+        if(start == text.length() || game.error != null) {
+            return;
+        }
+        //annotations written apart from the move, like "e4 !?" or "exd6 e.p."
+        char first = text.charAt(start);
+        if(first == '!' || first == '?' || first == 'e' && text.indexOf(".",start) >= 0) {
+            return;
+        }
+        int move = parseSan(board,text,start,text.length());
+        if(move == Move.NONE) {
+            game.error = "Illegal move "+text.substring(start)+" after "+game.moves.size()+" half moves";
+            return;
+        }
+        board.makeMove(move);
+        game.moves.add(move);
+        moveCount++;
+    }
+
+    private boolean isResult() {
+        int length = text.length();
+        char first = text.charAt(0);
+        if(length == 1) {
+            return first == '*';
+        }
+        if(length == 3) {
+            //"0-0" is castling, not a result
+            return (first == '1' && text.charAt(2) == '0' || first == '0' && text.charAt(2) == '1') && text.charAt(1) == '-';
+        }
+        return length == 7 && first == '1' && text.charAt(1) == '/';
+    }
+
+    /** Read a tag like [White "Carlsen, Magnus"], the [ has been read. */
+    private void readTag(PgnGame game) throws IOException {
+        text.setLength(0);
+        int ch;
+        while((ch = read()) != -1 && ch != '"' && ch != ']') {
+            if(!Character.isWhitespace(ch)) {
+                text.append((char)ch);
+            }
+        }
+        String name = text.toString();
+        text.setLength(0);
+        if(ch == '"') {
+            while((ch = read()) != -1 && ch != '"') {
+                if(ch == '\\') {
+                    ch = read();
+                }
+                if(ch != -1) {
+                    text.append((char)ch);
+                }
+            }
+            skipPast(']');
+        }
+        game.tags.put(name,text.toString());
+    }
+
+    /** Read move text up to a space or one of the characters that start or end something else. */
+    private void readToken() throws IOException {
+        text.setLength(0);
+        int ch;
+        while((ch = peek()) != -1 && !Character.isWhitespace(ch) && "{}();[]".indexOf(ch) < 0) {
+            read();
+            if(text.length() < MAX_TOKEN) {
+                text.append((char)ch);
+            }
+        }
+    }
+
+    private void skipVariation() throws IOException {
+        int depth = 0;
+        int ch;
+        while((ch = read()) != -1) {
+            if(ch == '(') {
+                depth++;
+            } else if(ch == ')') {
+                if(--depth == 0) {
+                    return;
+                }
+            } else if(ch == '{') {
+                skipPast('}');
+            } else if(ch == ';') {
+                skipPast('\n');
+            }
+        }
+    }
+
+    private void skipPast(char end) throws IOException {
+        int ch;
+        while((ch = read()) != -1 && ch != end) {
+        }
+    }
+
+    /** Skip white space and "%" escape lines, returning the next character without reading it. */
+    private int skipSpace() throws IOException {
+        int ch;
+        while((ch = peek()) != -1) {
+            if(ch == '%' && lineStart) {
+                skipPast('\n');
+            } else if(Character.isWhitespace(ch) || ch == '\uFEFF') {
+                read();
+            } else {
+                break;
+            }
+        }
+        return ch;
+    }
+
+    private int peek() throws IOException {
+        if(pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos];
+    }
+
+    private int read() throws IOException {
+        if(pos == limit && !fill()) {
+            return -1;
+        }
+        char ch = buffer[pos++];
+        lineStart = ch == '\n';
+        return ch;
+    }
+
+    private boolean fill() throws IOException {
+        int count = in.read(buffer,0,buffer.length);
+        while(count == 0) {
+            count = in.read(buffer,0,buffer.length);
+        }
+        if(count < 0) {
+            return false;
+        }
+        pos = 0;
+        limit = count;
+        return true;
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /** Returns the legal move the SAN describes, like "Nbd7" or "exd8=Q+", or Move.NONE if there isn't exactly one. */
+    public static int parseSan(ChessBoard board,CharSequence san) {
+        return parseSan(board,san,0,san.length());
+    }
+
+    /** Same as parseSan(board,san), reading only the chars from start up to end. */
+    public static int parseSan(ChessBoard board,CharSequence san,int start,int end) {
+        //annotations on the end like "+", "#", "!?"
+        while(end > start && "+#!?".indexOf(san.charAt(end-1)) >= 0) {
+            end--;
+        }
+        if(end-start < 2) {
+            return Move.NONE;
+        }
+
+        //only the moves that match the SAN need the slower check for leaving the king attacked
+        int count = MoveGenerator.generatePseudoLegal(board,board.validateBuffer,0);
+        int[] moves = board.validateBuffer;
+
+        char first = san.charAt(start);
+        if(first == 'O' || first == '0') {
+            boolean queenSide = end-start >= 5;
+            for(int i=0; i<count; i++) {
+                if((queenSide ? Move.isCastleQueenSide(moves[i]) : Move.isCastleKingSide(moves[i]))
+                        && MoveGenerator.leavesKingSafe(board,moves[i])) {
+                    return moves[i];
+                }
+            }
+            return Move.NONE;
+        }
+
+        //promotion, "=Q" or just "Q" on the end
+        int promotion = -1;
+        char last = san.charAt(end-1);
+        if("NBRQ".indexOf(last) >= 0) {
+            promotion = "PNBRQK".indexOf(last);
+            end--;
+            if(san.charAt(end-1) == '=') {
+                end--;
+            }
+        } else if(san.charAt(end-2) == '=' && "nbrq".indexOf(last) >= 0) {
+            promotion = "pnbrqk".indexOf(last);
+            end -= 2;
+        }
+        if(end-start < 2) {
+            return Move.NONE;
+        }
+
+        char file = san.charAt(end-2);
+        char rank = san.charAt(end-1);
+        if(file < 'a' || file > 'h' || rank < '1' || rank > '8') {
+            return Move.NONE;
+        }
+        int to = ('8'-rank)*8+file-'a';
+
+        int type = 0;
+        int pos = start;
+        if("NBRQK".indexOf(first) >= 0) {
+            type = "PNBRQK".indexOf(first);
+            pos++;
+        }
+        int fromFile = -1;
+        int fromRow = -1;
+        for(; pos<end-2; pos++) {
+            char ch = san.charAt(pos);
+            if(ch >= 'a' && ch <= 'h') {
+                fromFile = ch-'a';
+            } else if(ch >= '1' && ch <= '8') {
+                fromRow = '8'-ch;
+            } else if(ch != 'x' && ch != ':' && ch != '-') {
+                return Move.NONE;
+            }
+        }
+
+        int found = Move.NONE;
+        for(int i=0; i<count; i++) {
+            int move = moves[i];
+            int from = Move.from(move);
+            if(Move.to(move) != to || Move.piece(move)%6 != type
+                    || (fromFile >= 0 && Bitboard.file(from) != fromFile)
+                    || (fromRow >= 0 && Bitboard.row(from) != fromRow)) {
+                continue;
+            }
+            if(Move.isPromotion(move)) {
+                //a promotion without a piece is taken as a queen
+                int promotedTo = Move.promotion(move)%6;
+                if(promotedTo != (promotion < 0 ? 4 : promotion)) {
+                    continue;
+                }
+            } else if(promotion >= 0) {
+                continue;
+            }
+            if(!MoveGenerator.leavesKingSafe(board,move)) {
+                continue;
+            }
+            if(found != Move.NONE) {
+                return Move.NONE;   //ambiguous
+            }
+            found = move;
+        }
+        return found;
+    }
+}
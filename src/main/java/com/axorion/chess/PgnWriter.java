@@ -0,0 +1,194 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+package com.axorion.chess;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes moves in standard algebraic notation (SAN) and whole games as PGN. A move is disambiguated by file, rank or
+ * both only when another piece of the same kind could also reach the square, and gets "+" or "#" when it checks or
+ * mates. ChessBoard calls appendSan() as each move is made, so the move text is built up one move at a time instead
+ * of replaying the game.
+ */
+public class PgnWriter {
+    /** Longest line in the move text, PGN export format asks for no more than 80 chars. */
+    public static final int LINE_LENGTH = 79;
+
+    /** Returns the move in SAN, like "Nbd7", "exd5" or "e8=Q+". The board must be in the position before the move. */
+    public static String toSan(ChessBoard board,int move) {
+        StringBuilder buff = new StringBuilder(8);
+        appendSan(board,move,buff);
+        return buff.toString();
+    }
+
+    /** Append the move in SAN to out. The board must be in the position before the move, and is left there. */
+    public static void appendSan(ChessBoard board,int move,StringBuilder out) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int piece = Move.piece(move);
+        boolean pawn = piece == Bitboard.WHITE_PAWN || piece == Bitboard.BLACK_PAWN;
+
+        if(Move.isCastleKingSide(move)) {
+            out.append("O-O");
+        } else if(Move.isCastleQueenSide(move)) {
+            out.append("O-O-O");
+        } else if(pawn) {
+            if(Move.isCapture(move)) {
+                out.append((char)('a'+Bitboard.file(from))).append('x');
+            }
+            out.append(ChessBoard.squareNames[to]);
+            if(Move.isPromotion(move)) {
+                out.append('=').append(Character.toUpperCase(Bitboard.pieceLetter(Move.promotion(move))));
+            }
+        } else {
+            out.append(Character.toUpperCase(Bitboard.pieceLetter(piece)));
+            appendDisambiguation(board,move,out);
+            if(Move.isCapture(move)) {
+                out.append('x');
+            }
+            out.append(ChessBoard.squareNames[to]);
+        }
+
+        board.makeMove(move);
+        if(board.isInCheck()) {
+            out.append(MoveGenerator.generateLegal(board,board.validateBuffer,0) == 0 ? '#' : '+');
+        }
+        board.unmakeMove();
+    }
+
+    /** Add the from file, rank or square if another piece of the same kind can move to the same square. */
+    private static void appendDisambiguation(ChessBoard board,int move,StringBuilder out) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int piece = Move.piece(move);
+        boolean ambiguous = false;
+        boolean sameFile = false;
+        boolean sameRank = false;
+        int[] moves = board.validateBuffer;
+        int count = MoveGenerator.generateLegal(board,moves,0);
+        for(int i=0; i<count; i++) {
+            int other = Move.from(moves[i]);
+            if(Move.piece(moves[i]) == piece && Move.to(moves[i]) == to && other != from) {
+                ambiguous = true;
+                sameFile |= Bitboard.file(other) == Bitboard.file(from);
+                sameRank |= Bitboard.row(other) == Bitboard.row(from);
+            }
+        }
+        if(!ambiguous) {
+            return;
+        }
+        if(!sameFile) {
+            out.append((char)('a'+Bitboard.file(from)));
+        } else if(!sameRank) {
+            out.append((char)('8'-Bitboard.row(from)));
+        } else {
+            out.append(ChessBoard.squareNames[from]);
+        }
+    }
+
+    /** Returns the PGN result of the game on the board, "1-0", "0-1", "1/2-1/2" or "*" if it isn't over. */
+    public static String result(ChessBoard board) {
+        switch(board.getGameEnd()) {
+            case CHECKMATE:
+                return board.getCurrentMove() == ChessBoard.Side.WHITE ? "0-1" : "1-0";
+            case STALEMATE:
+            case THREEFOLD_REPETITION:
+            case FIFTY_MOVE_RULE:
+                return "1/2-1/2";
+            default:
+                return "*";
+        }
+    }
+
+    /**
+     * Write the game as PGN: the seven tag roster, SetUp and FEN tags if the game didn't start from the normal
+     * position, then the moves wrapped to LINE_LENGTH and the result.
+     */
+    public static void write(ChessBoard board,Writer out) throws IOException {
+        write(board,result(board),out);
+    }
+
+    /** Write the game as PGN with the given result, for games that ended some other way, like a resignation. */
+    public static void write(ChessBoard board,String result,Writer out) throws IOException {
+        writeTag(out,"Event","Game ID "+board.getGameId());
+        writeTag(out,"Site","?");
+        writeTag(out,"Date",board.getGameDateFormatted());
+        writeTag(out,"Round","?");
+        writeTag(out,"White","?");
+        writeTag(out,"Black","?");
+        writeTag(out,"Result",result);
+        if(!board.isStandardStart()) {
+            writeTag(out,"SetUp","1");
+            writeTag(out,"FEN",board.getStartFen());
+        }
+        out.write('\n');
+        writeMoves(board.pgnText,result,out);
+    }
+
+    /**
+     * Write move text, which can have comments and marks in it, and the result, broken at spaces so no line is longer
+     * than LINE_LENGTH.
+     */
+    public static void writeMoves(CharSequence moves,String result,Writer out) throws IOException {
+        int lineLength = 0;
+        int start = 0;
+        while(start < moves.length()) {
+            int end = start;
+            while(end < moves.length() && moves.charAt(end) != ' ') {
+                end++;
+            }
+            lineLength = writeToken(out,moves,start,end,lineLength);
+            start = end+1;
+        }
+        writeToken(out,result,0,result.length(),lineLength);
+        out.write('\n');
+        out.flush();
+    }
+
+    private static int writeToken(Writer out,CharSequence text,int start,int end,int lineLength) throws IOException {
+        int length = end-start;
+        if(lineLength > 0 && lineLength+1+length > LINE_LENGTH) {
+            out.write('\n');
+            lineLength = 0;
+        } else if(lineLength > 0) {
+            out.write(' ');
+            lineLength++;
+        }
+        for(int i=start; i<end; i++) {
+            out.write(text.charAt(i));
+        }
+        return lineLength+length;
+    }
+
+    /** Write a tag pair, like [Event "Game ID 1000"], escaping quotes and backslashes in the value. */
+    public static void writeTag(Writer out,String name,String value) throws IOException {
+        out.write('[');
+        out.write(name);
+        out.write(" \"");
+        for(int i=0; i<value.length(); i++) {
+            char ch = value.charAt(i);
+            if(ch == '"' || ch == '\\') {
+                out.write('\\');
+            }
+            out.write(ch);
+        }
+        out.write("\"]\n");
+    }
+}
@@ -0,0 +1,107 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+package com.axorion.chess;
+
+/**
+ * Random keys for Zobrist hashing. A position's key is the XOR of a key for every piece on its square, the castling
+ * rights, the en passant file and the side to move, so ChessBoard can keep it up to date by XORing in and out just
+ * what a move changes.
+ *
+ * The keys come from a fixed seed, so a position always hashes to the same value, even between runs.
+ */
+public class Zobrist {
+    static final long[][] PIECES = new long[12][64];    //[piece number][square]
+    static final long[] CASTLING = new long[16];        //indexed by the ChessBoard.CASTLE_* bits
+    static final long[] EN_PASSANT = new long[8];       //indexed by file
+    static final long BLACK_TO_MOVE;
+
+    static {
+        long seed = 0x43686573734C52L;
+        for(int piece=0; piece<PIECES.length; piece++) {
+            for(int sq=0; sq<64; sq++) {
+                seed = next(seed);
+                PIECES[piece][sq] = mix(seed);
+            }
+        }
+        //each castling right gets a key, and a set of rights is the XOR of its keys
+        long[] rights = new long[4];
+        for(int i=0; i<rights.length; i++) {
+            seed = next(seed);
+            rights[i] = mix(seed);
+        }
+        for(int i=0; i<CASTLING.length; i++) {
+            for(int bit=0; bit<rights.length; bit++) {
+                if((i & (1 << bit)) != 0) {
+                    CASTLING[i] ^= rights[bit];
+                }
+            }
+        }
+        for(int i=0; i<EN_PASSANT.length; i++) {
+            seed = next(seed);
+            EN_PASSANT[i] = mix(seed);
+        }
+        seed = next(seed);
+        BLACK_TO_MOVE = mix(seed);
+    }
+
+    /** The keys come from splitmix64, next() steps the state and mix() turns it into a key. */
+    private static long next(long seed) {
+        return seed+0x9E3779B97F4A7C15L;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30))*0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27))*0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** Key for a piece number on a square. */
+    public static long piece(int piece,int index) {
+        return PIECES[piece][index];
+    }
+
+    /**
+     * Key for the en passant square, or 0 if there isn't one or no pawn of the side to move could take on it. Leaving
+     * out en passant squares that can't be used means the same position hashes the same however it was reached.
+     */
+    public static long enPassant(ChessBoard board) {
+        if(!board.canCaptureEnPassant()) {
+            return 0;
+        }
+        return EN_PASSANT[Bitboard.file(board.enPassantIndex)];
+    }
+
+    /** Work out the key of the board's position from scratch. */
+    public static long hash(ChessBoard board) {
+        long key = 0;
+        for(int piece=0; piece<board.pieceBoards.length; piece++) {
+            long bits = board.pieceBoards[piece];
+            while(bits != 0) {
+                key ^= PIECES[piece][Bitboard.first(bits)];
+                bits &= bits-1;
+            }
+        }
+        key ^= CASTLING[board.getCastleRights()];
+        key ^= enPassant(board);
+        if(board.currentMove == ChessBoard.Side.BLACK) {
+            key ^= BLACK_TO_MOVE;
+        }
+        return key;
+    }
+}
@@ -0,0 +1,82 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+
+package com.axorion.chess.engine;
+
+import com.axorion.chess.ChessBoard;
+
+/**
+ * Searches a set of positions to a fixed depth and reports the nodes per second, so the built in engine's speed can be
+ * compared between changes and on the Pi. The node count is the same every run on one thread for the same code, so it
+ * also shows if a change altered the search.
+ *
+ * It runs the positions with 1 thread, then 2 and so on up to threads, and shows how much sooner each reaches the
+ * depth than one thread did. With more threads the node counts change from run to run, as the threads race each other.
+ *
+ * <pre>
+ *     java -classpath target/classes com.axorion.chess.engine.Bench [depth] [hashMb] [threads]
+ * </pre>
+ */
+public class Bench {
+    static final String[] POSITIONS = {
+            ChessBoard.START_FEN,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3",
+    };
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        int hashMb = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        run(depth,hashMb,1,false);     //let the JIT compile the search first, or 1 thread looks slower than it is
+        long oneThreadTime = 0;
+        for(int t=1; t<=threads; t++) {
+            long[] totals = run(depth,hashMb,t,t == 1);
+            if(t == 1) {
+                oneThreadTime = totals[1];
+            }
+            System.out.format("Threads %d: nodes %d in %dms, %d nps, speedup %.2f%n",t,totals[0],totals[1],
+                    totals[1] == 0 ? 0 : totals[0]*1000/totals[1],totals[1] == 0 ? 0 : (double)oneThreadTime/totals[1]);
+        }
+    }
+
+    /** Search every position on threads threads, returning the total nodes and milliseconds. */
+    static long[] run(int depth,int hashMb,int threads,boolean print) {
+        long totalNodes = 0;
+        long totalTime = 0;
+        ChessBoard board = new ChessBoard();
+        for(String fen : POSITIONS) {
+            board.setFenPosition(fen);
+            SmpSearch search = new SmpSearch(new TranspositionTable(hashMb),threads);
+            TimeManager time = new TimeManager(0,depth);
+            SearchResult result = search.think(board,time);
+            search.close();
+            totalNodes += result.getNodes();
+            totalTime += result.getTime();
+            if(print) {
+                System.out.println(fen);
+                System.out.println("  "+result);
+            }
+        }
+        return new long[] {totalNodes,totalTime};
+    }
+}
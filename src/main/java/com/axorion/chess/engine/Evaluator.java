@@ -0,0 +1,152 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+
+package com.axorion.chess.engine;
+
+import com.axorion.chess.Bitboard;
+import com.axorion.chess.ChessBoard;
+
+/**
+ * Static evaluation for the search, material plus a bonus or penalty for the square each piece is on. The king's table
+ * blends from hiding behind its pawns to heading for the middle as the pieces come off.
+ *
+ * Tables are laid out like the board is printed, a8 first, from white's side. Black pieces look up the square
+ * mirrored top to bottom.
+ */
+public class Evaluator {
+    /** Piece values in centipawns, indexed by piece type, pawn to king. */
+    static final int[] VALUES = {100,320,330,500,900,0};
+    /** Non pawn material at the start, for working out how far into the endgame we are. */
+    static final int OPENING_MATERIAL = 2*(2*VALUES[1]+2*VALUES[2]+2*VALUES[3]+VALUES[4]);
+
+    static final int[] PAWN = {
+             0,  0,  0,  0,  0,  0,  0,  0,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            10, 10, 20, 30, 30, 20, 10, 10,
+             5,  5, 10, 25, 25, 10,  5,  5,
+             0,  0,  0, 20, 20,  0,  0,  0,
+             5, -5,-10,  0,  0,-10, -5,  5,
+             5, 10, 10,-20,-20, 10, 10,  5,
+             0,  0,  0,  0,  0,  0,  0,  0,
+    };
+    static final int[] KNIGHT = {
+            -50,-40,-30,-30,-30,-30,-40,-50,
+            -40,-20,  0,  0,  0,  0,-20,-40,
+            -30,  0, 10, 15, 15, 10,  0,-30,
+            -30,  5, 15, 20, 20, 15,  5,-30,
+            -30,  0, 15, 20, 20, 15,  0,-30,
+            -30,  5, 10, 15, 15, 10,  5,-30,
+            -40,-20,  0,  5,  5,  0,-20,-40,
+            -50,-40,-30,-30,-30,-30,-40,-50,
+    };
+    static final int[] BISHOP = {
+            -20,-10,-10,-10,-10,-10,-10,-20,
+            -10,  0,  0,  0,  0,  0,  0,-10,
+            -10,  0,  5, 10, 10,  5,  0,-10,
+            -10,  5,  5, 10, 10,  5,  5,-10,
+            -10,  0, 10, 10, 10, 10,  0,-10,
+            -10, 10, 10, 10, 10, 10, 10,-10,
+            -10,  5,  0,  0,  0,  0,  5,-10,
+            -20,-10,-10,-10,-10,-10,-10,-20,
+    };
+    static final int[] ROOK = {
+             0,  0,  0,  0,  0,  0,  0,  0,
+             5, 10, 10, 10, 10, 10, 10,  5,
+            -5,  0,  0,  0,  0,  0,  0, -5,
+            -5,  0,  0,  0,  0,  0,  0, -5,
+            -5,  0,  0,  0,  0,  0,  0, -5,
+            -5,  0,  0,  0,  0,  0,  0, -5,
+            -5,  0,  0,  0,  0,  0,  0, -5,
+             0,  0,  0,  5,  5,  0,  0,  0,
+    };
+    static final int[] QUEEN = {
+            -20,-10,-10, -5, -5,-10,-10,-20,
+            -10,  0,  0,  0,  0,  0,  0,-10,
+            -10,  0,  5,  5,  5,  5,  0,-10,
+             -5,  0,  5,  5,  5,  5,  0, -5,
+              0,  0,  5,  5,  5,  5,  0, -5,
+            -10,  5,  5,  5,  5,  5,  0,-10,
+            -10,  0,  5,  0,  0,  0,  0,-10,
+            -20,-10,-10, -5, -5,-10,-10,-20,
+    };
+    static final int[] KING_MIDDLE = {
+            -30,-40,-40,-50,-50,-40,-40,-30,
+            -30,-40,-40,-50,-50,-40,-40,-30,
+            -30,-40,-40,-50,-50,-40,-40,-30,
+            -30,-40,-40,-50,-50,-40,-40,-30,
+            -20,-30,-30,-40,-40,-30,-30,-20,
+            -10,-20,-20,-20,-20,-20,-20,-10,
+             20, 20,  0,  0,  0,  0, 20, 20,
+             20, 30, 10,  0,  0, 10, 30, 20,
+    };
+    static final int[] KING_END = {
+            -50,-40,-30,-20,-20,-30,-40,-50,
+            -30,-20,-10,  0,  0,-10,-20,-30,
+            -30,-10, 20, 30, 30, 20,-10,-30,
+            -30,-10, 30, 40, 40, 30,-10,-30,
+            -30,-10, 30, 40, 40, 30,-10,-30,
+            -30,-10, 20, 30, 30, 20,-10,-30,
+            -30,-30,  0,  0,  0,  0,-30,-30,
+            -50,-30,-30,-30,-30,-30,-30,-50,
+    };
+    static final int[][] TABLES = {PAWN,KNIGHT,BISHOP,ROOK,QUEEN};
+
+    /** Value of a piece number from Bitboard, either color. */
+    public static int value(int piece) {
+        return piece == Bitboard.NO_PIECE ? 0 : VALUES[piece % 6];
+    }
+
+    /** Score of the position in centipawns from the side to move's view, positive if they are better. */
+    public static int evaluate(ChessBoard board) {
+        int white = 0;
+        int black = 0;
+        int material = 0;
+        for(int type=0; type<5; type++) {
+            int[] table = TABLES[type];
+            long bits = board.getPieces(Bitboard.WHITE_PAWN+type);
+            while(bits != 0) {
+                white += VALUES[type]+table[Bitboard.first(bits)];
+                bits &= bits-1;
+            }
+            bits = board.getPieces(Bitboard.BLACK_PAWN+type);
+            while(bits != 0) {
+                black += VALUES[type]+table[Bitboard.first(bits) ^ 56];
+                bits &= bits-1;
+            }
+            if(type != 0) {
+                material += VALUES[type]*Bitboard.count(board.getPieces(Bitboard.WHITE_PAWN+type)
+                        | board.getPieces(Bitboard.BLACK_PAWN+type));
+            }
+        }
+        //blend the king tables by how much material is left, 256 is the opening and 0 a bare endgame
+        int phase = Math.min(256,material*256/OPENING_MATERIAL);
+        long king = board.getPieces(Bitboard.WHITE_KING);
+        if(king != 0) {
+            int sq = Bitboard.first(king);
+            white += (KING_MIDDLE[sq]*phase+KING_END[sq]*(256-phase))/256;
+        }
+        king = board.getPieces(Bitboard.BLACK_KING);
+        if(king != 0) {
+            int sq = Bitboard.first(king) ^ 56;
+            black += (KING_MIDDLE[sq]*phase+KING_END[sq]*(256-phase))/256;
+        }
+        int score = white-black;
+        return board.getCurrentMove() == ChessBoard.Side.WHITE ? score : -score;
+    }
+}
@@ -0,0 +1,123 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+
+package com.axorion.chess.engine;
+
+import com.axorion.chess.ChessBoard;
+
+import java.io.Closeable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The built in engine, for boards without a Stockfish build. Searches run on the engine's own thread and the answer
+ * comes back as a future, like AsyncEngine, so the board and LEDs keep working while it thinks.
+ *
+ * Strength is set with the level, 0 to 20, the same range as Stockfish's skill level, and the move time. With more
+ * than one thread the search is a Lazy SMP one, see SmpSearch.
+ */
+public class JavaEngine implements Closeable {
+    private final TranspositionTable table;
+    private final SmpSearch search;
+    private final ExecutorService executor;
+    private volatile TimeManager current;
+    private volatile int level = TimeManager.MAX_LEVEL;
+
+    /** Engine with a transposition table of about hashMb megabytes, searching on one thread. */
+    public JavaEngine(int hashMb) {
+        this(hashMb,1);
+    }
+
+    /** Engine with a transposition table of about hashMb megabytes, searching on threads threads. */
+    public JavaEngine(int hashMb,int threads) {
+        table = new TranspositionTable(hashMb);
+        search = new SmpSearch(table,threads);
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r,"Java engine");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public int getThreads() {
+        return search.getThreads();
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /** Level from 0 to 20, lower levels don't look as far ahead. */
+    public void setLevel(int level) {
+        this.level = Math.max(0,Math.min(TimeManager.MAX_LEVEL,level));
+    }
+
+    /** Search the game's position for up to moveTime milliseconds on the calling thread. */
+    public synchronized SearchResult think(ChessBoard game,int moveTime) {
+        TimeManager time = TimeManager.forLevel(moveTime,level);
+        current = time;
+        table.newSearch();
+        time.start();
+        try {
+            return search.think(game,time);
+        } finally {
+            current = null;
+        }
+    }
+
+    /**
+     * Start searching the game's position for up to moveTime milliseconds, and return straight away. The position is
+     * copied before returning, so the game can carry on changing while the engine thinks.
+     */
+    public CompletableFuture<SearchResult> search(ChessBoard game,final int moveTime) {
+        final ChessBoard position = new ChessBoard();
+        Search.copyGame(game,position);
+        final CompletableFuture<SearchResult> result = new CompletableFuture<>();
+        executor.submit(new Callable<Void>() {
+            public Void call() {
+                try {
+                    result.complete(think(position,moveTime));
+                } catch(RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+                return null;
+            }
+        });
+        return result;
+    }
+
+    /** Stop the search that's running, which then answers with the best move it has so far. */
+    public void stop() {
+        TimeManager time = current;
+        if(time != null) {
+            time.stop();
+        }
+    }
+
+    public void close() {
+        stop();
+        executor.shutdownNow();
+        search.close();
+    }
+}
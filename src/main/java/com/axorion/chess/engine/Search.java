@@ -0,0 +1,356 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+
+package com.axorion.chess.engine;
+
+import com.axorion.chess.Bitboard;
+import com.axorion.chess.ChessBoard;
+import com.axorion.chess.Move;
+import com.axorion.chess.MoveGenerator;
+import com.axorion.chess.MoveList;
+
+import java.util.Arrays;
+
+/**
+ * Alpha-beta search of a position on ChessBoard, in the same JVM as the app, so there's no engine process to start or
+ * talk to. It searches one move deeper each iteration until the time manager says stop, and plays the best move of
+ * the deepest iteration.
+ *
+ * The transposition table gives the best move from the previous iteration, which is searched first, then captures
+ * ordered most valuable victim first, then the killer moves that caused cutoffs at the same ply, then the rest by how
+ * often they caused cutoffs before. At the end of the main search captures are followed until the position is quiet,
+ * so a capture isn't scored before the recapture.
+ *
+ * A Search isn't thread safe, each thread needs its own, but they can share a TranspositionTable. Helper threads, see
+ * SmpSearch, have an id above 0 and odd ones search one ply deeper each iteration, so the threads don't all search
+ * the same tree in step.
+ */
+public class Search {
+    public static final int MAX_PLY = 64;
+    public static final int INFINITY = 32000;
+    /** Score of being mated now. Mate in n plies scores MATE-n, so shorter mates score higher. */
+    public static final int MATE = 31000;
+    static final int MATE_BOUND = MATE-2*MAX_PLY;
+    static final int CHECK_EVERY = 2048;    //nodes between looking at the clock, a power of 2
+
+    static final int TT_MOVE = 1 << 30;
+    static final int CAPTURE = 1 << 24;
+    static final int KILLER = 1 << 23;
+
+    final ChessBoard board = new ChessBoard();
+    final TranspositionTable table;
+    final int id;
+    TimeManager time;
+    long nodes;
+
+    final int[][] moves = new int[MAX_PLY+1][MoveGenerator.MAX_MOVES];
+    final int[][] order = new int[MAX_PLY+1][MoveGenerator.MAX_MOVES];
+    final int[][] killers = new int[MAX_PLY+1][2];
+    final int[][] history = new int[12][64];
+    final int[][] pv = new int[MAX_PLY+1][MAX_PLY+1];
+    final int[] pvLength = new int[MAX_PLY+1];
+    int rootScore;
+
+    public Search(TranspositionTable table) {
+        this(table,0);
+    }
+
+    /** Search for thread id of an SmpSearch, 0 for the main thread. */
+    public Search(TranspositionTable table,int id) {
+        this.table = table;
+        this.id = id;
+    }
+
+    /**
+     * Copy the game to another board by replaying its moves from the start, so the copy knows the earlier positions and
+     * can spot repetitions. If the moves don't lead to the same position, the board was set up by hand, so only the
+     * position is copied.
+     */
+    public static void copyGame(ChessBoard game,ChessBoard copy) {
+        copy.setFenPosition(game.getStartFen());
+        MoveList list = game.getMoveList();
+        for(int i=0; i<list.size(); i++) {
+            copy.makeMove(list.get(i));
+        }
+        if(copy.getHashKey() != game.getHashKey()) {
+            copy.copyPosition(game);
+        }
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    /** Search the game's current position until the time manager says to stop. The game board isn't changed. */
+    public SearchResult think(ChessBoard game,TimeManager time) {
+        copyGame(game,board);
+        this.time = time;
+        nodes = 0;
+        for(int[] k : killers) {
+            Arrays.fill(k,0);
+        }
+        for(int[] h : history) {
+            for(int i=0; i<h.length; i++) {
+                h[i] /= 8;      //still a hint, but this position's cutoffs soon count for more
+            }
+        }
+        //play any legal move if time runs out before the first iteration finishes a move
+        int bestMove = MoveGenerator.generateLegal(board,moves[0],0) > 0 ? moves[0][0] : Move.NONE;
+        int bestScore = 0;
+        int depth = 0;
+        int[] line = bestMove == Move.NONE ? new int[0] : new int[] {bestMove};
+        for(int d=1; d == 1 || time.canStartIteration(d); d++) {
+            rootScore = -INFINITY;
+            int score = alphaBeta(d+(id & 1),0,-INFINITY,INFINITY);
+            if(pvLength[0] > 0 && (!time.isStopped() || rootScore > -INFINITY)) {
+                //a cut off iteration still counts if it finished a move, the first one searched is the last best move
+                bestMove = pv[0][0];
+                bestScore = time.isStopped() ? rootScore : score;
+                line = Arrays.copyOf(pv[0],pvLength[0]);
+            }
+            if(time.isStopped()) {
+                break;
+            }
+            depth = d+(id & 1);
+            if(pvLength[0] == 0 || Math.abs(score) >= MATE_BOUND) {
+                break;      //no moves, or a forced mate found, deeper won't change it
+            }
+        }
+        return new SearchResult(bestMove,bestScore,depth,nodes,time.elapsed(),line);
+    }
+
+    int alphaBeta(int depth,int ply,int alpha,int beta) {
+        pvLength[ply] = 0;
+        boolean inCheck = MoveGenerator.isInCheck(board);
+        if(inCheck) {
+            depth++;        //look further at checks, they are forcing and might be mates
+        }
+        if(depth <= 0) {
+            return quiesce(ply,alpha,beta);
+        }
+        if((++nodes & (CHECK_EVERY-1)) == 0 && time.isTimeUp()) {
+            return 0;
+        }
+        if(ply > 0) {
+            if(board.getRepetitionCount() > 0 || board.isFiftyMoveRule()) {
+                return 0;
+            }
+            if(ply >= MAX_PLY) {
+                return Evaluator.evaluate(board);
+            }
+            //no mate found deeper can beat one already found nearer the root
+            alpha = Math.max(alpha,-MATE+ply);
+            beta = Math.min(beta,MATE-ply-1);
+            if(alpha >= beta) {
+                return alpha;
+            }
+        }
+
+        long key = board.getHashKey();
+        long entry = table.probe(key);
+        int ttMove = Move.NONE;
+        if(entry != 0) {
+            ttMove = TranspositionTable.move(entry);
+            if(ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry),ply);
+                int bound = TranspositionTable.bound(entry);
+                if(bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        int[] list = moves[ply];
+        int count = MoveGenerator.generatePseudoLegal(board,list,0);
+        orderMoves(ply,count,ttMove);
+        int oldAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = Move.NONE;
+        int legal = 0;
+        for(int i=0; i<count; i++) {
+            int move = nextMove(ply,i,count);
+            if(!MoveGenerator.leavesKingSafe(board,move)) {
+                continue;
+            }
+            legal++;
+            boolean quiet = isQuiet(move) && move != killers[ply][0] && move != killers[ply][1];
+            board.makeMove(move);
+            int score;
+            if(legal == 1) {
+                score = -alphaBeta(depth-1,ply+1,-beta,-alpha);
+            } else {
+                //later moves are most likely worse, so first just check they are, with a shallower search for quiet ones
+                int reduction = depth >= 3 && legal > 3 && quiet && !inCheck ? 1 : 0;
+                score = -alphaBeta(depth-1-reduction,ply+1,-alpha-1,-alpha);
+                if(score > alpha && (reduction > 0 || score < beta)) {
+                    score = -alphaBeta(depth-1,ply+1,-beta,-alpha);
+                }
+            }
+            board.unmakeMove();
+            if(time.isStopped()) {
+                return 0;
+            }
+            if(score > best) {
+                best = score;
+                if(score > alpha) {
+                    alpha = score;
+                    bestMove = move;
+                    updatePv(ply,move);
+                    if(ply == 0) {
+                        rootScore = score;
+                    }
+                    if(score >= beta) {
+                        if(isQuiet(move)) {
+                            if(killers[ply][0] != move) {
+                                killers[ply][1] = killers[ply][0];
+                                killers[ply][0] = move;
+                            }
+                            history[Move.piece(move)][Move.to(move)] += depth*depth;
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        if(legal == 0) {
+            return inCheck ? -MATE+ply : 0;
+        }
+        int bound = best >= beta ? TranspositionTable.LOWER : alpha > oldAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(key,bestMove,toTable(best,ply),depth,bound);
+        return best;
+    }
+
+    /** Follow captures and promotions until the position is quiet. The side to move can stand pat instead. */
+    int quiesce(int ply,int alpha,int beta) {
+        pvLength[ply] = 0;
+        if((++nodes & (CHECK_EVERY-1)) == 0 && time.isTimeUp()) {
+            return 0;
+        }
+        if(ply >= MAX_PLY) {
+            return Evaluator.evaluate(board);
+        }
+        boolean inCheck = MoveGenerator.isInCheck(board);
+        int best = -INFINITY;
+        if(!inCheck) {
+            best = Evaluator.evaluate(board);
+            if(best >= beta) {
+                return best;
+            }
+            if(best > alpha) {
+                alpha = best;
+            }
+        }
+        int[] list = moves[ply];
+        int count = MoveGenerator.generatePseudoLegal(board,list,0);
+        orderMoves(ply,count,Move.NONE);
+        int legal = 0;
+        for(int i=0; i<count; i++) {
+            int move = nextMove(ply,i,count);
+            if(!inCheck && isQuiet(move)) {
+                break;      //ordered captures first, the rest are quiet
+            }
+            if(!MoveGenerator.leavesKingSafe(board,move)) {
+                continue;
+            }
+            legal++;
+            board.makeMove(move);
+            int score = -quiesce(ply+1,-beta,-alpha);
+            board.unmakeMove();
+            if(time.isStopped()) {
+                return 0;
+            }
+            if(score > best) {
+                best = score;
+                if(score > alpha) {
+                    alpha = score;
+                    if(score >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        if(inCheck && legal == 0) {
+            return -MATE+ply;
+        }
+        return best;
+    }
+
+    static boolean isQuiet(int move) {
+        return !Move.isCapture(move) && !Move.isPromotion(move);
+    }
+
+    /** Give each move a sort key, see the class comment for the order. */
+    void orderMoves(int ply,int count,int ttMove) {
+        int[] list = moves[ply];
+        int[] keys = order[ply];
+        for(int i=0; i<count; i++) {
+            int move = list[i];
+            int key;
+            if(move == ttMove) {
+                key = TT_MOVE;
+            } else if(!isQuiet(move)) {
+                int victim = Move.isEnPassant(move) ? Bitboard.WHITE_PAWN : Bitboard.pieceIndex(board.pieceAt(Move.to(move)));
+                key = CAPTURE+Evaluator.value(victim)*16+Evaluator.value(Move.promotion(move))*16-Evaluator.value(Move.piece(move))/16;
+            } else if(move == killers[ply][0]) {
+                key = KILLER+1;
+            } else if(move == killers[ply][1]) {
+                key = KILLER;
+            } else {
+                key = Math.min(history[Move.piece(move)][Move.to(move)],KILLER-1);
+            }
+            keys[i] = key;
+        }
+    }
+
+    /** Swap the best of the moves not tried yet into position i and return it. */
+    int nextMove(int ply,int i,int count) {
+        int[] list = moves[ply];
+        int[] keys = order[ply];
+        int best = i;
+        for(int j=i+1; j<count; j++) {
+            if(keys[j] > keys[best]) {
+                best = j;
+            }
+        }
+        int move = list[best];
+        list[best] = list[i];
+        list[i] = move;
+        int key = keys[best];
+        keys[best] = keys[i];
+        keys[i] = key;
+        return move;
+    }
+
+    private void updatePv(int ply,int move) {
+        pv[ply][0] = move;
+        System.arraycopy(pv[ply+1],0,pv[ply],1,pvLength[ply+1]);
+        pvLength[ply] = pvLength[ply+1]+1;
+    }
+
+    /** Mate scores are stored as distance from the position instead of from the root, so they're right at any ply. */
+    static int toTable(int score,int ply) {
+        return score >= MATE_BOUND ? score+ply : score <= -MATE_BOUND ? score-ply : score;
+    }
+
+    static int fromTable(int score,int ply) {
+        return score >= MATE_BOUND ? score-ply : score <= -MATE_BOUND ? score+ply : score;
+    }
+}
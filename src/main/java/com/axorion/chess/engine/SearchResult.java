@@ -0,0 +1,104 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+
+package com.axorion.chess.engine;
+
+import com.axorion.chess.Move;
+
+/** What a search found: the move to play, the line it expects and its score. */
+public class SearchResult {
+    private final int move;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+    private final long time;
+    private final int[] pv;
+
+    public SearchResult(int move,int score,int depth,long nodes,long time,int[] pv) {
+        this.move = move;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.time = time;
+        this.pv = pv;
+    }
+
+    /** Best move in the form from Move, or Move.NONE if there are no legal moves. */
+    public int getMove() {
+        return move;
+    }
+
+    /** The reply expected to the best move, or Move.NONE if the line stops there. */
+    public int getPonder() {
+        return pv.length > 1 ? pv[1] : Move.NONE;
+    }
+
+    /** Score in centipawns from the side to move's view. */
+    public int getScore() {
+        return score;
+    }
+
+    public boolean isMate() {
+        return Math.abs(score) >= Search.MATE-Search.MAX_PLY;
+    }
+
+    /** Moves to mate, negative if the side to move is the one getting mated. Only meaningful if isMate(). */
+    public int getMateIn() {
+        return score > 0 ? (Search.MATE-score+1)/2 : -(Search.MATE+score)/2;
+    }
+
+    /** Deepest iteration finished. */
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    /** Milliseconds the search took. */
+    public long getTime() {
+        return time;
+    }
+
+    public long getNodesPerSecond() {
+        return time == 0 ? nodes*1000 : nodes*1000/time;
+    }
+
+    /** The line the search expects, starting with the best move. */
+    public int[] getPv() {
+        return pv;
+    }
+
+    /** Same form as a UCI info line, like "depth 6 score cp 35 nodes 80123 nps 400000 time 200 pv e2e4 e7e5". */
+    @Override
+    public String toString() {
+        StringBuilder buff = new StringBuilder();
+        buff.append("depth ").append(depth);
+        buff.append(isMate() ? " score mate "+getMateIn() : " score cp "+score);
+        buff.append(" nodes ").append(nodes);
+        buff.append(" nps ").append(getNodesPerSecond());
+        buff.append(" time ").append(time);
+        buff.append(" pv");
+        for(int move : pv) {
+            buff.append(' ').append(Move.toEan(move));
+        }
+        return buff.toString();
+    }
+}
@@ -0,0 +1,111 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+
+package com.axorion.chess.engine;
+
+import com.axorion.chess.ChessBoard;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Lazy SMP, searching the same position on several threads that share one transposition table. The threads don't
+ * split the work between them. Each runs its own iterative deepening, and what one finds is in the table for the
+ * others, so together they reach a given depth sooner than one thread would. The main thread's move is played, and
+ * the helpers are stopped once it's done.
+ *
+ * The table is shared without locks, which is safe since a torn entry fails its key check, see TranspositionTable.
+ */
+public class SmpSearch implements Closeable {
+    private final Search[] searches;
+    private final ExecutorService helpers;
+
+    /** Search on threads threads, the calling thread plus threads-1 helpers. */
+    public SmpSearch(TranspositionTable table,int threads) {
+        searches = new Search[Math.max(1,threads)];
+        for(int i=0; i<searches.length; i++) {
+            searches[i] = new Search(table,i);
+        }
+        if(searches.length > 1) {
+            helpers = Executors.newFixedThreadPool(searches.length-1,new ThreadFactory() {
+                int count = 0;
+
+                public synchronized Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r,"Search helper "+(++count));
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        } else {
+            helpers = null;
+        }
+    }
+
+    public int getThreads() {
+        return searches.length;
+    }
+
+    /**
+     * Search the game's position on all the threads until the time manager says stop, or the main thread has gone as
+     * deep as it allows. The node count is the total of all the threads. The game board isn't changed, and mustn't be
+     * changed until this returns.
+     */
+    public SearchResult think(final ChessBoard game,final TimeManager time) {
+        List<Future<SearchResult>> running = new ArrayList<>();
+        for(int i=1; i<searches.length; i++) {
+            final Search search = searches[i];
+            running.add(helpers.submit(new Callable<SearchResult>() {
+                public SearchResult call() {
+                    return search.think(game,time);
+                }
+            }));
+        }
+        SearchResult main;
+        try {
+            main = searches[0].think(game,time);
+        } finally {
+            time.stop();
+        }
+        long nodes = main.getNodes();
+        for(Future<SearchResult> helper : running) {
+            try {
+                nodes += helper.get().getNodes();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch(ExecutionException e) {
+                System.out.println("Search helper failed");
+                e.getCause().printStackTrace();
+            }
+        }
+        return new SearchResult(main.getMove(),main.getScore(),main.getDepth(),nodes,time.elapsed(),main.getPv());
+    }
+
+    public void close() {
+        if(helpers != null) {
+            helpers.shutdownNow();
+        }
+    }
+}
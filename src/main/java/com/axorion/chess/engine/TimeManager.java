@@ -0,0 +1,96 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+
+package com.axorion.chess.engine;
+
+/**
+ * Decides how long a search runs. The engine has the move time from the prefs to think, and stops when it's used up.
+ * A new iteration isn't started once half of it has gone, since it would most likely be cut off before it finished
+ * and its work would be wasted.
+ *
+ * The level limits how deep the search goes, so lower levels play weaker. Level 20 is full strength, like
+ * Stockfish's skill level.
+ */
+public class TimeManager {
+    public static final int MAX_LEVEL = 20;
+
+    private final long moveTime;
+    private final int maxDepth;
+    private long start;
+    private volatile boolean stopped = false;
+
+    /**
+     * @param moveTime milliseconds to think, 0 for no limit other than the depth.
+     * @param maxDepth deepest iteration to search.
+     */
+    public TimeManager(long moveTime,int maxDepth) {
+        this.moveTime = moveTime;
+        this.maxDepth = maxDepth;
+        start = System.currentTimeMillis();
+    }
+
+    /** Time manager for a move time and a level from 0 to 20. */
+    public static TimeManager forLevel(long moveTime,int level) {
+        return new TimeManager(moveTime,depthForLevel(level));
+    }
+
+    /** Depth limit for a level, level 0 only looks one move ahead and 20 is as deep as there is time for. */
+    public static int depthForLevel(int level) {
+        if(level >= MAX_LEVEL) {
+            return Search.MAX_PLY;
+        }
+        return 1+Math.max(0,level)/2;
+    }
+
+    /** Start the clock. */
+    public void start() {
+        start = System.currentTimeMillis();
+        stopped = false;
+    }
+
+    public long elapsed() {
+        return System.currentTimeMillis()-start;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /** True if there's time for another iteration of depth. */
+    public boolean canStartIteration(int depth) {
+        return !stopped && depth <= maxDepth && (moveTime == 0 || elapsed() < moveTime/2);
+    }
+
+    /** Called by the search every so often. Returns true once the search should stop, because of time or stop(). */
+    public boolean isTimeUp() {
+        if(!stopped && moveTime != 0 && elapsed() >= moveTime) {
+            stopped = true;
+        }
+        return stopped;
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /** Stop the search as soon as it next checks. */
+    public void stop() {
+        stopped = true;
+    }
+}
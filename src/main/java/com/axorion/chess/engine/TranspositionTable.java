@@ -0,0 +1,129 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+
+package com.axorion.chess.engine;
+
+import java.util.Arrays;
+
+/**
+ * Remembers what the search found out about positions it has seen, so a position reached again by another move order,
+ * or in the next iteration, gives its score or at least its best move straight away.
+ *
+ * Each entry is two longs, the key and the data packed as
+ * <pre>
+ *   bits 0-23   best move, in the form from Move
+ *   bits 24-39  score
+ *   bits 40-47  depth searched
+ *   bits 48-49  bound, EXACT, LOWER or UPPER
+ *   bits 50-57  age, the search that stored it
+ * </pre>
+ * The key is stored XORed with the data. An entry torn by two threads writing it at once then fails the key check
+ * instead of giving a wrong score, so the table can be shared between search threads without locking.
+ */
+public class TranspositionTable {
+    public static final int EXACT = 0;
+    public static final int LOWER = 1;     //score is at least this, the search failed high
+    public static final int UPPER = 2;     //score is at most this, the search failed low
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+    private int age = 0;
+
+    /** Table using about sizeMb megabytes, rounded down to a power of 2 entries. */
+    public TranspositionTable(int sizeMb) {
+        int entries = Integer.highestOneBit(Math.max(1,sizeMb*1024*1024/16));
+        keys = new long[entries];
+        data = new long[entries];
+        mask = entries-1;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    /** Start of a new search, so entries from earlier ones are replaced first. */
+    public void newSearch() {
+        age = (age+1) & 0xFF;
+    }
+
+    public void clear() {
+        Arrays.fill(keys,0);
+        Arrays.fill(data,0);
+    }
+
+    /** Returns the packed data stored for the key, or 0 if there isn't any. */
+    public long probe(long key) {
+        int index = (int)key & mask;
+        long d = data[index];
+        return (keys[index] ^ d) == key ? d : 0;
+    }
+
+    public void store(long key,int move,int score,int depth,int bound) {
+        int index = (int)key & mask;
+        long old = data[index];
+        boolean same = (keys[index] ^ old) == key;
+        //keep a deeper entry for the same position or from this search, unless there's a new best move to remember
+        if(old != 0 && depth < depth(old) && age(old) == age && !(same && bound == EXACT)) {
+            return;
+        }
+        if(move == 0 && same) {
+            move = move(old);
+        }
+        long d = (move & 0xFFFFFFL)
+                | ((long)(score & 0xFFFF) << 24)
+                | ((long)(depth & 0xFF) << 40)
+                | ((long)bound << 48)
+                | ((long)age << 50);
+        data[index] = d;
+        keys[index] = key ^ d;
+    }
+
+    public static int move(long data) {
+        return (int)(data & 0xFFFFFF);
+    }
+
+    public static int score(long data) {
+        return (short)(data >>> 24);
+    }
+
+    public static int depth(long data) {
+        return (int)(data >>> 40) & 0xFF;
+    }
+
+    public static int bound(long data) {
+        return (int)(data >>> 48) & 3;
+    }
+
+    static int age(long data) {
+        return (int)(data >>> 50) & 0xFF;
+    }
+
+    /** How full the table is in parts per thousand, counting entries from this search, like UCI hashfull. */
+    public int hashFull() {
+        int used = 0;
+        int sample = Math.min(1000,keys.length);
+        for(int i=0; i<sample; i++) {
+            if(data[i] != 0 && age(data[i]) == age) {
+                used++;
+            }
+        }
+        return used*1000/sample;
+    }
+}
@@ -0,0 +1,525 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+
+package com.axorion.chesslr;
+
+import com.axorion.chess.ChessBoard;
+import com.axorion.chess.GameArchive;
+import com.axorion.chess.Move;
+import com.axorion.chess.MoveGenerator;
+import com.axorion.chess.MoveList;
+import com.axorion.chess.PgnGame;
+import com.axorion.chess.PgnReader;
+import com.axorion.chess.PgnWriter;
+import com.rahul.stockfish.BestMove;
+import com.rahul.stockfish.EnginePool;
+import com.rahul.stockfish.UciInfo;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Goes through saved games without the GUI and writes them out again as PGN with the engine's opinion of every move:
+ * the evaluation after it, a mark if it threw away much of the advantage, and for marked moves the move the engine
+ * would have played instead.
+ *
+ * Every position of a game is handed to the engine pool at once, and the next game is read while they are searched,
+ * so all the engines stay busy. Games are written in the order they were read. After each one the checkpoint file
+ * records how many games of each input are done and how long the output is, so a run that was stopped carries on
+ * where it left off, dropping any half written game.
+ *
+ * Inputs can be .pgn files, the .txt files the app saves games as, the game archive, or directories of them. The
+ * app saves every game three times, as .txt, .pgn and in the archive, so a game whose "Game ID n" event was already
+ * annotated is skipped, and the output and checkpoint are never read as inputs. With no inputs the archive is used.
+ *
+ * <pre>
+ *     java -classpath target/classes com.axorion.chesslr.Annotator [-engines n] [-movetime ms]
+ *             [-out annotated.pgn] [-checkpoint file] [games/chesslr.games...]
+ * </pre>
+ */
+public class Annotator implements Closeable {
+    /** Evaluates positions, completing the future with the best move and its score. */
+    public interface Engine {
+        CompletableFuture<BestMove> search(String fen);
+    }
+
+    /** Centipawns a move has to lose for each mark. */
+    static final int BLUNDER = 300;
+    static final int MISTAKE = 150;
+    static final int INACCURACY = 70;
+    static final int GAMES_IN_FLIGHT = 2;   //games searched at once, so the engines don't wait while one is written
+    static final String GAME_ID_EVENT = "Game ID ";
+
+    /** A game read from an input, and the searches of its positions. */
+    static class Game {
+        final String source;
+        final int number;
+        final Map<String,String> tags;
+        final String startFen;
+        final int[] moves;
+        final String result;
+        final List<CompletableFuture<BestMove>> evals = new ArrayList<>();
+
+        Game(String source,int number,Map<String,String> tags,String startFen,int[] moves,String result) {
+            this.source = source;
+            this.number = number;
+            this.tags = tags;
+            this.startFen = startFen;
+            this.moves = moves;
+            this.result = result;
+        }
+    }
+
+    private final Engine engine;
+    private final File outputFile;
+    private final File checkpointFile;
+    private final Properties checkpoint = new Properties();
+    private final FileOutputStream outputStream;
+    private final Writer output;
+    private final ArrayDeque<Game> pending = new ArrayDeque<>();
+    private final Set<String> gameIds = new HashSet<>();    //ids of the games annotated or being searched
+    private long games = 0;
+    private long positions = 0;
+    private final long start = System.nanoTime();
+
+    /**
+     * Annotate into the output file. If the checkpoint file exists, the output is cut back to where it says and games
+     * it says are done are skipped, otherwise the output is started over.
+     */
+    public Annotator(Engine engine,File outputFile,File checkpointFile) throws IOException {
+        this.engine = engine;
+        this.outputFile = outputFile;
+        this.checkpointFile = checkpointFile;
+        long length = 0;
+        if(checkpointFile.exists()) {
+            try(Reader in = new InputStreamReader(new FileInputStream(checkpointFile),StandardCharsets.ISO_8859_1)) {
+                checkpoint.load(in);
+            }
+            length = Long.parseLong(checkpoint.getProperty("output","0"));
+            for(String key : checkpoint.stringPropertyNames()) {
+                if(key.startsWith("game.")) {
+                    gameIds.add(key.substring(5));
+                }
+            }
+            System.out.println("Resuming from "+checkpointFile+", output at "+length+" bytes");
+        }
+        try(RandomAccessFile file = new RandomAccessFile(outputFile,"rw")) {
+            file.setLength(length);
+        }
+        outputStream = new FileOutputStream(outputFile,true);
+        output = new BufferedWriter(new OutputStreamWriter(outputStream,StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Annotate every game in the files, looking in directories for .pgn, .txt and .games files. The output and
+     * checkpoint files are skipped, so the output can be in a directory that is read.
+     */
+    public void annotate(List<File> inputs) throws IOException {
+        for(File input : inputs) {
+            if(input.isDirectory()) {
+                File[] files = input.listFiles();
+                if(files == null) {
+                    continue;
+                }
+                Arrays.sort(files);
+                for(File file : files) {
+                    String name = file.getName();
+                    if(file.isFile() && (name.endsWith(".pgn") || name.endsWith(".txt") || name.endsWith(".games"))
+                            && !isOwnFile(file)) {
+                        annotateFile(file);
+                    }
+                }
+            } else if(isOwnFile(input)) {
+                System.out.println("Not annotating "+input+", it's the output");
+            } else {
+                annotateFile(input);
+            }
+        }
+        while(!pending.isEmpty()) {
+            finish(pending.poll());
+        }
+    }
+
+    /** True for the output file and the checkpoint, which must not be read back in as games. */
+    private boolean isOwnFile(File file) throws IOException {
+        File canonical = file.getCanonicalFile();
+        return canonical.equals(outputFile.getCanonicalFile()) || canonical.equals(checkpointFile.getCanonicalFile())
+                || canonical.equals(new File(checkpointFile.getPath()+".tmp").getCanonicalFile());
+    }
+
+    /** Annotate the games in one file, skipping the ones the checkpoint says are done. */
+    void annotateFile(File file) throws IOException {
+        String source = file.getPath();
+        int done = Integer.parseInt(checkpoint.getProperty("done."+source,"0"));
+        String name = file.getName();
+        if(name.endsWith(".games")) {
+            readArchive(file,done);
+        } else if(name.endsWith(".txt")) {
+            readMoveText(file);
+        } else {
+            readPgn(file,done);
+        }
+    }
+
+    private void readPgn(File file,int done) throws IOException {
+        try(PgnReader reader = new PgnReader(new InputStreamReader(new FileInputStream(file),StandardCharsets.ISO_8859_1))) {
+            PgnGame game = new PgnGame();
+            int number = 0;
+            while(reader.next(game)) {
+                if(game.hasError()) {
+                    System.out.println(file+" game "+(number+1)+": "+game.getError()+", annotating the moves before it");
+                }
+                if(number >= done) {
+                    MoveList list = game.getMoves();
+                    int[] moves = new int[list.size()];
+                    for(int i=0; i<moves.length; i++) {
+                        moves[i] = list.get(i);
+                    }
+                    add(new Game(file.getPath(),number,new LinkedHashMap<>(game.getTags()),game.getStartFen(),moves,game.getResult()));
+                }
+                number++;
+            }
+        }
+    }
+
+    private void readArchive(File file,int done) throws IOException {
+        try(GameArchive archive = new GameArchive(file)) {
+            ChessBoard board = new ChessBoard();
+            for(int i=done; i<archive.getGameCount(); i++) {
+                String result = archive.readGame(i,board);
+                add(new Game(file.getPath(),i,rosterTags(board,result),board.getStartFen(),moves(board),result));
+            }
+        }
+    }
+
+    /** The .txt files have the game id and date, a blank line, then the moves like "e2e4 d7d5 e4xd5". */
+    private void readMoveText(File file) throws IOException {
+        if(Integer.parseInt(checkpoint.getProperty("done."+file.getPath(),"0")) > 0) {
+            return;
+        }
+        ChessBoard board = new ChessBoard();
+        board.setFenPosition(ChessBoard.START_FEN);
+        try(BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file),StandardCharsets.ISO_8859_1))) {
+            String line;
+            while((line = in.readLine()) != null) {
+                if(line.startsWith("ChessLR Game Id: ")) {
+                    board.setGameId(Long.parseLong(line.substring(17).trim()));
+                } else if(!line.startsWith("Date ")) {
+                    for(String ean : line.trim().split("\\s+")) {
+                        if(ean.isEmpty()) {
+                            continue;
+                        }
+                        int move = findMove(board,ean.replace("x",""));
+                        if(move == Move.NONE) {
+                            System.out.println(file+": can't play "+ean+", annotating the moves before it");
+                            break;
+                        }
+                        board.move(move);
+                    }
+                }
+            }
+        }
+        String result = PgnWriter.result(board);
+        add(new Game(file.getPath(),0,rosterTags(board,result),board.getStartFen(),moves(board),result));
+    }
+
+    private static int[] moves(ChessBoard board) {
+        MoveList list = board.getMoveList();
+        int[] moves = new int[list.size()];
+        for(int i=0; i<moves.length; i++) {
+            moves[i] = list.get(i);
+        }
+        return moves;
+    }
+
+    /** The seven tag roster PgnWriter writes for games played on the board. */
+    private static Map<String,String> rosterTags(ChessBoard board,String result) {
+        Map<String,String> tags = new LinkedHashMap<>();
+        tags.put("Event",GAME_ID_EVENT+board.getGameId());
+        tags.put("Site","?");
+        tags.put("Date",board.getGameDateFormatted());
+        tags.put("Round","?");
+        tags.put("White","?");
+        tags.put("Black","?");
+        tags.put("Result",result);
+        if(!board.isStandardStart()) {
+            tags.put("SetUp","1");
+            tags.put("FEN",board.getStartFen());
+        }
+        return tags;
+    }
+
+    /** Returns the legal move in "e2e4" form, or Move.NONE if it isn't one. */
+    static int findMove(ChessBoard board,String ean) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegal(board,moves,0);
+        for(int i=0; i<count; i++) {
+            if(Move.toEan(moves[i]).equals(ean)) {
+                return moves[i];
+            }
+        }
+        return Move.NONE;
+    }
+
+    /** The app's game id from the "Game ID n" event, or null for games from elsewhere. */
+    static String gameId(Map<String,String> tags) {
+        String event = tags.get("Event");
+        if(event == null || !event.startsWith(GAME_ID_EVENT)) {
+            return null;
+        }
+        return event.substring(GAME_ID_EVENT.length()).trim();
+    }
+
+    /**
+     * Start the searches of every position of the game, and write out the oldest games once enough are going. A game
+     * with the id of one already annotated is another copy of it and is skipped.
+     */
+    void add(Game game) throws IOException {
+        String id = gameId(game.tags);
+        if(id != null && !gameIds.add(id)) {
+            System.out.println(game.source+" game "+(game.number+1)+": game id "+id+" already annotated, skipping");
+            return;
+        }
+        ChessBoard board = new ChessBoard();
+        board.setFenPosition(game.startFen);
+        for(int move : game.moves) {
+            game.evals.add(engine.search(board.toFen()));
+            board.makeMove(move);
+        }
+        ChessBoard.GameEnd end = board.getGameEnd();
+        if(end == ChessBoard.GameEnd.CHECKMATE || end == ChessBoard.GameEnd.STALEMATE) {
+            game.evals.add(null);   //nothing to search, the score is known
+        } else {
+            game.evals.add(engine.search(board.toFen()));
+        }
+        pending.add(game);
+        while(pending.size() > GAMES_IN_FLIGHT) {
+            finish(pending.poll());
+        }
+    }
+
+    /** Wait for the game's searches, write it out and move the checkpoint past it. */
+    private void finish(Game game) throws IOException {
+        BestMove[] evals = new BestMove[game.evals.size()];
+        for(int i=0; i<evals.length; i++) {
+            CompletableFuture<BestMove> search = game.evals.get(i);
+            if(search == null) {
+                continue;
+            }
+            try {
+                evals[i] = search.join();
+                positions++;
+            } catch(CompletionException e) {
+                System.out.println(game.source+" game "+(game.number+1)+": no evaluation for position "+i);
+                e.getCause().printStackTrace();
+            }
+        }
+        game.tags.put("Annotator","ChessLR");
+        for(Map.Entry<String,String> tag : game.tags.entrySet()) {
+            PgnWriter.writeTag(output,tag.getKey(),tag.getValue());
+        }
+        output.write('\n');
+        PgnWriter.writeMoves(annotate(game,evals),game.result,output);
+        output.write('\n');
+        output.flush();
+
+        games++;
+        checkpoint.setProperty("done."+game.source,Integer.toString(game.number+1));
+        String id = gameId(game.tags);
+        if(id != null) {
+            checkpoint.setProperty("game."+id,game.source);
+        }
+        checkpoint.setProperty("output",Long.toString(outputStream.getChannel().position()));
+        saveCheckpoint();
+        System.out.format("%s game %d: %d moves, %d games %d positions, %.1f positions/s%n",game.source,game.number+1,
+                game.moves.length,games,positions,getPositionsPerSecond());
+    }
+
+    /** Write the checkpoint to a new file and rename it over the old one, so a crash never leaves half of one. */
+    private void saveCheckpoint() throws IOException {
+        File temp = new File(checkpointFile.getPath()+".tmp");
+        try(Writer out = new OutputStreamWriter(new FileOutputStream(temp),StandardCharsets.ISO_8859_1)) {
+            checkpoint.store(out,"Annotator progress, delete to start over");
+        }
+        Files.move(temp.toPath(),checkpointFile.toPath(),StandardCopyOption.REPLACE_EXISTING,StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Move text with an evaluation comment after each move, marks on bad ones, and what the engine would play. */
+    static String annotate(Game game,BestMove[] evals) {
+        ChessBoard board = new ChessBoard();
+        board.setFenPosition(game.startFen);
+        String[] fields = game.startFen.split(" ");
+        boolean white = fields[1].equals("w");
+        int number = fields.length > 5 ? Integer.parseInt(fields[5]) : 1;
+        StringBuilder text = new StringBuilder(game.moves.length*24);
+        for(int i=0; i<game.moves.length; i++) {
+            int move = game.moves[i];
+            if(white) {
+                text.append(number).append('.');
+            } else if(i == 0) {
+                text.append(number).append("...");
+            }
+            text.append(PgnWriter.toSan(board,move));
+
+            //scores are from the side to move's view, so the one after the move is the opponent's
+            Integer before = centipawns(evals[i]);
+            board.makeMove(move);
+            Integer after = evals[i+1] != null ? centipawns(evals[i+1]) : terminalScore(board);
+            board.unmakeMove();
+            String bestMove = evals[i] != null ? evals[i].getMove() : null;
+            boolean played = Move.toEan(move).equals(bestMove);
+            String mark = "";
+            if(before != null && after != null && !played) {
+                mark = mark(before+after);
+            }
+            text.append(mark);
+            if(evals[i+1] != null && evals[i+1].getScore() != null && evals[i+1].getScore().hasScore()) {
+                text.append(" {").append(formatScore(evals[i+1].getScore(),!white));
+                if(!mark.isEmpty()) {
+                    int best = findMove(board,bestMove);
+                    if(best != Move.NONE) {
+                        text.append(" best ").append(PgnWriter.toSan(board,best)).append(' ')
+                                .append(formatScore(evals[i].getScore(),white));
+                    }
+                }
+                text.append('}');
+            }
+            text.append(' ');
+            board.move(move);
+            if(!white) {
+                number++;
+            }
+            white = !white;
+        }
+        return text.toString();
+    }
+
+    /** Mark for a move that lost that many centipawns, or "" if it's fine. */
+    static String mark(int loss) {
+        if(loss >= BLUNDER) {
+            return "??";
+        } else if(loss >= MISTAKE) {
+            return "?";
+        } else if(loss >= INACCURACY) {
+            return "?!";
+        }
+        return "";
+    }
+
+    private static Integer centipawns(BestMove eval) {
+        if(eval == null || eval.getScore() == null || !eval.getScore().hasScore()) {
+            return null;
+        }
+        return eval.getScore().getCentipawns();
+    }
+
+    /** Score of a position with no moves for the side to move: mated, or 0 for stalemate. */
+    private static Integer terminalScore(ChessBoard board) {
+        ChessBoard.GameEnd end = board.getGameEnd();
+        if(end == ChessBoard.GameEnd.CHECKMATE) {
+            return -UciInfo.MATE_SCORE;
+        }
+        return end == ChessBoard.GameEnd.STALEMATE ? 0 : null;
+    }
+
+    /** Score from white's view, like "+0.35" or "#-3", given the score from the side to move's view. */
+    static String formatScore(UciInfo score,boolean whiteToMove) {
+        int value = whiteToMove ? score.getScore() : -score.getScore();
+        if(score.isMate()) {
+            return "#"+value;
+        }
+        return String.format("%+.2f",value/100.0);
+    }
+
+    public double getPositionsPerSecond() {
+        long nanos = System.nanoTime()-start;
+        return nanos == 0 ? 0 : positions*1e9/nanos;
+    }
+
+    public void close() throws IOException {
+        output.close();
+    }
+
+    public static void main(String[] args) {
+        int engines = Runtime.getRuntime().availableProcessors();
+        int moveTime = 1000;
+        File out = new File("annotated.pgn");
+        File checkpoint = null;
+        List<File> inputs = new ArrayList<>();
+        for(int i=0; i<args.length; i++) {
+            if(args[i].equals("-engines")) {
+                engines = Integer.parseInt(args[++i]);
+            } else if(args[i].equals("-movetime")) {
+                moveTime = Integer.parseInt(args[++i]);
+            } else if(args[i].equals("-out")) {
+                out = new File(args[++i]);
+            } else if(args[i].equals("-checkpoint")) {
+                checkpoint = new File(args[++i]);
+            } else {
+                inputs.add(new File(args[i]));
+            }
+        }
+        if(inputs.isEmpty()) {
+            inputs.add(new File("games/chesslr.games"));  //every game the app saved, the .txt and .pgn are copies
+        }
+        if(checkpoint == null) {
+            checkpoint = new File(out.getPath()+".checkpoint");
+        }
+        final int searchTime = moveTime;
+        try(final EnginePool pool = new EnginePool(ChessLR.stockfishPath,engines,20,100);
+            Annotator annotator = new Annotator(new Engine() {
+                public CompletableFuture<BestMove> search(String fen) {
+                    return pool.search(fen,searchTime);
+                }
+            },out,checkpoint)) {
+            annotator.annotate(inputs);
+            System.out.format("Done, %d games %d positions, %.1f positions/s with %d engines%n",annotator.games,
+                    annotator.positions,annotator.getPositionsPerSecond(),engines);
+        } catch(IOException e) {
+            System.out.println("Unable to annotate games");
+            e.printStackTrace();
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+}
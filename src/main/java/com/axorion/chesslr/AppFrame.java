@@ -35,15 +35,31 @@
 
 package com.axorion.chesslr;
 
+import com.axorion.chess.Bitboard;
 import com.axorion.chess.ChessBoard;
 import com.axorion.chess.ChessMove;
+import com.axorion.chess.GameArchive;
+import com.axorion.chess.PolyglotBook;
+import com.axorion.chess.Move;
+import com.axorion.chess.PgnGame;
+import com.axorion.chess.PgnReader;
+import com.axorion.chess.PgnWriter;
+import com.axorion.chess.engine.JavaEngine;
+import com.axorion.chess.engine.SearchResult;
 import com.axorion.chesslr.hardware.BoardController;
 import com.axorion.chesslr.hardware.PieceListener;
 import com.pi4j.io.gpio.GpioController;
 import com.pi4j.io.gpio.GpioFactory;
 import com.pi4j.io.i2c.I2CBus;
 import com.pi4j.io.i2c.I2CFactory;
-import com.rahul.stockfish.Stockfish;
+import com.rahul.stockfish.AnalysisService;
+import com.rahul.stockfish.AsyncEngine;
+import com.rahul.stockfish.BestMove;
+import com.rahul.stockfish.EngineCache;
+import com.rahul.stockfish.EngineMetrics;
+import com.rahul.stockfish.EnginePool;
+import com.rahul.stockfish.HintService;
+import com.rahul.stockfish.UciInfo;
 
 import javax.swing.*;
 import javax.swing.text.DefaultCaret;
@@ -54,13 +70,21 @@ import java.awt.image.CropImageFilter;
 import java.awt.image.FilteredImageSource;
 import java.awt.image.ImageProducer;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 import static java.awt.Image.SCALE_SMOOTH;
 
@@ -119,6 +143,12 @@ public class AppFrame extends JFrame implements InvocationHandler,PieceListener
     boolean boardAttached;
     ChessMove waitForMove = null;
     ArrayList<ChessMove> waitForMoveList = new ArrayList<ChessMove>();
+    /**
+     * Held while the game is changed or read, by the reed thread in pieceUp() and pieceDown(), by MoveThread, and on
+     * the Swing thread for engine moves and the buttons. Dialogs are never shown while it's held.
+     */
+    final Object gameLock = new Object();
+    Runnable wrongPieceDialog;      //shown by showWrongPieceDialog() once gameLock is let go
     GameMode mode = GameMode.PLAYING;
     GameMode previousMode = null;
 
@@ -126,8 +156,20 @@ public class AppFrame extends JFrame implements InvocationHandler,PieceListener
     ChessBoard.Side playerSide = ChessBoard.Side.WHITE;
 
     SimBoard simBoard;
-    Stockfish fish = new Stockfish();
+    EnginePool engine;              //picks the computer's moves without blocking the thread that saw the player's move
+    volatile boolean engineThinking = false;
+    volatile EnginePool.Ponder ponder;  //engine thinking on the player's time about the reply it expects
+    JavaEngine javaEngine;          //built in engine, used instead when there's no Stockfish
+    AnalysisService analysis;       //evaluates the position in the background when show evaluation is on
+    HintService hints;              //best moves for the player, lit on the board when show hints is on
+    volatile long hintSquares = 0;  //squares lit by showHints(), turned off when the piece is put down
+    static final int HINT_LINES = 3;
+    static final String NO_MOVE = "(none)";    //what UCI engines answer when there's no legal move
     String stockfishPath = "../stockfish/cmake-build-debug/stockfish";
+    int movesTextCount = 0;         //moves shown in movesTextArea, so new moves can be appended
+    boolean movesTextPgn = false;
+    GameArchive archive;            //every game played, recorded a move at a time
+    PolyglotBook book;              //opening moves played without asking the engine, null if there's no book
 
     public AppFrame(String title,boolean boardAttached,long waitTime) throws ClassNotFoundException, UnsupportedLookAndFeelException, InstantiationException, IllegalAccessException, IOException, I2CFactory.UnsupportedBusNumberException {
         super(title);
@@ -136,6 +178,21 @@ public class AppFrame extends JFrame implements InvocationHandler,PieceListener
         prefs = new ChessPrefs(this);
         prefs.loadPrefs();
         chessBoard.setGameId(prefs.gameId);
+        try {
+            archive = new GameArchive(new File("games/chesslr.games"));
+        } catch(IOException e) {
+            System.out.println("Unable to open game archive: "+e.getMessage());
+            e.printStackTrace();
+        }
+        File bookFile = new File("book.bin");
+        if(bookFile.exists()) {
+            try {
+                book = new PolyglotBook(bookFile);
+            } catch(IOException e) {
+                System.out.println("Unable to open opening book: "+e.getMessage());
+                e.printStackTrace();
+            }
+        }
         numberPlayers = prefs.getPlayers();
 
         mediaTracker = new MediaTracker(this);
@@ -152,6 +209,7 @@ public class AppFrame extends JFrame implements InvocationHandler,PieceListener
         fileDialog = new FileDialog(this);
 
         fileChooser = new JFileChooser();
+        fileChooser.addChoosableFileFilter(new OpenFileFilter("pgn","Portable Game Notation") );
         fileChooser.addChoosableFileFilter(new OpenFileFilter("csv","Comma Separated") );
         fileChooser.addChoosableFileFilter(new OpenFileFilter("txt","Tab Separated") );
 
@@ -212,11 +270,8 @@ public class AppFrame extends JFrame implements InvocationHandler,PieceListener
 //        resetBoard();
         enableButtons();
 
-        if(fish.startEngine(ChessLR.stockfishPath) == false) {
-            System.out.println("Unable to start stockfish");
-        } else {
-            System.out.println("Stockfish ready");
-        }
+        startMoveEngine();
+        updateAnalysis();
 
         setMessage("New "+numberPlayers+" player game started, game id "+chessBoard.getGameId());
     }
@@ -261,48 +316,205 @@ public class AppFrame extends JFrame implements InvocationHandler,PieceListener
                 setWaitForMove(waitForMoveList.get(0));
             } else {
                 setWaitForMove(null);
+                verifyBoard();
                 //check if we need to make a computer move
                 computerMove();
             }
         }
     }
 
+    /**
+     * Compare the pieces on the board with the game in one scan of the board, and say which squares are off, like a
+     * piece that was knocked over or a capture left on the board.
+     */
+    private void verifyBoard() {
+        long pieces = chessBoardController.snapshot();
+        long expected = chessBoard.getOccupied();
+        if(pieces != expected) {
+            System.out.println("Board doesn't match the game, missing"+squareNames(BoardController.lifted(expected,pieces))
+                    +" extra"+squareNames(BoardController.placed(expected,pieces)));
+        }
+    }
+
+    private String squareNames(long squares) {
+        StringBuilder names = new StringBuilder();
+        while(squares != 0) {
+            names.append(' ').append(chessBoard.indexToBoard(Long.numberOfTrailingZeros(squares)));
+            squares &= squares-1;
+        }
+        return names.toString();
+    }
+
+    /**
+     * Start the engine used for the computer's moves, with the level from the prefs. It's kept in a pool of one so it
+     * is checked in the background and replaced if it dies, without holding up the game. If there's no Stockfish, or it
+     * won't start, the built in engine is used instead.
+     */
+    private void startMoveEngine() {
+        if(!new File(ChessLR.stockfishPath).exists()) {
+            System.out.println("No engine at "+ChessLR.stockfishPath+", using the built in engine");
+            startJavaEngine();
+            return;
+        }
+        try {
+            engine = new EnginePool(ChessLR.stockfishPath,1,getPrefs().getLevel(),getPrefs().getSlowMover());
+            engine.startHealthChecks(30000,2000);
+            try {
+                engine.setCache(new EngineCache(4096,new File("chesslr.cache"),1 << 16));
+            } catch(IOException e) {
+                System.out.println("Unable to open engine cache file, keeping it in memory");
+                e.printStackTrace();
+                engine.setCache(new EngineCache(4096));
+            }
+        } catch(IOException e) {
+            System.out.println("Unable to start engine, using the built in engine");
+            e.printStackTrace();
+            engine = null;
+            startJavaEngine();
+        }
+    }
+
+    private void startJavaEngine() {
+        javaEngine = new JavaEngine(32,Runtime.getRuntime().availableProcessors());    //Lazy SMP on every core
+        javaEngine.setLevel(getPrefs().getLevel());
+    }
+
+    /**
+     * Ask the engine for a move if it's the computer's turn. This returns right away, the move is made on the Swing
+     * thread under gameLock when the engine answers, so the board and LEDs keep working while it thinks. While the game is still in
+     * the opening book the move comes from the book instead, and the engine isn't asked. Once the game is over there's
+     * nothing to ask for.
+     */
     private void computerMove() {
-        if(numberPlayers == 1 && !prefs.isDisableEngine() && waitForMove == null) {
+        if(numberPlayers == 1 && !prefs.isDisableEngine() && waitForMove == null && !engineThinking) {
             if(chessBoard.getCurrentMove() != playerSide) {
+                if(chessBoard.isGameOver()) {
+                    return;
+                }
+                if(book != null) {
+                    int bookMove = book.getMove(chessBoard);
+                    if(bookMove != Move.NONE) {
+                        System.out.println("Book move "+Move.toEan(bookMove));
+                        cancelPonder();
+                        makeComputerMove(new BestMove(Move.toEan(bookMove),null));
+                        return;
+                    }
+                }
+                if(engine == null && javaEngine == null) {
+                    startMoveEngine();
+                    if(engine == null && javaEngine == null) {
+                        setMessage("Unable to get move from engine");
+                        return;
+                    }
+                }
                 System.out.println("Making computer move");
-                try {
-                    String cpuEan = fish.getBestMove(chessBoard.toFen(),1000);
-                    ChessMove move = new ChessMove(chessBoard,cpuEan);
-                    ChessMove finishCastle = null;
-                    if(move.isCastleQueenSide() || move.isCastleKingSide()) {
-                        if(chessBoard.getCurrentMove() == ChessBoard.Side.WHITE) {
-                            if(move.isCastleKingSide()) {
-                                finishCastle = new ChessMove(chessBoard,"h1f1");
-                            } else {
-                                finishCastle = new ChessMove(chessBoard,"a1d1");
-                            }
-                        } else {
-                            if(move.isCastleKingSide()) {
-                                finishCastle = new ChessMove(chessBoard,"h8f8");
-                            } else {
-                                finishCastle = new ChessMove(chessBoard,"a8d8");
+                engineThinking = true;
+                final long position = chessBoard.getHashKey();
+                final int moveCount = chessBoard.getMoveCount();
+                CompletableFuture<BestMove> search;
+                EnginePool.Ponder pondering = ponder;
+                ponder = null;
+                if(javaEngine != null) {
+                    search = javaEngine.search(chessBoard,getMoveTime()).thenApply(new Function<SearchResult,BestMove>() {
+                        public BestMove apply(SearchResult result) {
+                            System.out.println("Built in engine "+result);
+                            if(result.getMove() == Move.NONE) {
+                                return new BestMove(NO_MOVE,null);
                             }
+                            return new BestMove(Move.toEan(result.getMove()),null);
                         }
+                    });
+                } else if(pondering != null && chessBoard.getMoveCount() > 0
+                        && pondering.getExpectedMove().equals(Move.toEan(chessBoard.getLastMove()))) {
+                    System.out.println("Ponder hit "+pondering.getExpectedMove());
+                    search = pondering.hit();
+                } else {
+                    if(pondering != null) {
+                        pondering.miss();
+                    }
+                    search = engine.search(chessBoard.toFen(),getMoveTime());
+                }
+                search.whenComplete(new BiConsumer<BestMove,Throwable>() {
+                    public void accept(final BestMove best,final Throwable error) {
+                        SwingUtilities.invokeLater(new Runnable() {
+                            public void run() {
+                                //the check and the move are made under the lock, so a move made on the board can't
+                                //come in between them
+                                synchronized(gameLock) {
+                                    engineThinking = false;
+                                    if(error != null) {
+                                        String msg = "Unable to get move from engine";
+                                        System.out.println(msg);
+                                        error.printStackTrace();
+                                        setMessage(msg);    //the pool replaces the engine for the next move
+                                    } else if(chessBoard.getHashKey() != position || chessBoard.getMoveCount() != moveCount) {
+                                        System.out.println("Position changed while engine was thinking, ignoring "+best);
+                                        computerMove();
+                                    } else if(best.getMove() == null || best.getMove().equals(NO_MOVE)) {
+                                        System.out.println("Engine has no move");
+                                        setMessage("Engine has no move");
+                                    } else {
+                                        makeComputerMove(best);
+                                    }
+                                }
+                            }
+                        });
                     }
-                    chessBoard.move(move);
-                    addWaitForMove(move);
-                    if(finishCastle != null)
-                        addWaitForMove(finishCastle);
-                } catch(IOException e) {
-                    String msg = "Unable to get move from engine";
-                    System.out.println(msg);
-                    e.printStackTrace();
-                    setMessage(msg);
+                });
+            }
+        }
+    }
+
+    private int getMoveTime() {
+        return getPrefs().getMoveTime() > 0 ? getPrefs().getMoveTime() : 1000;
+    }
+
+    /** Stop the engine thinking about a reply that won't be played, after a takeback or a new game. */
+    private void cancelPonder() {
+        EnginePool.Ponder pondering = ponder;
+        ponder = null;
+        if(pondering != null) {
+            pondering.miss();
+        }
+    }
+
+    /**
+     * Make the move the engine picked, and wait for the player to make it on the board. The engine then ponders on the
+     * reply it expects while the player thinks and slides pieces around.
+     */
+    private void makeComputerMove(BestMove best) {
+        ChessMove move = new ChessMove(chessBoard,best.getMove());
+        ChessMove finishCastle = null;
+        if(move.isCastleQueenSide() || move.isCastleKingSide()) {
+            if(chessBoard.getCurrentMove() == ChessBoard.Side.WHITE) {
+                if(move.isCastleKingSide()) {
+                    finishCastle = new ChessMove(chessBoard,"h1f1");
+                } else {
+                    finishCastle = new ChessMove(chessBoard,"a1d1");
+                }
+            } else {
+                if(move.isCastleKingSide()) {
+                    finishCastle = new ChessMove(chessBoard,"h8f8");
+                } else {
+                    finishCastle = new ChessMove(chessBoard,"a8d8");
                 }
             }
         }
+        chessBoard.move(move);
+        addWaitForMove(move);
+        if(finishCastle != null)
+            addWaitForMove(finishCastle);
+        updateMovesText();
+        enableButtons();
+        board.repaint();
+        updateAnalysis();
+        archiveGame();
+
+        if(best.getPonder() != null && numberPlayers == 1 && !chessBoard.isGameOver()) {
+            ponder = engine.ponder(chessBoard.toFen(),best.getPonder(),getMoveTime());
+        }
     }
+
     /** Any text that is added to the moves text area will automatically scroll into view. */
     private void movesAutoScroll() {
         DefaultCaret caret = (DefaultCaret) movesTextArea.getCaret();
@@ -347,16 +559,7 @@ public class AppFrame extends JFrame implements InvocationHandler,PieceListener
     public void savePgn() throws IOException {
         File f = new File(getPgnFilename());
         PrintWriter out = new PrintWriter(f);
-        out.println("[Event \"Game ID "+chessBoard.getGameId()+"\"]");
-        out.println("[Site \"?\"]");
-        out.println("[Date \""+chessBoard.getGameDateFormatted()+"\"]");
-        out.println("[Round \"?\"]");
-        out.println("[White \"?\"]");
-        out.println("[Black \"?\"]");
-        out.println("[Result \"*\"]");
-        out.println("");
-        out.println(chessBoard.getMovesPgn());
-        out.flush();
+        PgnWriter.write(chessBoard,out);
         out.close();
     }
 
@@ -398,13 +601,18 @@ public class AppFrame extends JFrame implements InvocationHandler,PieceListener
     }
 
     /**
-     * Piece was lifted off the board.
-     *
-     * TODO If we are showing valid moves, light up all squares that piece can be dropped on.
+     * Piece was lifted off the board. If show hints is on the squares it can go to are lit, see showHints().
      *
      * @param boardIndex location piece was picked up from.
      */
     public void pieceUp(int boardIndex) {
+        synchronized(gameLock) {
+            handlePieceUp(boardIndex);
+        }
+        showWrongPieceDialog();
+    }
+
+    private void handlePieceUp(int boardIndex) {
         String square = chessBoard.indexToBoard(boardIndex);
         switch(mode) {
             case SHOW_PIECES:
@@ -418,6 +626,7 @@ public class AppFrame extends JFrame implements InvocationHandler,PieceListener
                     System.out.println("Piece up at "+chessBoard.indexToBoard(boardIndex));
                     pieceUpIndex = boardIndex;
                     chessBoardController.led(boardIndex,true);
+                    showHints(boardIndex);
                     board.setSquareStatus(boardIndex,BoardPanel.SquareStatus.SELECTED);
                     processMove();
                 } else {
@@ -500,23 +709,48 @@ public class AppFrame extends JFrame implements InvocationHandler,PieceListener
             board.setSquareStatus(boardIndex,BoardPanel.SquareStatus.ERROR);
         });
 
-        JOptionPane.showMessageDialog(this,square.toUpperCase()+" is wrong. Expecting "+expectedMove.toEan()+".","Invalid move",JOptionPane.ERROR_MESSAGE);
-        SwingUtilities.invokeLater(() -> {
-            chessBoardController.flashOff(boardIndex);
-            board.setSquareStatus(boardIndex,BoardPanel.SquareStatus.NORMAL);
-        });
+        final String message = square.toUpperCase()+" is wrong. Expecting "+expectedMove.toEan()+".";
+        wrongPieceDialog = new Runnable() {
+            public void run() {
+                JOptionPane.showMessageDialog(AppFrame.this,message,"Invalid move",JOptionPane.ERROR_MESSAGE);
+                SwingUtilities.invokeLater(() -> {
+                    chessBoardController.flashOff(boardIndex);
+                    board.setSquareStatus(boardIndex,BoardPanel.SquareStatus.NORMAL);
+                });
+            }
+        };
+    }
 
+    /**
+     * Show the dialog showWrongPiece() left, after gameLock is let go. The Swing thread needs the lock for engine
+     * moves, so holding it while the dialog waits on the Swing thread would lock up both.
+     */
+    private void showWrongPieceDialog() {
+        Runnable dialog;
+        synchronized(gameLock) {
+            dialog = wrongPieceDialog;
+            wrongPieceDialog = null;
+        }
+        if(dialog != null) {
+            dialog.run();
+        }
     }
 
     /**
      * Piece was put back onto the board at the given boardIndex.
      *
      * TODO If king is in check, flash kings square once or twice.
-     * TODO If showing valid moves, turn off all LEDs.
      *
      * @param boardIndex location piece was dropped.
      */
     public void pieceDown(int boardIndex) {
+        synchronized(gameLock) {
+            handlePieceDown(boardIndex);
+        }
+        showWrongPieceDialog();
+    }
+
+    private void handlePieceDown(int boardIndex) {
         String square = chessBoard.indexToBoard(boardIndex);
         switch(mode) {
             case SHOW_PIECES:
@@ -524,6 +758,7 @@ public class AppFrame extends JFrame implements InvocationHandler,PieceListener
                 break;
 
             case PLAYING:
+                clearHints();
                 if(pieceDownIndex != -1) {
                     chessBoardController.led(pieceDownIndex,false);    //turn off previous led
                     board.resetBoard();
@@ -618,17 +853,25 @@ public class AppFrame extends JFrame implements InvocationHandler,PieceListener
 
     public void showLastMove() {
         board.resetBoard();
-        java.util.List<ChessMove> scoreCard = chessBoard.getScoreCard();
-        if(scoreCard.size()>0) {
-            ChessMove move = scoreCard.get(scoreCard.size()-1);
-            int from = move.getFromIndex();
-            int to = move.getToIndex();
+        int move = chessBoard.getLastMove();
+        if(move != Move.NONE) {
+            int from = Move.from(move);
+            int to = Move.to(move);
             board.setSquareStatus(from,BoardPanel.SquareStatus.MOVED);
             board.setSquareStatus(to,BoardPanel.SquareStatus.MOVED);
         }
     }
 
     public void recordMove(ChessMove move) {
+        if(!chessBoard.isValid(move)) {
+            //have the player put the piece back where it came from
+            System.out.println("Illegal move "+move.toEan());
+            setMessage("Illegal move "+move.toEan()+", put the piece back");
+            move.takeback();
+            addWaitForMove(move);
+            return;
+        }
+
         ChessMove finishCastle = null;
         if(move.isCastleQueenSide() || move.isCastleKingSide()) {
             if(chessBoard.getCurrentMove() == ChessBoard.Side.WHITE) {
@@ -654,25 +897,170 @@ public class AppFrame extends JFrame implements InvocationHandler,PieceListener
         board.repaint();
         enableButtons();
 
-        if(getPrefs().isShowEvaluation()) {
+        updateAnalysis();
+        archiveGame();  //save current game
+    }
+
+    /**
+     * Point the background analysis at the position on the board, or stop it if show evaluation is off. The old
+     * search is stopped and the new one started without waiting for either, the score shows up in the message bar
+     * as the engine finds it. The hint search is moved to the position too, see updateHints(). This is called from
+     * the Swing thread and MoveThread, so it runs under gameLock and only one analysis engine is ever started. There
+     * is no analysis without Stockfish.
+     */
+    public void updateAnalysis() {
+        synchronized(gameLock) {
+            updateHints();
+            try {
+                if(!getPrefs().isShowEvaluation()) {
+                    if(analysis != null) {
+                        analysis.stop();
+                    }
+                    return;
+                }
+                if(analysis == null || analysis.getEngine().isClosed()) {
+                    if(analysis != null) {
+                        analysis.close();
+                        analysis = null;
+                    }
+                    if(!new File(ChessLR.stockfishPath).exists()) {
+                        return;
+                    }
+                    analysis = new AnalysisService(new AsyncEngine(ChessLR.stockfishPath),new Executor() {
+                        public void execute(Runnable command) {
+                            SwingUtilities.invokeLater(command);
+                        }
+                    },new AnalysisService.AnalysisListener() {
+                        public void analysisUpdate(String fen,UciInfo info) {
+                            if(info.isMate()) {
+                                setMessage("Mate in "+info.getScore()+" depth "+info.getDepth());
+                            } else {
+                                setMessage(String.format("Score %.2f depth %d",info.getScore()/100f,info.getDepth()));
+                            }
+                        }
+                    });
+                }
+                analysis.analyze(chessBoard.toFen());
+            } catch(IOException e) {
+                e.printStackTrace();
+                setMessage("Unable to start analysis");
+                if(analysis != null) {
+                    analysis.close();   //started again on the next move
+                }
+            }
+        }
+    }
+
+    /**
+     * Point the hint search at the position if it's the player's move and show hints is on, so the best moves are ready
+     * by the time a piece is lifted. Without Stockfish there's no hint search, lifting a piece shows its legal moves.
+     * Like updateAnalysis() it runs under gameLock, so only one hint engine is started.
+     */
+    public void updateHints() {
+        synchronized(gameLock) {
             try {
-                float score = fish.getEvalScore(chessBoard.toFen(),1);
-                setMessage("Score "+score);
+                boolean playersMove = numberPlayers != 1 || chessBoard.getCurrentMove() == playerSide;
+                if(!getPrefs().isShowHints() || !playersMove || chessBoard.isGameOver()) {
+                    if(hints != null) {
+                        hints.stop();
+                    }
+                    return;
+                }
+                if(hints == null || hints.getEngine().isClosed()) {
+                    if(hints != null) {
+                        hints.close();
+                        hints = null;
+                    }
+                    if(!new File(ChessLR.stockfishPath).exists()) {
+                        return;
+                    }
+                    hints = new HintService(new AsyncEngine(ChessLR.stockfishPath),HINT_LINES,256);
+                }
+                hints.analyze(chessBoard.getHashKey(),chessBoard.toFen());
             } catch(IOException e) {
                 e.printStackTrace();
-                setMessage("Stockfish restarted");
-                fish.startEngine(ChessLR.stockfishPath);
+                setMessage("Unable to start hints");
+                if(hints != null) {
+                    hints.close();  //started again on the next move
+                }
+            }
+        }
+    }
+
+    /**
+     * Light the squares the piece lifted from the square can go to. Only the engine's best moves are lit if it has
+     * found them for this position, and if the piece isn't in any of them, the squares of the moves that are get lit
+     * instead. Until the engine has some, every legal move of the piece is lit. The position is copied under gameLock
+     * and the moves are worked out on the copy, so the game board is never made and unmade on here while another
+     * thread moves on it.
+     */
+    private void showHints(int from) {
+        ChessBoard position = new ChessBoard();
+        HintService service;
+        synchronized(gameLock) {
+            if(!getPrefs().isShowHints() || (numberPlayers == 1 && chessBoard.getCurrentMove() != playerSide)) {
+                return;
             }
+            position.copyPosition(chessBoard);
+            service = hints;
         }
+        List<String> moves = service != null ? service.getHints(position.getHashKey()) : null;
+        boolean engineMoves = moves != null && !moves.isEmpty();
+        if(!engineMoves) {
+            moves = position.getLegalMoves();
+        }
+        String square = position.indexToBoard(from);
+        long squares = 0;
+        for(String move : moves) {
+            if(move.startsWith(square)) {
+                squares |= Bitboard.bit(position.boardToIndex(move.substring(2,4)));
+            }
+        }
+        if(squares == 0 && engineMoves) {
+            for(String move : moves) {
+                squares |= Bitboard.bit(position.boardToIndex(move.substring(0,2)));
+                squares |= Bitboard.bit(position.boardToIndex(move.substring(2,4)));
+            }
+        }
+        squares &= ~Bitboard.bit(from);
+        hintSquares = squares;
+        while(squares != 0) {
+            chessBoardController.led(Bitboard.first(squares),true);
+            squares &= squares-1;
+        }
+    }
 
-        saveGameMenuItemActionPerformed(null);  //save current game
+    /** Turn off the LEDs lit by showHints(), leaving the squares of the move being made. */
+    private void clearHints() {
+        long squares = hintSquares;
+        hintSquares = 0;
+        while(squares != 0) {
+            int index = Bitboard.first(squares);
+            if(index != pieceUpIndex && index != secondPieceUpIndex) {
+                chessBoardController.led(index,false);
+            }
+            squares &= squares-1;
+        }
+    }
+
+    /** Record any moves made or taken back in the game archive. Only the changes are written, not the whole game. */
+    public void archiveGame() {
+        if(archive == null) {
+            return;
+        }
+        try {
+            archive.record(chessBoard);
+        } catch(IOException e) {
+            e.printStackTrace();
+            setMessage("Unable to save game");
+        }
     }
 
     public void enableButtons() {
         forwardButton.setEnabled(false);
         fastForwardButton.setEnabled(false);
 
-        if(chessBoard.getScoreCard().size() > 0) {
+        if(chessBoard.getMoveCount() > 0) {
             backButton.setEnabled(true);
 //            fastBackButton.setEnabled(true);  //TODO fast back should take back again after the player finishes the forced move until the button is clicked again.
         } else {
@@ -718,13 +1106,17 @@ public class AppFrame extends JFrame implements InvocationHandler,PieceListener
 
         int w = frame.getWidth();
         int h = frame.getHeight();
+        long leds = 0;
         for(int y=0; y<h; y++) {
             for(int x=0; x<w; x++) {
                 int rgb = frame.getRGB(x,y);
                 boolean on = (rgb&MASK_RGB) > 0;
-                chessBoardController.led(y*8+x,on);
+                if(on) {
+                    leds |= 1L << (y*8+x);
+                }
             }
         }
+        chessBoardController.showFrame(leds);
     }
 
 
@@ -736,23 +1128,27 @@ public class AppFrame extends JFrame implements InvocationHandler,PieceListener
     }
 
     private void resetBoard() {
-        showPieces(false);
-        showLayout(false);
-        if(simBoard != null)
-            simBoard.reset();
-        chessBoardController.resetBoard();
-        chessBoard.resetBoard(playerSide);
-        chessBoard.setGameId(chessBoard.getGameId()+1);
-        board.resetBoard();
-        pieceUpIndex = -1;
-        pieceDownIndex = -1;
-        isShowingPieces = false;
-        movesTextArea.setText("");
-        removeAllWaitForMoves();
-        enableButtons();
-        board.repaint();
-        mode = GameMode.PLAYING;
-        getPrefs().savePrefs(chessBoard);
+        synchronized(gameLock) {
+            showPieces(false);
+            showLayout(false);
+            if(simBoard != null)
+                simBoard.reset();
+            chessBoardController.resetBoard();
+            chessBoard.resetBoard(playerSide);
+            chessBoard.setGameId(chessBoard.getGameId()+1);
+            board.resetBoard();
+            pieceUpIndex = -1;
+            pieceDownIndex = -1;
+            isShowingPieces = false;
+            movesTextArea.setText("");
+            removeAllWaitForMoves();
+            enableButtons();
+            board.repaint();
+            mode = GameMode.PLAYING;
+            getPrefs().savePrefs(chessBoard);
+            cancelPonder();
+            updateAnalysis();
+        }
     }
 
     /**
@@ -795,6 +1191,43 @@ public class AppFrame extends JFrame implements InvocationHandler,PieceListener
     }
 
     private void exitMenuItemActionPerformed(ActionEvent e) {
+        if(book != null) {
+            try {
+                book.close();
+            } catch(IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+        if(archive != null) {
+            try {
+                archive.sync();
+                archive.close();
+            } catch(IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+        cancelPonder();
+        if(engine != null) {
+            for(EngineMetrics metrics : engine.getMetrics()) {
+                System.out.println(metrics);
+            }
+            engine.close();
+            System.out.println(engine.getCache());
+            try {
+                engine.getCache().close();
+            } catch(IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+        if(javaEngine != null) {
+            javaEngine.close();
+        }
+        if(analysis != null) {
+            analysis.close();
+        }
+        if(hints != null) {
+            hints.close();
+        }
         System.exit(0);
     }
 
@@ -805,7 +1238,45 @@ public class AppFrame extends JFrame implements InvocationHandler,PieceListener
     private void menuItem3ActionPerformed(ActionEvent e) {
     }
 
+    /** Load the first game from a PGN file, so it can be replayed with the back button. */
     private void openMenuItemActionPerformed(ActionEvent e) {
+        File file = choosePgnFile();
+        if(file == null)
+            return;
+
+        try(PgnReader reader = new PgnReader(new InputStreamReader(new FileInputStream(file),StandardCharsets.ISO_8859_1))) {
+            PgnGame game = new PgnGame();
+            if(!reader.next(game)) {
+                setMessage("No games in "+file.getName());
+                return;
+            }
+            synchronized(gameLock) {
+                resetBoard();
+                game.replay(chessBoard);
+                setMessage(game.hasError() ? game.getError() : "Loaded "+game);
+                updateMovesText();
+                showLastMove();
+                enableButtons();
+                board.repaint();
+                showLayout(true);   //show where the pieces go on the physical board
+                getPrefs().savePrefs(chessBoard);
+            }
+        } catch(IOException ex) {
+            ChessLR.handleError("Unable to open "+file,ex);
+        }
+    }
+
+    private File choosePgnFile() {
+        if(isMac) {
+            fileDialog.setMode(FileDialog.LOAD);
+            fileDialog.setVisible(true);
+            if(fileDialog.getFile() == null)
+                return null;
+            return new File(fileDialog.getDirectory(),fileDialog.getFile());
+        }
+        if(fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION)
+            return null;
+        return fileChooser.getSelectedFile();
     }
 
     public Image loadImage(String filename) {
@@ -882,13 +1353,14 @@ public class AppFrame extends JFrame implements InvocationHandler,PieceListener
     }
 
     private void showPiecesActionPerformed(ActionEvent e) {
-
-        showPieces(!isShowingPieces);
-        showPieces.setSelected(false);
-        if(isShowingPieces) {
-            mode = GameMode.SHOW_PIECES;
-        } else {
-            mode = GameMode.PLAYING;
+        synchronized(gameLock) {
+            showPieces(!isShowingPieces);
+            showPieces.setSelected(false);
+            if(isShowingPieces) {
+                mode = GameMode.SHOW_PIECES;
+            } else {
+                mode = GameMode.PLAYING;
+            }
         }
 //        showPieces.transferFocus();
         requestFocus();
@@ -899,16 +1371,9 @@ public class AppFrame extends JFrame implements InvocationHandler,PieceListener
 
         isShowingPieces = show;
         if(isShowingPieces) {
-            for(int i = 0; i < 64; i++) {
-                if(i == 35 || i==36) {
-                    System.out.println("Stop here");
-                }
-                chessBoardController.led(i,chessBoardController.hasPiece(i));
-            }
+            chessBoardController.showFrame(chessBoardController.snapshot());
         } else {
-            for(int i = 0; i < 64; i++) {
-                chessBoardController.led(i,false);
-            }
+            chessBoardController.showFrame(0);
         }
         if(buttonDefaultColor == null) {
             buttonDefaultColor = showPieces.getBackground();
@@ -931,8 +1396,10 @@ public class AppFrame extends JFrame implements InvocationHandler,PieceListener
 
     private void saveGameMenuItemActionPerformed(ActionEvent event) {
         try {
-            saveGame();
-            savePgn();
+            synchronized(gameLock) {
+                saveGame();
+                savePgn();
+            }
 //            JOptionPane.showMessageDialog(this,"Game "+chessBoard.getGameId()+" saved.");
         } catch(IOException e) {
             ChessLR.handleError("Unable to save game Id"+chessBoard.getGameId(),e);
@@ -940,45 +1407,63 @@ public class AppFrame extends JFrame implements InvocationHandler,PieceListener
     }
 
     private void backButtonActionPerformed(ActionEvent e) {
-        ChessMove move = chessBoard.takeback();    //TODO If a move removed a piece, flash the square that needs the piece replaced after the move is complete.
-        if(move != null) {
-
-            board.resetBoard();
-            chessBoardController.led(-1,false); //turn off all leds
-            board.setSquareStatus(move.getFromIndex(),BoardPanel.SquareStatus.SELECTED);
-            board.setSquareStatus(move.getToIndex(),BoardPanel.SquareStatus.SELECTED);
+        synchronized(gameLock) {
+            final ChessMove move = chessBoard.takeback();    //TODO If a move removed a piece, flash the square that needs the piece replaced after the move is complete.
+            if(move != null) {
+                cancelPonder();
+                archiveGame();
+                updateAnalysis();
 
-            if(move.isCapture()) {
-                System.out.println("Move was a capture");
-            }
+                board.resetBoard();
+                chessBoardController.led(-1,false); //turn off all leds
+                board.setSquareStatus(move.getFromIndex(),BoardPanel.SquareStatus.SELECTED);
+                board.setSquareStatus(move.getToIndex(),BoardPanel.SquareStatus.SELECTED);
 
-            SwingUtilities.invokeLater(new Runnable() {
-                public void run() {
-                    addWaitForMove(move);
-                    updateMovesText();
-                    enableButtons();
-                    board.repaint();
+                if(move.isCapture()) {
+                    System.out.println("Move was a capture");
                 }
-            });
+
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        synchronized(gameLock) {
+                            addWaitForMove(move);
+                            updateMovesText();
+                            enableButtons();
+                            board.repaint();
+                        }
+                    }
+                });
+            }
         }
     }
 
     /** Sets the text in the moves text area, taking into account what notation display mode
      * we are using.     */
     private void updateMovesText() {
-        if(getPrefs().isPgnNotation())
-            movesTextArea.setText(chessBoard.getMovesPgn());
-        else
+        int count = chessBoard.getMoveCount();
+        if(getPrefs().isPgnNotation()) {
+            if(movesTextPgn && movesTextCount <= count && movesTextCount > 0) {
+                //only add the moves made since the last update
+                movesTextArea.append(chessBoard.getMovesPgn(movesTextCount));
+            } else {
+                movesTextArea.setText(chessBoard.getMovesPgn());
+            }
+        } else {
             movesTextArea.setText(chessBoard.getMoveString());
+        }
+        movesTextPgn = getPrefs().isPgnNotation();
+        movesTextCount = count;
     }
 
     private void layoutButtonActionPerformed() {
-        //clear any move that is being waited on and make sure mode is setup correctly for layout to show
-        removeAllWaitForMoves();
-        if(mode != GameMode.PLAYING && mode != GameMode.SHOW_LAYOUT)
-            mode = GameMode.PLAYING;
+        synchronized(gameLock) {
+            //clear any move that is being waited on and make sure mode is setup correctly for layout to show
+            removeAllWaitForMoves();
+            if(mode != GameMode.PLAYING && mode != GameMode.SHOW_LAYOUT)
+                mode = GameMode.PLAYING;
 
-        showLayout(mode == GameMode.SHOW_LAYOUT ? false:true);
+            showLayout(mode == GameMode.SHOW_LAYOUT ? false:true);
+        }
     }
 
     protected void showLayout(boolean show) {
@@ -1011,15 +1496,28 @@ public class AppFrame extends JFrame implements InvocationHandler,PieceListener
     }
 
     private void settingsButtonActionPerformed() {
-        getPrefs().setFen(chessBoard.toFen());
-        settingsDialog.open(getPrefs());
+        synchronized(gameLock) {
+            getPrefs().setFen(chessBoard.toFen());
+        }
+        settingsDialog.open(getPrefs());    //not under gameLock, see showWrongPieceDialog()
+        synchronized(gameLock) {
+            applySettings();
+        }
+    }
+
+    private void applySettings() {
         chessBoard.setFenPosition(getPrefs().getFen());
         enableButtons();
         updateMovesText();
         repaint();
-        fish.setSkillLevel(getPrefs().getLevel());
-        fish.setSlowMover(getPrefs().getSlowMover());
-        fish.setMoveTime(getPrefs().getMoveTime());
+        cancelPonder();     //the position may have been changed
+        if(engine != null) {
+            engine.setOptions(getPrefs().getLevel(),getPrefs().getSlowMover());
+        }
+        if(javaEngine != null) {
+            javaEngine.setLevel(getPrefs().getLevel());
+        }
+        updateAnalysis();
 
 
         if(settingsDialog.isNewOnePlayer() || settingsDialog.isNewTwoPlayer()) {
@@ -30,7 +30,7 @@ public class ChessLR {
     static AppFrame instance;
 
     public static void main( String[] args ) {
-        long waitTime = 750;
+        long waitTime = MoveThread.WAIT_TIME;
         boolean boardAttached = true;
         for(int i = 0; i < args.length; i++) {
             if(args[i].equals("-b"))
@@ -29,6 +29,7 @@ public class ChessPrefs {
     static final String WINDOW_POSITION = "window";
     static final String PGN_NOTATION = "pgnNotation";
     static final String SHOW_EVALUATION = "showEvaluation";
+    static final String SHOW_HINTS = "showHints";
     static final String DISABLE_ENGINE = "disableEngine";
     static final String FEN = "fen";
     static final String PLAYERS = "players";
@@ -43,6 +44,7 @@ public class ChessPrefs {
     String fen;
     boolean pgnNotation = true;
     boolean showEvaluation = true;
+    boolean showHints = false;
     boolean disableEngine = false;
     int players;
     int level = 20;
@@ -78,6 +80,7 @@ public class ChessPrefs {
                 pgnNotation = prefs.getBoolean(PGN_NOTATION,pgnNotation);
                 showEvaluation = prefs.getBoolean(SHOW_EVALUATION,showEvaluation);
                 showEvaluation = prefs.getBoolean(DISABLE_ENGINE,disableEngine);
+                showHints = prefs.getBoolean(SHOW_HINTS,showHints);
                 fen = prefs.get(FEN,null);
                 players = prefs.getInt(PLAYERS,players);
                 level = prefs.getInt(LEVEL,level);
@@ -103,6 +106,7 @@ public class ChessPrefs {
                 prefs.put(GAME_ID,Long.toString(gameId));
                 prefs.putBoolean(PGN_NOTATION,pgnNotation);
                 prefs.putBoolean(SHOW_EVALUATION,showEvaluation);
+                prefs.putBoolean(SHOW_HINTS,showHints);
                 prefs.putBoolean(DISABLE_ENGINE,disableEngine);
                 if(fen != null) {
                     prefs.put(FEN,fen);
@@ -156,6 +160,14 @@ public class ChessPrefs {
         this.showEvaluation = showEvaluation;
     }
 
+    public boolean isShowHints() {
+        return showHints;
+    }
+
+    public void setShowHints(boolean showHints) {
+        this.showHints = showHints;
+    }
+
     public boolean isDisableEngine() {
         return disableEngine;
     }
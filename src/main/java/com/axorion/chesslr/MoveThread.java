@@ -26,7 +26,8 @@ import com.axorion.chess.ChessMove;
  * Thread waits a period of time for the pieces to sit still *after* a complete move,
  * then checks if a move has been completed.
  * By waiting for a time, it allows the user to slide pieces over other squares before
- * coming to a stop.
+ * coming to a stop. On the board the ReedFilter already drops the squares a sliding
+ * piece passes over, so the wait only has to cover the player settling the piece.
  */
 public class MoveThread extends Thread {
     AppFrame parent;
@@ -34,10 +35,11 @@ public class MoveThread extends Thread {
     Integer up = -1,down = -1,secondUp = -1;
     boolean sleepInterrupted = false;
     volatile boolean running = false;
-    long waitTime = 750;
+    static final long WAIT_TIME = 300;
+    long waitTime = WAIT_TIME;
 
     public MoveThread(AppFrame parent) {
-        this(parent,750);
+        this(parent,WAIT_TIME);
     }
 
     public MoveThread(AppFrame parent,long waitTime) {
@@ -52,41 +54,44 @@ public class MoveThread extends Thread {
                 //first wait for a time ...
                 Thread.sleep(waitTime);
 
-                synchronized(lock) {
-                    if(sleepInterrupted) {
-                        // check if we got here after the sleep, and after we wanted to check for move complete
-                        sleepInterrupted = false;
-                        continue;
-                    }
+                //the game lock first, the same order as pieceUp() then waitForMoveComplete()
+                synchronized(parent.gameLock) {
+                    synchronized(lock) {
+                        if(sleepInterrupted) {
+                            // check if we got here after the sleep, and after we wanted to check for move complete
+                            sleepInterrupted = false;
+                            continue;
+                        }
 
-                    //...then check if what is on the board is the same.
-                    // If so, player completed move.
-                    // If not, player is still sliding his piece.
-                    if(running && up != -1 && down != -1) {
-                        //check if player has moved since we got both up and down events
-                        if((up == parent.pieceUpIndex || up == parent.secondPieceUpIndex) && down == parent.pieceDownIndex) {
-                            if(up != down || secondUp != -1) {   //are we putting the piece back down or capturing?
-                                if(down == up) {
-                                    up = secondUp;  //you picked up the captured piece first, so the second piece up is what we are moving from
+                        //...then check if what is on the board is the same.
+                        // If so, player completed move.
+                        // If not, player is still sliding his piece.
+                        if(running && up != -1 && down != -1) {
+                            //check if player has moved since we got both up and down events
+                            if((up == parent.pieceUpIndex || up == parent.secondPieceUpIndex) && down == parent.pieceDownIndex) {
+                                if(up != down || secondUp != -1) {   //are we putting the piece back down or capturing?
+                                    if(down == up) {
+                                        up = secondUp;  //you picked up the captured piece first, so the second piece up is what we are moving from
+                                    }
+                                    parent.chessBoardController.led(up,false);
+                                    parent.chessBoardController.led(down,false);
+                                    System.out.println("Player moved piece from "+up+" to "+down);
+                                    parent.recordMove(new ChessMove(parent.chessBoard,parent.chessBoard.indexToBoard(up)+parent.chessBoard.indexToBoard(down)));
+                                } else {
+                                    //putting the piece down without moving it
+                                    parent.chessBoardController.led(up,false);
+                                    parent.chessBoardController.led(down,false);
+                                    System.out.println("Player put the piece down without moving it");
                                 }
-                                parent.chessBoardController.led(up,false);
-                                parent.chessBoardController.led(down,false);
-                                System.out.println("Player moved piece from "+up+" to "+down);
-                                parent.recordMove(new ChessMove(parent.chessBoard,parent.chessBoard.indexToBoard(up)+parent.chessBoard.indexToBoard(down)));
-                            } else {
-                                //putting the piece down without moving it
-                                parent.chessBoardController.led(up,false);
-                                parent.chessBoardController.led(down,false);
-                                System.out.println("Player put the piece down without moving it");
-                            }
 
-                            //show move on display board
-                            parent.showLastMove();
+                                //show move on display board
+                                parent.showLastMove();
 
-                            parent.pieceUpIndex = -1;
-                            parent.pieceDownIndex = -1;
-                            parent.secondPieceUpIndex = -1;
-                            up = down = secondUp = -1;
+                                parent.pieceUpIndex = -1;
+                                parent.pieceDownIndex = -1;
+                                parent.secondPieceUpIndex = -1;
+                                up = down = secondUp = -1;
+                            }
                         }
                     }
                 }
@@ -45,6 +45,7 @@ public class SettingsDialog extends JDialog {
         asBlack = false;
         pgnNotationCheckbox.setSelected(prefs.isPgnNotation());
         showEvalCheckBox.setSelected(prefs.isShowEvaluation());
+        showHintsCheckBox.setSelected(prefs.isShowHints());
         disableEngineCheckBox.setSelected(prefs.isDisableEngine());
         setLevel(prefs.getLevel());
         setSlowMover(prefs.getSlowMover());
@@ -57,6 +58,7 @@ public class SettingsDialog extends JDialog {
     protected void close() {
         prefs.setPgnNotation(pgnNotationCheckbox.isSelected());
         prefs.setShowEvaluation(showEvalCheckBox.isSelected());
+        prefs.setShowHints(showHintsCheckBox.isSelected());
         prefs.setDisableEngine(disableEngineCheckBox.isSelected());
         prefs.setLevel(getLevel());
         prefs.setSlowMover(getSlowMover());
@@ -128,6 +130,10 @@ public class SettingsDialog extends JDialog {
         return showEvalCheckBox.isSelected();
     }
 
+    public boolean isShowHints() {
+        return showHintsCheckBox.isSelected();
+    }
+
     public boolean isDisableEngine() {
         return disableEngineCheckBox.isSelected();
     }
@@ -225,6 +231,7 @@ public class SettingsDialog extends JDialog {
         twoPlayerBlackButton = new JButton();
         enginePanel = new JPanel();
         showEvalCheckBox = new JCheckBox();
+        showHintsCheckBox = new JCheckBox();
         disableEngineCheckBox = new JCheckBox();
         label1 = new JLabel();
         levelTextField = new JTextField();
@@ -309,6 +316,10 @@ public class SettingsDialog extends JDialog {
                     showEvalCheckBox.setText("Show evaluation");
                     enginePanel.add(showEvalCheckBox);
 
+                    //---- showHintsCheckBox ----
+                    showHintsCheckBox.setText("Show hints");
+                    enginePanel.add(showHintsCheckBox);
+
                     //---- disableEngineCheckBox ----
                     disableEngineCheckBox.setText("Disable Engine");
                     enginePanel.add(disableEngineCheckBox);
@@ -407,6 +418,7 @@ public class SettingsDialog extends JDialog {
     private JButton twoPlayerBlackButton;
     private JPanel enginePanel;
     private JCheckBox showEvalCheckBox;
+    private JCheckBox showHintsCheckBox;
     private JCheckBox disableEngineCheckBox;
     private JLabel label1;
     private JTextField levelTextField;
@@ -23,6 +23,7 @@ package com.axorion.chesslr.hardware;
 import com.pi4j.io.gpio.GpioController;
 import com.pi4j.io.gpio.Pin;
 import com.pi4j.io.gpio.PinState;
+import com.pi4j.io.gpio.RaspiPin;
 import com.pi4j.io.i2c.I2CBus;
 import com.pi4j.io.i2c.I2CFactory;
 
@@ -57,13 +58,15 @@ public class BoardController implements PieceListener, ProviderListener {
     static final int BANK_SIZE = 8;
     static final int NUM_ROWS = 8;
     static final int NUM_COLS = 8;
+    /** The MCP23017 INTA lines, wired together. WiringPi 0, header pin 11. */
+    static final Pin INTERRUPT_PIN = RaspiPin.GPIO_00;
 
     GpioController gpio;
     LEDController ledController;
     InputController reedController;
     ArrayList<PieceListener> pieceListeners = new ArrayList<PieceListener>();
 
-    FlashThread flashThread;
+    LEDEffects effects;
 
     int[] boardToPinMap3x3 = {
             0,1,2,0,0,0,0,0,
@@ -98,25 +101,9 @@ public class BoardController implements PieceListener, ProviderListener {
     };
 
 
-    RowProvider[] rowProviders = new RowProvider[NUM_ROWS];
-
-    class BoardLEDController implements LEDController {
-        @Override
-        public void led(int boardIndex,boolean on) {
-            int row = boardIndex/8;
-            int col = boardIndex-row*8;
-            RowProvider provider = rowProviders[row];
-            provider.setState(on,col);
-        }
-
-        @Override
-        public boolean isOn(int boardIndex) {
-            int row = boardIndex/8;
-            int col = boardIndex-row*8;
-            RowProvider provider = rowProviders[row];
-            return provider.outputPins[col].getState().isHigh();
-        }
-    }
+    LEDFrameBuffer leds;
+    InterruptInputController reeds;
+    ReedFilter filter;
 
     class BoardInputController implements InputController {
         @Override
@@ -142,18 +129,15 @@ public class BoardController implements PieceListener, ProviderListener {
         @Override
         public boolean isSet(int boardIndex) {
             boardIndex = remap[boardIndex];     //to handle reed switches that are wired incorrectly
-            int row = boardIndex/8;
-            int col = boardIndex-row*8;
-            RowProvider provider = rowProviders[row];
-            return provider.inputPins[col].getState().isLow();
+            return reeds.isSet(boardIndex);
         }
     }
 
     public BoardController(LEDController led,InputController input) throws IOException, I2CFactory.UnsupportedBusNumberException {
         this.ledController = led;
         this.reedController = input;
-        flashThread = new FlashThread(ledController);
-        flashThread.start();
+        effects = new LEDEffects(ledController);
+        effects.start();
     }
 
     public BoardController(GpioController gpio,int bus) throws IOException, I2CFactory.UnsupportedBusNumberException {
@@ -161,22 +145,33 @@ public class BoardController implements PieceListener, ProviderListener {
         if(gpio == null) {
             // use simulated board
         } else {
-            ledController = new BoardLEDController();
+            RegisterBus registers = new Pi4jRegisterBus(I2CFactory.getInstance(BUS));
+            leds = new LEDFrameBuffer(registers,BASE_ADDRESS,NUM_ROWS);
+            leds.init();
+            ledController = leds;
             reedController = new BoardInputController();
-            for(int i = 0; i < NUM_ROWS; i++) {
-                rowProviders[i] = new RowProvider(gpio,BUS,BASE_ADDRESS+i,this);
-            }
+            reeds = new InterruptInputController(registers,BASE_ADDRESS,NUM_ROWS);
+            reeds.init();
+            filter = new ReedFilter(this);
+            filter.setState(pinsToBoard(reeds.getState()));
+            filter.start();
+            reeds.attach(gpio,INTERRUPT_PIN,this);
         }
-        flashThread = new FlashThread(ledController);
-        flashThread.start();
+        effects = new LEDEffects(ledController);
+        effects.start();
     }
 
     public void flashOn(int ledIndex) {
-        flashThread.addLed(ledIndex);
+        effects.flash(ledIndex);
     }
 
     public void flashOff(int ledIndex) {
-        flashThread.removeLed(ledIndex);
+        effects.stop(ledIndex);
+    }
+
+    /** For the other effects, like the double and triple flashes and fading. */
+    public LEDEffects getEffects() {
+        return effects;
     }
 
     public InputController getInputController() {
@@ -189,14 +184,27 @@ public class BoardController implements PieceListener, ProviderListener {
 
     public void led(int squareIndex,boolean on) {
         if(squareIndex == -1) {
-            for(int i = 0; i < 64; i++) {
-                ledController.led(i,on);
-            }
+            showFrame(on ? -1L : 0L);
         } else {
             ledController.led(squareIndex,on);
         }
     }
 
+    /**
+     * Set every LED at once, bit n of the frame for board index n. On the board only the rows that changed are
+     * written, one I2C write each.
+     */
+    public void showFrame(long frame) {
+        if(leds != null) {
+            leds.setFrame(frame);
+            leds.commit();
+        } else {
+            for(int i = 0; i < 64; i++) {
+                ledController.led(i,(frame & 1L << i) != 0);
+            }
+        }
+    }
+
     /** Return if an LED is on at the specified index. */
     public boolean isLEDOn(int boardIndex) {
         return ledController.isOn(boardIndex);
@@ -212,20 +220,73 @@ public class BoardController implements PieceListener, ProviderListener {
         return reedController.isSet(boardIndex);
     }
 
+    /**
+     * Returns which squares have a piece on them, bit n set for board index n, the same layout as the ChessBoard
+     * bitboards, so it can be compared with ChessBoard.getOccupied() directly. On the board it's one sweep of the bus,
+     * a read of each row's GPIOA, instead of 64 calls to hasPiece().
+     */
+    public long snapshot() {
+        if(reeds == null) {
+            long pieces = 0;
+            for(int i = 0; i < 64; i++) {
+                if(reedController.isSet(i)) {
+                    pieces |= 1L << i;
+                }
+            }
+            return pieces;
+        }
+        long pins;
+        try {
+            pins = reeds.scan();
+        } catch(IOException e) {
+            System.out.println("Unable to scan the board, using the last known state");
+            e.printStackTrace();
+            pins = reeds.getState();
+        }
+        return pinsToBoard(pins);
+    }
+
+    /** Move each pin's bit to its board index, for reeds wired to the wrong pin. */
+    long pinsToBoard(long pins) {
+        long board = 0;
+        while(pins != 0) {
+            int pin = Long.numberOfTrailingZeros(pins);
+            pins &= pins-1;
+            board |= 1L << remap[pin];
+        }
+        return board;
+    }
+
+    /** Squares that had a piece in the before snapshot and don't in the after. */
+    public static long lifted(long before,long after) {
+        return before & ~after;
+    }
+
+    /** Squares that have a piece in the after snapshot and didn't in the before. */
+    public static long placed(long before,long after) {
+        return after & ~before;
+    }
+
     public void addListener(PieceListener listener) {
         pieceListeners.add(listener);
     }
 
+    /** Raw reed change from the board, passed on once the filter says it has settled. */
     @Override
     public void pieceUp(int address,int index) {
         final int pinIndex = (address-BASE_ADDRESS)*8+index;
-        pieceUp(remap[pinIndex]);
+        filter.pieceUp(remap[pinIndex]);
     }
 
     @Override
     public void pieceDown(int address,int index) {
         final int pinIndex = (address-BASE_ADDRESS)*8+index;
-        pieceDown(remap[pinIndex]);
+        filter.pieceDown(remap[pinIndex]);
+    }
+
+    /** Hold times of the reed filter, see ReedFilter. Null without the board, the simulator doesn't bounce. */
+    public ReedFilter getFilter() {
+        return filter;
     }
 
 
@@ -244,29 +305,12 @@ public class BoardController implements PieceListener, ProviderListener {
     }
 
     public void resetBoard() {
-        for(int i=0; i<64; i++) {
-            led(i,false);
-        }
-        flashThread.reset();
+        effects.reset();
+        showFrame(0);
     }
 
-    public void blink(final int count, final long delay, final boolean leaveOn, final int boardIndex) {
-        new Thread(() -> {
-                try {
-                    if(isLEDOn(boardIndex)) {
-                        led(boardIndex,false);
-                        Thread.sleep(delay);
-                    }
-                    for(int i = 0; i < count; i++) {
-                        led(boardIndex,true);
-                        Thread.sleep(delay);
-                        led(boardIndex,false);
-                        Thread.sleep(delay);
-                    }
-                } catch(InterruptedException e) {
-                    //do nothing
-                }
-            led(boardIndex,leaveOn);
-            }).start();
+    /** Blink the LED count times, delay ms on and off, then leave it on or off. */
+    public void blink(int count,long delay,boolean leaveOn,int boardIndex) {
+        effects.blink(boardIndex,count,(int)delay,leaveOn);
     }
 }
@@ -0,0 +1,191 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+
+package com.axorion.chesslr.hardware;
+
+import com.pi4j.io.gpio.GpioController;
+import com.pi4j.io.gpio.GpioPinDigitalInput;
+import com.pi4j.io.gpio.Pin;
+import com.pi4j.io.gpio.PinPullResistance;
+import com.pi4j.io.gpio.PinState;
+import com.pi4j.io.gpio.event.GpioPinDigitalStateChangeEvent;
+import com.pi4j.io.gpio.event.GpioPinListenerDigital;
+
+import java.io.IOException;
+
+/**
+ * Reads the reed switches on port A of the MCP23017s, one chip for each row, using the chips' interrupts instead of
+ * polling them pin by pin.
+ *
+ * Each chip is set to interrupt when any port A pin changes, with INTA and INTB mirrored and open drain, so the
+ * interrupt pins of all the chips can be wired together to one Pi GPIO with a pull up. The line goes low when any
+ * square changes. Port A's polarity is inverted, so a 1 bit means a piece is down.
+ *
+ * On an interrupt each chip's INTF, INTCAP and GPIO registers are read in one sequential read, which also clears the
+ * interrupt. The state of all 64 squares is kept as a bitmask, bit row*8+pin, and the squares whose GPIO changed
+ * since the last read come back as a bitmask too. A pin flagged in INTF that is back where it was by the time it's
+ * read is a bounce and isn't reported.
+ *
+ * <pre>
+ * INTA (20) ---+---+--- ... ---+---> Pi GPIO, pulled up
+ *   row 0      row 1           row 7
+ * </pre>
+ */
+public class InterruptInputController {
+    //MCP23017 registers with IOCON.BANK = 0, the power on default
+    static final int IODIRA = 0x00;
+    static final int IPOLA = 0x02;
+    static final int GPINTENA = 0x04;
+    static final int DEFVALA = 0x06;
+    static final int INTCONA = 0x08;
+    static final int IOCON = 0x0A;
+    static final int GPPUA = 0x0C;
+    static final int INTFA = 0x0E;
+    static final int INTCAPA = 0x10;
+    static final int GPIOA = 0x12;
+    static final int OLATA = 0x14;
+    static final int REGISTERS = 0x16;
+
+    static final int IOCON_MIRROR = 0x40;
+    static final int IOCON_ODR = 0x04;
+
+    /** INTFA INTFB INTCAPA INTCAPB GPIOA GPIOB, all read in one go. */
+    static final int BLOCK_SIZE = GPIOA+2-INTFA;
+    static final int MAX_PASSES = 8;
+
+    final RegisterBus bus;
+    final int baseAddress;
+    final int chips;
+    final byte[] block = new byte[BLOCK_SIZE];
+    volatile long state;
+    ProviderListener listener;
+    GpioPinDigitalInput interruptPin;
+
+    public InterruptInputController(RegisterBus bus,int baseAddress,int chips) {
+        this.bus = bus;
+        this.baseAddress = baseAddress;
+        this.chips = chips;
+    }
+
+    /** Set up the chips' port A as interrupting inputs and read where the pieces are now. */
+    public synchronized void init() throws IOException {
+        for(int i=0; i<chips; i++) {
+            int address = baseAddress+i;
+            bus.write(address,IOCON,IOCON_MIRROR | IOCON_ODR);
+            bus.write(address,IODIRA,0xFF);
+            bus.write(address,GPPUA,0xFF);
+            bus.write(address,IPOLA,0xFF);
+            bus.write(address,INTCONA,0x00);    //compare with the previous value, so any change interrupts
+            bus.write(address,GPINTENA,0xFF);
+        }
+        state = 0;
+        readChanges();
+    }
+
+    /**
+     * Watch the Pi pin the chips' interrupt lines are wired to, passing the changes to the listener as they happen.
+     * If a chip interrupts again while the others are being read the line stays low and there's no new edge, so the
+     * chips are read until the line goes high.
+     */
+    public void attach(GpioController gpio,Pin pin,ProviderListener listener) {
+        this.listener = listener;
+        interruptPin = gpio.provisionDigitalInputPin(pin,"MCP23017 INT",PinPullResistance.PULL_UP);
+        gpio.addListener(new GpioPinListenerDigital() {
+            public void handleGpioPinDigitalStateChangeEvent(GpioPinDigitalStateChangeEvent event) {
+                if(event.getState() != PinState.LOW) {
+                    return;
+                }
+                try {
+                    int passes = 0;
+                    do {
+                        service();
+                    } while(interruptPin.isLow() && ++passes < MAX_PASSES);
+                    if(interruptPin.isLow()) {
+                        System.out.println("Interrupt line still low after "+MAX_PASSES+" reads");
+                    }
+                } catch(IOException e) {
+                    System.out.println("Unable to read the reed switches");
+                    e.printStackTrace();
+                }
+            }
+        },interruptPin);
+    }
+
+    public void setListener(ProviderListener listener) {
+        this.listener = listener;
+    }
+
+    /** Read the changes and tell the listener about each square, the way the pin listeners did. */
+    public void service() throws IOException {
+        long changed;
+        long now;
+        synchronized(this) {
+            changed = readChanges();
+            now = state;
+        }
+        ProviderListener listener = this.listener;
+        while(changed != 0 && listener != null) {
+            int pin = Long.numberOfTrailingZeros(changed);
+            changed &= changed-1;
+            int address = baseAddress+pin/8;
+            if((now & 1L << pin) != 0) {
+                listener.pieceDown(address,pin%8);
+            } else {
+                listener.pieceUp(address,pin%8);
+            }
+        }
+    }
+
+    /** Read every chip's interrupt registers and return the squares that changed since last time. */
+    public synchronized long readChanges() throws IOException {
+        long now = 0;
+        for(int i=0; i<chips; i++) {
+            bus.read(baseAddress+i,INTFA,block,0,BLOCK_SIZE);
+            now |= (block[GPIOA-INTFA] & 0xFFL) << i*8;
+        }
+        long changed = now ^ state;
+        state = now;
+        return changed;
+    }
+
+    /**
+     * Read port A of every chip now, one single register read each, and return the squares with a piece on them.
+     * Unlike readChanges() the remembered state is left alone, so changes the interrupt is about to report still get
+     * reported, and comparing the two shows any a missed interrupt lost.
+     */
+    public long scan() throws IOException {
+        byte[] port = new byte[1];
+        long pieces = 0;
+        for(int i=0; i<chips; i++) {
+            bus.read(baseAddress+i,GPIOA,port,0,1);
+            pieces |= (port[0] & 0xFFL) << i*8;
+        }
+        return pieces;
+    }
+
+    /** Bitmask of the squares with a piece on them, as of the last read. */
+    public long getState() {
+        return state;
+    }
+
+    /** True if there is a piece on the pin, row*8+pin, as of the last read. */
+    public boolean isSet(int pinIndex) {
+        return (state & 1L << pinIndex) != 0;
+    }
+}
@@ -0,0 +1,284 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+
+package com.axorion.chesslr.hardware;
+
+/**
+ * Runs the LED effects, blinking, flashing and fading, for all the squares on one thread. Every tick the state of
+ * each square with an effect is worked out from when it started and drawn into one frame, which the frame buffer
+ * writes with at most one I2C write per row. The thread count stays the same however many squares are flashing, and
+ * when nothing is, the thread sleeps until something starts.
+ *
+ * Each square's effect is kept in plain arrays indexed by board index, with bitmasks of the squares that have one.
+ * Effects that end, like a blink, are put on a timer wheel: slot end%WHEEL_SIZE holds a mask of the squares ending
+ * then, so each tick only looks at the squares due in its slot.
+ *
+ * <pre>
+ * BLINK    on off on off ... count times, then left on or off
+ * FLASH    on off on off ... until stopped
+ * DOUBLE   on off on off, pause, repeat
+ * TRIPLE   on off on off on off, pause, repeat
+ * FADE     brightens and dims, until stopped
+ * </pre>
+ *
+ * An LED can only be on or off, so a fade sets the brightness by how many ticks it's on for, spread out as evenly
+ * as it can, the way a sigma delta converter does.
+ */
+public class LEDEffects implements Runnable {
+    public static final int NONE = 0;
+    public static final int BLINK = 1;
+    public static final int FLASH = 2;
+    public static final int DOUBLE = 3;
+    public static final int TRIPLE = 4;
+    public static final int FADE = 5;
+
+    public static final int TICK_MS = 10;
+    public static final int FLASH_MS = 100;
+    public static final int FADE_MS = 2000;
+    static final int PAUSE_PHASES = 4;      //the pause after a double or triple is this many on or off times
+    static final int WHEEL_SIZE = 64;
+    static final int MAX_LEVEL = 255;
+
+    final LEDController controller;
+    final int tickMs;
+
+    final int[] type = new int[64];
+    final long[] start = new long[64];
+    final int[] period = new int[64];      //ticks for each on and off, or the whole fade
+    final int[] count = new int[64];
+    final int[] offset = new int[64];      //phases before the first on
+    final long[] end = new long[64];
+    final int[] level = new int[64];
+    final long[] wheel = new long[WHEEL_SIZE];
+    long active;
+    long leaveOn;
+    long finished;
+    long rendered;
+    long forced;
+    long tick;
+
+    Thread thread;
+    volatile boolean running;
+
+    public LEDEffects(LEDController controller) {
+        this(controller,TICK_MS);
+    }
+
+    public LEDEffects(LEDController controller,int tickMs) {
+        this.controller = controller;
+        this.tickMs = tickMs;
+    }
+
+    /** Start the thread that runs the effects. */
+    public synchronized void start() {
+        running = true;
+        thread = new Thread(this,"LED effects");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Stop the thread. Effects that are running stay where they are. */
+    public synchronized void shutdown() {
+        running = false;
+        notifyAll();
+    }
+
+    /**
+     * Blink the LED count times, on and off for periodMs each, then leave it on or off. If it's on when the blink
+     * starts it's turned off first, so the first blink can be seen.
+     */
+    public synchronized void blink(int square,int count,int periodMs,boolean leaveOn) {
+        boolean wasOn = controller.isOn(square);
+        begin(square,BLINK,ticks(periodMs),count);
+        offset[square] = wasOn ? 1 : 0;
+        long bit = 1L << square;
+        this.leaveOn = leaveOn ? this.leaveOn | bit : this.leaveOn & ~bit;
+        end[square] = start[square]+(2L*count+offset[square])*period[square];
+        wheel[(int)(end[square] % WHEEL_SIZE)] |= bit;
+    }
+
+    /** Flash the LED on and off every FLASH_MS until stopped. */
+    public void flash(int square) {
+        flash(square,FLASH);
+    }
+
+    /** Flash the LED with FLASH, DOUBLE or TRIPLE until stopped. */
+    public synchronized void flash(int square,int pattern) {
+        begin(square,pattern,ticks(FLASH_MS),pattern == TRIPLE ? 3 : pattern == DOUBLE ? 2 : 0);
+    }
+
+    /** Brighten and dim the LED, over periodMs each time, until stopped. */
+    public synchronized void fade(int square,int periodMs) {
+        begin(square,FADE,Math.max(2,ticks(periodMs)),0);
+    }
+
+    private int ticks(int ms) {
+        return Math.max(1,ms/tickMs);
+    }
+
+    private void begin(int square,int effect,int period,int count) {
+        long bit = 1L << square;
+        wheel[(int)(end[square] % WHEEL_SIZE)] &= ~bit;
+        type[square] = effect;
+        start[square] = tick+1;     //shown from the next tick
+        this.period[square] = period;
+        this.count[square] = count;
+        offset[square] = 0;
+        level[square] = 0;
+        active |= bit;
+        forced |= bit;
+        notifyAll();
+    }
+
+    /** Stop the effect on the square and turn its LED off. */
+    public synchronized void stop(int square) {
+        if(type[square] != NONE) {
+            finish(square,false);
+        }
+    }
+
+    /** Stop every effect, leaving the LEDs as they are. */
+    public synchronized void reset() {
+        for(int square=0; square<64; square++) {
+            type[square] = NONE;
+        }
+        for(int i=0; i<WHEEL_SIZE; i++) {
+            wheel[i] = 0;
+        }
+        active = 0;
+        finished = 0;
+        forced = 0;
+    }
+
+    public synchronized boolean isActive(int square) {
+        return type[square] != NONE;
+    }
+
+    private void finish(int square,boolean on) {
+        long bit = 1L << square;
+        type[square] = NONE;
+        active &= ~bit;
+        wheel[(int)(end[square] % WHEEL_SIZE)] &= ~bit;
+        finished |= bit;
+        leaveOn = on ? leaveOn | bit : leaveOn & ~bit;
+        notifyAll();    //the thread shows the end even if nothing else is running
+    }
+
+    /** Move on a tick: end the effects that are due, work out the rest and show them. */
+    synchronized void tick() {
+        tick++;
+        int slot = (int)(tick % WHEEL_SIZE);
+        long due = wheel[slot];
+        while(due != 0) {
+            int square = Long.numberOfTrailingZeros(due);
+            due &= due-1;
+            if(end[square] == tick) {
+                finish(square,(leaveOn & 1L << square) != 0);
+            }
+        }
+
+        long on = 0;
+        long squares = active;
+        while(squares != 0) {
+            int square = Long.numberOfTrailingZeros(squares);
+            squares &= squares-1;
+            if(isOn(square,tick-start[square])) {
+                on |= 1L << square;
+            }
+        }
+        long finishedOn = finished & leaveOn;
+        show(active | finished,on | finishedOn,(on ^ rendered) & active | forced & active | finished);
+        rendered = rendered & ~(active | finished) | on | finishedOn;
+        finished = 0;
+        forced = 0;
+    }
+
+    /** Whether the LED is on, elapsed ticks into its effect. */
+    boolean isOn(int square,long elapsed) {
+        int p = period[square];
+        switch(type[square]) {
+            case BLINK:
+                long phase = elapsed/p-offset[square];
+                return phase >= 0 && phase%2 == 0;
+            case FLASH:
+                return (elapsed/p)%2 == 0;
+            case DOUBLE:
+            case TRIPLE:
+                int blinks = 2*count[square];
+                long position = (elapsed/p)%(blinks+PAUSE_PHASES);
+                return position < blinks && position%2 == 0;
+            case FADE:
+                int t = (int)(elapsed%p);
+                int half = p/2;
+                level[square] += t < half ? MAX_LEVEL*t/half : MAX_LEVEL*(p-t)/(p-half);
+                if(level[square] >= MAX_LEVEL) {
+                    level[square] -= MAX_LEVEL;
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /** Set the LEDs in mask to bits. The frame buffer takes them all at once, others just the ones in changed. */
+    private void show(long mask,long bits,long changed) {
+        if(controller instanceof LEDFrameBuffer) {
+            if(mask != 0) {
+                LEDFrameBuffer frame = (LEDFrameBuffer)controller;
+                frame.update(mask,bits);
+                frame.commit();
+            }
+            return;
+        }
+        while(changed != 0) {
+            int square = Long.numberOfTrailingZeros(changed);
+            changed &= changed-1;
+            controller.led(square,(bits & 1L << square) != 0);
+        }
+    }
+
+    public void run() {
+        long next = System.nanoTime();
+        while(running) {
+            synchronized(this) {
+                while(running && active == 0 && finished == 0) {
+                    try {
+                        wait();
+                    } catch(InterruptedException e) {
+                        return;
+                    }
+                    next = System.nanoTime();
+                }
+            }
+            next += tickMs*1000000L;
+            long sleep = next-System.nanoTime();
+            if(sleep > 0) {
+                try {
+                    Thread.sleep(sleep/1000000L,(int)(sleep%1000000L));
+                } catch(InterruptedException e) {
+                    return;
+                }
+            } else {
+                next = System.nanoTime();   //fell behind, don't try to catch up
+            }
+            tick();
+        }
+    }
+}
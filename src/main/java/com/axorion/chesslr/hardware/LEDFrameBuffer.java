@@ -0,0 +1,121 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+
+package com.axorion.chesslr.hardware;
+
+import java.io.IOException;
+
+import static com.axorion.chesslr.hardware.InterruptInputController.IODIRA;
+import static com.axorion.chesslr.hardware.InterruptInputController.OLATA;
+
+/**
+ * The LEDs on port B of the MCP23017s, one chip for each row, as a 64 bit frame, bit n for board index n. Callers
+ * set the LEDs they want, or the whole frame at once, then commit() it. Only the rows that changed since the last
+ * commit are written, each with a single write of the row's OLATB, so a full board update is at most 8 I2C writes
+ * instead of 64 and every LED in a row changes at the same moment.
+ *
+ * The columns are wired in reverse, column 0 (the a file) is GPB7 and column 7 is GPB0.
+ */
+public class LEDFrameBuffer implements LEDController {
+    static final int IODIRB = IODIRA+1;
+    static final int OLATB = OLATA+1;
+
+    final RegisterBus bus;
+    final int baseAddress;
+    final int rows;
+    long frame;
+    long shown;
+
+    public LEDFrameBuffer(RegisterBus bus,int baseAddress,int rows) {
+        this.bus = bus;
+        this.baseAddress = baseAddress;
+        this.rows = rows;
+    }
+
+    /** Make port B of each chip outputs, and turn all the LEDs off. */
+    public synchronized void init() throws IOException {
+        for(int row=0; row<rows; row++) {
+            bus.write(baseAddress+row,OLATB,0);
+            bus.write(baseAddress+row,IODIRB,0x00);
+        }
+        frame = 0;
+        shown = 0;
+    }
+
+    /** Turn an LED on or off in the frame. It shows on the board at the next commit(). */
+    public synchronized void set(int boardIndex,boolean on) {
+        if(on) {
+            frame |= 1L << boardIndex;
+        } else {
+            frame &= ~(1L << boardIndex);
+        }
+    }
+
+    /** Replace the whole frame. It shows on the board at the next commit(). */
+    public synchronized void setFrame(long frame) {
+        this.frame = frame;
+    }
+
+    /** Set the LEDs in the mask to their bits, leaving the rest of the frame alone. */
+    public synchronized void update(long mask,long bits) {
+        frame = frame & ~mask | bits & mask;
+    }
+
+    public synchronized long getFrame() {
+        return frame;
+    }
+
+    /**
+     * Write the rows that are different from what the board shows. A row that can't be written stays different and
+     * is tried again next commit. Returns the number of rows written.
+     */
+    public synchronized int commit() {
+        long dirty = frame ^ shown;
+        int written = 0;
+        for(int row=0; row<rows && dirty != 0; row++) {
+            int shift = row*8;
+            if((dirty >>> shift & 0xFF) == 0) {
+                continue;
+            }
+            int bits = (int)(frame >>> shift & 0xFF);
+            try {
+                bus.write(baseAddress+row,OLATB,Integer.reverse(bits) >>> 24);
+                shown = shown & ~(0xFFL << shift) | (long)bits << shift;
+                written++;
+            } catch(IOException e) {
+                System.out.printf("Unable to write the LEDs of row %d\n",row);
+                e.printStackTrace();
+            }
+            dirty &= ~(0xFFL << shift);
+        }
+        return written;
+    }
+
+    /** Turn one LED on or off straight away. */
+    @Override
+    public synchronized void led(int boardIndex,boolean on) {
+        set(boardIndex,on);
+        commit();
+    }
+
+    @Override
+    public synchronized boolean isOn(int boardIndex) {
+        return (frame & 1L << boardIndex) != 0;
+    }
+}
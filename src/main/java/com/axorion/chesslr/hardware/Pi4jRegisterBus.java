@@ -0,0 +1,59 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+
+package com.axorion.chesslr.hardware;
+
+import com.pi4j.io.i2c.I2CBus;
+import com.pi4j.io.i2c.I2CDevice;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/** The real I2C bus through pi4j. */
+public class Pi4jRegisterBus implements RegisterBus {
+    final I2CBus bus;
+    final Map<Integer,I2CDevice> devices = new HashMap<>();
+
+    public Pi4jRegisterBus(I2CBus bus) {
+        this.bus = bus;
+    }
+
+    synchronized I2CDevice device(int address) throws IOException {
+        I2CDevice device = devices.get(address);
+        if(device == null) {
+            device = bus.getDevice(address);
+            devices.put(address,device);
+        }
+        return device;
+    }
+
+    @Override
+    public void write(int address,int register,int value) throws IOException {
+        device(address).write(register,(byte)value);
+    }
+
+    @Override
+    public void read(int address,int register,byte[] buffer,int offset,int length) throws IOException {
+        int read = device(address).read(register,buffer,offset,length);
+        if(read != length) {
+            throw new IOException(String.format("Read %d of %d bytes from %02XH register %02XH",read,length,address,register));
+        }
+    }
+}
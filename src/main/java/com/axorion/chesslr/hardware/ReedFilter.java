@@ -0,0 +1,200 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+
+package com.axorion.chesslr.hardware;
+
+/**
+ * Filters the raw reed events before they are passed on, so a square has to stay the same for its hold time before
+ * the change counts. Reed switches bounce when a piece is put down or lifted, and a piece slid across the board
+ * closes the reeds it passes over for a moment. A change that goes back before its hold time is up is dropped, so the
+ * listener only hears about squares that really changed.
+ *
+ * Pieces going down are held longer than pieces going up, since a slide only passes over squares and the square a
+ * piece was lifted from should show straight away. Hold times can be set for each square, for a reed that's more
+ * bouncy than the rest. A hold time of 0 passes the change on straight away, on the caller's thread.
+ *
+ * The state of each square is kept in bitmasks and the time of its last change in an array. One thread waits for the
+ * earliest square that is due and passes on the changes, whatever the number of squares waiting.
+ */
+public class ReedFilter implements PieceListener, Runnable {
+    public static final int DOWN_HOLD_MS = 150;
+    public static final int UP_HOLD_MS = 20;
+
+    final PieceListener listener;
+    final int[] downHold = new int[64];
+    final int[] upHold = new int[64];
+    final long[] changedAt = new long[64];
+    long raw;           //what the reeds say now
+    long reported;      //what the listener was told
+    long pending;       //squares where they differ, waiting for their hold time
+
+    Thread thread;
+    volatile boolean running;
+
+    public ReedFilter(PieceListener listener) {
+        this.listener = listener;
+        setHoldTime(DOWN_HOLD_MS,UP_HOLD_MS);
+    }
+
+    /** Start the thread that passes on the changes once they have held. */
+    public synchronized void start() {
+        running = true;
+        thread = new Thread(this,"Reed filter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void shutdown() {
+        running = false;
+        notifyAll();
+    }
+
+    /** Set where the pieces are without telling the listener, like when the board is first read. */
+    public synchronized void setState(long pieces) {
+        raw = pieces;
+        reported = pieces;
+        pending = 0;
+    }
+
+    /** What the listener has been told, bit n for board index n. */
+    public synchronized long getState() {
+        return reported;
+    }
+
+    /** Set the hold times of every square. */
+    public synchronized void setHoldTime(int downMs,int upMs) {
+        for(int i=0; i<64; i++) {
+            downHold[i] = downMs;
+            upHold[i] = upMs;
+        }
+    }
+
+    /** Set the hold times of one square. */
+    public synchronized void setHoldTime(int boardIndex,int downMs,int upMs) {
+        downHold[boardIndex] = downMs;
+        upHold[boardIndex] = upMs;
+    }
+
+    @Override
+    public void pieceUp(int boardIndex) {
+        change(boardIndex,false,System.currentTimeMillis());
+    }
+
+    @Override
+    public void pieceDown(int boardIndex) {
+        change(boardIndex,true,System.currentTimeMillis());
+    }
+
+    /** A raw change of the square at time. */
+    void change(int boardIndex,boolean down,long time) {
+        long bit = 1L << boardIndex;
+        synchronized(this) {
+            raw = down ? raw | bit : raw & ~bit;
+            changedAt[boardIndex] = time;
+            if(((raw ^ reported) & bit) == 0) {
+                pending &= ~bit;    //back the way it was, a bounce or a piece sliding past
+                return;
+            }
+            if((down ? downHold[boardIndex] : upHold[boardIndex]) > 0) {
+                pending |= bit;
+                notifyAll();
+                return;
+            }
+            reported ^= bit;
+        }
+        report(bit,down ? bit : 0);
+    }
+
+    /** Take the squares whose hold time is up at time, marking them as reported. */
+    synchronized long takeDue(long time) {
+        long due = 0;
+        long squares = pending;
+        while(squares != 0) {
+            int square = Long.numberOfTrailingZeros(squares);
+            long bit = squares & -squares;
+            squares &= squares-1;
+            int hold = (raw & bit) != 0 ? downHold[square] : upHold[square];
+            if(time-changedAt[square] >= hold) {
+                due |= bit;
+            }
+        }
+        pending &= ~due;
+        reported ^= due;
+        return due;
+    }
+
+    /** Time the next pending square is due, or Long.MAX_VALUE if none are. */
+    synchronized long nextDue() {
+        long next = Long.MAX_VALUE;
+        long squares = pending;
+        while(squares != 0) {
+            int square = Long.numberOfTrailingZeros(squares);
+            long bit = squares & -squares;
+            squares &= squares-1;
+            int hold = (raw & bit) != 0 ? downHold[square] : upHold[square];
+            next = Math.min(next,changedAt[square]+hold);
+        }
+        return next;
+    }
+
+    /** Pass the changes on, outside the lock since the listener can take a while, like showing a dialog. */
+    void report(long squares,long down) {
+        while(squares != 0) {
+            int square = Long.numberOfTrailingZeros(squares);
+            long bit = squares & -squares;
+            squares &= squares-1;
+            if((down & bit) != 0) {
+                listener.pieceDown(square);
+            } else {
+                listener.pieceUp(square);
+            }
+        }
+    }
+
+    /** Pass on the squares that are due at time. */
+    void poll(long time) {
+        long due;
+        long down;
+        synchronized(this) {
+            due = takeDue(time);
+            down = reported & due;
+        }
+        report(due,down);
+    }
+
+    public void run() {
+        while(running) {
+            synchronized(this) {
+                while(running) {
+                    long next = nextDue();
+                    long now = System.currentTimeMillis();
+                    if(next <= now) {
+                        break;
+                    }
+                    try {
+                        wait(next == Long.MAX_VALUE ? 0 : next-now);
+                    } catch(InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+            poll(System.currentTimeMillis());
+        }
+    }
+}
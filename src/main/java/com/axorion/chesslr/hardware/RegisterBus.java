@@ -0,0 +1,34 @@
+/* *****************************************************************************
+ * Copyright 2019 Lee Patterson <https://8BitCoder.com> <https://github.com/abathur8bit>
+ *
+ * You may use and modify at will. Please credit me in the source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************************************************************************/
+
+
+package com.axorion.chesslr.hardware;
+
+import java.io.IOException;
+
+/**
+ * Register access to chips on an I2C bus. Each call is one bus transaction, so reading a block of registers costs
+ * the same as reading one.
+ */
+public interface RegisterBus {
+    /** Write value to the register of the chip at address. */
+    void write(int address,int register,int value) throws IOException;
+
+    /** Read length registers starting at register, using the chip's sequential read, into the buffer. */
+    void read(int address,int register,byte[] buffer,int offset,int length) throws IOException;
+}
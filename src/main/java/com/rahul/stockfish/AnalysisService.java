@@ -0,0 +1,96 @@
+package com.rahul.stockfish;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps an engine thinking about the position on the board. analyze() stops the search on the old position and
+ * starts "go infinite" on the new one, and returns straight away, so the game never waits on the evaluation.
+ *
+ * The engine prints many info lines a second. They are coalesced, only the newest scored line is kept, and the
+ * listener is called on the executor given, like SwingUtilities::invokeLater, at most once for each time it gets to
+ * run. Lines from a search that was stopped are never passed on.
+ */
+public class AnalysisService implements Closeable {
+    /** Told about the latest evaluation of the position being analyzed. */
+    public interface AnalysisListener {
+        void analysisUpdate(String fen,UciInfo info);
+    }
+
+    private final AsyncEngine engine;
+    private final Executor executor;
+    private final AnalysisListener listener;
+    private Update current;
+
+    /** Coalesces the info lines of one search. */
+    private class Update implements UciListener, Runnable {
+        final String fen;
+        final AtomicReference<UciInfo> latest = new AtomicReference<>();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        volatile boolean stopped = false;
+
+        Update(String fen) {
+            this.fen = fen;
+        }
+
+        public void info(UciInfo info) {
+            if(stopped || !info.hasScore() || info.getMultiPv() != 1) {
+                return;
+            }
+            latest.set(info.copy());
+            if(scheduled.compareAndSet(false,true)) {
+                executor.execute(this);
+            }
+        }
+
+        public void run() {
+            scheduled.set(false);
+            UciInfo info = latest.getAndSet(null);
+            if(info != null && !stopped) {
+                listener.analysisUpdate(fen,info);
+            }
+        }
+    }
+
+    public AnalysisService(AsyncEngine engine,Executor executor,AnalysisListener listener) {
+        this.engine = engine;
+        this.executor = executor;
+        this.listener = listener;
+    }
+
+    /** Start analyzing the position, stopping the analysis of the last one. */
+    public synchronized void analyze(String fen) throws IOException {
+        stop();
+        current = new Update(fen);
+        engine.analyze(fen,current);
+    }
+
+    /** Stop analyzing. Nothing more is passed to the listener until the next analyze(). */
+    public synchronized void stop() throws IOException {
+        if(current != null) {
+            current.stopped = true;
+            current = null;
+            engine.stop();
+        }
+    }
+
+    public synchronized boolean isAnalyzing() {
+        return current != null;
+    }
+
+    public AsyncEngine getEngine() {
+        return engine;
+    }
+
+    public void close() {
+        try {
+            stop();
+        } catch(IOException e) {
+            //closing anyway
+        }
+        engine.close();
+    }
+}
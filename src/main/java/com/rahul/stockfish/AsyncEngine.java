@@ -0,0 +1,334 @@
+package com.rahul.stockfish;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Non blocking client for a UCI engine. Requests return a CompletableFuture straight away, and a reader thread
+ * completes it as soon as the engine prints the answer, so there is no sleeping for a worst case time before reading.
+ *
+ * UCI answers every "go" with exactly one "bestmove" and every "isready" with one "readyok", in the order the
+ * commands were sent, so the futures are kept in a queue for each and the reader completes them in order. If the
+ * engine dies every waiting future completes exceptionally with an IOException.
+ *
+ * Lines are turned into events by a UciParser, and listeners added with addListener() see every one of them, for
+ * showing the search as it goes.
+ *
+ * Futures and listeners are called on the reader thread. Anything touching Swing or the board should be passed back with
+ * SwingUtilities.invokeLater, and nothing slow should be done on the reader thread or the engine's output backs up.
+ */
+public class AsyncEngine implements Closeable {
+    private Process engineProcess;
+    private final BufferedReader processReader;
+    private final Writer processWriter;
+    private final Thread readerThread;
+    private final ConcurrentLinkedQueue<Search> pendingSearches = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<CompletableFuture<String>> pendingReady = new ConcurrentLinkedQueue<>();
+    private final CopyOnWriteArrayList<UciListener> listeners = new CopyOnWriteArrayList<>();
+    private final UciParser parser = new UciParser(new UciListener() {
+        public void info(UciInfo info) {
+            Search search = pendingSearches.peek();
+            if(search != null && (search.eval != null || search.best != null) && info.hasScore() && info.getMultiPv() == 1) {
+                search.lastScore = info.copy();
+            }
+            if(search != null && search.listener != null) {
+                search.listener.info(info);
+            }
+            for(UciListener listener : listeners) {
+                listener.info(info);
+            }
+        }
+
+        public void bestMove(String move,String ponder) {
+            Search search = pendingSearches.poll();
+            if(search != null) {
+                search.complete(move,ponder);
+            }
+            for(UciListener listener : listeners) {
+                listener.bestMove(move,ponder);
+            }
+        }
+
+        public void readyOk() {
+            CompletableFuture<String> future = pendingReady.poll();
+            if(future != null) {
+                future.complete("readyok");
+            }
+            for(UciListener listener : listeners) {
+                listener.readyOk();
+            }
+        }
+
+        public void uciOk() {
+            for(UciListener listener : listeners) {
+                listener.uciOk();
+            }
+        }
+    });
+    private volatile boolean closed = false;
+    private volatile boolean outputEnded = false;
+
+    private int skillLevel = 0;
+    private int slowMover = 10;
+    private boolean optionsSent = false;
+
+    /** Start the engine at path as a process. */
+    public AsyncEngine(String path) throws IOException {
+        this(new ProcessBuilder(path).redirectErrorStream(true).start());
+    }
+
+    private AsyncEngine(Process process) {
+        this(process.getInputStream(),process.getOutputStream());
+        engineProcess = process;
+    }
+
+    /** Talk UCI over the given streams, reading the engine's output on a new thread. */
+    public AsyncEngine(InputStream in,OutputStream out) {
+        processReader = new BufferedReader(new InputStreamReader(in));
+        processWriter = new OutputStreamWriter(out);
+        readerThread = new Thread(new Runnable() {
+            public void run() {
+                readOutput();
+            }
+        },"UCI reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    public int getSkillLevel() {
+        return skillLevel;
+    }
+
+    public synchronized void setSkillLevel(int skillLevel) {
+        optionsSent &= this.skillLevel == skillLevel;
+        this.skillLevel = skillLevel;
+    }
+
+    public int getSlowMover() {
+        return slowMover;
+    }
+
+    public synchronized void setSlowMover(int slowMover) {
+        optionsSent &= this.slowMover == slowMover;
+        this.slowMover = slowMover;
+    }
+
+    /** A "go" waiting for its bestmove. */
+    private static class Search {
+        final CompletableFuture<String> move = new CompletableFuture<>();
+        CompletableFuture<BestMove> best;
+        CompletableFuture<UciInfo> eval;
+        UciInfo lastScore;
+        UciListener listener;
+
+        void complete(String bestMove,String ponder) {
+            move.complete(bestMove);
+            if(best != null) {
+                best.complete(new BestMove(bestMove,ponder,lastScore));
+            }
+            if(eval != null) {
+                eval.complete(lastScore);
+            }
+        }
+
+        void fail(IOException e) {
+            move.completeExceptionally(e);
+            if(best != null) {
+                best.completeExceptionally(e);
+            }
+            if(eval != null) {
+                eval.completeExceptionally(e);
+            }
+        }
+    }
+
+    /** Listen to everything the engine says, like the info lines during a search. */
+    public void addListener(UciListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(UciListener listener) {
+        listeners.remove(listener);
+    }
+
+    /** Send a UCI command. */
+    public synchronized void sendCommand(String command) throws IOException {
+        if(closed || outputEnded) {
+            throw new IOException("Engine closed");
+        }
+        processWriter.write(command);
+        processWriter.write('\n');
+        processWriter.flush();
+    }
+
+    /** Returns a future completed when the engine answers "readyok". */
+    public synchronized CompletableFuture<String> isReady() {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        pendingReady.add(future);
+        try {
+            sendCommand("isready");
+        } catch(IOException e) {
+            pendingReady.remove(future);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Start a search of the position for moveTime milliseconds. The future is completed with the move in long
+     * algebraic form, like "e2e4" or "e7e8q", the moment the engine prints it. The skill level and slow mover options
+     * are only sent when they have changed.
+     */
+    public synchronized CompletableFuture<String> getBestMove(String fen,int moveTime) {
+        return start("position fen "+fen,"go movetime "+moveTime,new Search()).move;
+    }
+
+    /** Same as getBestMove(), but the future also has the reply the engine expects, for pondering on. */
+    public synchronized CompletableFuture<BestMove> search(String fen,int moveTime) {
+        Search search = new Search();
+        search.best = new CompletableFuture<>();
+        start("position fen "+fen,"go movetime "+moveTime,search);
+        return search.best;
+    }
+
+    /**
+     * Think on the opponent's time. The engine searches the position after ponderMove is played from fen, until
+     * either ponderHit() says the opponent did play it, or stop() says they didn't, when the result should be thrown
+     * away. The engine counts moveTime from the "go", not from the ponderhit, so once the opponent has taken longer than
+     * moveTime the hit is answered almost at once.
+     */
+    public synchronized CompletableFuture<BestMove> ponder(String fen,String ponderMove,int moveTime) {
+        Search search = new Search();
+        search.best = new CompletableFuture<>();
+        start("position fen "+fen+" moves "+ponderMove,"go ponder movetime "+moveTime,search);
+        return search.best;
+    }
+
+    /** The opponent played the move being pondered, so the ponder search becomes the real one. */
+    public void ponderHit() throws IOException {
+        sendCommand("ponderhit");
+    }
+
+    /**
+     * Search the position for moveTime milliseconds and complete the future with the last info line that had a
+     * score, or null if the engine didn't give one. The score is from the side to move's view.
+     */
+    public synchronized CompletableFuture<UciInfo> getEvaluation(String fen,int moveTime) {
+        Search search = new Search();
+        search.eval = new CompletableFuture<>();
+        start("position fen "+fen,"go movetime "+moveTime,search);
+        return search.eval;
+    }
+
+    /**
+     * Search the position until stop() is called, passing the info lines of this search, and only this search, to the
+     * listener. The future completes with the best move once the engine has stopped.
+     */
+    public synchronized CompletableFuture<String> analyze(String fen,UciListener listener) {
+        Search search = new Search();
+        search.listener = listener;
+        return start("position fen "+fen,"go infinite",search).move;
+    }
+
+    /** Send the skill level and slow mover now if they haven't been sent, instead of before the next search. */
+    public synchronized void configure() throws IOException {
+        if(!optionsSent) {
+            sendCommand("setoption name Skill Level value "+skillLevel);
+            sendCommand("setoption name Slow Mover value "+slowMover);
+            optionsSent = true;
+        }
+    }
+
+    private Search start(String position,String go,Search search) {
+        pendingSearches.add(search);
+        try {
+            configure();
+            sendCommand(position);
+            sendCommand(go);
+        } catch(IOException e) {
+            pendingSearches.remove(search);
+            search.fail(e);
+        }
+        return search;
+    }
+
+    /** Ask the engine to stop searching. It still answers with a bestmove, which completes the search's future. */
+    public void stop() throws IOException {
+        sendCommand("stop");
+    }
+
+    /** Reader thread loop. Parses each line as it arrives, which completes the waiting futures. */
+    private void readOutput() {
+        IOException error = null;
+        try {
+            String line;
+            while((line = processReader.readLine()) != null) {
+                parser.parseLine(line);
+            }
+        } catch(IOException e) {
+            error = e;
+        }
+        outputEnded = true;     //set before failing the waiting requests, so no new one is left waiting
+        try {
+            processReader.close();
+        } catch(IOException e) {
+            //ignore, done reading
+        }
+        if(!closed) {
+            System.out.println("Engine output ended");
+        }
+        failPending(error != null ? error : new IOException("Engine closed"));
+    }
+
+    private void failPending(IOException e) {
+        Search search;
+        while((search = pendingSearches.poll()) != null) {
+            search.fail(e);
+        }
+        CompletableFuture<String> future;
+        while((future = pendingReady.poll()) != null) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    /** True if the engine was closed or its output ended, because it quit or crashed. */
+    public boolean isClosed() {
+        return closed || outputEnded;
+    }
+
+    /**
+     * Tell the engine to quit and stop the process. Anything still waiting completes exceptionally. When built from
+     * streams the caller closes the input, which ends the reader thread.
+     */
+    public void close() {
+        synchronized(this) {
+            if(closed) {
+                return;
+            }
+            try {
+                sendCommand("quit");
+            } catch(IOException e) {
+                //engine already gone
+            }
+            closed = true;
+        }
+        try {
+            processWriter.close();
+        } catch(IOException e) {
+            //ignore, closing anyway
+        }
+        if(engineProcess != null) {
+            engineProcess.destroy();    //ends the engine's output, so the reader thread finishes and closes it
+        }
+        failPending(new IOException("Engine closed"));
+    }
+}
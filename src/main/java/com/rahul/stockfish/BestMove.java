@@ -0,0 +1,38 @@
+package com.rahul.stockfish;
+
+/** The move a search picked, the reply the engine expects, which is what to ponder on, and the last score. */
+public class BestMove {
+    private final String move;
+    private final String ponder;
+    private final UciInfo score;
+
+    public BestMove(String move,String ponder) {
+        this(move,ponder,null);
+    }
+
+    public BestMove(String move,String ponder,UciInfo score) {
+        this.move = move;
+        this.ponder = ponder;
+        this.score = score;
+    }
+
+    /** Move in long algebraic form, like "e2e4" or "e7e8q". */
+    public String getMove() {
+        return move;
+    }
+
+    /** The reply the engine expects, or null if it didn't say. */
+    public String getPonder() {
+        return ponder;
+    }
+
+    /** The last info line of the search that had a score, or null if there wasn't one. */
+    public UciInfo getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return ponder == null ? move : move+" ponder "+ponder;
+    }
+}
@@ -0,0 +1,227 @@
+package com.rahul.stockfish;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers what the engine said about positions it has already searched, so the openings and positions reached
+ * again after a takeback get an answer straight away instead of another second of searching.
+ *
+ * Results are keyed by the position plus the skill level, move time and depth, since a different setting can give a
+ * different move. The position key should be the same for the same position however it was reached, like a Zobrist
+ * key or positionKey() of the FEN, which leaves out the move counters.
+ *
+ * The newest entries are kept in memory, the least recently used is dropped when it's full. There can also be a file,
+ * memory mapped, with a fixed number of slots that survives restarts. Each key has one slot in the file and the
+ * newest result for that slot wins. The layout of each 32 byte slot is
+ * <pre>
+ *   key (8) move (5) ponder (5) flags (1) unused (1) score (4) depth (2) unused (6)
+ * </pre>
+ * with flags bit 0 set if there's a score, and bit 1 if it's moves to mate.
+ */
+public class EngineCache implements Closeable {
+    static final byte[] MAGIC = {'C','L','R','C','A','C','H','1'};
+    static final int HEADER = 16;
+    static final int SLOT = 32;
+    static final int HAS_SCORE = 1;
+    static final int MATE = 2;
+
+    private final LinkedHashMap<Long,BestMove> memory;
+    private FileChannel channel;
+    private MappedByteBuffer disk;
+    private int diskSlots;
+    private long hits;
+    private long diskHits;
+    private long misses;
+
+    /** Cache of capacity results in memory only. */
+    public EngineCache(final int capacity) {
+        memory = new LinkedHashMap<Long,BestMove>(capacity*4/3+1,0.75f,true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long,BestMove> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Cache of capacity results in memory, backed by the file with diskSlots slots, a power of 2. The file is made if
+     * it doesn't exist, and started over if it was made with a different number of slots.
+     */
+    public EngineCache(int capacity,File file,int diskSlots) throws IOException {
+        this(capacity);
+        if(Integer.bitCount(diskSlots) != 1) {
+            throw new IllegalArgumentException("diskSlots must be a power of 2: "+diskSlots);
+        }
+        this.diskSlots = diskSlots;
+        long size = HEADER+(long)diskSlots*SLOT;
+        channel = new RandomAccessFile(file,"rw").getChannel();
+        boolean fresh = channel.size() != size;
+        if(fresh) {
+            channel.truncate(0);
+        }
+        disk = channel.map(FileChannel.MapMode.READ_WRITE,0,size);
+        for(int i=0; i<MAGIC.length && !fresh; i++) {
+            fresh = disk.get(i) != MAGIC[i];
+        }
+        fresh |= disk.getInt(8) != diskSlots;
+        if(fresh) {
+            for(long i=0; i<size; i++) {
+                disk.put((int)i,(byte)0);
+            }
+            for(int i=0; i<MAGIC.length; i++) {
+                disk.put(i,MAGIC[i]);
+            }
+            disk.putInt(8,diskSlots);
+        }
+    }
+
+    /** Hash of the board, side to move, castling and en passant fields of the FEN, leaving out the move counters. */
+    public static long positionKey(CharSequence fen) {
+        long hash = 0xcbf29ce484222325L;
+        int spaces = 0;
+        for(int i=0; i<fen.length(); i++) {
+            char c = fen.charAt(i);
+            if(c == ' ' && ++spaces == 4) {
+                break;
+            }
+            hash = (hash ^ c)*0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /** Mix the search settings into the position key. Never returns 0, which marks an empty slot. */
+    static long key(long positionKey,int skillLevel,int moveTime,int depth) {
+        long z = positionKey ^ (skillLevel*0x9E3779B97F4A7C15L) ^ (moveTime*0xC2B2AE3D27D4EB4FL) ^ (depth*0x165667B19E3779F9L);
+        z = (z ^ (z >>> 30))*0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27))*0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return z == 0 ? 1 : z;
+    }
+
+    /** Returns what the engine said last time with these settings, or null if it hasn't searched it. */
+    public synchronized BestMove get(long positionKey,int skillLevel,int moveTime,int depth) {
+        long key = key(positionKey,skillLevel,moveTime,depth);
+        BestMove best = memory.get(key);
+        if(best != null) {
+            hits++;
+            return best;
+        }
+        if(disk != null) {
+            best = readSlot(key);
+            if(best != null) {
+                diskHits++;
+                memory.put(key,best);
+                return best;
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    public synchronized void put(long positionKey,int skillLevel,int moveTime,int depth,BestMove best) {
+        long key = key(positionKey,skillLevel,moveTime,depth);
+        memory.put(key,best);
+        if(disk != null) {
+            writeSlot(key,best);
+        }
+    }
+
+    private int slotOffset(long key) {
+        return HEADER+(int)(key & (diskSlots-1))*SLOT;
+    }
+
+    private BestMove readSlot(long key) {
+        int offset = slotOffset(key);
+        if(disk.getLong(offset) != key) {
+            return null;
+        }
+        String move = readMove(offset+8);
+        String ponder = readMove(offset+13);
+        int flags = disk.get(offset+18);
+        UciInfo score = null;
+        if((flags & HAS_SCORE) != 0) {
+            score = new UciInfo();
+            score.hasScore = true;
+            score.mate = (flags & MATE) != 0;
+            score.score = disk.getInt(offset+20);
+            score.depth = disk.getShort(offset+24);
+        }
+        return new BestMove(move,ponder,score);
+    }
+
+    private void writeSlot(long key,BestMove best) {
+        int offset = slotOffset(key);
+        disk.putLong(offset,0);         //mark empty while the slot is rewritten
+        writeMove(offset+8,best.getMove());
+        writeMove(offset+13,best.getPonder());
+        UciInfo score = best.getScore();
+        int flags = 0;
+        if(score != null && score.hasScore()) {
+            flags = HAS_SCORE | (score.isMate() ? MATE : 0);
+            disk.putInt(offset+20,score.getScore());
+            disk.putShort(offset+24,(short)score.getDepth());
+        }
+        disk.put(offset+18,(byte)flags);
+        disk.putLong(offset,key);
+    }
+
+    private String readMove(int offset) {
+        char[] chars = new char[5];
+        int length = 0;
+        while(length < 5 && disk.get(offset+length) != 0) {
+            chars[length] = (char)disk.get(offset+length);
+            length++;
+        }
+        return length == 0 ? null : new String(chars,0,length);
+    }
+
+    private void writeMove(int offset,String move) {
+        for(int i=0; i<5; i++) {
+            disk.put(offset+i,move != null && i < move.length() ? (byte)move.charAt(i) : 0);
+        }
+    }
+
+    public synchronized int size() {
+        return memory.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getDiskHits() {
+        return diskHits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /** Write the file out to the card. */
+    public synchronized void sync() {
+        if(disk != null) {
+            disk.force();
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        if(channel != null) {
+            disk.force();
+            disk = null;
+            channel.close();
+            channel = null;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("engine cache %d entries, hits %d disk hits %d misses %d",size(),hits,diskHits,misses);
+    }
+}
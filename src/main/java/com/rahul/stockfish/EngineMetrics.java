@@ -0,0 +1,69 @@
+package com.rahul.stockfish;
+
+import java.util.Arrays;
+
+/**
+ * Counts for one engine in an EnginePool. Latency is kept for the last LATENCY_SAMPLES searches, which is enough for
+ * the percentiles to follow what the engine is doing now.
+ */
+public class EngineMetrics {
+    public static final int LATENCY_SAMPLES = 1024;
+
+    private final int engineNumber;
+    private long requests;
+    private long failures;
+    private long restarts;
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyCount;
+
+    public EngineMetrics(int engineNumber) {
+        this.engineNumber = engineNumber;
+    }
+
+    synchronized void recordRequest(long nanos,boolean failed) {
+        requests++;
+        if(failed) {
+            failures++;
+        }
+        latencies[latencyCount++ % LATENCY_SAMPLES] = nanos;
+    }
+
+    synchronized void recordRestart() {
+        restarts++;
+    }
+
+    public int getEngineNumber() {
+        return engineNumber;
+    }
+
+    public synchronized long getRequests() {
+        return requests;
+    }
+
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    public synchronized long getRestarts() {
+        return restarts;
+    }
+
+    /** Returns the latency in milliseconds that percent of the recent requests finished within, like 50 or 99. */
+    public synchronized double getLatencyPercentile(double percent) {
+        int count = Math.min(latencyCount,LATENCY_SAMPLES);
+        if(count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies,count);
+        Arrays.sort(sorted);
+        int index = (int)Math.ceil(percent/100*count)-1;
+        return sorted[Math.max(0,Math.min(count-1,index))]/1000000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("engine %d requests %d failures %d restarts %d latency p50 %.1fms p90 %.1fms p99 %.1fms",
+                engineNumber,getRequests(),getFailures(),getRestarts(),
+                getLatencyPercentile(50),getLatencyPercentile(90),getLatencyPercentile(99));
+    }
+}
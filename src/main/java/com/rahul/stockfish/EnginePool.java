@@ -0,0 +1,427 @@
+package com.rahul.stockfish;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * A fixed number of engine processes that are started and configured once, then lent out a search at a time. A board
+ * asks the pool for a move and gets a future back. If every engine is busy the request waits in line for the next
+ * free one, instead of each board starting and tearing down its own process.
+ *
+ * Idle engines are sent "isready" in the background, and one that doesn't answer in time, or that fails a search,
+ * is replaced on the pool's own thread. Games never wait for a restart, they just get the next engine that's up. A
+ * search that failed because its engine died is tried again, up to RETRIES times, on the next free engine.
+ */
+public class EnginePool implements Closeable {
+    /** Makes the engines, so the pool can start a new one when one dies. */
+    public interface Factory {
+        AsyncEngine create() throws IOException;
+    }
+
+    /** Times a search is tried again after its engine dies, before the caller gets the error. */
+    static final int RETRIES = 2;
+
+    private static class Slot {
+        final EngineMetrics metrics;
+        AsyncEngine engine;
+        boolean dead = false;   //restart failed, the slot is out of the pool until a health check starts it
+
+        Slot(int number) {
+            metrics = new EngineMetrics(number);
+        }
+    }
+
+    private static class Request {
+        final String fen;
+        final int moveTime;
+        final String ponderMove;
+        int skillLevel;
+        int retries = 0;
+        final CompletableFuture<BestMove> result = new CompletableFuture<>();
+        volatile long start;
+        volatile boolean missed = false;
+
+        Request(String fen,int moveTime,String ponderMove) {
+            this.fen = fen;
+            this.moveTime = moveTime;
+            this.ponderMove = ponderMove;
+        }
+    }
+
+    /**
+     * An engine thinking on the opponent's time about the reply it expects. It stays leased until the opponent moves,
+     * then hit() or miss() lets it go.
+     */
+    public class Ponder {
+        private final Slot slot;
+        private final Request request;
+
+        private Ponder(Slot slot,Request request) {
+            this.slot = slot;
+            this.request = request;
+        }
+
+        /** The move the engine expects the opponent to play. */
+        public String getExpectedMove() {
+            return request.ponderMove;
+        }
+
+        /**
+         * The opponent played the expected move. The search carries on as a normal one, and as it has been thinking
+         * since the engine's last move the answer often comes right away.
+         */
+        public CompletableFuture<BestMove> hit() {
+            request.start = System.nanoTime();
+            try {
+                slot.engine.ponderHit();
+            } catch(IOException e) {
+                request.result.completeExceptionally(e);
+            }
+            return request.result;
+        }
+
+        /** The opponent played something else. The search is stopped and its result thrown away. */
+        public void miss() {
+            request.missed = true;
+            try {
+                slot.engine.stop();
+            } catch(IOException e) {
+                //engine died, the failed search replaces it
+            }
+        }
+    }
+
+    private final Factory factory;
+    private final Slot[] slots;
+    private final ArrayDeque<Slot> idle = new ArrayDeque<>();
+    private final ArrayDeque<Request> waiting = new ArrayDeque<>();
+    private final ScheduledExecutorService executor;
+    private int skillLevel;
+    private int slowMover;
+    private long healthTimeout = 2000;
+    private volatile EngineCache cache;
+    private boolean closed = false;
+
+    /** Start size engines from the path, each set to the skill level and slow mover. */
+    public EnginePool(final String path,int size,int skillLevel,int slowMover) throws IOException {
+        this(new Factory() {
+            public AsyncEngine create() throws IOException {
+                return new AsyncEngine(path);
+            }
+        },size,skillLevel,slowMover);
+    }
+
+    public EnginePool(Factory factory,int size,int skillLevel,int slowMover) throws IOException {
+        this.factory = factory;
+        this.skillLevel = skillLevel;
+        this.slowMover = slowMover;
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r,"Engine pool");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        slots = new Slot[size];
+        try {
+            for(int i=0; i<size; i++) {
+                slots[i] = new Slot(i);
+                slots[i].engine = startEngine();
+                idle.add(slots[i]);
+            }
+        } catch(IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private AsyncEngine startEngine() throws IOException {
+        AsyncEngine engine = factory.create();
+        engine.setSkillLevel(skillLevel);
+        engine.setSlowMover(slowMover);
+        engine.configure();
+        return engine;
+    }
+
+    /** Check each idle engine every periodMs, replacing any that don't answer within timeoutMs. */
+    public void startHealthChecks(long periodMs,long timeoutMs) {
+        healthTimeout = timeoutMs;
+        executor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                healthCheck();
+            }
+        },periodMs,periodMs,TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Ask the next free engine for the best move. The future completes on the engine's reader thread, or with an
+     * IOException if the engine died during the search and on every retry.
+     */
+    public CompletableFuture<String> getBestMove(String fen,int moveTime) {
+        final CompletableFuture<String> move = new CompletableFuture<>();
+        search(fen,moveTime).whenComplete(new BiConsumer<BestMove,Throwable>() {
+            public void accept(BestMove best,Throwable error) {
+                if(error != null) {
+                    move.completeExceptionally(error);
+                } else {
+                    move.complete(best.getMove());
+                }
+            }
+        });
+        return move;
+    }
+
+    /** Look up searches in the cache before asking an engine, and remember what the engines say. */
+    public void setCache(EngineCache cache) {
+        this.cache = cache;
+    }
+
+    public EngineCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Same as getBestMove(), with the reply the engine expects for pondering on. If the position was searched before
+     * with the same settings the future is already complete with the cached result.
+     */
+    public CompletableFuture<BestMove> search(String fen,int moveTime) {
+        Request request = new Request(fen,moveTime,null);
+        EngineCache cache = this.cache;
+        if(cache != null) {
+            BestMove best;
+            synchronized(this) {
+                best = cache.get(EngineCache.positionKey(fen),skillLevel,moveTime,0);
+            }
+            if(best != null) {
+                request.result.complete(best);
+                return request.result;
+            }
+        }
+        Slot slot;
+        synchronized(this) {
+            if(closed) {
+                request.result.completeExceptionally(new IOException("Engine pool closed"));
+                return request.result;
+            }
+            slot = idle.poll();
+            if(slot == null) {
+                waiting.add(request);
+                return request.result;
+            }
+        }
+        run(slot,request);
+        return request.result;
+    }
+
+    /**
+     * Start an engine pondering on the position after ponderMove is played from fen, which is the position after the
+     * engine's move. Returns null if no engine is free, pondering is only worth it when it doesn't hold anyone up.
+     */
+    public Ponder ponder(String fen,String ponderMove,int moveTime) {
+        Request request = new Request(fen,moveTime,ponderMove);
+        Slot slot;
+        synchronized(this) {
+            if(closed || (slot = idle.poll()) == null) {
+                return null;
+            }
+        }
+        run(slot,request);
+        return new Ponder(slot,request);
+    }
+
+    private void run(final Slot slot,final Request request) {
+        request.start = System.nanoTime();
+        request.skillLevel = slot.engine.getSkillLevel();
+        CompletableFuture<BestMove> search;
+        if(request.ponderMove == null) {
+            search = slot.engine.search(request.fen,request.moveTime);
+        } else {
+            search = slot.engine.ponder(request.fen,request.ponderMove,request.moveTime);
+        }
+        search.whenComplete(new BiConsumer<BestMove,Throwable>() {
+            public void accept(BestMove best,Throwable error) {
+                if(!request.missed) {
+                    slot.metrics.recordRequest(System.nanoTime()-request.start,error != null);
+                }
+                if(error != null) {
+                    retry(request,error);
+                    restartLater(slot);
+                } else {
+                    EngineCache cache = EnginePool.this.cache;
+                    if(cache != null && request.ponderMove == null) {
+                        cache.put(EngineCache.positionKey(request.fen),request.skillLevel,request.moveTime,0,best);
+                    }
+                    release(slot);
+                    request.result.complete(best);
+                }
+            }
+        });
+    }
+
+    /**
+     * Send a search whose engine died to another free engine, or to the front of the line so the replacement engine
+     * takes it. Ponders and searches that have been tried RETRIES times fail instead.
+     */
+    private void retry(Request request,Throwable error) {
+        Slot slot;
+        synchronized(this) {
+            if(closed || request.ponderMove != null || request.retries == RETRIES) {
+                slot = null;
+            } else {
+                request.retries++;
+                slot = idle.poll();
+                if(slot == null) {
+                    waiting.addFirst(request);
+                    return;
+                }
+            }
+        }
+        if(slot == null) {
+            request.result.completeExceptionally(error);
+        } else {
+            run(slot,request);
+        }
+    }
+
+    /** Give the engine the next waiting request, or put it back with the idle ones. */
+    private void release(Slot slot) {
+        Request next;
+        synchronized(this) {
+            if(closed) {
+                return;
+            }
+            next = waiting.poll();
+            if(next == null) {
+                idle.add(slot);
+                return;
+            }
+        }
+        run(slot,next);
+    }
+
+    private void restartLater(final Slot slot) {
+        executor.execute(new Runnable() {
+            public void run() {
+                restart(slot);
+            }
+        });
+    }
+
+    /** Replace the slot's engine with a new one. If it won't start the slot stays out until the next health check. */
+    private void restart(Slot slot) {
+        slot.engine.close();
+        slot.metrics.recordRestart();
+        try {
+            slot.engine = startEngine();
+        } catch(IOException e) {
+            System.out.println("Unable to restart engine "+slot.metrics.getEngineNumber());
+            e.printStackTrace();
+            synchronized(this) {
+                slot.dead = true;
+            }
+            return;
+        }
+        release(slot);
+    }
+
+    /**
+     * Send "isready" to each idle engine and replace the ones that don't answer or have died. Slots whose restart
+     * failed are started again. Only slots taken off idle, or dead ones nobody else has, are touched, a busy engine
+     * that dies is replaced by its failed search.
+     */
+    void healthCheck() {
+        for(Slot slot : slots) {
+            synchronized(this) {
+                if(closed) {
+                    return;
+                }
+                if(!idle.remove(slot) && !slot.dead) {
+                    continue;       //busy searching, it's answering
+                }
+                slot.dead = false;
+            }
+            boolean ok = false;
+            if(!slot.engine.isClosed()) {
+                try {
+                    slot.engine.isReady().get(healthTimeout,TimeUnit.MILLISECONDS);
+                    ok = true;
+                } catch(Exception e) {
+                    System.out.println("Engine "+slot.metrics.getEngineNumber()+" not responding, restarting");
+                }
+            }
+            if(ok) {
+                release(slot);
+            } else {
+                restart(slot);
+            }
+        }
+    }
+
+    /** Set the skill level and slow mover of every engine. They're sent before each engine's next search. */
+    public synchronized void setOptions(int skillLevel,int slowMover) {
+        this.skillLevel = skillLevel;
+        this.slowMover = slowMover;
+        for(Slot slot : slots) {
+            if(slot != null && slot.engine != null) {
+                slot.engine.setSkillLevel(skillLevel);
+                slot.engine.setSlowMover(slowMover);
+            }
+        }
+    }
+
+    public int getSize() {
+        return slots.length;
+    }
+
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    public synchronized int getWaitingCount() {
+        return waiting.size();
+    }
+
+    public EngineMetrics getMetrics(int engine) {
+        return slots[engine].metrics;
+    }
+
+    public List<EngineMetrics> getMetrics() {
+        List<EngineMetrics> list = new ArrayList<>();
+        for(Slot slot : slots) {
+            list.add(slot.metrics);
+        }
+        return list;
+    }
+
+    /** Quit all the engines. Waiting requests complete exceptionally. */
+    public void close() {
+        synchronized(this) {
+            if(closed) {
+                return;
+            }
+            closed = true;
+        }
+        executor.shutdownNow();
+        for(Slot slot : slots) {
+            if(slot != null && slot.engine != null) {
+                slot.engine.close();
+            }
+        }
+        Request request;
+        synchronized(this) {
+            idle.clear();
+            while((request = waiting.poll()) != null) {
+                request.result.completeExceptionally(new IOException("Engine pool closed"));
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.rahul.stockfish;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the best few moves for the side to move in the background, so they can be shown the moment the player lifts
+ * a piece. The engine runs with MultiPV set to the number of lines wanted and "go infinite" on the position, and every
+ * info line updates the moves kept for it, best first.
+ *
+ * Moves are kept for the most recent positions, keyed by whatever the caller uses for a position, like the board's
+ * Zobrist key, so getHints() is just a map lookup. A position seen before, after a takeback, has its moves straight
+ * away while the engine looks again.
+ */
+public class HintService implements Closeable {
+    private final AsyncEngine engine;
+    private final int lines;
+    private final LinkedHashMap<Long,String[]> cache;
+    private Hints current;
+
+    /** Collects the first move of each line of one search. */
+    private class Hints implements UciListener {
+        final long key;
+        final String[] moves;
+        volatile boolean stopped = false;
+
+        Hints(long key,String[] moves) {
+            this.key = key;
+            this.moves = moves;
+        }
+
+        public void info(UciInfo info) {
+            int line = info.getMultiPv();
+            if(stopped || !info.hasPv() || info.getPv().isEmpty() || info.getBound() != UciInfo.Bound.EXACT
+                    || line < 1 || line > lines) {
+                return;
+            }
+            synchronized(HintService.this) {
+                moves[line-1] = info.getPv().get(0);
+                cache.put(key,moves);
+            }
+        }
+    }
+
+    /**
+     * Hints of up to lines moves each, for the last capacity positions. The engine is only used for hints from now on,
+     * since MultiPV slows down its normal searches.
+     */
+    public HintService(AsyncEngine engine,int lines,final int capacity) throws IOException {
+        this.engine = engine;
+        this.lines = lines;
+        cache = new LinkedHashMap<Long,String[]>(capacity*4/3+1,0.75f,true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long,String[]> eldest) {
+                return size() > capacity;
+            }
+        };
+        engine.sendCommand("setoption name MultiPV value "+lines);
+    }
+
+    /** Start finding the best moves for the position, stopping the search on the last one. */
+    public synchronized void analyze(long key,String fen) throws IOException {
+        if(current != null && current.key == key) {
+            return;
+        }
+        stop();
+        String[] moves = cache.get(key);
+        current = new Hints(key,moves != null ? moves : new String[lines]);
+        engine.analyze(fen,current);
+    }
+
+    /** Stop searching. The moves found so far are kept. */
+    public synchronized void stop() throws IOException {
+        if(current != null) {
+            current.stopped = true;
+            current = null;
+            engine.stop();
+        }
+    }
+
+    /** The best moves found for the position, best first, or null if it hasn't been searched yet. */
+    public synchronized List<String> getHints(long key) {
+        String[] moves = cache.get(key);
+        if(moves == null) {
+            return null;
+        }
+        List<String> hints = new ArrayList<>(lines);
+        for(String move : moves) {
+            if(move != null) {
+                hints.add(move);
+            }
+        }
+        return hints;
+    }
+
+    public AsyncEngine getEngine() {
+        return engine;
+    }
+
+    public void close() {
+        try {
+            stop();
+        } catch(IOException e) {
+            //closing anyway
+        }
+        engine.close();
+    }
+}
@@ -127,7 +127,7 @@ public class Stockfish {
      *            Position string
      * @param waitTime
      *            in milliseconds
-     * @return Best Move in PGN format
+     * @return Best Move in long algebraic form, like e2e4 or e7e8q
      */
     public String getBestMove(String fen, int waitTime) throws IOException {
         String output = null;
@@ -153,14 +153,47 @@ public class Stockfish {
         sendCommand("setoption name Slow Mover value "+slowMover);
         sendCommand("position fen " + fen);
         if(moveTime == 0)
-            sendCommand("go");
+            sendCommand("go movetime " + waitTime);    //a plain go never finishes without a stop
 //            sendCommand("go depth 1");
         else
             sendCommand("go movetime " + moveTime);
 //            sendCommand("go movetime " + moveTime+" depth 1");
-        String output = getOutput(waitTime+20);
-        System.out.println("Got result\n"+output);
-        return output.split("bestmove ")[1].split(" ")[0].substring(0,4);
+        return readSearch().bestMove;
+    }
+
+    /** What was read while waiting for a search to finish. */
+    static class SearchResult implements UciListener {
+        String bestMove;
+        String ponder;
+        UciInfo lastScore;
+
+        public void info(UciInfo info) {
+            if(info.hasScore() && info.getMultiPv() == 1) {
+                lastScore = info.copy();
+            }
+        }
+
+        public void bestMove(String move,String ponder) {
+            this.bestMove = move;
+            this.ponder = ponder;
+        }
+    }
+
+    /**
+     * Read the engine's output as it arrives until it prints bestmove, so we return as soon as the search is done
+     * instead of sleeping for the longest it could take.
+     */
+    SearchResult readSearch() throws IOException {
+        SearchResult result = new SearchResult();
+        UciParser parser = new UciParser(result);
+        while(result.bestMove == null) {
+            String text = processReader.readLine();
+            if(text == null) {
+                throw new IOException("Engine output ended");
+            }
+            parser.parseLine(text);
+        }
+        return result;
     }
 
     /** Sleep and if interrupted ignore exception. */
@@ -231,27 +264,16 @@ public class Stockfish {
      * Get the evaluation score of a given board position
      * @param fen Position string
      * @param waitTime in milliseconds
-     * @return evalScore
+     * @return evalScore in pawns from the side to move's view, mate in n is +/-(100 - n/100)
      */
     public float getEvalScore(String fen, int waitTime) throws IOException {
         sendCommand("position fen " + fen);
         sendCommand("go movetime " + waitTime);
 
-        float evalScore = 0.0f;
-        String[] dump = getOutput(waitTime + 20).split("\n");
-        System.out.println("Dump length="+dump.length);
-        for (int i = dump.length - 1; i >= 0; i--) {
-            System.out.println(dump[i]);
-            if (dump[i].startsWith("info depth ")) {
-                try {
-                    evalScore = Float.parseFloat(dump[i].split("score cp ")[1]
-                            .split(" nodes")[0]);
-                } catch(Exception e) {
-                    evalScore = Float.parseFloat(dump[i].split("score cp ")[1]
-                            .split(" upperbound nodes")[0]);
-                }
-            }
+        UciInfo score = readSearch().lastScore;
+        if(score == null) {
+            return 0;
         }
-        return evalScore/100;
+        return score.getCentipawns()/100f;
     }
-}
\ No newline at end of file
+}
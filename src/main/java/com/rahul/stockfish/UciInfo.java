@@ -0,0 +1,150 @@
+package com.rahul.stockfish;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One "info" line from a UCI engine. Fields the line didn't have are left at -1, or null for the pv, so check
+ * hasScore() before using the score. Lines with only "string" or "currmove" still come through with depth -1.
+ */
+public class UciInfo {
+    /** Centipawn score used for mate, less the number of moves to mate, so a quicker mate scores higher. */
+    public static final int MATE_SCORE = 10000;
+
+    public enum Bound {
+        EXACT,
+        LOWER,
+        UPPER
+    }
+
+    int depth;
+    int selDepth;
+    int multiPv;
+    int score;
+    boolean mate;
+    boolean hasScore;
+    Bound bound;
+    long nodes;
+    long nps;
+    long time;
+    final List<String> pv = new ArrayList<>();
+    boolean hasPv;
+
+    public UciInfo() {
+        clear();
+    }
+
+    void clear() {
+        depth = -1;
+        selDepth = -1;
+        multiPv = 1;
+        score = 0;
+        mate = false;
+        hasScore = false;
+        bound = Bound.EXACT;
+        nodes = -1;
+        nps = -1;
+        time = -1;
+        pv.clear();
+        hasPv = false;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getSelDepth() {
+        return selDepth;
+    }
+
+    /** Which line this is when the engine is showing more than one, 1 being the best. */
+    public int getMultiPv() {
+        return multiPv;
+    }
+
+    public boolean hasScore() {
+        return hasScore;
+    }
+
+    /** True if the score is moves to mate, not centipawns. */
+    public boolean isMate() {
+        return mate;
+    }
+
+    /** Centipawns, or moves to mate if isMate(). Negative if the side to move is losing. */
+    public int getScore() {
+        return score;
+    }
+
+    /** If the score is only a lower or upper bound, because the search failed high or low. */
+    public Bound getBound() {
+        return bound;
+    }
+
+    /** Score in centipawns from the side to move's view, with mate in n as MATE_SCORE-n. */
+    public int getCentipawns() {
+        if(!mate) {
+            return score;
+        }
+        return score >= 0 ? MATE_SCORE-score : -MATE_SCORE-score;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getNps() {
+        return nps;
+    }
+
+    /** Milliseconds searched. */
+    public long getTime() {
+        return time;
+    }
+
+    public boolean hasPv() {
+        return hasPv;
+    }
+
+    /** Moves of the principal variation, in long algebraic form like "e2e4". */
+    public List<String> getPv() {
+        return pv;
+    }
+
+    /** Returns a copy that isn't changed by the next line. */
+    public UciInfo copy() {
+        UciInfo info = new UciInfo();
+        info.depth = depth;
+        info.selDepth = selDepth;
+        info.multiPv = multiPv;
+        info.score = score;
+        info.mate = mate;
+        info.hasScore = hasScore;
+        info.bound = bound;
+        info.nodes = nodes;
+        info.nps = nps;
+        info.time = time;
+        info.pv.addAll(pv);
+        info.hasPv = hasPv;
+        return info;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buff = new StringBuilder("depth ").append(depth);
+        if(hasScore) {
+            buff.append(mate ? " mate " : " cp ").append(score);
+            if(bound != Bound.EXACT) {
+                buff.append(bound == Bound.LOWER ? " lowerbound" : " upperbound");
+            }
+        }
+        buff.append(" nodes ").append(nodes).append(" nps ").append(nps);
+        if(hasPv) {
+            buff.append(" pv");
+            for(String move : pv) {
+                buff.append(' ').append(move);
+            }
+        }
+        return buff.toString();
+    }
+}
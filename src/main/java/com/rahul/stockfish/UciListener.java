@@ -0,0 +1,19 @@
+package com.rahul.stockfish;
+
+/**
+ * Told about each line from a UCI engine as UciParser reads it. The methods do nothing by default, so only the
+ * interesting ones need to be written.
+ */
+public interface UciListener {
+    /** An info line. The info object is reused for the next line, so copy it to keep it. */
+    default void info(UciInfo info) {}
+
+    /** The engine finished searching. ponder is the reply it expects, or null if it didn't give one. */
+    default void bestMove(String move,String ponder) {}
+
+    /** Answer to "isready". */
+    default void readyOk() {}
+
+    /** Answer to "uci", after the id and option lines. */
+    default void uciOk() {}
+}
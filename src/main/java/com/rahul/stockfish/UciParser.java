@@ -0,0 +1,125 @@
+package com.rahul.stockfish;
+
+/**
+ * Turns lines of UCI engine output into calls on a UciListener as they arrive. Only the "info", "bestmove",
+ * "readyok" and "uciok" lines are passed on, anything else like "id" or "option" is skipped. The info object is
+ * reused for every line.
+ *
+ * <pre>
+ *     info depth 12 seldepth 18 multipv 1 score cp -31 upperbound nodes 80321 nps 802000 time 100 pv e7e5 g1f3
+ *     info depth 20 score mate 3 pv h5f7 e8e7 f7e6
+ *     bestmove e2e4 ponder e7e5
+ * </pre>
+ */
+public class UciParser {
+    private final UciListener listener;
+    private final UciInfo info = new UciInfo();
+    private CharSequence line;
+    private int pos;
+    private int end;
+
+    public UciParser(UciListener listener) {
+        this.listener = listener;
+    }
+
+    /** Parse one line of output, without the line ending. */
+    public void parseLine(CharSequence text) {
+        line = text;
+        pos = 0;
+        end = text.length();
+        String token = next();
+        if(token == null) {
+            return;
+        }
+        switch(token) {
+            case "info":
+                parseInfo();
+                break;
+            case "bestmove":
+                String move = next();
+                String ponder = null;
+                if("ponder".equals(next())) {
+                    ponder = next();
+                }
+                listener.bestMove(move,ponder);
+                break;
+            case "readyok":
+                listener.readyOk();
+                break;
+            case "uciok":
+                listener.uciOk();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void parseInfo() {
+        info.clear();
+        String token;
+        while((token = next()) != null) {
+            switch(token) {
+                case "depth": info.depth = (int)nextNumber(); break;
+                case "seldepth": info.selDepth = (int)nextNumber(); break;
+                case "multipv": info.multiPv = (int)nextNumber(); break;
+                case "nodes": info.nodes = nextNumber(); break;
+                case "nps": info.nps = nextNumber(); break;
+                case "time": info.time = nextNumber(); break;
+                case "score":
+                    info.hasScore = true;
+                    info.mate = "mate".equals(next());
+                    info.score = (int)nextNumber();
+                    break;
+                case "lowerbound": info.bound = UciInfo.Bound.LOWER; break;
+                case "upperbound": info.bound = UciInfo.Bound.UPPER; break;
+                case "pv":
+                    info.hasPv = true;
+                    while((token = next()) != null) {
+                        info.pv.add(token);
+                    }
+                    break;
+                case "string":
+                    pos = end;     //free text to the end of the line
+                    break;
+                default:
+                    break;         //currmove, hashfull, tbhits and so on, the value is skipped as an unknown token
+            }
+        }
+        listener.info(info);
+    }
+
+    /** Returns the next space separated token, or null at the end of the line. */
+    private String next() {
+        while(pos < end && line.charAt(pos) <= ' ') {
+            pos++;
+        }
+        if(pos == end) {
+            return null;
+        }
+        int start = pos;
+        while(pos < end && line.charAt(pos) > ' ') {
+            pos++;
+        }
+        return line.subSequence(start,pos).toString();
+    }
+
+    /** Parse the next token as a number, without making a string of it. Returns 0 if it isn't one. */
+    private long nextNumber() {
+        while(pos < end && line.charAt(pos) <= ' ') {
+            pos++;
+        }
+        boolean negative = false;
+        if(pos < end && (line.charAt(pos) == '-' || line.charAt(pos) == '+')) {
+            negative = line.charAt(pos) == '-';
+            pos++;
+        }
+        long value = 0;
+        while(pos < end && line.charAt(pos) > ' ') {
+            char c = line.charAt(pos++);
+            if(c >= '0' && c <= '9') {
+                value = value*10+c-'0';
+            }
+        }
+        return negative ? -value : value;
+    }
+}
@@ -302,7 +302,7 @@ public class ChessBoardTest extends TestCase
         String fen = "r1b1k1nr/ppqnbppp/4p3/3p4/2PP4/1P4P1/PB1N1P1P/R2QKBNR b KQkq - 2 8";
         board.setFenPosition(fen);
         board.move("g8f6");
-        assertEquals("1.Ngf6",board.getMovesPgn());
+        assertEquals("8...Ngf6",board.getMovesPgn());
         System.out.println(board.getMovesPgn());
     }
     //r3r1k1/p3bp1p/bp1q1n2/3p2p1/3P4/1P2R1PB/PB1N1P1P/2RQ2K1 w - - 2 19
@@ -311,7 +311,7 @@ public class ChessBoardTest extends TestCase
         String fen = "r3r1k1/p3bp1p/bp1q1n2/3p2p1/3P4/1P2R1PB/PB1N1P1P/2RQ2K1 w - - 2 19";
         board.setFenPosition(fen);
         board.move("e3c3");
-        assertEquals("1.Rec3",board.getMovesPgn());
+        assertEquals("19.Rec3",board.getMovesPgn());
         System.out.println(board.getMovesPgn());
     }
 
@@ -335,4 +335,240 @@ public class ChessBoardTest extends TestCase
         assertEquals(5,board.halfMoveCounter);
         assertEquals(41,board.fullMoveCounter+1);
     }
+
+    /** Check that every square in gameBoard matches what the bitboards say is there. */
+    private void assertBitboardsMatch(ChessBoard board) {
+        for(int i=0; i<64; i++) {
+            int piece = Bitboard.pieceIndex(board.pieceAt(i));
+            for(int p=0; p<12; p++) {
+                assertEquals("piece "+p+" at "+board.indexToBoard(i),p == piece,(board.getPieces(p) & Bitboard.bit(i)) != 0);
+            }
+            assertEquals(piece != Bitboard.NO_PIECE,board.isOccupied(i));
+            assertEquals(Bitboard.isWhitePiece(piece),board.isWhiteAt(i));
+            assertEquals(Bitboard.isBlackPiece(piece),board.isBlackAt(i));
+        }
+    }
+
+    public void testBitboardsInitialPosition() {
+        ChessBoard board = new ChessBoard();
+        assertEquals(32,Bitboard.count(board.getOccupied()));
+        assertEquals(0xFFFFL,board.getBlackPieces());
+        assertEquals(0xFFFFL << 48,board.getWhitePieces());
+        assertEquals(Bitboard.bit(board.boardToIndex("e1")),board.getPieces(Bitboard.WHITE_KING));
+        assertBitboardsMatch(board);
+    }
+
+    public void testBitboardsFollowMoves() {
+        ChessBoard board = new ChessBoard();
+        board.setFenPosition("r3k2r/pppq1ppp/2npbn2/2b1p3/2B1P3/2NPBN2/PPPQ1PPP/R3K2R w KQkq - 4 8");
+        assertBitboardsMatch(board);
+        board.move("e1g1");
+        assertBitboardsMatch(board);
+        assertEquals('R',board.pieceAt("f1"));
+        board.move("e8c8");
+        assertBitboardsMatch(board);
+        assertEquals('r',board.pieceAt("d8"));
+        board.move("c4f7");
+        assertBitboardsMatch(board);
+        assertEquals(31,Bitboard.count(board.getOccupied()));
+    }
+
+    public void testPromotion() {
+        ChessBoard board = new ChessBoard();
+        board.setFenPosition("8/4P1k1/8/8/8/8/6K1/8 w - - 0 60");
+        board.move("e7e8q");
+        assertEquals('Q',board.pieceAt("e8"));
+        assertEquals(Bitboard.bit(board.boardToIndex("e8")),board.getPieces(Bitboard.WHITE_QUEEN));
+        assertEquals(0,board.getPieces(Bitboard.WHITE_PAWN));
+        assertBitboardsMatch(board);
+    }
+
+    public void testIsValid() {
+        ChessBoard board = new ChessBoard();
+        assertTrue(board.isValid("e2e4"));
+        assertTrue(board.isValid("g1f3"));
+        assertFalse(board.isValid("e2e5"));     //pawn can't move three squares
+        assertFalse(board.isValid("e7e5"));     //white to move
+        assertFalse(board.isValid("f1c4"));     //bishop is blocked
+        board.move("e2e4");
+        assertFalse(board.isValid("e4e5"));     //black to move
+        assertTrue(board.isValid("e7e5"));
+    }
+
+    public void testIsValidPinnedPiece() {
+        ChessBoard board = new ChessBoard();
+        board.setFenPosition("4k3/4r3/8/8/8/8/4N3/4K3 w - - 0 1");
+        assertFalse(board.isValid("e2c3"));
+        assertTrue(board.isValid("e1d1"));
+    }
+
+    public void testIsValidCastleThroughCheck() {
+        ChessBoard board = new ChessBoard();
+        board.setFenPosition("4k3/8/8/8/8/8/5r2/R3K2R w KQ - 0 1");
+        assertFalse(board.isValid("e1g1"));
+        assertTrue(board.isValid("e1c1"));
+    }
+
+    public void testEnPassant() {
+        ChessBoard board = new ChessBoard();
+        board.setFenPosition("rnbqkbnr/ppp1pppp/8/3P4/8/8/PPP1PPPP/RNBQKBNR b KQkq - 0 2");
+        board.move("e7e5");
+        assertEquals(board.boardToIndex("e6"),board.getEnPassantIndex());
+        assertTrue(board.isValid("d5e6"));
+        board.move("d5e6");
+        assertEquals(ChessBoard.EMPTY_SQUARE,board.pieceAt("e5"));
+        assertEquals('P',board.pieceAt("e6"));
+        assertEquals(-1,board.getEnPassantIndex());
+    }
+
+    public void testLegalMovesInCheck() {
+        ChessBoard board = new ChessBoard();
+        board.setFenPosition("rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR w KQkq - 1 3");
+        assertTrue(board.isInCheck());
+        assertEquals(0,board.getLegalMoves().size());
+    }
+
+    public void testTakebackFromFen() {
+        ChessBoard board = new ChessBoard();
+        String fen = "r3k2r/pppq1ppp/2npbn2/2b1p3/2B1P3/2NPBN2/PPPQ1PPP/R3K2R w KQkq - 4 8";
+        board.setFenPosition(fen);
+        board.move("c4f7");
+        board.move("d7f7");
+        board.takeback();
+        board.takeback();
+        assertEquals(fen,board.toFen());
+        assertBitboardsMatch(board);
+        assertNull(board.takeback());
+    }
+
+    public void testTakebackCastle() {
+        ChessBoard board = new ChessBoard();
+        String fen = "r3k2r/pppq1ppp/2npbn2/2b1p3/2B1P3/2NPBN2/PPPQ1PPP/R3K2R w KQkq - 4 8";
+        board.setFenPosition(fen);
+        board.move("e1g1");
+        String afterWhite = board.toFen();
+        board.move("e8c8");
+        ChessMove move = board.takeback();
+        assertEquals("c8e8",move.toEan());
+        assertEquals(afterWhite,board.toFen());
+        board.takeback();
+        assertEquals(fen,board.toFen());
+        assertTrue(board.canWhiteCastleKingSide());
+        assertBitboardsMatch(board);
+    }
+
+    public void testTakebackEnPassant() {
+        ChessBoard board = new ChessBoard();
+        board.setFenPosition("rnbqkbnr/ppp1pppp/8/3P4/8/8/PPP1PPPP/RNBQKBNR b KQkq - 0 2");
+        board.move("e7e5");
+        board.move("d5e6");
+        board.takeback();
+        assertEquals('p',board.pieceAt("e5"));
+        assertEquals('P',board.pieceAt("d5"));
+        assertEquals(board.boardToIndex("e6"),board.getEnPassantIndex());
+        assertBitboardsMatch(board);
+    }
+
+    public void testTakebackPromotion() {
+        ChessBoard board = new ChessBoard();
+        String fen = "5r2/4P1k1/8/8/8/8/6K1/8 w - - 3 60";
+        board.setFenPosition(fen);
+        board.move("e7f8n");
+        assertEquals('N',board.pieceAt("f8"));
+        board.takeback();
+        assertEquals('P',board.pieceAt("e7"));
+        assertEquals('r',board.pieceAt("f8"));
+        assertEquals(3,board.halfMoveCounter);
+        assertBitboardsMatch(board);
+    }
+
+    /** Taking back a long game one move at a time should get all the way back to the start. */
+    public void testTakebackLongGame() {
+        ChessBoard board = new ChessBoard();
+        String start = board.toFen();
+        for(int i=0; i<150; i++) {
+            List<String> moves = board.getLegalMoves();
+            if(moves.isEmpty()) {
+                break;
+            }
+            board.move(moves.get(i*7%moves.size()));
+        }
+        while(board.takeback() != null) {
+            assertBitboardsMatch(board);
+        }
+        assertEquals(start,board.toFen());
+    }
+
+    public void testHashFollowsMoves() {
+        ChessBoard board = new ChessBoard();
+        long start = board.getHashKey();
+        board.move("g1f3");
+        board.move("g8f6");
+        board.move("f3g1");
+        board.move("f6g8");
+        assertEquals(start,board.getHashKey());
+        board.move("e2e4");
+        ChessBoard fromFen = new ChessBoard();
+        fromFen.setFenPosition(board.toFen());
+        assertEquals(fromFen.getHashKey(),board.getHashKey());
+        board.takeback();
+        assertEquals(start,board.getHashKey());
+    }
+
+    public void testHashCastleRights() {
+        ChessBoard board = new ChessBoard();
+        ChessBoard noCastle = new ChessBoard();
+        noCastle.setFenPosition("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w Qkq - 0 1");
+        assertFalse(board.getHashKey() == noCastle.getHashKey());
+    }
+
+    /** Doing and undoing every move in a busy position should keep the incremental key equal to a full rehash. */
+    public void testHashMatchesRehash() {
+        ChessBoard board = new ChessBoard();
+        board.setFenPosition(Perft.POSITIONS[1]);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegal(board,moves,0);
+        long before = board.getHashKey();
+        for(int i=0; i<count; i++) {
+            board.makeMove(moves[i]);
+            assertEquals(Move.toEan(moves[i]),Zobrist.hash(board),board.getHashKey());
+            board.unmakeMove();
+            assertEquals(before,board.getHashKey());
+        }
+    }
+
+    public void testThreefoldRepetition() {
+        ChessBoard board = new ChessBoard();
+        for(int i=0; i<2; i++) {
+            assertFalse(board.isThreefoldRepetition());
+            board.move("g1f3");
+            board.move("g8f6");
+            board.move("f3g1");
+            board.move("f6g8");
+        }
+        assertEquals(2,board.getRepetitionCount());
+        assertTrue(board.isThreefoldRepetition());
+        assertEquals(ChessBoard.GameEnd.THREEFOLD_REPETITION,board.getGameEnd());
+        board.takeback();
+        assertFalse(board.isThreefoldRepetition());
+    }
+
+    public void testFiftyMoveRule() {
+        ChessBoard board = new ChessBoard();
+        board.setFenPosition("8/8/4k3/8/8/3K4/8/7R w - - 99 80");
+        assertFalse(board.isFiftyMoveRule());
+        board.move("h1h2");
+        assertTrue(board.isFiftyMoveRule());
+        assertEquals(ChessBoard.GameEnd.FIFTY_MOVE_RULE,board.getGameEnd());
+    }
+
+    public void testGameEnd() {
+        ChessBoard board = new ChessBoard();
+        assertEquals(ChessBoard.GameEnd.NONE,board.getGameEnd());
+        board.setFenPosition("rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR w KQkq - 1 3");
+        assertEquals(ChessBoard.GameEnd.CHECKMATE,board.getGameEnd());
+        board.setFenPosition("7k/5Q2/6K1/8/8/8/8/8 b - - 0 60");
+        assertEquals(ChessBoard.GameEnd.STALEMATE,board.getGameEnd());
+        assertTrue(board.isGameOver());
+    }
 }
@@ -0,0 +1,141 @@
+package com.axorion.chess;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares FenCodec with the String.split() parser and StringBuilder writer ChessBoard used before it. The old code is
+ * copied in below as the baseline. Run with:
+ *
+ * <pre>
+ *     mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.axorion.chess.FenCodecBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FenCodecBenchmark {
+    @Param({
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"
+    })
+    String fen;
+
+    ChessBoard board;
+    char[] buffer;
+
+    @Setup
+    public void setUp() {
+        board = new ChessBoard();
+        board.setFenPosition(fen);
+        buffer = new char[FenCodec.MAX_LENGTH];
+    }
+
+    @Benchmark
+    public long parseCodec() {
+        FenCodec.parse(fen,board);
+        return board.getHashKey();
+    }
+
+    @Benchmark
+    public long parseLegacy() {
+        LegacyFen.parse(fen,board);
+        return board.getHashKey();
+    }
+
+    @Benchmark
+    public int writeCodec(Blackhole hole) {
+        int length = FenCodec.write(board,buffer,0);
+        hole.consume(buffer);
+        return length;
+    }
+
+    @Benchmark
+    public String writeCodecString() {
+        return board.toFen();
+    }
+
+    @Benchmark
+    public String writeLegacy() {
+        return LegacyFen.write(board);
+    }
+
+    /** The FEN code ChessBoard had before FenCodec, kept as the baseline. */
+    static class LegacyFen {
+        static void parse(String fen,ChessBoard board) {
+            board.resetBoard(ChessBoard.Side.WHITE);
+            String[] sections = fen.split(" ");
+            int boardIndex = 0;
+            for(char ch : sections[0].toCharArray()) {
+                if(Character.isDigit(ch)) {
+                    int count = ch-'0';
+                    for(int i=0; i<count; i++) {
+                        board.gameBoard[boardIndex+i] = ' ';
+                    }
+                    boardIndex += count;
+                } else if(ch != '/') {
+                    board.gameBoard[boardIndex++] = ch;
+                }
+            }
+            board.syncBitboards();
+            board.currentMove = sections[1].charAt(0) == ChessBoard.WHITE ? ChessBoard.Side.WHITE : ChessBoard.Side.BLACK;
+            String castling = sections[2];
+            board.castleWhiteKingSide = castling.indexOf('K') >= 0;
+            board.castleWhiteQueenSide = castling.indexOf('Q') >= 0;
+            board.castleBlackKingSide = castling.indexOf('k') >= 0;
+            board.castleBlackQueenSide = castling.indexOf('q') >= 0;
+            board.halfMoveCounter = Integer.parseInt(sections[4]);
+            board.fullMoveCounter = Integer.parseInt(sections[5])-1;
+            board.hashKey = Zobrist.hash(board);
+        }
+
+        static String write(ChessBoard board) {
+            StringBuilder fen = new StringBuilder(90);
+            for(int row=0; row<8; ++row) {
+                if(row > 0) {
+                    fen.append('/');
+                }
+                int spaces = 0;
+                for(int col=0; col<8; ++col) {
+                    int piece = board.gameBoard[row*8+col];
+                    if(piece == ChessBoard.EMPTY_SQUARE) {
+                        spaces++;
+                    } else {
+                        if(spaces > 0) {
+                            fen.append(spaces);
+                            spaces = 0;
+                        }
+                        fen.append((char)piece);
+                    }
+                }
+                if(spaces > 0) {
+                    fen.append(spaces);
+                }
+            }
+            fen.append(" ");
+            fen.append(board.currentMove == ChessBoard.Side.WHITE ? 'w' : 'b');
+            fen.append(" ");
+            fen.append((board.castleWhiteKingSide ?"K":""));
+            fen.append((board.castleWhiteQueenSide?"Q":""));
+            fen.append((board.castleBlackKingSide ?"k":""));
+            fen.append((board.castleBlackQueenSide?"q":""));
+            fen.append(" "+"-");
+            fen.append(" "+board.halfMoveCounter);
+            fen.append(" "+(board.fullMoveCounter+1));
+            return fen.toString();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(FenCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+}
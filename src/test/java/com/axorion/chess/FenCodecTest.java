@@ -0,0 +1,181 @@
+package com.axorion.chess;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.InvalidParameterException;
+
+import static org.junit.Assert.*;
+
+public class FenCodecTest {
+    ChessBoard board;
+    char[] buffer;
+
+    @Before
+    public void setUp() throws Exception {
+        board = new ChessBoard();
+        buffer = new char[FenCodec.MAX_LENGTH];
+    }
+
+    private String write() {
+        return new String(buffer,0,FenCodec.write(board,buffer,0));
+    }
+
+    @Test
+    public void roundTrip() {
+        for(String fen : Perft.POSITIONS) {
+            FenCodec.parse(fen,board);
+            assertEquals(fen,write());
+        }
+    }
+
+    @Test
+    public void parseFromStringBuilder() {
+        StringBuilder fen = new StringBuilder("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1");
+        FenCodec.parse(fen,board);
+        assertEquals('P',board.pieceAt("e4"));
+        assertEquals(ChessBoard.Side.BLACK,board.getCurrentMove());
+    }
+
+    @Test
+    public void enPassantRead() {
+        FenCodec.parse("rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3",board);
+        assertEquals(board.boardToIndex("f6"),board.getEnPassantIndex());
+        assertTrue(board.isValid("e5f6"));
+        assertEquals("rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3",write());
+    }
+
+    /** Only written when a pawn can take, so the same position always gets the same FEN. */
+    @Test
+    public void enPassantNotWrittenWhenNoPawnCanTake() {
+        FenCodec.parse("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1",board);
+        assertEquals(board.boardToIndex("e3"),board.getEnPassantIndex());
+        assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1",write());
+    }
+
+    @Test
+    public void enPassantAfterMove() {
+        board.setFenPosition("rnbqkbnr/ppp1pppp/8/3P4/8/8/PPP1PPPP/RNBQKBNR b KQkq - 0 2");
+        board.move("e7e5");
+        assertEquals("rnbqkbnr/ppp2ppp/8/3Pp3/8/8/PPP1PPPP/RNBQKBNR w KQkq e6 0 3",board.toFen());
+    }
+
+    @Test
+    public void noCastling() {
+        FenCodec.parse("8/4P1k1/8/8/8/8/6K1/8 w - - 0 60",board);
+        assertEquals(0,board.getCastleRights());
+        assertEquals("8/4P1k1/8/8/8/8/6K1/8 w - - 0 60",write());
+    }
+
+    @Test
+    public void movesCanBeLeftOff() {
+        FenCodec.parse("8/4P1k1/8/8/8/8/6K1/8 b -",board);
+        assertEquals("8/4P1k1/8/8/8/8/6K1/8 b - - 0 1",write());
+    }
+
+    @Test
+    public void clearsGame() {
+        board.move("e2e4");
+        FenCodec.parse(Perft.POSITIONS[0],board);
+        assertEquals(0,board.moveCard.size());
+        assertNull(board.takeback());
+    }
+
+    @Test
+    public void writeAtOffset() {
+        char[] big = new char[FenCodec.MAX_LENGTH+5];
+        int length = FenCodec.write(board,big,5);
+        assertEquals(Perft.POSITIONS[0],new String(big,5,length));
+    }
+
+    /** Every square full, all the fields used and the biggest move numbers. Not a real position. */
+    @Test
+    public void longestFenFits() {
+        FenCodec.parse("rnbqkbnr/pp1ppppp/pp1ppppp/PPpPPPPP/PPPPPPPP/PPPPPPPP/PPPPPPPP/RNBQKBNR w KQkq c6 999999999 999999999",board);
+        assertTrue(write().length() <= FenCodec.MAX_LENGTH);
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void badColor() {
+        FenCodec.parse("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq - 0 1",board);
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void badPiece() {
+        FenCodec.parse("rnbqkbnr/ppppxppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",board);
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void shortRank() {
+        FenCodec.parse("rnbqkbnr/ppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",board);
+    }
+
+    /** A FEN that is only found to be bad part way through leaves the position that was there. */
+    @Test
+    public void badFenKeepsPosition() {
+        board.setFenPosition("r2qk2r/ppp2ppp/8/3pP3/8/8/PPPQ1PPP/R3K2R w Kq d6 4 12");
+        String fen = write();
+        long key = board.getHashKey();
+        long occupied = board.getOccupied();
+        String[] bad = {
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq - 0 1",     //color
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR b KQxq - 0 1",     //castling
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR b KQkq e5 0 1",    //en passant
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR b KQkq - x 1",     //half moves
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR b KQkq - 0 x",     //full moves
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNRR w KQkq - 0 1",    //too many squares
+        };
+        for(String f : bad) {
+            try {
+                FenCodec.parse(f,board);
+                fail("accepted "+f);
+            } catch(InvalidParameterException e) {
+                //expected
+            }
+            assertEquals(f,fen,write());
+            assertEquals(f,key,board.getHashKey());
+            assertEquals(f,occupied,board.getOccupied());
+            assertEquals(f,"P",Character.toString((char)board.pieceAt(board.boardToIndex("e5"))));
+        }
+    }
+
+    /** An en passant square needs the right rank for the side to move and a pawn that could have just moved past it. */
+    @Test
+    public void enPassantMustFollowPawnMove() {
+        String[] bad = {
+                "4k3/8/8/8/8/8/3PK3/8 w - e3 0 1",          //rank 3 with white to move, no pawn in front
+                "4k3/8/8/8/4P3/8/8/4K3 w - e3 0 1",         //white's own pawn, and white to move
+                "4k3/8/8/8/4P3/8/4P3/4K3 b - e3 0 1",       //the square the pawn came from isn't empty
+                "4k3/8/8/8/8/8/8/4K3 b - e3 0 1",           //no pawn
+                "4k3/8/8/4p3/8/8/8/4K3 b - e6 0 1",         //rank 6 with black to move
+        };
+        for(String f : bad) {
+            try {
+                FenCodec.parse(f,board);
+                fail("accepted "+f);
+            } catch(InvalidParameterException e) {
+                //expected
+            }
+        }
+        FenCodec.parse("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1",board);
+        assertEquals(board.boardToIndex("d6"),board.getEnPassantIndex());
+    }
+
+    @Test
+    public void ranksNeedSlashes() {
+        String[] bad = {
+                "rnbqkbnrpppppppp8888PPPPPPPPRNBQKBNR w KQkq - 0 1",
+                "rnbqkbnr//pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR/ w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPPRNBQKBNR w KQkq - 0 1",
+        };
+        for(String f : bad) {
+            try {
+                FenCodec.parse(f,board);
+                fail("accepted "+f);
+            } catch(InvalidParameterException e) {
+                //expected
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.axorion.chess;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class GameArchiveTest {
+    File file;
+    File indexFile;
+    GameArchive archive;
+    ChessBoard board;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("archive",".games");
+        file.delete();
+        indexFile = new File(file.getPath()+".idx");
+        archive = new GameArchive(file);
+        board = new ChessBoard();
+        board.setGameId(7);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        archive.close();
+        file.delete();
+        indexFile.delete();
+    }
+
+    private void play(String... moves) throws IOException {
+        for(String m : moves) {
+            board.move(new ChessMove(board,m));
+            archive.record(board);
+        }
+    }
+
+    private GameArchive reopen() throws IOException {
+        archive.close();
+        archive = new GameArchive(file);
+        return archive;
+    }
+
+    @Test
+    public void recordAndRead() throws Exception {
+        play("e2e4","e7e5","g1f3");
+        board.takeback();
+        archive.record(board);
+        play("f1c4");
+        assertEquals(1,archive.getGameCount());
+        assertEquals(8+18+4*4+1,file.length());
+
+        reopen();
+        assertEquals(1,archive.getGameCount());
+        assertEquals(7,archive.getGameId(0));
+        ChessBoard read = new ChessBoard();
+        assertEquals("*",archive.readGame(0,read));
+        assertEquals(7,read.getGameId());
+        assertEquals(board.toFen(),read.toFen());
+        assertEquals(board.getMovesPgn(),read.getMovesPgn());
+    }
+
+    @Test
+    public void newGameId() throws Exception {
+        play("e2e4");
+        board.resetBoard(ChessBoard.Side.WHITE);
+        board.setGameId(8);
+        play("d2d4","d7d5");
+        assertEquals(2,archive.getGameCount());
+        assertEquals(8,archive.getGameId(1));
+
+        ChessBoard read = new ChessBoard();
+        archive.readGame(0,read);
+        assertEquals(1,read.getMoveCount());
+        archive.readGame(1,read);
+        assertEquals(2,read.getMoveCount());
+    }
+
+    @Test
+    public void startPosition() throws Exception {
+        String fen = "4k3/8/8/8/8/8/4P3/4K3 w - - 0 1";
+        board.setFenPosition(fen);
+        play("e2e4");
+        ChessBoard read = new ChessBoard();
+        reopen().readGame(0,read);
+        assertEquals(fen,read.getStartFen());
+        assertEquals(board.toFen(),read.toFen());
+    }
+
+    @Test
+    public void result() throws Exception {
+        play("f2f3","e7e5","g2g4","d8h4");
+        assertTrue(board.isGameOver());
+        ChessBoard read = new ChessBoard();
+        assertEquals("0-1",reopen().readGame(0,read));
+    }
+
+    @Test
+    public void truncatedRecord() throws Exception {
+        play("e2e4","e7e5");
+        long length = file.length();
+        play("g1f3");
+        archive.close();
+        try(RandomAccessFile raf = new RandomAccessFile(file,"rw")) {
+            raf.setLength(length+2);
+        }
+        archive = new GameArchive(file);
+        assertEquals(length,file.length());
+        ChessBoard read = new ChessBoard();
+        archive.readGame(0,read);
+        assertEquals(2,read.getMoveCount());
+    }
+
+    @Test
+    public void rebuildIndex() throws Exception {
+        play("e2e4");
+        board.resetBoard(ChessBoard.Side.WHITE);
+        board.setGameId(8);
+        play("d2d4");
+        archive.close();
+        indexFile.delete();
+
+        archive = new GameArchive(file);
+        assertEquals(2,archive.getGameCount());
+        assertEquals(8,archive.getGameId(1));
+        assertEquals(32,indexFile.length());
+    }
+
+    @Test
+    public void unindexedGame() throws Exception {
+        play("e2e4");
+        board.resetBoard(ChessBoard.Side.WHITE);
+        board.setGameId(8);
+        play("d2d4");
+        archive.close();
+        try(RandomAccessFile raf = new RandomAccessFile(indexFile,"rw")) {
+            raf.setLength(20);
+        }
+        archive = new GameArchive(file);
+        assertEquals(2,archive.getGameCount());
+        assertEquals(8,archive.getGameId(1));
+    }
+
+    @Test(expected = IOException.class)
+    public void notAnArchive() throws Exception {
+        archive.close();
+        try(RandomAccessFile raf = new RandomAccessFile(file,"rw")) {
+            raf.setLength(0);
+            raf.writeBytes("[Event \"x\"]\n");
+        }
+        archive = new GameArchive(file);
+    }
+
+    @Test
+    public void exportPgn() throws Exception {
+        play("e2e4","e7e5","g1f3");
+        StringWriter out = new StringWriter();
+        archive.exportPgn(0,out);
+        assertTrue(out.toString().contains("1.e4 e5 2.Nf3 *"));
+
+        PgnReader reader = new PgnReader(new StringReader(out.toString()));
+        PgnGame game = new PgnGame();
+        assertTrue(reader.next(game));
+        assertEquals(3,game.getMoves().size());
+    }
+}
@@ -0,0 +1,96 @@
+package com.axorion.chess;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MoveListTest {
+    ChessBoard board;
+    MoveList list;
+
+    @Before
+    public void setUp() throws Exception {
+        board = new ChessBoard();
+        list = new MoveList(2);
+    }
+
+    @Test
+    public void encodeDecode() {
+        int move = Move.encode(52,36,Bitboard.WHITE_PAWN,0,Move.FLAG_DOUBLE_PUSH);
+        assertEquals(52,Move.from(move));
+        assertEquals(36,Move.to(move));
+        assertEquals(Bitboard.WHITE_PAWN,Move.piece(move));
+        assertTrue(Move.isDoublePush(move));
+        assertFalse(Move.isCapture(move));
+        assertFalse(Move.isPromotion(move));
+        assertEquals("e2e4",Move.toEan(move));
+    }
+
+    @Test
+    public void promotionEan() {
+        int move = Move.encode(12,5,Bitboard.WHITE_PAWN,Bitboard.WHITE_KNIGHT,Move.FLAG_CAPTURE);
+        assertEquals("e7f8n",Move.toEan(move));
+        assertTrue(Move.isCapture(move));
+    }
+
+    @Test
+    public void castleSide() {
+        int move = Move.encode(4,2,Bitboard.BLACK_KING,0,Move.FLAG_CASTLE);
+        assertTrue(Move.isCastleQueenSide(move));
+        assertFalse(Move.isCastleKingSide(move));
+    }
+
+    @Test
+    public void grows() {
+        for(int i=0; i<100; i++) {
+            list.add(i);
+        }
+        assertEquals(100,list.size());
+        assertEquals(99,list.last());
+        assertEquals(99,list.removeLast());
+        assertEquals(99,list.size());
+        assertEquals(42,list.get(42));
+        assertTrue(list.contains(7));
+        list.clear();
+        assertTrue(list.isEmpty());
+        assertEquals(Move.NONE,list.removeLast());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getPastEnd() {
+        list.add(1);
+        list.get(1);
+    }
+
+    @Test
+    public void generateIntoList() {
+        list.add(Move.NONE);
+        MoveGenerator.generateLegal(board,list);
+        assertEquals(21,list.size());
+    }
+
+    @Test
+    public void scoreCardKeepsInts() {
+        board.move("e2e4");
+        board.move("d7d5");
+        board.move("e4d5");
+        MoveList moves = board.getMoveList();
+        assertEquals(3,board.getMoveCount());
+        assertEquals("e2e4 d7d5 e4d5",moves.toString());
+        assertTrue(Move.isCapture(board.getLastMove()));
+        assertEquals("e2e4 d7d5 e4xd5",board.getMoveString());
+    }
+
+    @Test
+    public void takebackRemembersCapture() {
+        board.move("e2e4");
+        board.move("d7d5");
+        board.move("e4d5");
+        ChessMove move = board.takeback();
+        assertTrue(move.isCapture());
+        assertEquals('p',move.getCapturedPiece());
+        assertEquals('P',move.getMovedPiece());
+        assertEquals("d5e4",move.toEan());
+    }
+}
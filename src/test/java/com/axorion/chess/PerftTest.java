@@ -0,0 +1,61 @@
+package com.axorion.chess;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PerftTest {
+    Perft perft;
+    ChessBoard board;
+
+    @Before
+    public void setUp() throws Exception {
+        perft = new Perft(6);
+        board = new ChessBoard();
+    }
+
+    private void checkPosition(int position,int depth) {
+        board.setFenPosition(Perft.POSITIONS[position]);
+        assertEquals(Perft.EXPECTED[position][depth-1],perft.perft(board,depth));
+    }
+
+    @Test
+    public void initialPosition() {
+        checkPosition(0,4);
+    }
+
+    @Test
+    public void kiwipete() {
+        checkPosition(1,3);
+    }
+
+    @Test
+    public void endgameWithEnPassant() {
+        checkPosition(2,4);
+    }
+
+    @Test
+    public void promotionsAndChecks() {
+        checkPosition(3,3);
+    }
+
+    @Test
+    public void promotionWithCapture() {
+        checkPosition(4,3);
+    }
+
+    @Test
+    public void middleGame() {
+        checkPosition(5,3);
+    }
+
+    /** Perft makes its moves on its own copy, the board passed in should be left alone. */
+    @Test
+    public void boardNotChanged() {
+        board.setFenPosition(Perft.POSITIONS[1]);
+        String fen = board.toFen();
+        perft.perft(board,2);
+        assertEquals(fen,board.toFen());
+    }
+}
@@ -0,0 +1,67 @@
+package com.axorion.chess;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many games per second PgnReader gets through. The games are random legal games written with PgnWriter,
+ * so the SAN has the checks and disambiguation a real database has. Run with:
+ *
+ * <pre>
+ *     mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.axorion.chess.PgnReaderBenchmark
+ * </pre>
+ *
+ * For a real database use PgnImporter, which reports games per second too.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PgnReaderBenchmark {
+    static final int GAMES = 200;
+
+    String pgn;
+    PgnGame game;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(1);
+        ChessBoard board = new ChessBoard();
+        StringWriter out = new StringWriter();
+        for(int i=0; i<GAMES; i++) {
+            board.resetBoard(ChessBoard.Side.WHITE);
+            for(int ply=0; ply<120 && !board.isGameOver(); ply++) {
+                int count = MoveGenerator.generateLegal(board,board.validateBuffer,0);
+                board.move(board.validateBuffer[random.nextInt(count)]);
+            }
+            PgnWriter.write(board,out);
+            out.write('\n');
+        }
+        pgn = out.toString();
+        game = new PgnGame();
+    }
+
+    /** Score is games per second. */
+    @Benchmark
+    @OperationsPerInvocation(GAMES)
+    public long readGames() throws IOException {
+        PgnReader reader = new PgnReader(new StringReader(pgn));
+        while(reader.next(game)) {
+        }
+        return reader.getMoveCount();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PgnReaderBenchmark.class.getSimpleName()).build()).run();
+    }
+}
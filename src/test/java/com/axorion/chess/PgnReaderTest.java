@@ -0,0 +1,128 @@
+package com.axorion.chess;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class PgnReaderTest {
+    static final String TWO_GAMES =
+            "[Event \"Casual \\\"blitz\\\"\"]\n"+
+            "[White \"Morphy, Paul\"]\n"+
+            "[Black \"Duke Karl / Count Isouard\"]\n"+
+            "[Result \"1-0\"]\n"+
+            "\n"+
+            "1. e4 e5 2. Nf3 d6 3. d4 Bg4 {This is a weak move already.} 4. dxe5 Bxf3 5. Qxf3 dxe5\n"+
+            "6. Bc4 Nf6 7. Qb3 Qe7 8. Nc3 c6 9. Bg5 b5 10. Nxb5 cxb5 11. Bxb5+ Nbd7 12. O-O-O Rd8\n"+
+            "13. Rxd7 Rxd7 14. Rd1 Qe6 15. Bxd7+ Nxd7 16. Qb8+ Nxb8 17. Rd8# 1-0\n"+
+            "\n"+
+            "% a line the program should ignore\n"+
+            "[Event \"Second\"]\n"+
+            "[SetUp \"1\"]\n"+
+            "[FEN \"r3k2r/1P6/8/8/8/8/8/R3K2R w KQkq - 0 1\"]\n"+
+            "\n"+
+            "1.bxa8=Q+ $1 (1.b8=Q+ Rxb8 ; a comment to the end of the line\n"+
+            "2.O-O) 1...Ke7 2.0-0 *\n";
+
+    PgnReader reader;
+    PgnGame game;
+
+    @Before
+    public void setUp() throws Exception {
+        reader = new PgnReader(new StringReader(TWO_GAMES),16);
+        game = new PgnGame();
+    }
+
+    @Test
+    public void readsGames() throws Exception {
+        assertTrue(reader.next(game));
+        assertEquals("Casual \"blitz\"",game.getTag("Event"));
+        assertEquals("Morphy, Paul",game.getTag("White"));
+        assertEquals("1-0",game.getResult());
+        assertFalse(game.getError(),game.hasError());
+        assertEquals(33,game.getMoves().size());
+
+        assertTrue(reader.next(game));
+        assertEquals("Second",game.getTag("Event"));
+        assertNull(game.getTag("White"));
+        assertEquals("r3k2r/1P6/8/8/8/8/8/R3K2R w KQkq - 0 1",game.getStartFen());
+        assertEquals("*",game.getResult());
+        assertEquals("b7a8q e8e7 e1g1",game.getMoves().toString());
+
+        assertFalse(reader.next(game));
+        assertEquals(2,reader.getGameCount());
+        assertEquals(36,reader.getMoveCount());
+    }
+
+    @Test
+    public void replayOnBoard() throws Exception {
+        reader.next(game);
+        ChessBoard board = new ChessBoard();
+        game.replay(board);
+        assertEquals(ChessBoard.GameEnd.CHECKMATE,board.getGameEnd());
+        assertTrue(board.getMovesPgn().endsWith("16.Qb8+ Nxb8 17.Rd8#"));
+    }
+
+    /** Writing a game and reading it back should give the same moves. */
+    @Test
+    public void roundTrip() throws Exception {
+        reader.next(game);
+        ChessBoard board = new ChessBoard();
+        game.replay(board);
+        StringWriter out = new StringWriter();
+        PgnWriter.write(board,out);
+
+        PgnGame copy = new PgnGame();
+        assertTrue(new PgnReader(new StringReader(out.toString())).next(copy));
+        assertEquals(game.getMoves().toString(),copy.getMoves().toString());
+        assertEquals("1-0",copy.getResult());
+    }
+
+    @Test
+    public void illegalMoveStopsGame() throws Exception {
+        reader = new PgnReader(new StringReader("1.e4 e5 2.Ke3 Nc6 1-0\n\n1.d4 *"));
+        assertTrue(reader.next(game));
+        assertTrue(game.hasError());
+        assertEquals(2,game.getMoves().size());
+        assertEquals("1-0",game.getResult());
+        assertTrue(reader.next(game));
+        assertFalse(game.hasError());
+        assertEquals(1,game.getMoves().size());
+    }
+
+    @Test
+    public void parseSan() {
+        ChessBoard board = new ChessBoard();
+        board.setFenPosition("r1b1k1nr/ppqnbppp/4p3/3p4/2PP4/1P4P1/PB1N1P1P/R2QKBNR b KQkq - 2 8");
+        assertEquals("g8f6",Move.toEan(PgnReader.parseSan(board,"Ngf6")));
+        assertEquals("d7f6",Move.toEan(PgnReader.parseSan(board,"Nd7f6")));
+        assertEquals(Move.NONE,PgnReader.parseSan(board,"Nf6"));
+        assertEquals("d5c4",Move.toEan(PgnReader.parseSan(board,"dxc4!?")));
+        assertEquals(Move.NONE,PgnReader.parseSan(board,"Qh1"));
+        assertEquals(Move.NONE,PgnReader.parseSan(board,"xyz"));
+    }
+
+    @Test
+    public void parseSanPromotion() {
+        ChessBoard board = new ChessBoard();
+        board.setFenPosition("r3k2r/1P6/8/8/8/8/8/R3K2R w KQkq - 0 1");
+        assertEquals("b7b8n",Move.toEan(PgnReader.parseSan(board,"b8=N")));
+        assertEquals("b7a8r",Move.toEan(PgnReader.parseSan(board,"bxa8R")));
+        assertEquals("b7b8q",Move.toEan(PgnReader.parseSan(board,"b8")));
+        assertEquals("e1c1",Move.toEan(PgnReader.parseSan(board,"O-O-O")));
+    }
+
+    @Test
+    public void importerCounts() throws Exception {
+        PgnImporter importer = new PgnImporter();
+        final int[] seen = {0};
+        importer.importGames(new StringReader(TWO_GAMES),g -> seen[0]++);
+        assertEquals(2,seen[0]);
+        assertEquals(2,importer.getGameCount());
+        assertEquals(36,importer.getMoveCount());
+        assertEquals(0,importer.getErrorCount());
+    }
+}
@@ -0,0 +1,133 @@
+package com.axorion.chess;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class PgnWriterTest {
+    ChessBoard board;
+
+    @Before
+    public void setUp() throws Exception {
+        board = new ChessBoard();
+    }
+
+    private String san(String ean) {
+        return PgnWriter.toSan(board,board.encodeMove(new ChessMove(board,ean)));
+    }
+
+    @Test
+    public void fileDisambiguation() {
+        board.setFenPosition("r1b1k1nr/ppqnbppp/4p3/3p4/2PP4/1P4P1/PB1N1P1P/R2QKBNR b KQkq - 2 8");
+        assertEquals("Ngf6",san("g8f6"));
+        assertEquals("Ndf6",san("d7f6"));
+        assertEquals("Nb6",san("d7b6"));
+    }
+
+    @Test
+    public void rankDisambiguation() {
+        board.setFenPosition("4k3/8/8/R7/8/8/8/R3K3 w - - 0 1");
+        assertEquals("R5a3",san("a5a3"));
+        assertEquals("R1a3",san("a1a3"));
+    }
+
+    @Test
+    public void squareDisambiguation() {
+        board.setFenPosition("4k3/8/8/8/8/Q1Q5/8/Q3K3 w - - 0 1");
+        assertEquals("Qa3b2",san("a3b2"));
+        assertEquals("Qcb2",san("c3b2"));
+    }
+
+    /** The knight on d2 is pinned, so only one knight can really go to f3. */
+    @Test
+    public void pinnedPieceIsNotAmbiguous() {
+        board.setFenPosition("4k3/8/8/b7/8/8/3N4/4K1N1 w - - 0 1");
+        assertEquals("Nf3",san("g1f3"));
+    }
+
+    @Test
+    public void checkAndMate() {
+        board.move("f2f3");
+        board.move("e7e5");
+        board.move("g2g4");
+        assertEquals("Qh4#",san("d8h4"));
+        board.setFenPosition("4k3/8/8/8/8/8/8/R3K3 w - - 0 1");
+        assertEquals("Ra8+",san("a1a8"));
+    }
+
+    @Test
+    public void promotionAndCastle() {
+        board.setFenPosition("r3k2r/1P6/8/8/8/8/8/R3K2R w KQkq - 0 1");
+        assertEquals("O-O",san("e1g1"));
+        assertEquals("O-O-O",san("e1c1"));
+        assertEquals("bxa8=N",san("b7a8n"));
+        assertEquals("b8=Q+",san("b7b8q"));
+    }
+
+    @Test
+    public void enPassant() {
+        board.setFenPosition("rnbqkbnr/ppp1pppp/8/3P4/8/8/PPP1PPPP/RNBQKBNR b KQkq - 0 2");
+        board.move("e7e5");
+        assertEquals("dxe6",san("d5e6"));
+    }
+
+    @Test
+    public void movesAddedAsPlayed() {
+        board.move("e2e4");
+        board.move("e7e5");
+        board.move("d1h5");
+        board.move("b8c6");
+        board.move("f1c4");
+        board.move("g8f6");
+        board.move("h5f7");
+        assertEquals("1.e4 e5 2.Qh5 Nc6 3.Bc4 Nf6 4.Qxf7#",board.getMovesPgn());
+        assertEquals(" 4.Qxf7#",board.getMovesPgn(6));
+        assertEquals("1-0",PgnWriter.result(board));
+        board.takeback();
+        assertEquals("1.e4 e5 2.Qh5 Nc6 3.Bc4 Nf6",board.getMovesPgn());
+        assertEquals("*",PgnWriter.result(board));
+    }
+
+    @Test
+    public void writeGame() throws Exception {
+        board.move("e2e4");
+        board.move("e7e5");
+        StringWriter out = new StringWriter();
+        PgnWriter.write(board,out);
+        String pgn = out.toString();
+        assertTrue(pgn.startsWith("[Event \"Game ID "));
+        assertTrue(pgn.contains("[Result \"*\"]\n"));
+        assertFalse(pgn.contains("[FEN"));
+        assertTrue(pgn.endsWith("\n\n1.e4 e5 *\n"));
+    }
+
+    @Test
+    public void writeGameFromFen() throws Exception {
+        String fen = "r1b1k1nr/ppqnbppp/4p3/3p4/2PP4/1P4P1/PB1N1P1P/R2QKBNR b KQkq - 2 8";
+        board.setFenPosition(fen);
+        board.move("g8f6");
+        StringWriter out = new StringWriter();
+        PgnWriter.write(board,out);
+        String pgn = out.toString();
+        assertTrue(pgn.contains("[SetUp \"1\"]\n[FEN \""+fen+"\"]\n"));
+        assertTrue(pgn.endsWith("\n\n8...Ngf6 *\n"));
+    }
+
+    @Test
+    public void longLinesWrap() throws Exception {
+        for(int i=0; i<40; i++) {
+            board.move(i%4 == 0 ? "g1f3" : i%4 == 1 ? "g8f6" : i%4 == 2 ? "f3g1" : "f6g8");
+            if(board.isGameOver()) {
+                break;
+            }
+        }
+        StringWriter out = new StringWriter();
+        PgnWriter.write(board,out);
+        for(String line : out.toString().split("\n")) {
+            assertTrue(line,line.length() <= PgnWriter.LINE_LENGTH);
+        }
+    }
+}
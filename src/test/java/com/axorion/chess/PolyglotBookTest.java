@@ -0,0 +1,249 @@
+package com.axorion.chess;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PolyglotBookTest {
+    File file;
+    long[] random;
+    ChessBoard board;
+    List<long[]> entries;
+    PolyglotBook book;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("book",".bin");
+        random = new long[PolyglotBook.RANDOM_SIZE];
+        Random r = new Random(1);
+        for(int i=0; i<random.length; i++) {
+            random[i] = r.nextLong();
+        }
+        board = new ChessBoard();
+        entries = new ArrayList<>();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if(book != null) {
+            book.close();
+        }
+        file.delete();
+    }
+
+    private void play(String... moves) {
+        for(String m : moves) {
+            board.move(new ChessMove(board,m));
+        }
+    }
+
+    /** Add a book entry for the board's position, with the move written the way Polyglot writes it. */
+    private void add(String move,int weight) {
+        int from = board.boardToIndex(move.substring(0,2));
+        int to = board.boardToIndex(move.substring(2,4));
+        int promotion = move.length() > 4 ? PolyglotBook.PROMOTIONS.indexOf(move.charAt(4)) : 0;
+        int bookMove = PolyglotBook.polyglotSquare(to) | PolyglotBook.polyglotSquare(from) << 6 | promotion << 12;
+        entries.add(new long[] {PolyglotBook.key(board,random),bookMove,weight});
+    }
+
+    private void writeBook() throws IOException {
+        Collections.sort(entries,new Comparator<long[]>() {
+            public int compare(long[] a,long[] b) {
+                return Long.compareUnsigned(a[0],b[0]);
+            }
+        });
+        try(DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            for(long[] entry : entries) {
+                out.writeLong(entry[0]);
+                out.writeShort((int)entry[1]);
+                out.writeShort((int)entry[2]);
+                out.writeInt(0);
+            }
+        }
+        book = new PolyglotBook(file,random);
+    }
+
+    @Test
+    public void findsMovesForPosition() throws Exception {
+        add("e2e4",3);
+        add("d2d4",1);
+        play("e2e4");
+        add("e7e5",1);
+        writeBook();
+
+        board.resetBoard(ChessBoard.Side.WHITE);
+        int[] moves = new int[8];
+        int[] weights = new int[8];
+        assertEquals(2,book.getMoves(board,moves,weights));
+        assertEquals("e2e4",Move.toEan(moves[0]));
+        assertEquals(3,weights[0]);
+        assertEquals("d2d4",Move.toEan(moves[1]));
+        assertEquals(1,weights[1]);
+
+        play("e2e4");
+        assertEquals("e7e5",Move.toEan(book.getMove(board)));
+        play("e7e5");
+        assertEquals(Move.NONE,book.getMove(board));
+    }
+
+    @Test
+    public void picksByWeight() throws Exception {
+        add("e2e4",3);
+        add("d2d4",1);
+        add("c2c4",0);
+        writeBook();
+        book.setRandom(new Random(5));
+        int e4 = 0;
+        for(int i=0; i<4000; i++) {
+            String move = Move.toEan(book.getMove(board));
+            assertNotEquals("c2c4",move);
+            if(move.equals("e2e4")) {
+                e4++;
+            }
+        }
+        assertTrue("e4 picked "+e4,e4 > 2800 && e4 < 3200);
+    }
+
+    @Test
+    public void castlingWrittenAsKingTakesRook() throws Exception {
+        board.setFenPosition("r3k2r/pppppppp/8/8/8/8/PPPPPPPP/R3K2R w KQkq - 0 1");
+        add("e1h1",1);
+        writeBook();
+        int move = book.getMove(board);
+        assertTrue(Move.isCastleKingSide(move));
+        assertEquals("e1g1",Move.toEan(move));
+    }
+
+    @Test
+    public void promotion() throws Exception {
+        board.setFenPosition("8/4P3/8/8/8/8/k7/4K3 w - - 0 1");
+        add("e7e8n",1);
+        writeBook();
+        assertEquals("e7e8n",Move.toEan(book.getMove(board)));
+    }
+
+    @Test
+    public void illegalMoveIgnored() throws Exception {
+        add("e2e5",1);
+        writeBook();
+        assertEquals(Move.NONE,book.getMove(board));
+    }
+
+    @Test
+    public void transpositionsHaveSameKey() {
+        play("e2e4","g8f6","g1f3");
+        long key = PolyglotBook.key(board,random);
+        board.resetBoard(ChessBoard.Side.WHITE);
+        play("g1f3","g8f6","e2e4");
+        assertEquals(key,PolyglotBook.key(board,random));
+    }
+
+    /** The en passant key is only used when a pawn can take, d5 can't be taken so it isn't in the key. */
+    @Test
+    public void enPassantOnlyWhenPawnCanTake() {
+        play("e2e4","d7d5");
+        long key = PolyglotBook.key(board,random);
+        board.setFenPosition("rnbqkbnr/ppp1pppp/8/3p4/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 0 2");
+        assertEquals(key,PolyglotBook.key(board,random));
+    }
+
+    /**
+     * Checks the table layout against the key differences of the published Polyglot test positions, using the real
+     * Random64 numbers for the squares that change. The rest of the table doesn't matter since it cancels out.
+     */
+    @Test
+    public void matchesPolyglotKeyLayout() {
+        random[37] = 0x09D1BC9A3DD90A94L;     //black pawn f5
+        random[53] = 0x6568FCA92C76A243L;     //black pawn f7
+        random[76] = 0xBB6E2924F03912EAL;     //white pawn e2
+        random[92] = 0x87BF02C6B49E2AE9L;     //white pawn e4
+        random[777] = 0xD0E4427A5514FB72L;    //en passant f file
+        random[780] = 0xF8D626AAAF278509L;    //white to move
+
+        long start = PolyglotBook.key(board,random);
+        play("e2e4");
+        assertEquals(0x463B96181691FC9CL ^ 0x823C9B50FD114196L,start ^ PolyglotBook.key(board,random));
+
+        play("d7d5","e4e5");
+        long before = PolyglotBook.key(board,random);
+        play("f7f5");
+        assertEquals(0x662FAFB965DB29D4L ^ 0x22A48B5A8E47FF78L,before ^ PolyglotBook.key(board,random));
+    }
+
+    @Test
+    public void startPositionKey() {
+        assertEquals(PolyglotBook.RANDOM_SIZE,PolyglotBook.RANDOM64.length);
+        assertEquals(0x463B96181691FC9CL,PolyglotBook.key(board,PolyglotBook.RANDOM64));
+    }
+
+    /** The published Polyglot test positions, which between them use every kind of piece, castling and en passant. */
+    @Test
+    public void matchesPublishedKeys() {
+        long[] keys = {
+                0x823C9B50FD114196L,    //e4
+                0x0756B94461C50FB0L,    //d5
+                0x662FAFB965DB29D4L,    //e5
+                0x22A48B5A8E47FF78L,    //f5
+                0x652A607CA3F242C1L,    //Ke2
+                0x00FDD303C946BDD9L,    //Kf7
+        };
+        String[] moves = {"e2e4","d7d5","e4e5","f7f5","e1e2","e8f7"};
+        for(int i=0; i<moves.length; i++) {
+            play(moves[i]);
+            assertEquals(moves[i],keys[i],PolyglotBook.key(board,PolyglotBook.RANDOM64));
+        }
+
+        board.resetBoard(ChessBoard.Side.WHITE);
+        play("a2a4","b7b5","h2h4","b5b4","c2c4");
+        assertEquals(0x3C8123EA7B067637L,PolyglotBook.key(board,PolyglotBook.RANDOM64));
+        play("b4c3","a1a3");
+        assertEquals(0x5C3F9B829B279560L,PolyglotBook.key(board,PolyglotBook.RANDOM64));
+    }
+
+    @Test
+    public void defaultTableFindsBookMoves() throws Exception {
+        random = PolyglotBook.RANDOM64;
+        add("e2e4",1);
+        writeBook();
+        book.close();
+        book = new PolyglotBook(file);
+        assertEquals(0x463B96181691FC9CL,book.key(board));
+        assertEquals("e2e4",Move.toEan(book.getMove(board)));
+    }
+
+    @Test
+    public void readRandom() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for(int i=0; i<PolyglotBook.RANDOM_SIZE; i++) {
+            text.append(String.format("0x%016XULL,%s",random[i],i % 4 == 3 ? "\n" : " "));
+        }
+        assertArrayEquals(random,PolyglotBook.readRandom(new StringReader(text.toString())));
+        try {
+            PolyglotBook.readRandom(new StringReader("0x1234"));
+            fail("short table accepted");
+        } catch(IOException e) {
+            //expected
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void notABook() throws Exception {
+        try(FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[20]);
+        }
+        new PolyglotBook(file,random);
+    }
+}
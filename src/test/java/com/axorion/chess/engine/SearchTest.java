@@ -0,0 +1,176 @@
+package com.axorion.chess.engine;
+
+import com.axorion.chess.ChessBoard;
+import com.axorion.chess.ChessMove;
+import com.axorion.chess.Move;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SearchTest {
+    ChessBoard board;
+    Search search;
+
+    @Before
+    public void setUp() throws Exception {
+        board = new ChessBoard();
+        search = new Search(new TranspositionTable(4));
+    }
+
+    private SearchResult think(String fen,int depth) {
+        board.setFenPosition(fen);
+        return search.think(board,new TimeManager(0,depth));
+    }
+
+    @Test
+    public void mateInOne() {
+        SearchResult result = think("6k1/5ppp/8/8/8/8/5PPP/R5K1 w - - 0 1",3);
+        assertEquals("a1a8",Move.toEan(result.getMove()));
+        assertTrue(result.isMate());
+        assertEquals(1,result.getMateIn());
+    }
+
+    @Test
+    public void mateInTwo() {
+        SearchResult result = think("r1bqkb1r/pppp1ppp/2n2n2/4p2Q/2B1P3/8/PPPP1PPP/RNB1K1NR w KQkq - 4 4",4);
+        assertEquals("h5f7",Move.toEan(result.getMove()));
+        assertEquals(1,result.getMateIn());
+
+        result = think("7k/8/8/8/8/8/R7/1R4K1 w - - 0 1",6);
+        assertTrue(result.toString(),result.isMate());
+        assertEquals(2,result.getMateIn());
+    }
+
+    @Test
+    public void takesHangingQueen() {
+        SearchResult result = think("4k3/8/8/3q4/8/8/3R4/4K3 w - - 0 1",4);
+        assertEquals("d2d5",Move.toEan(result.getMove()));
+        assertTrue(result.getScore() > 300);
+    }
+
+    @Test
+    public void doesNotTakeDefendedPawnWithQueen() {
+        SearchResult result = think("4k3/8/2p5/3p4/8/8/3Q4/4K3 w - - 0 1",4);
+        assertNotEquals("d2d5",Move.toEan(result.getMove()));
+    }
+
+    @Test
+    public void noMoves() {
+        SearchResult result = think("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1",4);
+        assertEquals(Move.NONE,result.getMove());
+    }
+
+    @Test
+    public void boardNotChanged() {
+        board.setFenPosition(ChessBoard.START_FEN);
+        board.move(new ChessMove(board,"e2e4"));
+        String fen = board.toFen();
+        search.think(board,new TimeManager(0,4));
+        assertEquals(fen,board.toFen());
+        assertEquals(1,board.getMoveCount());
+    }
+
+    /** The copy is replayed from the start so it can see the game's earlier positions. */
+    @Test
+    public void copyGameKeepsHistory() {
+        for(String m : new String[] {"g1f3","g8f6","f3g1","f6g8","g1f3","g8f6","f3g1"}) {
+            board.move(new ChessMove(board,m));
+        }
+        ChessBoard copy = new ChessBoard();
+        Search.copyGame(board,copy);
+        assertEquals(board.toFen(),copy.toFen());
+        assertEquals(1,copy.getRepetitionCount());
+    }
+
+    @Test
+    public void stopsOnTime() {
+        board.setFenPosition(ChessBoard.START_FEN);
+        long start = System.nanoTime();
+        SearchResult result = search.think(board,new TimeManager(200,Search.MAX_PLY));
+        long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime()-start);
+        assertTrue("took "+ms,ms < 1000);
+        assertNotEquals(Move.NONE,result.getMove());
+    }
+
+    @Test
+    public void levelLimitsDepth() {
+        assertEquals(1,TimeManager.depthForLevel(0));
+        assertEquals(Search.MAX_PLY,TimeManager.depthForLevel(20));
+        SearchResult result = think(ChessBoard.START_FEN,TimeManager.depthForLevel(4));
+        assertEquals(3,result.getDepth());
+    }
+
+    @Test
+    public void tableKeepsMateDistanceFromPosition() {
+        TranspositionTable table = new TranspositionTable(1);
+        int score = Search.MATE-7;      //mate found 7 plies from the root, 3 plies from this position at ply 4
+        table.store(1234,Move.encode(12,28,0,0,0),Search.toTable(score,4),5,TranspositionTable.EXACT);
+        long entry = table.probe(1234);
+        assertEquals(5,TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.EXACT,TranspositionTable.bound(entry));
+        assertEquals(Move.encode(12,28,0,0,0),TranspositionTable.move(entry));
+        assertEquals(Search.MATE-3,TranspositionTable.score(entry));
+        assertEquals(Search.MATE-5,Search.fromTable(TranspositionTable.score(entry),2));
+        assertEquals(0,table.probe(1234+table.size()));
+    }
+
+    @Test
+    public void smpFindsSameMate() {
+        board.setFenPosition("7k/8/8/8/8/8/R7/1R4K1 w - - 0 1");
+        SmpSearch smp = new SmpSearch(new TranspositionTable(4),3);
+        try {
+            SearchResult result = smp.think(board,new TimeManager(0,6));
+            assertTrue(result.toString(),result.isMate());
+            assertEquals(2,result.getMateIn());
+            assertEquals("7k/8/8/8/8/8/R7/1R4K1 w - - 0 1",board.toFen());
+        } finally {
+            smp.close();
+        }
+    }
+
+    /** Threads writing the same slot at once must never make an entry that passes the key check with another's data. */
+    @Test
+    public void sharedTableNeverGivesTornEntry() throws Exception {
+        final TranspositionTable table = new TranspositionTable(1);
+        final int slots = table.size();
+        Thread[] writers = new Thread[3];
+        for(int t=0; t<writers.length; t++) {
+            final int depth = t+1;
+            writers[t] = new Thread(new Runnable() {
+                public void run() {
+                    for(int i=0; i<200000; i++) {
+                        long key = (long)(i % 4)*slots+7;     //all in slot 7
+                        table.store(key,depth,(int)(key % 1000),depth,TranspositionTable.EXACT);
+                    }
+                }
+            });
+            writers[t].start();
+        }
+        for(int i=0; i<200000; i++) {
+            long key = (long)(i % 4)*slots+7;
+            long entry = table.probe(key);
+            if(entry != 0) {
+                assertEquals(key % 1000,TranspositionTable.score(entry));
+                assertEquals(TranspositionTable.move(entry),TranspositionTable.depth(entry));
+            }
+        }
+        for(Thread writer : writers) {
+            writer.join();
+        }
+    }
+
+    @Test
+    public void engineAnswersInBackground() throws Exception {
+        JavaEngine engine = new JavaEngine(4,2);
+        try {
+            board.setFenPosition("6k1/5ppp/8/8/8/8/5PPP/R5K1 w - - 0 1");
+            SearchResult result = engine.search(board,500).get(5,TimeUnit.SECONDS);
+            assertEquals("a1a8",Move.toEan(result.getMove()));
+        } finally {
+            engine.close();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.axorion.chesslr;
+
+import com.axorion.chess.ChessBoard;
+import com.axorion.chess.ChessMove;
+import com.rahul.stockfish.BestMove;
+import com.rahul.stockfish.UciInfo;
+import com.rahul.stockfish.UciListener;
+import com.rahul.stockfish.UciParser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AnnotatorTest {
+    static final String SCHOLARS_MATE = "[Event \"Test\"]\n[Result \"1-0\"]\n\n1. e4 e5 2. Qh5 Nc6 3. Bc4 Nf6 4. Qxf7# 1-0\n\n";
+    static final String SHORT_DRAW = "[Event \"Second\"]\n[Result \"1/2-1/2\"]\n\n1. d4 d5 1/2-1/2\n\n";
+
+    File dir;
+
+    /** Fake engine: 0.00 and a2a3 for every position, unless told something else for the position. */
+    final Map<String,BestMove> answers = new HashMap<>();
+    final AtomicInteger searches = new AtomicInteger();
+    final Annotator.Engine engine = new Annotator.Engine() {
+        public CompletableFuture<BestMove> search(String fen) {
+            searches.incrementAndGet();
+            BestMove answer = answers.get(fen);
+            return CompletableFuture.completedFuture(answer != null ? answer : best("a2a3","cp 0"));
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("annotator").toFile();
+        //after 3.Bc4 the engine wants g6, and after 3...Nf6 it sees mate in one
+        answers.put(fen("e2e4","e7e5","d1h5","b8c6","f1c4"),best("g7g6","cp 0"));
+        answers.put(fen("e2e4","e7e5","d1h5","b8c6","f1c4","g8f6"),best("h5f7","mate 1"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        delete(dir);
+    }
+
+    static void delete(File file) {
+        File[] files = file.listFiles();
+        if(files != null) {
+            for(File f : files) {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+
+    static BestMove best(String move,String score) {
+        final UciInfo[] info = new UciInfo[1];
+        new UciParser(new UciListener() {
+            public void info(UciInfo line) {
+                info[0] = line.copy();
+            }
+
+            public void bestMove(String move,String ponder) {
+            }
+
+            public void readyOk() {
+            }
+
+            public void uciOk() {
+            }
+        }).parseLine("info depth 10 score "+score+" pv "+move);
+        return new BestMove(move,null,info[0]);
+    }
+
+    static String fen(String... moves) {
+        ChessBoard board = new ChessBoard();
+        board.setFenPosition(ChessBoard.START_FEN);
+        for(String move : moves) {
+            board.move(new ChessMove(board,move));
+        }
+        return board.toFen();
+    }
+
+    File write(String name,String text) throws IOException {
+        File file = new File(dir,name);
+        Files.write(file.toPath(),text.getBytes(StandardCharsets.ISO_8859_1));
+        return file;
+    }
+
+    String annotate(File input,File out) throws IOException {
+        try(Annotator annotator = new Annotator(engine,out,new File(out.getPath()+".checkpoint"))) {
+            annotator.annotate(Collections.singletonList(input));
+        }
+        return new String(Files.readAllBytes(out.toPath()),StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    public void marksBlunderWithBestMove() throws IOException {
+        String pgn = annotate(write("game.pgn",SCHOLARS_MATE),new File(dir,"out.pgn"));
+        assertEquals("[Event \"Test\"]\n[Result \"1-0\"]\n[Annotator \"ChessLR\"]\n\n"
+                +"1.e4 {+0.00} e5 {+0.00} 2.Qh5 {+0.00} Nc6 {+0.00} 3.Bc4 {+0.00} Nf6?? {#1 best\n"
+                +"g6 +0.00} 4.Qxf7# 1-0\n\n",pgn);
+        assertEquals("no search of the mated position",7,searches.get());
+    }
+
+    @Test
+    public void marks() {
+        assertEquals("",Annotator.mark(69));
+        assertEquals("?!",Annotator.mark(70));
+        assertEquals("?",Annotator.mark(150));
+        assertEquals("??",Annotator.mark(300));
+    }
+
+    @Test
+    public void formatScore() {
+        assertEquals("+0.35",Annotator.formatScore(best("e2e4","cp 35").getScore(),true));
+        assertEquals("-0.35",Annotator.formatScore(best("e7e5","cp 35").getScore(),false));
+        assertEquals("#-2",Annotator.formatScore(best("e7e5","mate 2").getScore(),false));
+    }
+
+    /** A run stopped after the first game carries on with the second, dropping anything written after the checkpoint. */
+    @Test
+    public void resumesFromCheckpoint() throws IOException {
+        String full = annotate(write("all.pgn",SCHOLARS_MATE+SHORT_DRAW),new File(dir,"full.pgn"));
+
+        File input = write("games.pgn",SCHOLARS_MATE);
+        File out = new File(dir,"resumed.pgn");
+        annotate(input,out);
+        write("games.pgn",SCHOLARS_MATE+SHORT_DRAW);
+        try(FileOutputStream partial = new FileOutputStream(out,true)) {
+            partial.write("[Event \"Second\"]\n1.d4".getBytes(StandardCharsets.ISO_8859_1));
+        }
+        searches.set(0);
+        assertEquals(full,annotate(input,out));
+        assertEquals("only the second game searched",3,searches.get());
+    }
+
+    @Test
+    public void savedMoveText() throws IOException {
+        File input = write("game.txt","ChessLR Game Id: 42\nDate 2019-06-01\n\ne2e4 d7d5 e4xd5\n");
+        String pgn = annotate(input,new File(dir,"out.pgn"));
+        assertTrue(pgn,pgn.startsWith("[Event \"Game ID 42\"]\n"));
+        assertTrue(pgn,pgn.contains("[Annotator \"ChessLR\"]\n\n1.e4 {+0.00} d5 {+0.00} 2.exd5 {+0.00} *\n"));
+        assertEquals(4,searches.get());
+    }
+
+    @Test
+    public void directories() throws IOException {
+        File games = new File(dir,"games");
+        games.mkdir();
+        Files.write(new File(games,"b.pgn").toPath(),SHORT_DRAW.getBytes(StandardCharsets.ISO_8859_1));
+        Files.write(new File(games,"a.pgn").toPath(),SCHOLARS_MATE.getBytes(StandardCharsets.ISO_8859_1));
+        Files.write(new File(games,"notes.md").toPath(),"not a game".getBytes(StandardCharsets.ISO_8859_1));
+        File out = new File(dir,"out.pgn");
+        try(Annotator annotator = new Annotator(engine,out,new File(dir,"out.checkpoint"))) {
+            annotator.annotate(Arrays.asList(games));
+        }
+        String pgn = new String(Files.readAllBytes(out.toPath()),StandardCharsets.ISO_8859_1);
+        assertTrue(pgn,pgn.indexOf("[Event \"Test\"]") < pgn.indexOf("[Event \"Second\"]"));
+        assertEquals(10,searches.get());
+    }
+
+    /** The output and checkpoint are in the directory being read, a second run must not annotate them. */
+    @Test
+    public void outputInsideInputDirectory() throws IOException {
+        File games = new File(dir,"games");
+        games.mkdir();
+        Files.write(new File(games,"a.pgn").toPath(),SCHOLARS_MATE.getBytes(StandardCharsets.ISO_8859_1));
+        File out = new File(games,"annotated.pgn");
+        File checkpoint = new File(games,"annotated.pgn.checkpoint");
+        try(Annotator annotator = new Annotator(engine,out,checkpoint)) {
+            annotator.annotate(Arrays.asList(games));
+        }
+        String first = new String(Files.readAllBytes(out.toPath()),StandardCharsets.ISO_8859_1);
+        assertEquals(7,searches.get());
+
+        searches.set(0);
+        try(Annotator annotator = new Annotator(engine,out,checkpoint)) {
+            annotator.annotate(Arrays.asList(games,out));
+        }
+        assertEquals(first,new String(Files.readAllBytes(out.toPath()),StandardCharsets.ISO_8859_1));
+        assertEquals("nothing searched again",0,searches.get());
+    }
+
+    /** The app saves each game as .txt and .pgn, and both carry the game id, so it's only annotated once. */
+    @Test
+    public void copiesOfGameAnnotatedOnce() throws IOException {
+        write("ChessLR-00042.pgn","[Event \"Game ID 42\"]\n[Result \"*\"]\n\n1. e4 d5 2. exd5 *\n\n");
+        write("ChessLR-00042.txt","ChessLR Game Id: 42\nDate 2019-06-01\n\ne2e4 d7d5 e4xd5\n");
+        File out = new File(dir,"out.pgn");
+        File checkpoint = new File(dir,"out.checkpoint");
+        try(Annotator annotator = new Annotator(engine,out,checkpoint)) {
+            annotator.annotate(Arrays.asList(dir));
+        }
+        String pgn = new String(Files.readAllBytes(out.toPath()),StandardCharsets.ISO_8859_1);
+        assertEquals(pgn,pgn.indexOf("[Event \"Game ID 42\"]"),pgn.lastIndexOf("[Event \"Game ID 42\"]"));
+        assertEquals(4,searches.get());
+
+        //the ids annotated are kept in the checkpoint, so a copy found on a later run is skipped too
+        File copy = new File(dir,"copy");
+        copy.mkdir();
+        Files.write(new File(copy,"game.txt").toPath(),"ChessLR Game Id: 42\n\ne2e4\n".getBytes(StandardCharsets.ISO_8859_1));
+        searches.set(0);
+        try(Annotator annotator = new Annotator(engine,out,checkpoint)) {
+            annotator.annotate(Arrays.asList(copy));
+        }
+        assertEquals(0,searches.get());
+    }
+}
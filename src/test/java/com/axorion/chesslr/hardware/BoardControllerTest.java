@@ -0,0 +1,76 @@
+package com.axorion.chesslr.hardware;
+
+import com.axorion.chess.ChessBoard;
+import com.axorion.chess.ChessMove;
+import com.pi4j.io.gpio.Pin;
+import com.pi4j.io.gpio.PinState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BoardControllerTest {
+    long pieces;
+    BoardController controller;
+
+    @Before
+    public void setUp() throws Exception {
+        controller = new BoardController(new LEDController() {
+            public void led(int boardIndex,boolean on) {
+            }
+
+            public boolean isOn(int boardIndex) {
+                return false;
+            }
+        },new InputController() {
+            public void addListener(PieceListener listener) {
+            }
+
+            public int findPinIndex(Pin pin) {
+                return 0;
+            }
+
+            public boolean stateIsDown(PinState state) {
+                return false;
+            }
+
+            public boolean isSet(int pinIndex) {
+                return (pieces & 1L << pinIndex) != 0;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        controller.effects.shutdown();
+    }
+
+    @Test
+    public void snapshotMatchesChessBoard() {
+        ChessBoard board = new ChessBoard();
+        board.setFenPosition(ChessBoard.START_FEN);
+        pieces = 0xFFFF00000000FFFFL;
+        assertEquals(board.getOccupied(),controller.snapshot());
+        board.move(new ChessMove(board,"e2e4"));
+        pieces = board.getOccupied();
+        assertEquals(board.getOccupied(),controller.snapshot());
+    }
+
+    @Test
+    public void diff() {
+        long before = 0xFFFF00000000FFFFL;
+        long after = before & ~(1L << 52) | 1L << 36;     //e2e4
+        assertEquals(1L << 52,BoardController.lifted(before,after));
+        assertEquals(1L << 36,BoardController.placed(before,after));
+        assertEquals(0,BoardController.lifted(before,before));
+        assertEquals(0,BoardController.placed(before,before));
+    }
+
+    /** Reeds 35 and 36 are wired to each other's pins. */
+    @Test
+    public void pinsToBoardRemaps() {
+        assertEquals(1L << 36,controller.pinsToBoard(1L << 35));
+        assertEquals(1L << 35 | 1L << 7,controller.pinsToBoard(1L << 36 | 1L << 7));
+    }
+}
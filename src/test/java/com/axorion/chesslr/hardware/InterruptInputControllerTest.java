@@ -0,0 +1,141 @@
+package com.axorion.chesslr.hardware;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.axorion.chesslr.hardware.InterruptInputController.*;
+import static org.junit.Assert.*;
+
+public class InterruptInputControllerTest {
+    static final int BASE = 0x20;
+
+    SimulatedMcp23017Bus bus;
+    InterruptInputController input;
+    List<String> events;
+
+    @Before
+    public void setUp() throws Exception {
+        bus = new SimulatedMcp23017Bus(BASE,8);
+        input = new InterruptInputController(bus,BASE,8);
+        events = new ArrayList<>();
+        input.setListener(new ProviderListener() {
+            public void pieceUp(int address,int index) {
+                events.add(String.format("up %02X %d",address,index));
+            }
+
+            public void pieceDown(int address,int index) {
+                events.add(String.format("down %02X %d",address,index));
+            }
+        });
+    }
+
+    /** Pieces on the first and last two rows, like the start of a game. */
+    void setUpPieces() throws IOException {
+        for(int i=0; i<16; i++) {
+            bus.setPiece(i,true);
+            bus.setPiece(63-i,true);
+        }
+    }
+
+    @Test
+    public void initConfiguresChips() throws IOException {
+        input.init();
+        for(int address=BASE; address<BASE+8; address++) {
+            assertEquals(IOCON_MIRROR | IOCON_ODR,bus.getRegister(address,IOCON));
+            assertEquals(0xFF,bus.getRegister(address,IODIRA));
+            assertEquals(0xFF,bus.getRegister(address,IPOLA));
+            assertEquals(0xFF,bus.getRegister(address,GPPUA));
+            assertEquals(0xFF,bus.getRegister(address,GPINTENA));
+            assertEquals(0x00,bus.getRegister(address,INTCONA));
+        }
+    }
+
+    @Test
+    public void initReadsPieces() throws IOException {
+        setUpPieces();
+        input.init();
+        assertEquals(0xFFFF00000000FFFFL,input.getState());
+        assertTrue(input.isSet(0));
+        assertFalse(input.isSet(16));
+        assertFalse(bus.isInterrupt());
+    }
+
+    @Test
+    public void changesAsBitmask() throws IOException {
+        setUpPieces();
+        input.init();
+        bus.setPiece(52,false);     //e2 lifted
+        assertTrue(bus.isInterrupt());
+        bus.setPiece(36,true);      //put on e4
+        assertEquals(1L << 52 | 1L << 36,input.readChanges());
+        assertFalse("reading clears the interrupt",bus.isInterrupt());
+        assertFalse(input.isSet(52));
+        assertTrue(input.isSet(36));
+        assertEquals(0,input.readChanges());
+    }
+
+    /** One sequential read of each chip per interrupt, instead of a read for every pin. */
+    @Test
+    public void oneTransactionPerChip() throws IOException {
+        input.init();
+        long before = bus.getTransactions();
+        bus.setPiece(9,true);
+        input.readChanges();
+        assertEquals(8,bus.getTransactions()-before);
+    }
+
+    @Test
+    public void interruptCapture() throws IOException {
+        input.init();
+        bus.setPiece(3,true);
+        bus.setPiece(5,true);
+        assertEquals(0x08,bus.getRegister(BASE,INTCAPA));   //port as it was at the first change
+        assertEquals(0x28,bus.getRegister(BASE,INTFA));
+        input.readChanges();
+        assertEquals(0,bus.getRegister(BASE,INTFA));
+    }
+
+    @Test
+    public void bounceNotReported() throws IOException {
+        input.init();
+        bus.setPiece(20,true);
+        bus.setPiece(20,false);
+        assertTrue(bus.isInterrupt());
+        assertEquals(0,input.readChanges());
+        assertFalse(bus.isInterrupt());
+    }
+
+    @Test
+    public void serviceTellsListener() throws IOException {
+        setUpPieces();
+        input.init();
+        bus.setPiece(52,false);
+        bus.setPiece(36,true);
+        input.service();
+        assertEquals(2,events.size());
+        assertEquals("down 24 4",events.get(0));
+        assertEquals("up 26 4",events.get(1));
+    }
+
+    /** A scan is one register read per row and doesn't swallow changes the interrupt hasn't reported yet. */
+    @Test
+    public void scan() throws IOException {
+        setUpPieces();
+        input.init();
+        bus.setPiece(52,false);
+        long before = bus.getTransactions();
+        assertEquals(0xFFEF00000000FFFFL,input.scan());
+        assertEquals(8,bus.getTransactions()-before);
+        assertEquals(0xFFFF00000000FFFFL,input.getState());
+        assertEquals(1L << 52,input.readChanges());
+    }
+
+    @Test(expected = IOException.class)
+    public void missingChip() throws IOException {
+        new InterruptInputController(bus,BASE,9).init();
+    }
+}
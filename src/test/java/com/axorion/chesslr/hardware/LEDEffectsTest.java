@@ -0,0 +1,175 @@
+package com.axorion.chesslr.hardware;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class LEDEffectsTest {
+    boolean[] leds;
+    int writes;
+    LEDEffects effects;
+
+    @Before
+    public void setUp() throws Exception {
+        leds = new boolean[64];
+        writes = 0;
+        effects = new LEDEffects(new LEDController() {
+            public void led(int boardIndex,boolean on) {
+                leds[boardIndex] = on;
+                writes++;
+            }
+
+            public boolean isOn(int boardIndex) {
+                return leds[boardIndex];
+            }
+        },10);
+    }
+
+    /** The LED's state for each of the next ticks, as a string of 1s and 0s. */
+    String run(int square,int ticks) {
+        StringBuilder states = new StringBuilder();
+        for(int i=0; i<ticks; i++) {
+            effects.tick();
+            states.append(leds[square] ? '1' : '0');
+        }
+        return states.toString();
+    }
+
+    @Test
+    public void blinkThenLeaveOn() {
+        effects.blink(12,2,20,true);
+        assertEquals("1100110011",run(12,10));
+        assertFalse(effects.isActive(12));
+    }
+
+    @Test
+    public void blinkThenLeaveOff() {
+        effects.blink(12,3,10,false);
+        assertEquals("1010100000",run(12,10));
+        assertFalse(effects.isActive(12));
+    }
+
+    /** A lit LED goes off first so the first blink shows. */
+    @Test
+    public void blinkFromOn() {
+        leds[5] = true;
+        effects.blink(5,1,10,true);
+        assertEquals("0101",run(5,4));
+    }
+
+    @Test
+    public void flashUntilStopped() {
+        effects.flash(3,LEDEffects.FLASH);
+        assertEquals("1111111111000000000011111111110000000000",run(3,40));
+        effects.stop(3);
+        assertEquals("00000",run(3,5));
+        assertFalse(effects.isActive(3));
+    }
+
+    @Test
+    public void doubleAndTriple() {
+        effects.flash(0,LEDEffects.DOUBLE);
+        effects.flash(1,LEDEffects.TRIPLE);
+        StringBuilder d = new StringBuilder();
+        StringBuilder t = new StringBuilder();
+        for(int i=0; i<20*10; i+=10) {
+            run(0,10);
+            d.append(leds[0] ? '1' : '0');
+            t.append(leds[1] ? '1' : '0');
+        }
+        assertEquals("10100000101000001010",d.toString());
+        assertEquals("10101000001010100000",t.toString());
+    }
+
+    /** The fade is on for more ticks in the middle of the cycle, and half the time over a whole one. */
+    @Test
+    public void fade() {
+        effects.fade(7,400);
+        String states = run(7,40);
+        assertTrue(count(states.substring(0,10)) < count(states.substring(15,25)));
+        assertTrue(count(states.substring(30,40)) < count(states.substring(15,25)));
+        assertEquals(20,count(states),2);
+    }
+
+    private static int count(String states) {
+        int on = 0;
+        for(char c : states.toCharArray()) {
+            on += c == '1' ? 1 : 0;
+        }
+        return on;
+    }
+
+    /** Only the LEDs that changed are written. */
+    @Test
+    public void writesOnlyChanges() {
+        for(int i=0; i<64; i++) {
+            effects.flash(i);
+        }
+        run(0,1);
+        writes = 0;
+        run(0,9);
+        assertEquals(0,writes);
+        run(0,1);
+        assertEquals(64,writes);
+    }
+
+    @Test
+    public void frameBufferOneWritePerRow() throws IOException {
+        SimulatedMcp23017Bus bus = new SimulatedMcp23017Bus(0x20,8);
+        LEDFrameBuffer frame = new LEDFrameBuffer(bus,0x20,8);
+        frame.init();
+        frame.led(63,true);
+        LEDEffects fx = new LEDEffects(frame,10);
+        for(int i=0; i<16; i++) {
+            fx.flash(i);
+        }
+        long before = bus.getTransactions();
+        fx.tick();
+        assertEquals(0xFFFFL | 1L << 63,frame.getFrame());
+        assertEquals("rows 0 and 1",2,bus.getTransactions()-before);
+        fx.stop(0);
+        fx.tick();
+        assertFalse(frame.isOn(0));
+        assertTrue("LEDs without effects left alone",frame.isOn(63));
+    }
+
+    @Test
+    public void reset() {
+        effects.flash(1);
+        effects.blink(2,5,10,true);
+        effects.reset();
+        assertFalse(effects.isActive(1));
+        assertFalse(effects.isActive(2));
+        run(1,1);
+        assertEquals(0,writes);
+    }
+
+    /** One thread however many squares are flashing, and a blink ends the way it was asked to. */
+    @Test
+    public void thread() throws InterruptedException {
+        effects.start();
+        try {
+            for(int i=0; i<64; i++) {
+                effects.blink(i,2,10,i%2 == 0);
+            }
+            int threads = 0;
+            for(Thread t : Thread.getAllStackTraces().keySet()) {
+                threads += t.getName().equals("LED effects") ? 1 : 0;
+            }
+            assertEquals(1,threads);
+            long until = System.currentTimeMillis()+2000;
+            while(effects.isActive(63) && System.currentTimeMillis() < until) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(50);
+            for(int i=0; i<64; i++) {
+                assertEquals(i%2 == 0,leds[i]);
+            }
+        } finally {
+            effects.shutdown();
+        }
+    }
+}
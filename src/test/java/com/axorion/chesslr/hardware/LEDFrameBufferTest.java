@@ -0,0 +1,97 @@
+package com.axorion.chesslr.hardware;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static com.axorion.chesslr.hardware.LEDFrameBuffer.IODIRB;
+import static com.axorion.chesslr.hardware.LEDFrameBuffer.OLATB;
+import static org.junit.Assert.*;
+
+public class LEDFrameBufferTest {
+    static final int BASE = 0x20;
+
+    SimulatedMcp23017Bus bus;
+    LEDFrameBuffer leds;
+
+    @Before
+    public void setUp() throws Exception {
+        bus = new SimulatedMcp23017Bus(BASE,8);
+        leds = new LEDFrameBuffer(bus,BASE,8);
+        leds.init();
+    }
+
+    @Test
+    public void initMakesOutputs() throws IOException {
+        for(int address=BASE; address<BASE+8; address++) {
+            assertEquals(0x00,bus.getRegister(address,IODIRB));
+            assertEquals(0x00,bus.getRegister(address,OLATB));
+        }
+    }
+
+    /** Column 0 is GPB7, column 7 is GPB0. */
+    @Test
+    public void columnsReversed() throws IOException {
+        leds.set(0,true);       //a8
+        leds.set(15,true);      //h7
+        leds.set(62,true);      //g1
+        leds.commit();
+        assertEquals(0x80,bus.getRegister(BASE,OLATB));
+        assertEquals(0x01,bus.getRegister(BASE+1,OLATB));
+        assertEquals(0x02,bus.getRegister(BASE+7,OLATB));
+    }
+
+    @Test
+    public void fullFrameIsOneWritePerRow() {
+        long before = bus.getTransactions();
+        leds.setFrame(-1L);
+        assertEquals(8,leds.commit());
+        assertEquals(8,bus.getTransactions()-before);
+    }
+
+    @Test
+    public void onlyChangedRowsWritten() {
+        leds.setFrame(0xFFFF00000000FFFFL);
+        leds.commit();
+        long before = bus.getTransactions();
+        leds.setFrame(0xFFEF00100000FFFFL);     //e2 to e4
+        assertEquals(2,leds.commit());
+        assertEquals(0,leds.commit());
+        assertEquals(2,bus.getTransactions()-before);
+    }
+
+    @Test
+    public void ledWritesStraightAway() throws IOException {
+        leds.led(36,true);
+        assertTrue(leds.isOn(36));
+        assertEquals(0x08,bus.getRegister(BASE+4,OLATB));
+        leds.led(36,false);
+        assertFalse(leds.isOn(36));
+        assertEquals(0x00,bus.getRegister(BASE+4,OLATB));
+    }
+
+    /** A row that failed to write is tried again at the next commit. */
+    @Test
+    public void failedRowRetried() throws IOException {
+        final boolean[] fail = {true};
+        LEDFrameBuffer flaky = new LEDFrameBuffer(new RegisterBus() {
+            public void write(int address,int register,int value) throws IOException {
+                if(fail[0] && address == BASE+3) {
+                    throw new IOException("No acknowledge");
+                }
+                bus.write(address,register,value);
+            }
+
+            public void read(int address,int register,byte[] buffer,int offset,int length) throws IOException {
+                bus.read(address,register,buffer,offset,length);
+            }
+        },BASE,8);
+        flaky.setFrame(-1L);
+        assertEquals(7,flaky.commit());
+        fail[0] = false;
+        assertEquals(1,flaky.commit());
+        assertEquals(0xFF,bus.getRegister(BASE+3,OLATB));
+        assertEquals(0,flaky.commit());
+    }
+}
@@ -0,0 +1,129 @@
+package com.axorion.chesslr.hardware;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReedFilterTest {
+    List<String> events;
+    ReedFilter filter;
+
+    @Before
+    public void setUp() throws Exception {
+        events = Collections.synchronizedList(new ArrayList<String>());
+        filter = new ReedFilter(new PieceListener() {
+            public void pieceUp(int boardIndex) {
+                events.add("up "+boardIndex);
+            }
+
+            public void pieceDown(int boardIndex) {
+                events.add("down "+boardIndex);
+            }
+        });
+        filter.setHoldTime(100,20);
+        filter.setState(0xFFFF00000000FFFFL);
+    }
+
+    @Test
+    public void passedOnAfterHold() {
+        filter.change(52,false,1000);
+        filter.poll(1019);
+        assertTrue(events.isEmpty());
+        filter.poll(1020);
+        assertEquals("[up 52]",events.toString());
+        filter.change(36,true,1100);
+        filter.poll(1199);
+        filter.poll(1200);
+        assertEquals("[up 52, down 36]",events.toString());
+        assertEquals(0xFFEF00100000FFFFL,filter.getState());
+    }
+
+    @Test
+    public void bounceDropped() {
+        filter.change(52,false,1000);
+        filter.change(52,true,1005);
+        filter.change(52,false,1008);
+        filter.change(52,true,1010);
+        filter.poll(2000);
+        assertTrue(events.isEmpty());
+        assertEquals(0xFFFF00000000FFFFL,filter.getState());
+    }
+
+    /** The hold starts again at each bounce, so it's the settled state that's passed on. */
+    @Test
+    public void holdRestartsOnBounce() {
+        filter.change(52,false,1000);
+        filter.change(52,true,1010);
+        filter.change(52,false,1015);
+        filter.poll(1030);
+        assertTrue(events.isEmpty());
+        filter.poll(1035);
+        assertEquals("[up 52]",events.toString());
+    }
+
+    /** Sliding a rook from a1 to a4 passes over a3 and a2 without them being reported. */
+    @Test
+    public void slidingPieceFiltered() {
+        filter.setState(1L << 56);
+        filter.change(56,false,1000);
+        filter.change(48,true,1010);
+        filter.change(48,false,1060);
+        filter.change(40,true,1070);
+        filter.change(40,false,1120);
+        filter.change(32,true,1130);
+        for(long t=1000; t<=1300; t+=10) {
+            filter.poll(t);
+        }
+        assertEquals("[up 56, down 32]",events.toString());
+        assertEquals(1L << 32,filter.getState());
+    }
+
+    @Test
+    public void holdTimePerSquare() {
+        filter.setHoldTime(36,300,20);
+        filter.change(35,true,1000);
+        filter.change(36,true,1000);
+        filter.poll(1100);
+        assertEquals("[down 35]",events.toString());
+        filter.poll(1300);
+        assertEquals("[down 35, down 36]",events.toString());
+    }
+
+    @Test
+    public void zeroHoldPassesStraightThrough() {
+        filter.setHoldTime(0,0);
+        filter.change(52,false,1000);
+        assertEquals("[up 52]",events.toString());
+    }
+
+    @Test
+    public void nextDue() {
+        assertEquals(Long.MAX_VALUE,filter.nextDue());
+        filter.change(36,true,1000);
+        filter.change(52,false,1050);
+        assertEquals(1070,filter.nextDue());
+        filter.poll(1070);
+        assertEquals(1100,filter.nextDue());
+    }
+
+    @Test
+    public void thread() throws InterruptedException {
+        filter.start();
+        try {
+            filter.pieceUp(52);
+            filter.pieceDown(36);
+            long until = System.currentTimeMillis()+2000;
+            while(events.size() < 2 && System.currentTimeMillis() < until) {
+                Thread.sleep(10);
+            }
+            assertEquals("[up 52, down 36]",events.toString());
+        } finally {
+            filter.shutdown();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.axorion.chesslr.hardware;
+
+import java.io.IOException;
+
+import static com.axorion.chesslr.hardware.InterruptInputController.*;
+
+/**
+ * An I2C bus with MCP23017s on it and nothing else, for testing the board drivers without the board. It keeps the
+ * registers the way the chip does with IOCON.BANK = 0: sequential reads and writes step through the registers, pins
+ * are read through IPOL, a change on an interrupt enabled pin sets INTF and captures the port in INTCAP, and reading
+ * INTCAP or GPIO clears the interrupt.
+ *
+ * Pins start high, no piece on a pulled up reed. Every read and write counts as a transaction, to see how busy the
+ * bus is.
+ */
+class SimulatedMcp23017Bus implements RegisterBus {
+    final int baseAddress;
+    final int[][] registers;
+    final int[][] pins;
+    long transactions;
+
+    public SimulatedMcp23017Bus(int baseAddress,int chips) {
+        this.baseAddress = baseAddress;
+        registers = new int[chips][REGISTERS];
+        pins = new int[chips][2];
+        for(int i=0; i<chips; i++) {
+            registers[i][IODIRA] = 0xFF;    //power on, everything is an input
+            registers[i][IODIRA+1] = 0xFF;
+            pins[i][0] = 0xFF;
+            pins[i][1] = 0xFF;
+        }
+    }
+
+    private int[] chip(int address) throws IOException {
+        int i = address-baseAddress;
+        if(i < 0 || i >= registers.length) {
+            throw new IOException(String.format("No device at %02XH",address));
+        }
+        return registers[i];
+    }
+
+    @Override
+    public synchronized void write(int address,int register,int value) throws IOException {
+        int[] r = chip(address);
+        transactions++;
+        if(register == GPIOA || register == GPIOA+1) {
+            register += OLATA-GPIOA;
+        }
+        if(register != INTFA && register != INTFA+1 && register != INTCAPA && register != INTCAPA+1) {
+            r[register] = value & 0xFF;
+        }
+    }
+
+    @Override
+    public synchronized void read(int address,int register,byte[] buffer,int offset,int length) throws IOException {
+        int[] r = chip(address);
+        int chip = address-baseAddress;
+        transactions++;
+        for(int i=0; i<length; i++) {
+            int reg = (register+i)%REGISTERS;
+            int port = reg & 1;
+            if(reg == GPIOA || reg == GPIOA+1) {
+                buffer[offset+i] = (byte)port(chip,port);
+            } else {
+                buffer[offset+i] = (byte)r[reg];
+            }
+            if(reg == GPIOA || reg == GPIOA+1 || reg == INTCAPA || reg == INTCAPA+1) {
+                r[INTFA+port] = 0;
+            }
+        }
+    }
+
+    /** What GPIO reads for the port: inputs through IPOL, outputs from OLAT. */
+    private int port(int chip,int port) {
+        int[] r = registers[chip];
+        int inputs = r[IODIRA+port];
+        return (pins[chip][port] ^ r[IPOLA+port]) & inputs | r[OLATA+port] & ~inputs & 0xFF;
+    }
+
+    /** Set the level of a pin, port 0 for A and 1 for B, as if the switch on it opened or closed. */
+    public synchronized void setPin(int address,int port,int bit,boolean high) throws IOException {
+        int[] r = chip(address);
+        int chip = address-baseAddress;
+        int mask = 1 << bit;
+        int before = pins[chip][port];
+        int after = high ? before | mask : before & ~mask;
+        pins[chip][port] = after;
+        if((r[GPINTENA+port] & r[IODIRA+port] & mask) == 0 || before == after) {
+            return;
+        }
+        int compare = (r[INTCONA+port] & mask) != 0 ? r[DEFVALA+port] : before;
+        if(((after ^ compare) & mask) != 0) {
+            if(r[INTFA+port] == 0) {
+                r[INTCAPA+port] = port(chip,port);
+            }
+            r[INTFA+port] |= mask;
+        }
+    }
+
+    /** Put a piece on or take it off the reed on port A wired to the pin index, row*8+pin. */
+    public void setPiece(int pinIndex,boolean down) throws IOException {
+        setPin(baseAddress+pinIndex/8,0,pinIndex%8,!down);
+    }
+
+    /** True while any chip holds its interrupt line low. */
+    public synchronized boolean isInterrupt() {
+        for(int[] r : registers) {
+            if((r[INTFA] | r[INTFA+1]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized int getRegister(int address,int register) throws IOException {
+        return chip(address)[register];
+    }
+
+    public synchronized long getTransactions() {
+        return transactions;
+    }
+}
@@ -0,0 +1,107 @@
+package com.rahul.stockfish;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class AnalysisServiceTest {
+    FakeEngine fake;
+    List<Runnable> queued;
+    List<String> updates;
+    AnalysisService analysis;
+
+    @Before
+    public void setUp() throws Exception {
+        fake = new FakeEngine();
+        queued = new ArrayList<>();
+        updates = new ArrayList<>();
+        analysis = new AnalysisService(fake.engine,new Executor() {
+            public void execute(Runnable command) {
+                synchronized(queued) {
+                    queued.add(command);
+                }
+            }
+        },new AnalysisService.AnalysisListener() {
+            public void analysisUpdate(String fen,UciInfo info) {
+                updates.add(fen+" "+info.getDepth()+" "+info.getScore());
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        analysis.close();
+    }
+
+    /** Runs what the service handed to the executor, like the Swing thread would. */
+    private void runQueued() {
+        List<Runnable> run;
+        synchronized(queued) {
+            run = new ArrayList<>(queued);
+            queued.clear();
+        }
+        for(Runnable r : run) {
+            r.run();
+        }
+    }
+
+    /** Wait for the engine's reader thread to get through what the fake said. */
+    private void sync() throws Exception {
+        fake.engine.isReady().get();
+    }
+
+    @Test
+    public void coalesced() throws Exception {
+        analysis.analyze("fen1");
+        assertTrue(analysis.isAnalyzing());
+        fake.say("info depth 1 score cp 10 pv e2e4");
+        fake.say("info depth 2 score cp 20 pv e2e4");
+        fake.say("info depth 2 currmove d2d4");
+        fake.say("info depth 3 score cp 30 pv e2e4");
+        sync();
+        assertEquals(1,queued.size());
+        runQueued();
+        assertEquals(1,updates.size());
+        assertEquals("fen1 3 30",updates.get(0));
+
+        fake.say("info depth 4 score cp 40 pv e2e4");
+        sync();
+        runQueued();
+        assertEquals("fen1 4 40",updates.get(1));
+    }
+
+    @Test
+    public void nextPositionStopsOld() throws Exception {
+        analysis.analyze("fen1");
+        fake.say("info depth 5 score cp 10 pv e2e4");
+        sync();
+        analysis.analyze("fen2");
+        sync();     //the old search's bestmove comes before readyok
+        runQueued();
+        assertEquals(0,updates.size());
+
+        fake.say("info depth 1 score cp -15 pv e7e5");
+        sync();
+        runQueued();
+        assertEquals(1,updates.size());
+        assertEquals("fen2 1 -15",updates.get(0));
+        assertEquals(2,fake.searches);
+    }
+
+    @Test
+    public void stopped() throws Exception {
+        analysis.analyze("fen1");
+        analysis.stop();
+        assertFalse(analysis.isAnalyzing());
+        fake.say("info depth 5 score cp 10 pv e2e4");
+        sync();
+        runQueued();
+        assertEquals(0,updates.size());
+    }
+}
@@ -0,0 +1,143 @@
+package com.rahul.stockfish;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/** Runs the client against a pipe standing in for the engine's output, so no engine is needed. */
+public class AsyncEngineTest {
+    PipedOutputStream engineOut;
+    ByteArrayOutputStream commands;
+    AsyncEngine engine;
+
+    @Before
+    public void setUp() throws Exception {
+        engineOut = new PipedOutputStream();
+        commands = new ByteArrayOutputStream();
+        engine = new AsyncEngine(new PipedInputStream(engineOut),commands);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        engine.close();
+        engineOut.close();
+    }
+
+    private void engineSays(String lines) throws IOException {
+        engineOut.write(lines.getBytes());
+        engineOut.flush();
+    }
+
+    @Test
+    public void bestMove() throws Exception {
+        CompletableFuture<String> move = engine.getBestMove("8/8/8/8/8/8/4P3/4K2k w - - 0 1",500);
+        assertFalse(move.isDone());
+        assertEquals("setoption name Skill Level value 0\n"+
+                "setoption name Slow Mover value 10\n"+
+                "position fen 8/8/8/8/8/8/4P3/4K2k w - - 0 1\n"+
+                "go movetime 500\n",commands.toString());
+
+        engineSays("info depth 1 score cp 50 pv e2e4\n");
+        assertFalse(move.isDone());
+        engineSays("bestmove e2e4 ponder h1g2\n");
+        assertEquals("e2e4",move.get(1,TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void promotionAndNoPonder() throws Exception {
+        CompletableFuture<String> move = engine.getBestMove("fen",100);
+        engineSays("bestmove e7e8q\n");
+        assertEquals("e7e8q",move.get(1,TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void optionsSentOnce() throws Exception {
+        engine.getBestMove("fen1",100);
+        commands.reset();
+        engine.getBestMove("fen2",100);
+        assertEquals("position fen fen2\ngo movetime 100\n",commands.toString());
+
+        engine.setSkillLevel(5);
+        commands.reset();
+        engine.getBestMove("fen3",100);
+        assertTrue(commands.toString().startsWith("setoption name Skill Level value 5\n"));
+    }
+
+    @Test
+    public void answersInOrder() throws Exception {
+        CompletableFuture<String> first = engine.getBestMove("fen1",100);
+        CompletableFuture<String> ready = engine.isReady();
+        CompletableFuture<String> second = engine.getBestMove("fen2",100);
+        engineSays("bestmove a2a3\nreadyok\nbestmove b2b3\n");
+        assertEquals("a2a3",first.get(1,TimeUnit.SECONDS));
+        assertEquals("readyok",ready.get(1,TimeUnit.SECONDS));
+        assertEquals("b2b3",second.get(1,TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void evaluation() throws Exception {
+        CompletableFuture<UciInfo> eval = engine.getEvaluation("fen",100);
+        List<String> seen = new ArrayList<>();
+        engine.addListener(new UciListener() {
+            public void info(UciInfo info) {
+                seen.add(info.toString());
+            }
+        });
+        engineSays("info depth 1 score cp 20 nodes 10 nps 100 pv e2e4\n"+
+                "info depth 2 score mate 4 nodes 30 nps 300 pv d1h5\n"+
+                "info depth 2 currmove e2e4\n"+
+                "bestmove d1h5\n");
+        UciInfo info = eval.get(1,TimeUnit.SECONDS);
+        assertTrue(info.isMate());
+        assertEquals(4,info.getScore());
+        assertEquals(3,seen.size());
+    }
+
+    @Test
+    public void ponder() throws Exception {
+        CompletableFuture<BestMove> best = engine.search("fen",100);
+        engineSays("bestmove e2e4 ponder e7e5\n");
+        assertEquals("e2e4",best.get(1,TimeUnit.SECONDS).getMove());
+        assertEquals("e7e5",best.get().getPonder());
+
+        commands.reset();
+        CompletableFuture<BestMove> ponder = engine.ponder("fen2","e7e5",100);
+        assertEquals("position fen fen2 moves e7e5\ngo ponder movetime 100\n",commands.toString());
+        engine.ponderHit();
+        engineSays("bestmove g1f3\n");
+        assertEquals("g1f3",ponder.get(1,TimeUnit.SECONDS).getMove());
+        assertNull(ponder.get().getPonder());
+    }
+
+    @Test
+    public void engineDies() throws Exception {
+        CompletableFuture<String> move = engine.getBestMove("fen",100);
+        engineOut.close();
+        try {
+            move.get(1,TimeUnit.SECONDS);
+            fail("Expected engine closed");
+        } catch(ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void closedEngine() throws Exception {
+        engine.close();
+        assertTrue(engine.isClosed());
+        CompletableFuture<String> move = engine.getBestMove("fen",100);
+        assertTrue(move.isCompletedExceptionally());
+    }
+}
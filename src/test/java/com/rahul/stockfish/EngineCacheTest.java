@@ -0,0 +1,128 @@
+package com.rahul.stockfish;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class EngineCacheTest {
+    static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("engine",".cache");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+    private UciInfo score(int cp,boolean mate,int depth) {
+        UciInfo info = new UciInfo();
+        info.hasScore = true;
+        info.score = cp;
+        info.mate = mate;
+        info.depth = depth;
+        return info;
+    }
+
+    @Test
+    public void positionKeyIgnoresCounters() {
+        long key = EngineCache.positionKey(START);
+        assertEquals(key,EngineCache.positionKey("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 4 9"));
+        assertNotEquals(key,EngineCache.positionKey("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR b KQkq - 0 1"));
+        assertNotEquals(key,EngineCache.positionKey("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w Kkq - 0 1"));
+    }
+
+    @Test
+    public void settingsInKey() {
+        EngineCache cache = new EngineCache(10);
+        cache.put(1,5,1000,0,new BestMove("e2e4","e7e5"));
+        assertEquals("e2e4",cache.get(1,5,1000,0).getMove());
+        assertNull(cache.get(1,6,1000,0));
+        assertNull(cache.get(1,5,500,0));
+        assertNull(cache.get(1,5,1000,10));
+        assertNull(cache.get(2,5,1000,0));
+        assertEquals(1,cache.getHits());
+        assertEquals(4,cache.getMisses());
+    }
+
+    @Test
+    public void leastRecentlyUsedDropped() {
+        EngineCache cache = new EngineCache(2);
+        cache.put(1,0,100,0,new BestMove("a2a3",null));
+        cache.put(2,0,100,0,new BestMove("b2b3",null));
+        cache.get(1,0,100,0);
+        cache.put(3,0,100,0,new BestMove("c2c3",null));
+        assertEquals(2,cache.size());
+        assertNotNull(cache.get(1,0,100,0));
+        assertNull(cache.get(2,0,100,0));
+        assertNotNull(cache.get(3,0,100,0));
+    }
+
+    @Test
+    public void survivesRestart() throws Exception {
+        EngineCache cache = new EngineCache(10,file,1024);
+        cache.put(7,3,1000,0,new BestMove("e7e8q","a1a2",score(-250,false,14)));
+        cache.put(8,3,1000,0,new BestMove("d1h5",null,score(2,true,20)));
+        cache.put(9,3,1000,0,new BestMove("g1f3",null));
+        cache.close();
+
+        cache = new EngineCache(10,file,1024);
+        BestMove best = cache.get(7,3,1000,0);
+        assertEquals("e7e8q",best.getMove());
+        assertEquals("a1a2",best.getPonder());
+        assertEquals(-250,best.getScore().getScore());
+        assertFalse(best.getScore().isMate());
+        assertEquals(14,best.getScore().getDepth());
+        assertTrue(cache.get(8,3,1000,0).getScore().isMate());
+        assertNull(cache.get(9,3,1000,0).getPonder());
+        assertNull(cache.get(9,3,1000,0).getScore());
+        assertEquals(3,cache.getDiskHits());
+        assertNull(cache.get(7,4,1000,0));
+        cache.close();
+    }
+
+    @Test
+    public void differentSizeStartsOver() throws Exception {
+        EngineCache cache = new EngineCache(10,file,1024);
+        cache.put(7,3,1000,0,new BestMove("e2e4",null));
+        cache.close();
+        cache = new EngineCache(10,file,2048);
+        assertNull(cache.get(7,3,1000,0));
+        cache.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void slotsPowerOfTwo() throws Exception {
+        new EngineCache(10,file,1000);
+    }
+
+    @Test
+    public void poolUsesCache() throws Exception {
+        final FakeEngine fake = new FakeEngine();
+        EnginePool pool = new EnginePool(new EnginePool.Factory() {
+            public AsyncEngine create() throws IOException {
+                return fake.engine;
+            }
+        },1,5,20);
+        pool.setCache(new EngineCache(10));
+        assertEquals("e2e4",pool.getBestMove(START,100).get(1,TimeUnit.SECONDS));
+        for(int i=0; i<100 && pool.getIdleCount() == 0; i++) {
+            Thread.sleep(10);
+        }
+        fake.bestMove = "d2d4";
+        assertEquals("e2e4",pool.getBestMove(START,100).get(1,TimeUnit.SECONDS));
+        assertEquals("d2d4",pool.getBestMove(START,200).get(1,TimeUnit.SECONDS));
+        assertEquals(2,fake.searches);
+        assertEquals(1,pool.getCache().getHits());
+        pool.close();
+    }
+}
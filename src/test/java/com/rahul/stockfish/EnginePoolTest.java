@@ -0,0 +1,228 @@
+package com.rahul.stockfish;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class EnginePoolTest {
+    List<FakeEngine> fakes;
+    EnginePool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        fakes = new ArrayList<>();
+        pool = new EnginePool(new EnginePool.Factory() {
+            public AsyncEngine create() throws IOException {
+                FakeEngine fake = new FakeEngine();
+                fakes.add(fake);
+                return fake.engine;
+            }
+        },2,5,20);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.close();
+    }
+
+    @Test
+    public void bestMove() throws Exception {
+        assertEquals(2,fakes.size());
+        assertEquals(2,pool.getIdleCount());
+        assertEquals("e2e4",pool.getBestMove("fen",100).get(1,TimeUnit.SECONDS));
+        waitForIdle(2);
+        assertEquals(1,pool.getMetrics(0).getRequests()+pool.getMetrics(1).getRequests());
+    }
+
+    @Test
+    public void configuredOnce() throws Exception {
+        assertEquals(5,fakes.get(0).engine.getSkillLevel());
+        for(int i=0; i<10; i++) {
+            pool.getBestMove("fen",100).get(1,TimeUnit.SECONDS);
+        }
+        waitForIdle(2);
+        assertEquals(10,fakes.get(0).searches+fakes.get(1).searches);
+    }
+
+    @Test
+    public void requestsWaitForFreeEngine() throws Exception {
+        fakes.get(0).hung = true;
+        fakes.get(1).hung = true;
+        CompletableFuture<String> first = pool.getBestMove("fen",100);
+        CompletableFuture<String> second = pool.getBestMove("fen",100);
+        CompletableFuture<String> third = pool.getBestMove("fen",100);
+        assertEquals(0,pool.getIdleCount());
+        assertEquals(1,pool.getWaitingCount());
+
+        fakes.get(0).hung = false;
+        fakes.get(0).say("bestmove d2d4");
+        assertEquals("d2d4",first.get(1,TimeUnit.SECONDS));
+        assertEquals("e2e4",third.get(1,TimeUnit.SECONDS));
+        assertFalse(second.isDone());
+    }
+
+    /** The search of an engine that dies is tried again on the other engine, and the dead one is replaced. */
+    @Test
+    public void crashedEngineReplaced() throws Exception {
+        fakes.get(0).hung = true;
+        CompletableFuture<String> move = pool.getBestMove("fen",100);
+        fakes.get(0).crash();
+        assertEquals("e2e4",move.get(1,TimeUnit.SECONDS));
+        waitForIdle(2);
+        assertEquals(3,fakes.size());
+        assertEquals(1,pool.getMetrics(0).getRestarts());
+        assertEquals(1,pool.getMetrics(0).getFailures());
+        assertEquals(1,fakes.get(1).searches);
+        assertEquals("e2e4",pool.getBestMove("fen",100).get(1,TimeUnit.SECONDS));
+    }
+
+    /** With one engine the search waits at the front of the line for the replacement. */
+    @Test
+    public void searchRetriedOnReplacement() throws Exception {
+        pool.close();
+        pool = new EnginePool(new EnginePool.Factory() {
+            public AsyncEngine create() throws IOException {
+                FakeEngine fake = new FakeEngine();
+                fakes.add(fake);
+                return fake.engine;
+            }
+        },1,5,20);
+        FakeEngine dead = fakes.get(fakes.size()-1);
+        dead.crash();
+        waitForClosed(dead);
+        assertEquals("e2e4",pool.getBestMove("fen",100).get(1,TimeUnit.SECONDS));
+        assertEquals(1,fakes.get(fakes.size()-1).searches);
+        waitForIdle(1);
+    }
+
+    /** Every try dies, so after RETRIES the caller gets the error. */
+    @Test
+    public void retriesLimited() throws Exception {
+        pool.close();
+        fakes.clear();
+        pool = new EnginePool(new EnginePool.Factory() {
+            public AsyncEngine create() throws IOException {
+                FakeEngine fake = new FakeEngine();
+                fake.crashOnSearch = true;
+                fakes.add(fake);
+                return fake.engine;
+            }
+        },1,5,20);
+        try {
+            pool.getBestMove("fen",100).get(1,TimeUnit.SECONDS);
+            fail("Expected the search to fail");
+        } catch(ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals(EnginePool.RETRIES+1,pool.getMetrics(0).getFailures());
+        for(int i=0; i<=EnginePool.RETRIES; i++) {
+            assertEquals(1,fakes.get(i).searches);
+        }
+    }
+
+    /** An engine that dies while idle is taken off idle before it's replaced, so it isn't in the pool twice. */
+    @Test
+    public void healthCheckReplacesDeadIdleEngine() throws Exception {
+        pool.startHealthChecks(10000,50);
+        fakes.get(1).crash();
+        waitForClosed(fakes.get(1));
+        pool.healthCheck();
+        assertEquals(3,fakes.size());
+        assertEquals(1,pool.getMetrics(1).getRestarts());
+        assertEquals(2,pool.getIdleCount());
+        pool.healthCheck();
+        assertEquals(3,fakes.size());
+        assertEquals(2,pool.getIdleCount());
+    }
+
+    @Test
+    public void healthCheckReplacesHungEngine() throws Exception {
+        pool.startHealthChecks(10000,50);
+        fakes.get(1).hung = true;
+        pool.healthCheck();
+        assertEquals(3,fakes.size());
+        assertEquals(0,pool.getMetrics(0).getRestarts());
+        assertEquals(1,pool.getMetrics(1).getRestarts());
+        assertEquals(2,pool.getIdleCount());
+    }
+
+    @Test
+    public void ponderHit() throws Exception {
+        BestMove best = pool.search("fen",100).get(1,TimeUnit.SECONDS);
+        assertEquals("e7e5",best.getPonder());
+        waitForIdle(2);
+
+        EnginePool.Ponder ponder = pool.ponder("fen2",best.getPonder(),100);
+        assertEquals("e7e5",ponder.getExpectedMove());
+        assertEquals(1,pool.getIdleCount());
+        assertEquals("e2e4",ponder.hit().get(1,TimeUnit.SECONDS).getMove());
+        waitForIdle(2);
+    }
+
+    @Test
+    public void ponderMiss() throws Exception {
+        pool.close();
+        pool = new EnginePool(new EnginePool.Factory() {
+            public AsyncEngine create() throws IOException {
+                FakeEngine fake = new FakeEngine();
+                fakes.add(fake);
+                return fake.engine;
+            }
+        },1,5,20);
+        EnginePool.Ponder ponder = pool.ponder("fen","e7e5",100);
+        assertNull(pool.ponder("fen","e7e5",100));
+
+        //search waits for the pondering engine, which is stopped
+        CompletableFuture<String> move = pool.getBestMove("fen3",100);
+        assertEquals(1,pool.getWaitingCount());
+        ponder.miss();
+        assertEquals("e2e4",move.get(1,TimeUnit.SECONDS));
+        waitForIdle(1);
+        assertEquals(1,pool.getMetrics(0).getRequests());
+    }
+
+    @Test
+    public void closed() throws Exception {
+        pool.close();
+        assertTrue(pool.getBestMove("fen",100).isCompletedExceptionally());
+    }
+
+    @Test
+    public void percentiles() {
+        EngineMetrics metrics = new EngineMetrics(0);
+        for(int i=1; i<=100; i++) {
+            metrics.recordRequest(i*1000000L,false);
+        }
+        assertEquals(50,metrics.getLatencyPercentile(50),0.001);
+        assertEquals(99,metrics.getLatencyPercentile(99),0.001);
+        assertEquals(100,metrics.getLatencyPercentile(100),0.001);
+        assertEquals(100,metrics.getRequests());
+    }
+
+    static void waitForClosed(FakeEngine fake) {
+        for(int i=0; i<100 && !fake.engine.isClosed(); i++) {
+            try {
+                Thread.sleep(10);
+            } catch(InterruptedException e) {
+                break;
+            }
+        }
+        assertTrue(fake.engine.isClosed());
+    }
+
+    private void waitForIdle(int count) throws InterruptedException {
+        for(int i=0; i<100 && pool.getIdleCount() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(count,pool.getIdleCount());
+    }
+}
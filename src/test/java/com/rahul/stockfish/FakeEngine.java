@@ -0,0 +1,93 @@
+package com.rahul.stockfish;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Stands in for an engine process. Answers "isready" and "go" from its own thread, unless hung is set, and can be
+ * made to crash. "go infinite" and "go ponder" print nothing until "stop" or "ponderhit", the test says the info
+ * lines it wants.
+ */
+class FakeEngine extends OutputStream {
+    final PipedOutputStream output = new PipedOutputStream();
+    final ExecutorService thread = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r,"Fake engine");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+    final StringBuilder line = new StringBuilder();
+    final AsyncEngine engine;
+    volatile boolean hung = false;
+    volatile String bestMove = "e2e4";
+    volatile String ponderMove = "e7e5";
+    volatile int searches = 0;
+    volatile boolean crashOnSearch = false;
+
+    FakeEngine() throws IOException {
+        engine = new AsyncEngine(new PipedInputStream(output),this);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if(b != '\n') {
+            line.append((char)b);
+            return;
+        }
+        final String command = line.toString();
+        line.setLength(0);
+        thread.execute(new Runnable() {
+            public void run() {
+                if(hung) {
+                    return;
+                }
+                if(crashOnSearch && command.startsWith("go")) {
+                    searches++;
+                    closeOutput();
+                } else if(command.equals("isready")) {
+                    say("readyok");
+                } else if(command.equals("go infinite") || command.startsWith("go ponder")) {
+                    searches++;         //runs until stopped
+                } else if(command.equals("stop") || command.equals("ponderhit")) {
+                    say("bestmove "+bestMove);
+                } else if(command.startsWith("go")) {
+                    searches++;
+                    say("info depth 1 score cp 10 pv "+bestMove);
+                    say("bestmove "+bestMove+" ponder "+ponderMove);
+                }
+            }
+        });
+    }
+
+    void say(String text) {
+        try {
+            output.write((text+"\n").getBytes());
+            output.flush();
+        } catch(IOException e) {
+            //engine gone
+        }
+    }
+
+    /** The process died, its output ends. */
+    void crash() {
+        thread.execute(new Runnable() {
+            public void run() {
+                closeOutput();
+            }
+        });
+    }
+
+    private void closeOutput() {
+        try {
+            output.close();
+        } catch(IOException e) {
+            //ignore
+        }
+    }
+}
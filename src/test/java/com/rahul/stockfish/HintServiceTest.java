@@ -0,0 +1,88 @@
+package com.rahul.stockfish;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class HintServiceTest {
+    FakeEngine fake;
+    HintService hints;
+
+    @Before
+    public void setUp() throws Exception {
+        fake = new FakeEngine();
+        hints = new HintService(fake.engine,3,2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        hints.close();
+    }
+
+    /** Wait for the engine's reader thread to get through what the fake said. */
+    private void sync() throws Exception {
+        fake.engine.isReady().get();
+    }
+
+    @Test
+    public void keepsFirstMoveOfEachLine() throws Exception {
+        assertNull(hints.getHints(1));
+        hints.analyze(1,"fen1");
+        sync();
+        fake.say("info depth 1 multipv 1 score cp 20 pv e2e4 e7e5");
+        fake.say("info depth 1 multipv 2 score cp 15 pv d2d4");
+        sync();
+        assertEquals(Arrays.asList("e2e4","d2d4"),hints.getHints(1));
+
+        fake.say("info depth 2 multipv 1 score cp 25 pv d2d4 d7d5");
+        fake.say("info depth 2 multipv 2 score cp 20 lowerbound pv g1f3");
+        fake.say("info depth 2 multipv 2 score cp 20 pv e2e4");
+        fake.say("info depth 2 multipv 3 score cp 10 pv c2c4");
+        fake.say("info depth 2 multipv 4 score cp 5 pv g1f3");
+        sync();
+        assertEquals(Arrays.asList("d2d4","e2e4","c2c4"),hints.getHints(1));
+    }
+
+    @Test
+    public void movesKeptForEarlierPositions() throws Exception {
+        hints.analyze(1,"fen1");
+        sync();
+        fake.say("info depth 1 multipv 1 score cp 20 pv e2e4");
+        sync();
+        hints.analyze(2,"fen2");
+        sync();     //old search's bestmove comes back before the new search's lines
+        fake.say("info depth 1 multipv 1 score cp 10 pv e7e5");
+        sync();
+        assertEquals(Arrays.asList("e2e4"),hints.getHints(1));
+        assertEquals(Arrays.asList("e7e5"),hints.getHints(2));
+
+        hints.analyze(3,"fen3");
+        sync();
+        fake.say("info depth 1 multipv 1 score cp 10 pv g1f3");
+        sync();
+        assertNull("oldest dropped",hints.getHints(1));
+        assertEquals(Arrays.asList("g1f3"),hints.getHints(3));
+    }
+
+    @Test
+    public void linesAfterStopIgnored() throws Exception {
+        hints.analyze(1,"fen1");
+        hints.stop();
+        sync();
+        fake.say("info depth 9 multipv 1 score cp 20 pv a2a3");
+        sync();
+        assertNull(hints.getHints(1));
+    }
+
+    @Test
+    public void samePositionNotRestarted() throws Exception {
+        hints.analyze(1,"fen1");
+        hints.analyze(1,"fen1");
+        sync();
+        assertEquals(1,fake.searches);
+    }
+}
@@ -0,0 +1,108 @@
+package com.rahul.stockfish;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class UciParserTest {
+    List<UciInfo> infos;
+    List<String> events;
+    UciParser parser;
+
+    @Before
+    public void setUp() throws Exception {
+        infos = new ArrayList<>();
+        events = new ArrayList<>();
+        parser = new UciParser(new UciListener() {
+            public void info(UciInfo info) {
+                infos.add(info.copy());
+            }
+
+            public void bestMove(String move,String ponder) {
+                events.add("bestmove "+move+" "+ponder);
+            }
+
+            public void readyOk() {
+                events.add("readyok");
+            }
+
+            public void uciOk() {
+                events.add("uciok");
+            }
+        });
+    }
+
+    @Test
+    public void info() {
+        parser.parseLine("info depth 12 seldepth 18 multipv 1 score cp -31 nodes 80321 nps 802000 hashfull 12 time 100 pv e7e5 g1f3 b8c6");
+        assertEquals(1,infos.size());
+        UciInfo info = infos.get(0);
+        assertEquals(12,info.getDepth());
+        assertEquals(18,info.getSelDepth());
+        assertEquals(1,info.getMultiPv());
+        assertTrue(info.hasScore());
+        assertFalse(info.isMate());
+        assertEquals(-31,info.getScore());
+        assertEquals(-31,info.getCentipawns());
+        assertEquals(UciInfo.Bound.EXACT,info.getBound());
+        assertEquals(80321,info.getNodes());
+        assertEquals(802000,info.getNps());
+        assertEquals(100,info.getTime());
+        assertEquals(Arrays.asList("e7e5","g1f3","b8c6"),info.getPv());
+    }
+
+    @Test
+    public void mate() {
+        parser.parseLine("info depth 20 score mate 3 pv h5f7 e8e7 f7e6");
+        parser.parseLine("info depth 20 score mate -2 pv e8d8");
+        assertTrue(infos.get(0).isMate());
+        assertEquals(3,infos.get(0).getScore());
+        assertEquals(UciInfo.MATE_SCORE-3,infos.get(0).getCentipawns());
+        assertEquals(-UciInfo.MATE_SCORE+2,infos.get(1).getCentipawns());
+    }
+
+    @Test
+    public void bounds() {
+        parser.parseLine("info depth 9 score cp 40 lowerbound nodes 100");
+        parser.parseLine("info depth 9 score cp 20 upperbound nodes 200");
+        assertEquals(UciInfo.Bound.LOWER,infos.get(0).getBound());
+        assertEquals(40,infos.get(0).getScore());
+        assertEquals(100,infos.get(0).getNodes());
+        assertEquals(UciInfo.Bound.UPPER,infos.get(1).getBound());
+        assertEquals(200,infos.get(1).getNodes());
+    }
+
+    @Test
+    public void infoWithoutScore() {
+        parser.parseLine("info depth 5 currmove e2e4 currmovenumber 1");
+        parser.parseLine("info string NNUE evaluation using nn.nnue enabled");
+        assertEquals(2,infos.size());
+        assertEquals(5,infos.get(0).getDepth());
+        assertFalse(infos.get(0).hasScore());
+        assertFalse(infos.get(0).hasPv());
+        assertEquals(-1,infos.get(1).getDepth());
+    }
+
+    @Test
+    public void bestMove() {
+        parser.parseLine("bestmove e2e4 ponder e7e5");
+        parser.parseLine("bestmove e7e8q");
+        assertEquals(Arrays.asList("bestmove e2e4 e7e5","bestmove e7e8q null"),events);
+    }
+
+    @Test
+    public void otherLines() {
+        parser.parseLine("id name Stockfish 10");
+        parser.parseLine("option name Hash type spin default 16 min 1 max 131072");
+        parser.parseLine("uciok");
+        parser.parseLine("");
+        parser.parseLine("readyok");
+        assertEquals(Arrays.asList("uciok","readyok"),events);
+        assertEquals(0,infos.size());
+    }
+}